@@ -0,0 +1,98 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.view;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.opentsdb.horizon.util.JsonCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads and writes an alert definition with a plain {@link ObjectMapper}, as the code did before,
+ * and with the cached reader and writer of {@link JsonCodec}, which also uses the Blackbird module
+ * for the bean properties.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AlertViewCodecBenchmark {
+
+  private static final String JSON =
+      "{\"name\":\"CPU busy\",\"namespace\":\"tsdb\",\"type\":\"simple\",\"enabled\":true,"
+          + "\"labels\":[\"prod\",\"cpu\"],"
+          + "\"queries\":{\"raw\":[{\"id\":\"q1\",\"namespace\":\"tsdb\",\"metrics\":"
+          + "[{\"name\":\"system.cpu.busy.pct\",\"filters\":[\"host=web*\",\"colo=bf1\"]}]}],"
+          + "\"tsdb\":[{\"start\":\"1h-ago\",\"executionGraph\":[{\"id\":\"m1\","
+          + "\"type\":\"TimeSeriesDataSource\",\"metric\":{\"metric\":\"system.cpu.busy.pct\"}},"
+          + "{\"id\":\"ds\",\"type\":\"Downsample\",\"interval\":\"1m\",\"aggregator\":\"avg\","
+          + "\"sources\":[\"m1\"]}]}]},"
+          + "\"threshold\":{\"subType\":\"singleMetric\",\"nagInterval\":\"0\","
+          + "\"notifyOnMissing\":false,\"singleMetric\":{\"queryIndex\":0,\"queryType\":\"tsdb\","
+          + "\"metricId\":\"ds\",\"badThreshold\":90.0,\"warnThreshold\":75.5,"
+          + "\"requiresFullWindow\":false,\"reportingInterval\":60,\"recoveryThreshold\":70,"
+          + "\"recoveryType\":\"minimum\",\"slidingWindow\":\"300\",\"comparisonOperator\":\"above\","
+          + "\"timeSampler\":\"at_least_once\"},\"isNagEnabled\":false},"
+          + "\"notification\":{\"transitionsToNotify\":[\"goodToBad\",\"warnToBad\"],"
+          + "\"recipients\":{\"email\":[{\"name\":\"oncall@example.com\"}]},"
+          + "\"subject\":\"CPU busy on {{tag.host}}\",\"body\":\"{{tag.host}} is at {{value}}\","
+          + "\"opsgeniePriority\":\"P3\",\"runbookId\":\"RB-12\"},"
+          + "\"alertGroupingRules\":[\"host\"],\"version\":3}";
+
+  private final ObjectMapper plain = new ObjectMapper();
+
+  private AlertView alert;
+
+  @Setup
+  public void setUp() throws IOException {
+    alert = plain.readValue(JSON, AlertView.class);
+  }
+
+  @Benchmark
+  public AlertView readPlain() throws IOException {
+    return plain.readValue(JSON, AlertView.class);
+  }
+
+  @Benchmark
+  public AlertView readJsonCodec() throws IOException {
+    return JsonCodec.reader(AlertView.class).readValue(JSON);
+  }
+
+  @Benchmark
+  public String writePlain() throws IOException {
+    return plain.writeValueAsString(alert);
+  }
+
+  @Benchmark
+  public String writeJsonCodec() throws IOException {
+    return JsonCodec.writer(AlertView.class).writeValueAsString(alert);
+  }
+}
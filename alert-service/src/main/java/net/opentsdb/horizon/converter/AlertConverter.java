@@ -22,6 +22,7 @@ import net.opentsdb.horizon.NamespaceCache;
 import net.opentsdb.horizon.model.Namespace;
 import net.opentsdb.horizon.model.Alert;
 import net.opentsdb.horizon.model.Contact;
+import net.opentsdb.horizon.util.JsonCodec;
 import net.opentsdb.horizon.util.Utils;
 import net.opentsdb.horizon.view.AlertView;
 import net.opentsdb.horizon.view.BatchContact;
@@ -43,7 +44,7 @@ public class AlertConverter extends BaseConverter<AlertView, Alert> {
   public static final String VERSION = "version";
   public static final String CREATED_FROM = "createdFrom";
 
-  public static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+  public static final ObjectMapper OBJECT_MAPPER = JsonCodec.mapper();
 
   private final NamespaceCache namespaceCache;
 
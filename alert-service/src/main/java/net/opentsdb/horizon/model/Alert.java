@@ -33,6 +33,8 @@ public class Alert extends BaseDto {
   private boolean deleted;
   private List<String> labels;
   private Map<String, Object> definition;
+  /** Position of the latest change in the change feed of the namespace, only read by the feed. */
+  private long changeSeq;
 
   @Transient private BatchContact contacts;
   @Transient private List<Contact> contactList;
@@ -118,6 +120,14 @@ public class Alert extends BaseDto {
     this.version = version;
   }
 
+  public long getChangeSeq() {
+    return changeSeq;
+  }
+
+  public void setChangeSeq(long changeSeq) {
+    this.changeSeq = changeSeq;
+  }
+
   public List<Contact> getContactList() {
     return contactList;
   }
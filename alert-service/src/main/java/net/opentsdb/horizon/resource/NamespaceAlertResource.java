@@ -23,6 +23,7 @@ import net.opentsdb.core.TSDB;
 import net.opentsdb.horizon.NamespaceCache;
 import net.opentsdb.horizon.model.Namespace;
 import net.opentsdb.horizon.service.AlertService;
+import net.opentsdb.horizon.view.AlertChanges;
 import net.opentsdb.horizon.view.AlertView;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -31,6 +32,7 @@ import net.opentsdb.servlet.resources.ServletResource;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
@@ -39,7 +41,9 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import java.util.ArrayList;
 import java.util.List;
@@ -139,9 +143,30 @@ public class NamespaceAlertResource extends BaseTSDBPlugin implements ServletRes
   public Response getAlert(
       @PathParam("namespace") String namespace,
       @ApiParam(defaultValue = "false") @QueryParam("definition") boolean fetchDefinition,
-      @ApiParam(defaultValue = "false") @QueryParam("deleted") boolean deleted) {
+      @ApiParam(defaultValue = "false") @QueryParam("deleted") boolean deleted,
+      @Context Request request) {
+    // read before the listing, a concurrent change can only make the tag stale, not the body
+    EntityTag tag = service.getNamespaceTag(namespace, deleted);
+    if (tag != null) {
+      Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+      if (notModified != null) {
+        return notModified.build();
+      }
+    }
     List<AlertView> alerts = service.getByNamespace(namespace, fetchDefinition, deleted);
-    return Response.status(Response.Status.OK).entity(alerts).build();
+    return Response.status(Response.Status.OK).entity(alerts).tag(tag).build();
+  }
+
+  @ApiOperation("Alerts created, updated, deleted or restored since the cursor")
+  @GET
+  @Produces(MediaType.APPLICATION_JSON)
+  @Path("changes")
+  public Response getChanges(
+      @PathParam("namespace") String namespace,
+      @QueryParam("cursor") String cursor,
+      @ApiParam(defaultValue = "1000") @DefaultValue("1000") @QueryParam("limit") int limit) {
+    AlertChanges changes = service.getChanges(namespace, cursor, limit);
+    return Response.status(Response.Status.OK).entity(changes).build();
   }
 
   @ApiOperation("Update")
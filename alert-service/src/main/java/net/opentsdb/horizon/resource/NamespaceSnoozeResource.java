@@ -23,6 +23,8 @@ import net.opentsdb.core.TSDB;
 import net.opentsdb.horizon.NamespaceCache;
 import net.opentsdb.horizon.model.Namespace;
 import net.opentsdb.horizon.service.SnoozeService;
+import net.opentsdb.horizon.view.SnoozeMatch;
+import net.opentsdb.horizon.view.SnoozeMatchQuery;
 import net.opentsdb.horizon.view.SnoozeView;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -37,7 +39,9 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import java.util.ArrayList;
 import java.util.List;
@@ -160,7 +164,8 @@ public class NamespaceSnoozeResource extends BaseTSDBPlugin implements ServletRe
   @ApiOperation("Get all for a namespace")
   @GET
   @Produces(MediaType.APPLICATION_JSON)
-  public Response getSnoozesForNamespace(@PathParam("namespace") String namespace) {
+  public Response getSnoozesForNamespace(
+      @PathParam("namespace") String namespace, @Context Request request) {
     Namespace ns;
     try {
       ns = namespaceCache.getByName(namespace);
@@ -170,7 +175,26 @@ public class NamespaceSnoozeResource extends BaseTSDBPlugin implements ServletRe
     }
     validateNamespace(ns, namespace);
 
+    // read before the listing, a concurrent change can only make the tag stale, not the body
+    EntityTag tag = service.getNamespaceTag(namespace);
+    if (tag != null) {
+      Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+      if (notModified != null) {
+        return notModified.build();
+      }
+    }
     final List<SnoozeView> forNamespace = service.getForNamespace(namespace);
-    return Response.status(Response.Status.OK).entity(forNamespace).build();
+    return Response.status(Response.Status.OK).entity(forNamespace).tag(tag).build();
+  }
+
+  @ApiOperation("Which snoozes apply to each of the alerts")
+  @POST
+  @Consumes(MediaType.APPLICATION_JSON)
+  @Produces(MediaType.APPLICATION_JSON)
+  @Path("match")
+  public Response match(
+      @PathParam("namespace") String namespace, List<SnoozeMatchQuery> queries) {
+    final List<SnoozeMatch> matches = service.match(namespace, queries);
+    return Response.status(Response.Status.OK).entity(matches).build();
   }
 }
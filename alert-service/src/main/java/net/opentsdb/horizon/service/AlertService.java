@@ -17,6 +17,7 @@
 
 package net.opentsdb.horizon.service;
 
+import com.google.common.collect.ListMultimap;
 import net.opentsdb.horizon.NamespaceCache;
 import net.opentsdb.horizon.converter.AlertConverter;
 import net.opentsdb.horizon.model.Alert;
@@ -25,6 +26,7 @@ import net.opentsdb.horizon.model.ContactType;
 import net.opentsdb.horizon.model.Namespace;
 import net.opentsdb.horizon.store.AlertStore;
 import net.opentsdb.horizon.store.ContactStore;
+import net.opentsdb.horizon.view.AlertChanges;
 import net.opentsdb.horizon.view.AlertView;
 import net.opentsdb.horizon.view.BatchContact;
 import net.opentsdb.horizon.view.EmailContact;
@@ -34,14 +36,19 @@ import net.opentsdb.horizon.view.OpsGenieContact;
 import net.opentsdb.horizon.view.PagerDutyContact;
 import net.opentsdb.horizon.view.SlackContact;
 
+import javax.ws.rs.core.EntityTag;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static net.opentsdb.horizon.converter.AlertConverter.CREATED_FROM;
 import static net.opentsdb.horizon.converter.AlertConverter.GROUPING_RULES;
 import static net.opentsdb.horizon.converter.AlertConverter.NOTIFICATION;
@@ -58,6 +65,9 @@ public class AlertService extends AuthenticatedBaseService<AlertView, Alert, Ale
 
   public static String SO_SERVICE = "HZ_ALERT_SERVICE";
 
+  public static final int MAX_CHANGES_LIMIT = 10_000;
+  public static final long LISTING_SETTLE_MILLIS = 2000;
+
   private ContactStore contactStore;
   private AlertStore store;
 
@@ -231,9 +241,10 @@ public class AlertService extends AuthenticatedBaseService<AlertView, Alert, Ale
     authorize(namespace, principal);
     try (Connection connection = store.getReadWriteConnection()) {
       try {
-        store.softDelete(ids, principal, connection);
+        store.softDelete(namespace.getId(), ids, principal, connection);
         store.removeContactsFromAlert(ids, connection);
         store.commit(connection);
+        store.recordWrite(connection, principal);
       } catch (Exception e) {
         store.rollback(connection);
         throw e;
@@ -249,8 +260,9 @@ public class AlertService extends AuthenticatedBaseService<AlertView, Alert, Ale
     authorize(namespace, principal);
     try (Connection connection = store.getReadWriteConnection()) {
       try {
-        store.restore(ids, principal, connection);
+        store.restore(namespace.getId(), ids, principal, connection);
         store.commit(connection);
+        store.recordWrite(connection, principal);
       } catch (SQLException e) {
         store.rollback(connection);
         throw e;
@@ -337,8 +349,7 @@ public class AlertService extends AuthenticatedBaseService<AlertView, Alert, Ale
               if (alert == null) {
                 throw notFoundException("Alert not found with id: " + id);
               }
-              List<Contact> contacts = contactStore.getContactsForAlert(id, connection);
-              alert.setContactList(contacts);
+              attachContacts(Collections.singletonList(alert), connection);
               return alert;
             },
             format,
@@ -363,11 +374,7 @@ public class AlertService extends AuthenticatedBaseService<AlertView, Alert, Ale
         list(
             (connection) -> {
               List<Alert> alerts = store.get(namespaceId, fetchDefinition, deleted, connection);
-              for (Alert alert : alerts) {
-                List<Contact> contacts =
-                    contactStore.getContactsForAlert(alert.getId(), connection);
-                alert.setContactList(contacts);
-              }
+              attachContacts(alerts, connection);
               return alerts;
             },
             format,
@@ -375,6 +382,52 @@ public class AlertService extends AuthenticatedBaseService<AlertView, Alert, Ale
     return views;
   }
 
+  /**
+   * Entity tag of the alerts listed by {@link #getByNamespace(String, boolean, boolean)}, from
+   * their count and latest update time. The listing itself is not read.
+   *
+   * @return null if the listing can't be tagged yet, see {@link #listingTag(List, Object...)}.
+   */
+  public EntityTag getNamespaceTag(final String namespaceName, final boolean deleted) {
+    Namespace namespace;
+    try {
+      namespace = namespaceCache.getByName(namespaceName);
+    } catch (Exception e) {
+      String message = "Error reading namespace with name: " + namespaceName;
+      logger.error(message, e);
+      throw internalServerError(message);
+    }
+    validateNamespace(namespace, namespaceName);
+    int namespaceId = namespace.getId();
+    try (Connection connection = store.getReadOnlyConnection()) {
+      return listingTag(
+          store.getNamespaceVersion(namespaceId, deleted, connection), namespaceId, deleted);
+    } catch (SQLException e) {
+      String message = "Error reading alert version for namespace: " + namespaceName;
+      logger.error(message, e);
+      throw internalServerError(message);
+    }
+  }
+
+  /**
+   * @return the entity tag of a listing from its version, null while one of its update times is
+   *     more recent than {@link #LISTING_SETTLE_MILLIS}. Until then a transaction committing late
+   *     could still update a row with an older time, changing neither the count nor the latest
+   *     time. Alerts are versioned by their change position instead, which a late commit can't
+   *     miss, see {@link AlertStore#nextChangeSeq}.
+   */
+  static EntityTag listingTag(final List<Object> version, final Object... key) {
+    long settled = now().getTime() - LISTING_SETTLE_MILLIS;
+    for (Object value : version) {
+      if (value instanceof Timestamp && ((Timestamp) value).getTime() > settled) {
+        return null;
+      }
+    }
+    List<Object> values = new ArrayList<>(Arrays.asList(key));
+    values.addAll(version);
+    return entityTag(values.toArray());
+  }
+
   public AlertView getByNamespaceAndName(
       final String namespaceName,
       final String name,
@@ -399,8 +452,7 @@ public class AlertService extends AuthenticatedBaseService<AlertView, Alert, Ale
                 throw notFoundException(
                     "Alert not found for namespace: " + namespaceName + " name: " + name);
               }
-              List<Contact> contacts = contactStore.getContactsForAlert(alert.getId(), connection);
-              alert.setContactList(contacts);
+              attachContacts(Collections.singletonList(alert), connection);
               return alert;
             },
             format,
@@ -409,6 +461,72 @@ public class AlertService extends AuthenticatedBaseService<AlertView, Alert, Ale
     return view;
   }
 
+  /**
+   * Lists the alerts of a namespace created, updated, deleted or restored after the cursor. A null
+   * cursor starts from the beginning. The changes are ordered by the position the database gave
+   * them, in the order they were committed, so that a transaction committing late isn't skipped.
+   */
+  public AlertChanges getChanges(final String namespaceName, final String cursor, int limit) {
+    if (limit <= 0 || limit > MAX_CHANGES_LIMIT) {
+      throw badRequestException("limit should be between 1 and " + MAX_CHANGES_LIMIT);
+    }
+    Namespace namespace;
+    try {
+      namespace = namespaceCache.getByName(namespaceName);
+    } catch (Exception e) {
+      String message = "Error reading namespace with name: " + namespaceName;
+      logger.error(message, e);
+      throw internalServerError(message);
+    }
+    validateNamespace(namespace, namespaceName);
+    int namespaceId = namespace.getId();
+
+    ChangeCursor position = ChangeCursor.decode(cursor);
+
+    final String format = "Error listing alert changes for namespace: %s";
+    List<Alert> alerts;
+    try (Connection connection = store.getReadOnlyConnection()) {
+      alerts =
+          store.getChanges(namespaceId, position.changeSeq, position.id, limit, connection);
+      attachContacts(alerts, connection);
+    } catch (SQLException | IOException e) {
+      String message = String.format(format, namespaceName);
+      logger.error(message, e);
+      throw internalServerError(message);
+    }
+
+    String nextCursor = cursor;
+    if (!alerts.isEmpty()) {
+      Alert last = alerts.get(alerts.size() - 1);
+      nextCursor = new ChangeCursor(last.getChangeSeq(), last.getId()).encode();
+    } else if (isNullOrEmpty(cursor)) {
+      nextCursor = position.encode();
+    }
+    return new AlertChanges(toViews(alerts), nextCursor, alerts.size() == limit);
+  }
+
+  private void attachContacts(List<Alert> alerts, Connection connection)
+      throws SQLException, IOException {
+    if (alerts.isEmpty()) {
+      return;
+    }
+    List<Long> ids = new ArrayList<>(alerts.size());
+    for (Alert alert : alerts) {
+      ids.add(alert.getId());
+    }
+    setContacts(alerts, contactStore.getContactsForAlerts(ids, connection));
+  }
+
+  /**
+   * Gives every alert its own copy of its contacts, an empty list if it has none. The lists of the
+   * multimap are live views, changing one would change the multimap.
+   */
+  static void setContacts(List<Alert> alerts, ListMultimap<Long, Contact> contacts) {
+    for (Alert alert : alerts) {
+      alert.setContactList(new ArrayList<>(contacts.get(alert.getId())));
+    }
+  }
+
   @Override
   protected void setCreatorUpdatorIdAndTime(Alert alert, String principal, Timestamp timestamp) {
     alert.setCreatedBy(principal);
@@ -439,4 +557,37 @@ public class AlertService extends AuthenticatedBaseService<AlertView, Alert, Ale
     }
     definition.put(VERSION, version);
   }
+
+  /** Position in the alert change feed, in <code>(changeseq, id)</code> order. */
+  static final class ChangeCursor {
+    private static final String VERSION = "2";
+
+    final long changeSeq;
+    final long id;
+
+    ChangeCursor(long changeSeq, long id) {
+      this.changeSeq = changeSeq;
+      this.id = id;
+    }
+
+    String encode() {
+      String position = VERSION + ":" + changeSeq + ":" + id;
+      return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(UTF_8));
+    }
+
+    static ChangeCursor decode(String cursor) {
+      if (isNullOrEmpty(cursor)) {
+        return new ChangeCursor(0, 0);
+      }
+      try {
+        String[] parts = new String(Base64.getUrlDecoder().decode(cursor), UTF_8).split(":");
+        if (parts.length != 3 || !VERSION.equals(parts[0])) {
+          throw badRequestException("Invalid cursor: " + cursor);
+        }
+        return new ChangeCursor(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+      } catch (IllegalArgumentException e) {
+        throw badRequestException("Invalid cursor: " + cursor);
+      }
+    }
+  }
 }
@@ -0,0 +1,292 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.service;
+
+import net.opentsdb.horizon.model.Snooze;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static net.opentsdb.horizon.converter.SnoozeConverter.ALERTIDS;
+import static net.opentsdb.horizon.converter.SnoozeConverter.FILTER;
+import static net.opentsdb.horizon.converter.SnoozeConverter.LABELS;
+
+/**
+ * Immutable index of the snoozes of a namespace, answering which snoozes apply to an alert with a
+ * set of tags at a point of time.
+ *
+ * <p>A snooze selects alerts by id or by label, or every alert of the namespace when it has
+ * neither. If it has a tag filter, the tags must match it as well. Snoozes are bucketed by alert
+ * id and label, each bucket sorted by start time, so a lookup only visits the candidates that
+ * started before the given time. Filters are compiled once when the index is built.
+ */
+public class SnoozeIndex {
+
+  private static Logger logger = LoggerFactory.getLogger(SnoozeIndex.class);
+
+  private static final String TYPE = "type";
+  private static final String OP = "op";
+  private static final String FILTERS = "filters";
+  private static final String TAG_KEY = "tagKey";
+
+  /** Matches the tags of an alert. */
+  @FunctionalInterface
+  interface TagMatcher {
+    boolean matches(Map<String, String> tags);
+  }
+
+  private static final TagMatcher NEVER = tags -> false;
+
+  private final Map<Long, List<Entry>> byAlertId;
+  private final Map<String, List<Entry>> byLabel;
+  private final List<Entry> namespaceWide;
+
+  private SnoozeIndex(
+      Map<Long, List<Entry>> byAlertId,
+      Map<String, List<Entry>> byLabel,
+      List<Entry> namespaceWide) {
+    this.byAlertId = byAlertId;
+    this.byLabel = byLabel;
+    this.namespaceWide = namespaceWide;
+  }
+
+  public static SnoozeIndex build(final Collection<Snooze> snoozes) {
+    Map<Long, List<Entry>> byAlertId = new HashMap<>();
+    Map<String, List<Entry>> byLabel = new HashMap<>();
+    List<Entry> namespaceWide = new ArrayList<>();
+
+    for (Snooze snooze : snoozes) {
+      Map<String, Object> definition =
+          snooze.getDefinition() == null ? Collections.emptyMap() : snooze.getDefinition();
+      Entry entry = new Entry(snooze, compileFilter(snooze.getId(), definition.get(FILTER)));
+
+      List<?> alertIds = asList(definition.get(ALERTIDS));
+      List<?> labels = asList(definition.get(LABELS));
+      for (Object alertId : alertIds) {
+        byAlertId
+            .computeIfAbsent(((Number) alertId).longValue(), k -> new ArrayList<>())
+            .add(entry);
+      }
+      for (Object label : labels) {
+        byLabel.computeIfAbsent(String.valueOf(label), k -> new ArrayList<>()).add(entry);
+      }
+      if (alertIds.isEmpty() && labels.isEmpty()) {
+        namespaceWide.add(entry);
+      }
+    }
+
+    byAlertId.values().forEach(SnoozeIndex::sortByStart);
+    byLabel.values().forEach(SnoozeIndex::sortByStart);
+    sortByStart(namespaceWide);
+    return new SnoozeIndex(byAlertId, byLabel, namespaceWide);
+  }
+
+  /** @return ids of the snoozes applying to the alert at the given time, in start time order. */
+  public List<Long> match(
+      final long alertId,
+      final Collection<String> labels,
+      final Map<String, String> tags,
+      final long timeMillis) {
+    Map<String, String> alertTags = tags == null ? Collections.emptyMap() : tags;
+    Set<Long> ids = new LinkedHashSet<>();
+    collect(byAlertId.get(alertId), alertTags, timeMillis, ids);
+    if (labels != null) {
+      for (String label : labels) {
+        collect(byLabel.get(label), alertTags, timeMillis, ids);
+      }
+    }
+    collect(namespaceWide, alertTags, timeMillis, ids);
+    return new ArrayList<>(ids);
+  }
+
+  public boolean isEmpty() {
+    return byAlertId.isEmpty() && byLabel.isEmpty() && namespaceWide.isEmpty();
+  }
+
+  private static void collect(
+      List<Entry> entries, Map<String, String> tags, long timeMillis, Set<Long> ids) {
+    if (entries == null) {
+      return;
+    }
+    for (int i = 0, end = startedBy(entries, timeMillis); i < end; i++) {
+      Entry entry = entries.get(i);
+      if (entry.end > timeMillis && entry.filter.matches(tags)) {
+        ids.add(entry.id);
+      }
+    }
+  }
+
+  /** @return number of entries that started at or before the time. */
+  private static int startedBy(List<Entry> entries, long timeMillis) {
+    int low = 0;
+    int high = entries.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (entries.get(mid).start <= timeMillis) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private static void sortByStart(List<Entry> entries) {
+    entries.sort(Comparator.comparingLong(entry -> entry.start));
+  }
+
+  private static List<?> asList(Object value) {
+    return value instanceof List ? (List<?>) value : Collections.emptyList();
+  }
+
+  private static TagMatcher compileFilter(long snoozeId, Object filter) {
+    if (!(filter instanceof Map) || ((Map<?, ?>) filter).isEmpty()) {
+      return tags -> true;
+    }
+    try {
+      return compile((Map<String, Object>) filter);
+    } catch (RuntimeException e) {
+      // a snooze we can't understand must not silence alerts
+      logger.warn("Ignoring snooze: {} with an invalid filter: {}", snoozeId, e.getMessage());
+      return NEVER;
+    }
+  }
+
+  /**
+   * Compiles a tag filter in the OpenTSDB query filter format: <code>Chain</code> (with an
+   * <code>AND</code> or <code>OR</code> op), <code>NotFilter</code>, <code>TagValueLiteralOr
+   * </code>, <code>TagValueRegex</code>, <code>TagValueWildcard</code> and <code>TagKeyLiteralOr
+   * </code>. A filter wrapped in a <code>filter</code> field is unwrapped.
+   */
+  static TagMatcher compile(Map<String, Object> filter) {
+    Object type = filter.get(TYPE);
+    if (type == null) {
+      if (filter.get(FILTER) instanceof Map) {
+        return compile((Map<String, Object>) filter.get(FILTER));
+      }
+      throw new IllegalArgumentException("Filter without a type");
+    }
+
+    switch (String.valueOf(type).toLowerCase()) {
+      case "chain":
+        {
+          List<TagMatcher> children = new ArrayList<>();
+          for (Object child : asList(filter.get(FILTERS))) {
+            children.add(compile((Map<String, Object>) child));
+          }
+          if ("OR".equalsIgnoreCase(String.valueOf(filter.get(OP)))) {
+            return tags -> children.stream().anyMatch(child -> child.matches(tags));
+          }
+          return tags -> children.stream().allMatch(child -> child.matches(tags));
+        }
+      case "notfilter":
+      case "not":
+        {
+          TagMatcher child = compile((Map<String, Object>) filter.get(FILTER));
+          return tags -> !child.matches(tags);
+        }
+      case "tagvalueliteralor":
+        {
+          String tagKey = tagKey(filter);
+          Set<String> values = literals(filter);
+          return tags -> values.contains(tags.get(tagKey));
+        }
+      case "tagvalueregex":
+        {
+          String tagKey = tagKey(filter);
+          Pattern pattern = Pattern.compile(String.valueOf(filter.get(FILTER)));
+          return tags -> {
+            String value = tags.get(tagKey);
+            return value != null && pattern.matcher(value).find();
+          };
+        }
+      case "tagvaluewildcard":
+        {
+          String tagKey = tagKey(filter);
+          Pattern pattern = wildcard(String.valueOf(filter.get(FILTER)));
+          return tags -> {
+            String value = tags.get(tagKey);
+            return value != null && pattern.matcher(value).matches();
+          };
+        }
+      case "tagkeyliteralor":
+      case "tagkey":
+        {
+          Set<String> keys = literals(filter);
+          return tags -> keys.stream().anyMatch(tags::containsKey);
+        }
+      default:
+        throw new IllegalArgumentException("Unsupported filter type: " + type);
+    }
+  }
+
+  private static String tagKey(Map<String, Object> filter) {
+    Object tagKey = filter.get(TAG_KEY);
+    if (tagKey == null) {
+      throw new IllegalArgumentException("Filter without a tagKey");
+    }
+    return String.valueOf(tagKey);
+  }
+
+  private static Set<String> literals(Map<String, Object> filter) {
+    Set<String> literals = new HashSet<>();
+    for (String literal : String.valueOf(filter.get(FILTER)).split("\\|")) {
+      literals.add(literal.trim());
+    }
+    return literals;
+  }
+
+  private static Pattern wildcard(String filter) {
+    StringBuilder regex = new StringBuilder();
+    String[] parts = filter.split("\\*", -1);
+    for (int i = 0; i < parts.length; i++) {
+      if (i > 0) {
+        regex.append(".*");
+      }
+      if (!parts[i].isEmpty()) {
+        regex.append(Pattern.quote(parts[i]));
+      }
+    }
+    return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE);
+  }
+
+  private static class Entry {
+    private final long id;
+    private final long start;
+    private final long end;
+    private final TagMatcher filter;
+
+    private Entry(Snooze snooze, TagMatcher filter) {
+      this.id = snooze.getId();
+      this.start = snooze.getStartTime() == null ? Long.MIN_VALUE : snooze.getStartTime().getTime();
+      this.end = snooze.getEndTime() == null ? Long.MAX_VALUE : snooze.getEndTime().getTime();
+      this.filter = filter;
+    }
+  }
+}
@@ -17,6 +17,10 @@
 
 package net.opentsdb.horizon.service;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import net.opentsdb.horizon.NamespaceCache;
 import net.opentsdb.horizon.converter.AlertConverter;
 import net.opentsdb.horizon.converter.SnoozeConverter;
@@ -30,8 +34,11 @@ import net.opentsdb.horizon.view.BatchContact;
 import net.opentsdb.horizon.view.EmailContact;
 import net.opentsdb.horizon.view.PagerDutyContact;
 import net.opentsdb.horizon.view.SlackContact;
+import net.opentsdb.horizon.view.SnoozeMatch;
+import net.opentsdb.horizon.view.SnoozeMatchQuery;
 import net.opentsdb.horizon.view.SnoozeView;
 
+import javax.ws.rs.core.EntityTag;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
@@ -43,6 +50,8 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -60,8 +69,12 @@ public class SnoozeService extends AuthenticatedBaseService<SnoozeView, Snooze,
 
   public static final String SO_SERVICE = "HZ_SNOOZE_SERVICE";
 
+  public static final int MAX_MATCH_QUERIES = 10_000;
+  private static final long SNOOZE_INDEX_TTL_SECONDS = 30;
+
   private final ContactStore contactStore;
   private final SnoozeStore snoozeStore;
+  private final LoadingCache<Integer, SnoozeIndex> snoozeIndexes;
 
   public SnoozeService(
       final SnoozeStore snoozeStore,
@@ -71,6 +84,10 @@ public class SnoozeService extends AuthenticatedBaseService<SnoozeView, Snooze,
     super(new SnoozeConverter(namespaceCache), snoozeStore, authService, namespaceCache);
     this.contactStore = contactStore;
     this.snoozeStore = snoozeStore;
+    this.snoozeIndexes =
+        CacheBuilder.newBuilder()
+            .expireAfterWrite(SNOOZE_INDEX_TTL_SECONDS, TimeUnit.SECONDS)
+            .build(CacheLoader.from(this::loadSnoozeIndex));
   }
 
   @Override
@@ -93,6 +110,26 @@ public class SnoozeService extends AuthenticatedBaseService<SnoozeView, Snooze,
     }
   }
 
+  /**
+   * Drops the snooze indexes of the namespaces written to. Only done once committed, as a match
+   * running before would load the old snoozes again and keep them for the index TTL.
+   */
+  @Override
+  protected void postCreates(final List<Snooze> snoozeList) {
+    invalidateSnoozeIndexes(snoozeList);
+  }
+
+  @Override
+  protected void postUpdates(final List<Snooze> snoozeList) {
+    invalidateSnoozeIndexes(snoozeList);
+  }
+
+  private void invalidateSnoozeIndexes(final List<Snooze> snoozeList) {
+    for (Snooze snooze : snoozeList) {
+      snoozeIndexes.invalidate(snooze.getNamespaceId());
+    }
+  }
+
   private void setProperStartTime(final List<Snooze> snoozeList, final long currentTimeMillis) {
     snoozeList.stream()
         .forEach(
@@ -339,6 +376,9 @@ public class SnoozeService extends AuthenticatedBaseService<SnoozeView, Snooze,
         snoozeStore.deleteSnoozeContactBySnoozeId(ids, connection);
         snoozeStore.delete(ids, connection);
         snoozeStore.commit(connection);
+        for (Namespace namespace : namespaceSet) {
+          snoozeIndexes.invalidate(namespace.getId());
+        }
       } catch (SQLException | IOException e) {
         snoozeStore.rollback(connection);
         throw e;
@@ -438,6 +478,85 @@ public class SnoozeService extends AuthenticatedBaseService<SnoozeView, Snooze,
     return activeSnoozeViews;
   }
 
+  /**
+   * Entity tag of the snoozes listed by {@link #getForNamespace(String)}, from the count of those
+   * not expired yet and their latest update time. The listing itself is not read.
+   *
+   * @return null if the listing can't be tagged yet, see {@link AlertService#listingTag}.
+   */
+  public EntityTag getNamespaceTag(final String namespaceName) {
+    Namespace namespace;
+    try {
+      namespace = namespaceCache.getByName(namespaceName);
+    } catch (Exception e) {
+      String message = "Error reading namespace with name: " + namespaceName;
+      logger.error(message, e);
+      throw internalServerError(message);
+    }
+    validateNamespace(namespace, namespaceName);
+    int namespaceId = namespace.getId();
+    try (Connection connection = snoozeStore.getReadOnlyConnection()) {
+      return AlertService.listingTag(
+          snoozeStore.getNamespaceVersion(namespaceId, false, now(), connection), namespaceId);
+    } catch (SQLException e) {
+      String message = "Error reading snooze version for namespace: " + namespaceName;
+      logger.error(message, e);
+      throw internalServerError(message);
+    }
+  }
+
+  /**
+   * Answers which active snoozes apply to each of the alerts. The response has one entry per
+   * query, in the same order.
+   */
+  public List<SnoozeMatch> match(final String namespaceName, final List<SnoozeMatchQuery> queries) {
+    if (queries == null || queries.isEmpty()) {
+      return new ArrayList<>();
+    }
+    if (queries.size() > MAX_MATCH_QUERIES) {
+      throw badRequestException("At most " + MAX_MATCH_QUERIES + " alerts can be matched at once");
+    }
+    Namespace namespace;
+    try {
+      namespace = namespaceCache.getByName(namespaceName);
+    } catch (Exception e) {
+      String message = "Error reading namespace with name: " + namespaceName;
+      logger.error(message, e);
+      throw internalServerError(message);
+    }
+    validateNamespace(namespace, namespaceName);
+
+    SnoozeIndex index;
+    try {
+      index = snoozeIndexes.get(namespace.getId());
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      String message = "Error loading snoozes for namespace: " + namespaceName;
+      logger.error(message, e);
+      throw internalServerError(message);
+    }
+
+    long now = System.currentTimeMillis();
+    List<SnoozeMatch> matches = new ArrayList<>(queries.size());
+    for (SnoozeMatchQuery query : queries) {
+      long timestamp = query.getTimestamp() == null ? now : query.getTimestamp();
+      List<Long> snoozeIds =
+          index.match(query.getAlertId(), query.getLabels(), query.getTags(), timestamp);
+      matches.add(new SnoozeMatch(query.getAlertId(), snoozeIds));
+    }
+    return matches;
+  }
+
+  private SnoozeIndex loadSnoozeIndex(final int namespaceId) {
+    try (Connection connection = snoozeStore.getReadOnlyConnection()) {
+      List<Snooze> snoozes = snoozeStore.getForNamespace(namespaceId, false, connection);
+      long now = System.currentTimeMillis();
+      snoozes.removeIf(snooze -> snooze.getEndTime().getTime() <= now);
+      return SnoozeIndex.build(snoozes);
+    } catch (SQLException | IOException e) {
+      throw new UncheckedExecutionException(e);
+    }
+  }
+
   @Override
   protected void setCreatorIdAndTime(Snooze snooze, String principal, Timestamp timestamp) {
     snooze.setCreatedBy(principal);
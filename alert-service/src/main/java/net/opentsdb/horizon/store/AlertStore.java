@@ -29,8 +29,11 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import static net.opentsdb.horizon.converter.AlertConverter.VERSION;
 import static net.opentsdb.horizon.converter.BaseConverter.NOT_PASSED;
@@ -41,8 +44,8 @@ import static net.opentsdb.horizon.util.Utils.serialize;
 
 public class AlertStore extends BaseStore {
 
-  public AlertStore(DataSource rwSrc, DataSource roSrc) {
-    super(rwSrc, roSrc);
+  public AlertStore(DataSource rwSrc, DataSource roSrc, SessionConsistency sessionConsistency) {
+    super(rwSrc, roSrc, sessionConsistency);
   }
 
   @Override
@@ -68,12 +71,50 @@ public class AlertStore extends BaseStore {
     }
   }
 
+  private static final String SQL_NEXT_CHANGE =
+      "INSERT INTO alert_change (namespaceid, seq) VALUES (?, 1) ON DUPLICATE KEY UPDATE seq = seq + 1";
+
+  private static final String SQL_GET_CHANGE = "SELECT seq FROM alert_change WHERE namespaceid = ?";
+
+  /**
+   * Takes the next position in the change feed of a namespace. Its row stays locked until the
+   * transaction ends, so a concurrent writer only gets the following position once this one has
+   * committed, and the feed sees the changes of a namespace in the order they were committed.
+   */
+  public long nextChangeSeq(int namespaceId, Connection connection) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(SQL_NEXT_CHANGE)) {
+      statement.setInt(1, namespaceId);
+      statement.executeUpdate();
+    }
+    try (PreparedStatement statement = connection.prepareStatement(SQL_GET_CHANGE)) {
+      statement.setInt(1, namespaceId);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        resultSet.next();
+        return resultSet.getLong(1);
+      }
+    }
+  }
+
+  /** Sets the next change position of their namespace on the alerts, locking in namespace order. */
+  private void setChangeSeqs(List<Alert> alerts, Connection connection) throws SQLException {
+    SortedMap<Integer, Long> seqs = new TreeMap<>();
+    for (Alert alert : alerts) {
+      seqs.put(alert.getNamespaceId(), 0L);
+    }
+    for (Map.Entry<Integer, Long> entry : seqs.entrySet()) {
+      entry.setValue(nextChangeSeq(entry.getKey(), connection));
+    }
+    for (Alert alert : alerts) {
+      alert.setChangeSeq(seqs.get(alert.getNamespaceId()));
+    }
+  }
+
   public static final String SQL_ADD_ALERT =
       "INSERT INTO alert(name, type, labels, definition, enabled, deleted, namespaceid, createdby, createdtime, "
-          + "updatedby, updatedtime) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+          + "updatedby, updatedtime, changeseq) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
   public int[] create(List<Alert> alerts, Connection connection) throws SQLException, IOException {
-
+    setChangeSeqs(alerts, connection);
     try (PreparedStatement statement =
         connection.prepareStatement(SQL_ADD_ALERT, Statement.RETURN_GENERATED_KEYS)) {
       for (Alert alert : alerts) {
@@ -88,6 +129,7 @@ public class AlertStore extends BaseStore {
         statement.setTimestamp(9, alert.getCreatedTime());
         statement.setString(10, alert.getUpdatedBy());
         statement.setTimestamp(11, alert.getUpdatedTime());
+        statement.setLong(12, alert.getChangeSeq());
         statement.addBatch();
       }
       int[] result = statement.executeBatch();
@@ -214,6 +256,36 @@ public class AlertStore extends BaseStore {
     return alerts;
   }
 
+  private static final String SQL_GET_NAMESPACE_VERSION =
+      "SELECT COUNT(*), (SELECT MAX(seq) FROM alert_change WHERE namespaceid = ?), "
+          + "(SELECT COUNT(*) FROM contact WHERE namespaceid = ?), "
+          + "(SELECT MAX(updatedtime) FROM contact WHERE namespaceid = ?) "
+          + "FROM alert WHERE namespaceid = ? AND deleted = ?";
+
+  /**
+   * @return the number of alerts of a namespace and the position of their latest change, followed
+   *     by the number of contacts of the namespace and their latest update time. Creating, updating
+   *     or deleting any of them changes it.
+   */
+  public List<Object> getNamespaceVersion(
+      int namespaceid, boolean deleted, Connection connection) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(SQL_GET_NAMESPACE_VERSION)) {
+      statement.setInt(1, namespaceid);
+      statement.setInt(2, namespaceid);
+      statement.setInt(3, namespaceid);
+      statement.setInt(4, namespaceid);
+      statement.setBoolean(5, deleted);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        resultSet.next();
+        return Arrays.asList(
+            resultSet.getLong(1),
+            resultSet.getLong(2),
+            resultSet.getLong(3),
+            resultSet.getTimestamp(4));
+      }
+    }
+  }
+
   public static final String SQL_GET_BY_ID = "SELECT * FROM alert WHERE id = ? AND deleted = ?";
 
   private static final String SQL_GET_BY_ID_WITHOUT_DEFINITION =
@@ -235,12 +307,42 @@ public class AlertStore extends BaseStore {
     return alert;
   }
 
+  private static final String SQL_GET_CHANGES =
+      "SELECT * FROM alert WHERE namespaceid = ? AND changeseq >= ? "
+          + "AND (changeseq > ? OR id > ?) ORDER BY changeseq, id LIMIT ?";
+
+  /**
+   * Lists the alerts, deleted or not, created or modified after the given position in
+   * <code>(changeseq, id)</code> order.
+   */
+  public List<Alert> getChanges(
+      int namespaceId, long afterSeq, long afterId, int limit, Connection connection)
+      throws SQLException, IOException {
+    List<Alert> alerts = new ArrayList<>();
+    try (PreparedStatement statement = connection.prepareStatement(SQL_GET_CHANGES)) {
+      statement.setInt(1, namespaceId);
+      statement.setLong(2, afterSeq);
+      statement.setLong(3, afterSeq);
+      statement.setLong(4, afterId);
+      statement.setInt(5, limit);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          Alert alert = resultSetToAlert(resultSet, true);
+          alert.setChangeSeq(resultSet.getLong("changeseq"));
+          alerts.add(alert);
+        }
+      }
+    }
+    return alerts;
+  }
+
   private static final String SQL_UPDATE_ALERT =
       "UPDATE alert SET name = ?, type = ?, labels = ?, definition = ?, enabled = ?, deleted = ?, namespaceid = ?, "
-          + "updatedby = ?, updatedtime = ? WHERE id = ? ";
+          + "updatedby = ?, updatedtime = ?, changeseq = ? WHERE id = ? ";
 
   public int[] update(final List<Alert> alerts, Connection connection)
       throws SQLException, IOException {
+    setChangeSeqs(alerts, connection);
     try (PreparedStatement statement = connection.prepareStatement(SQL_UPDATE_ALERT)) {
       for (Alert alert : alerts) {
         statement.setString(1, alert.getName());
@@ -252,8 +354,9 @@ public class AlertStore extends BaseStore {
         statement.setInt(7, alert.getNamespaceId());
         statement.setString(8, alert.getUpdatedBy());
         statement.setTimestamp(9, alert.getUpdatedTime());
+        statement.setLong(10, alert.getChangeSeq());
 
-        statement.setLong(10, alert.getId());
+        statement.setLong(11, alert.getId());
         statement.addBatch();
       }
       return statement.executeBatch();
@@ -273,10 +376,13 @@ public class AlertStore extends BaseStore {
   }
 
   private static final String SQL_SOFT_DELETE_ALERT =
-      "UPDATE alert SET name = CONCAT(name, ?), deleted = ?, updatedby = ?, updatedtime = ? WHERE id = ?";
+      "UPDATE alert SET name = CONCAT(name, ?), deleted = ?, updatedby = ?, updatedtime = ?, "
+          + "changeseq = ? WHERE id = ? AND namespaceid = ?";
 
-  public int[] softDelete(final long[] ids, String principal, Connection connection)
+  public int[] softDelete(
+      final int namespaceId, final long[] ids, String principal, Connection connection)
       throws SQLException {
+    long changeSeq = nextChangeSeq(namespaceId, connection);
     try (PreparedStatement statement = connection.prepareStatement(SQL_SOFT_DELETE_ALERT)) {
       Timestamp now = now();
       for (long id : ids) {
@@ -284,7 +390,9 @@ public class AlertStore extends BaseStore {
         statement.setInt(2, 1);
         statement.setString(3, principal);
         statement.setTimestamp(4, now);
-        statement.setLong(5, id);
+        statement.setLong(5, changeSeq);
+        statement.setLong(6, id);
+        statement.setInt(7, namespaceId);
         statement.addBatch();
       }
       return statement.executeBatch();
@@ -292,17 +400,22 @@ public class AlertStore extends BaseStore {
   }
 
   private static final String SQL_RESTORE_ALERT =
-      "UPDATE alert SET deleted = ?, updatedby = ?, updatedtime = ? WHERE id = ?";
+      "UPDATE alert SET deleted = ?, updatedby = ?, updatedtime = ?, changeseq = ? "
+          + "WHERE id = ? AND namespaceid = ?";
 
-  public int[] restore(final long[] ids, String principal, Connection connection)
+  public int[] restore(
+      final int namespaceId, final long[] ids, String principal, Connection connection)
       throws SQLException {
+    long changeSeq = nextChangeSeq(namespaceId, connection);
     try (PreparedStatement statement = connection.prepareStatement(SQL_RESTORE_ALERT)) {
       Timestamp now = now();
       for (long id : ids) {
         statement.setInt(1, 0);
         statement.setString(2, principal);
         statement.setTimestamp(3, now);
-        statement.setLong(4, id);
+        statement.setLong(4, changeSeq);
+        statement.setLong(5, id);
+        statement.setInt(6, namespaceId);
         statement.addBatch();
       }
       return statement.executeBatch();
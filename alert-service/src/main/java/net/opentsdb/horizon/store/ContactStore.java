@@ -17,6 +17,8 @@
 
 package net.opentsdb.horizon.store;
 
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
 import net.opentsdb.horizon.model.Contact;
 import net.opentsdb.horizon.model.ContactType;
 
@@ -28,6 +30,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -36,8 +39,8 @@ import static net.opentsdb.horizon.util.Utils.serialize;
 
 public class ContactStore extends BaseStore {
 
-  public ContactStore(DataSource rwSrc, DataSource roSrc) {
-    super(rwSrc, roSrc);
+  public ContactStore(DataSource rwSrc, DataSource roSrc, SessionConsistency sessionConsistency) {
+    super(rwSrc, roSrc, sessionConsistency);
   }
 
   private static final String SQL_ADD_CONTACT =
@@ -274,6 +277,38 @@ public class ContactStore extends BaseStore {
     return contacts;
   }
 
+  private static final String SQL_GET_CONTACTS_FOR_ALERTS =
+      "SELECT alert_contact.alertid AS alertid, contact.id AS id, contact.name AS name, "
+          + "contact.type AS type, contact.namespaceid AS namespaceid, contact.content AS content, "
+          + "contact.createdby AS createdby, contact.createdtime AS createdtime, "
+          + "contact.updatedby AS updatedby, contact.updatedtime AS updatedtime FROM contact "
+          + "JOIN alert_contact ON contact.id = alert_contact.contactid WHERE alert_contact.alertid IN ";
+
+  private static final int MAX_IDS_PER_QUERY = 1000;
+
+  /** Loads the contacts of all the given alerts in chunked <code>IN</code> queries. */
+  public ListMultimap<Long, Contact> getContactsForAlerts(
+      Collection<Long> alertIds, Connection connection) throws SQLException, IOException {
+    ListMultimap<Long, Contact> contacts = ArrayListMultimap.create();
+    List<Long> ids = new ArrayList<>(alertIds);
+    for (int from = 0; from < ids.size(); from += MAX_IDS_PER_QUERY) {
+      List<Long> chunk = ids.subList(from, Math.min(from + MAX_IDS_PER_QUERY, ids.size()));
+      String sql = SQL_GET_CONTACTS_FOR_ALERTS + "(" + multiRowValues("?", chunk.size()) + ")";
+      try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        int i = 1;
+        for (Long id : chunk) {
+          statement.setLong(i++, id);
+        }
+        try (ResultSet resultSet = statement.executeQuery()) {
+          while (resultSet.next()) {
+            contacts.put(resultSet.getLong("alertid"), resultSetToContact(resultSet));
+          }
+        }
+      }
+    }
+    return contacts;
+  }
+
   private Contact resultSetToContact(ResultSet resultSet) throws SQLException, IOException {
     Contact contact = new Contact();
     contact.setId(resultSet.getInt("id"));
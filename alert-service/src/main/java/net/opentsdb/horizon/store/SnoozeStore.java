@@ -26,7 +26,9 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -39,8 +41,8 @@ import static java.util.Collections.EMPTY_MAP;
 
 public class SnoozeStore extends BaseStore {
 
-  public SnoozeStore(DataSource rwSrc, DataSource roSrc) {
-    super(rwSrc, roSrc);
+  public SnoozeStore(DataSource rwSrc, DataSource roSrc, SessionConsistency sessionConsistency) {
+    super(rwSrc, roSrc, sessionConsistency);
   }
 
   public static final String SQL_ADD_SNOOZE =
@@ -138,6 +140,36 @@ public class SnoozeStore extends BaseStore {
     return snoozes;
   }
 
+  private static final String SQL_GET_NAMESPACE_VERSION =
+      "SELECT COUNT(*), MAX(updatedtime), "
+          + "(SELECT COUNT(*) FROM contact WHERE namespaceid = ?), "
+          + "(SELECT MAX(updatedtime) FROM contact WHERE namespaceid = ?) "
+          + "FROM snooze WHERE namespaceid = ? AND deleted = ? AND endtime > ?";
+
+  /**
+   * @return the number of snoozes of a namespace not expired at <code>now</code> and their latest
+   *     update time, followed by the same for the contacts of the namespace.
+   */
+  public List<Object> getNamespaceVersion(
+      int namespaceid, boolean deleted, Timestamp now, Connection connection)
+      throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(SQL_GET_NAMESPACE_VERSION)) {
+      statement.setInt(1, namespaceid);
+      statement.setInt(2, namespaceid);
+      statement.setInt(3, namespaceid);
+      statement.setBoolean(4, deleted);
+      statement.setTimestamp(5, now);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        resultSet.next();
+        return Arrays.asList(
+            resultSet.getLong(1),
+            resultSet.getTimestamp(2),
+            resultSet.getLong(3),
+            resultSet.getTimestamp(4));
+      }
+    }
+  }
+
   public static final String SQL_GET_BY_ID = "SELECT * FROM snooze WHERE id = ? AND deleted = ?";
 
   public Snooze getById(long id, boolean deleted, Connection connection)
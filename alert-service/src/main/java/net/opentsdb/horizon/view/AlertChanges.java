@@ -0,0 +1,64 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.view;
+
+import java.util.List;
+
+/** A page of the alert change feed of a namespace. */
+public class AlertChanges {
+
+  private List<AlertView> alerts;
+
+  /** Opaque cursor to pass on the next call to get the changes after this page. */
+  private String cursor;
+
+  /** True if there might be more changes after this page. */
+  private boolean more;
+
+  public AlertChanges() {}
+
+  public AlertChanges(List<AlertView> alerts, String cursor, boolean more) {
+    this.alerts = alerts;
+    this.cursor = cursor;
+    this.more = more;
+  }
+
+  public List<AlertView> getAlerts() {
+    return alerts;
+  }
+
+  public void setAlerts(List<AlertView> alerts) {
+    this.alerts = alerts;
+  }
+
+  public String getCursor() {
+    return cursor;
+  }
+
+  public void setCursor(String cursor) {
+    this.cursor = cursor;
+  }
+
+  public boolean isMore() {
+    return more;
+  }
+
+  public void setMore(boolean more) {
+    this.more = more;
+  }
+}
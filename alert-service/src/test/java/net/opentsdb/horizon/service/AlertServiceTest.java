@@ -0,0 +1,108 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.service;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import net.opentsdb.horizon.model.Alert;
+import net.opentsdb.horizon.model.Contact;
+import net.opentsdb.horizon.service.AlertService.ChangeCursor;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.core.EntityTag;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AlertServiceTest {
+
+  @Test
+  void changeCursorRoundTrip() {
+    ChangeCursor cursor = ChangeCursor.decode(new ChangeCursor(1234, 42).encode());
+
+    assertEquals(1234, cursor.changeSeq);
+    assertEquals(42, cursor.id);
+  }
+
+  @Test
+  void emptyChangeCursorStartsFromTheBeginning() {
+    ChangeCursor cursor = ChangeCursor.decode(null);
+
+    assertEquals(0, cursor.changeSeq);
+    assertEquals(0, cursor.id);
+  }
+
+  @Test
+  void invalidChangeCursor() {
+    assertThrows(BadRequestException.class, () -> ChangeCursor.decode("not a cursor"));
+    assertThrows(BadRequestException.class, () -> ChangeCursor.decode("MToxOjI6Mw"));
+  }
+
+  @Test
+  void listingTagFollowsCountAndLatestUpdate() {
+    Timestamp updatedTime = Timestamp.valueOf("2021-03-04 05:06:07.123456");
+    EntityTag tag = AlertService.listingTag(Arrays.asList(3L, updatedTime, 1L, null), 7, false);
+
+    assertTrue(tag.isWeak());
+    assertEquals(tag, AlertService.listingTag(Arrays.asList(3L, updatedTime, 1L, null), 7, false));
+    assertNotEquals(
+        tag, AlertService.listingTag(Arrays.asList(2L, updatedTime, 1L, null), 7, false));
+    assertNotEquals(
+        tag, AlertService.listingTag(Arrays.asList(3L, updatedTime, 1L, null), 7, true));
+  }
+
+  @Test
+  void setsACopyOfTheContactsOfEveryAlert() {
+    Contact email = new Contact();
+    email.setName("email");
+    Contact slack = new Contact();
+    slack.setName("slack");
+    ListMultimap<Long, Contact> contacts = ArrayListMultimap.create();
+    contacts.put(1L, email);
+    contacts.put(1L, slack);
+    Alert withContacts = new Alert();
+    withContacts.setId(1L);
+    Alert withoutContacts = new Alert();
+    withoutContacts.setId(2L);
+    List<Alert> alerts = Arrays.asList(withContacts, withoutContacts);
+
+    AlertService.setContacts(alerts, contacts);
+
+    assertEquals(Arrays.asList(email, slack), withContacts.getContactList());
+    assertTrue(withoutContacts.getContactList().isEmpty());
+
+    withContacts.getContactList().remove(email);
+    withoutContacts.getContactList().add(email);
+    assertEquals(Arrays.asList(email, slack), contacts.get(1L));
+    assertTrue(contacts.get(2L).isEmpty());
+  }
+
+  @Test
+  void recentChangesAreNotTagged() {
+    Timestamp justNow = new Timestamp(System.currentTimeMillis());
+
+    assertNull(AlertService.listingTag(Arrays.asList(3L, justNow, 1L, null), 7, false));
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.service;
+
+import net.opentsdb.horizon.model.Snooze;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static net.opentsdb.horizon.converter.SnoozeConverter.ALERTIDS;
+import static net.opentsdb.horizon.converter.SnoozeConverter.FILTER;
+import static net.opentsdb.horizon.converter.SnoozeConverter.LABELS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SnoozeIndexTest {
+
+  private static final long NOW = 1_600_000_000_000L;
+  private static final Map<String, String> TAGS = Collections.singletonMap("host", "web-01");
+
+  @Test
+  void matchesByAlertIdWithinTheInterval() {
+    SnoozeIndex index =
+        SnoozeIndex.build(
+            Arrays.asList(
+                snooze(1, NOW - 10, NOW + 10, ALERTIDS, Arrays.asList(7, 8)),
+                snooze(2, NOW + 5, NOW + 10, ALERTIDS, Arrays.asList(7)),
+                snooze(3, NOW - 10, NOW, ALERTIDS, Arrays.asList(7))));
+
+    assertEquals(Arrays.asList(1L), index.match(7, null, TAGS, NOW));
+    assertEquals(Arrays.asList(1L, 2L), index.match(7, null, TAGS, NOW + 5));
+    assertTrue(index.match(9, null, TAGS, NOW).isEmpty());
+  }
+
+  @Test
+  void matchesByLabel() {
+    SnoozeIndex index =
+        SnoozeIndex.build(
+            Arrays.asList(snooze(1, NOW - 10, NOW + 10, LABELS, Arrays.asList("db", "web"))));
+
+    assertEquals(Arrays.asList(1L), index.match(7, Arrays.asList("web"), TAGS, NOW));
+    assertTrue(index.match(7, Arrays.asList("cache"), TAGS, NOW).isEmpty());
+  }
+
+  @Test
+  void appliesTheTagFilter() {
+    Map<String, Object> wildcard = filter("TagValueWildcard", "host", "web*");
+    Map<String, Object> literal = filter("TagValueLiteralOr", "host", "db-01|db-02");
+    Map<String, Object> chain = new HashMap<>();
+    chain.put("type", "Chain");
+    chain.put("op", "OR");
+    chain.put("filters", Arrays.asList(literal, filter("TagValueRegex", "host", "^web-0[12]$")));
+    Map<String, Object> not = new HashMap<>();
+    not.put("type", "NotFilter");
+    not.put("filter", wildcard);
+
+    SnoozeIndex index =
+        SnoozeIndex.build(
+            Arrays.asList(
+                snooze(1, NOW - 10, NOW + 10, FILTER, wildcard),
+                snooze(2, NOW - 10, NOW + 10, FILTER, literal),
+                snooze(3, NOW - 10, NOW + 10, FILTER, chain),
+                snooze(4, NOW - 10, NOW + 10, FILTER, not)));
+
+    assertEquals(Arrays.asList(1L, 3L), index.match(7, null, TAGS, NOW));
+    assertEquals(
+        Arrays.asList(2L, 3L, 4L),
+        index.match(7, null, Collections.singletonMap("host", "db-01"), NOW));
+  }
+
+  @Test
+  void ignoresSnoozesWithAnInvalidFilter() {
+    SnoozeIndex index =
+        SnoozeIndex.build(
+            Arrays.asList(
+                snooze(1, NOW - 10, NOW + 10, FILTER, Collections.singletonMap("type", "Bogus"))));
+
+    assertTrue(index.match(7, null, TAGS, NOW).isEmpty());
+  }
+
+  private static Map<String, Object> filter(String type, String tagKey, String filter) {
+    Map<String, Object> map = new HashMap<>();
+    map.put("type", type);
+    map.put("tagKey", tagKey);
+    map.put("filter", filter);
+    return map;
+  }
+
+  private static Snooze snooze(long id, long start, long end, String field, Object value) {
+    Map<String, Object> definition = new HashMap<>();
+    definition.put(field, value);
+    return Snooze.builder()
+        .id(id)
+        .startTime(new Timestamp(start))
+        .endTime(new Timestamp(end))
+        .definition(definition)
+        .build();
+  }
+}
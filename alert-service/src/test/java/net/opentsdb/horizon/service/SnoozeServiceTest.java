@@ -17,5 +17,103 @@
 
 package net.opentsdb.horizon.service;
 
+import net.opentsdb.horizon.NamespaceCache;
+import net.opentsdb.horizon.model.Namespace;
+import net.opentsdb.horizon.model.Snooze;
+import net.opentsdb.horizon.store.ContactStore;
+import net.opentsdb.horizon.store.SnoozeStore;
+import net.opentsdb.horizon.view.SnoozeMatch;
+import net.opentsdb.horizon.view.SnoozeMatchQuery;
+import net.opentsdb.horizon.view.SnoozeView;
+import mockit.Delegate;
+import mockit.Expectations;
+import mockit.Injectable;
+import mockit.Mocked;
+import mockit.Tested;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static net.opentsdb.horizon.converter.SnoozeConverter.ALERTIDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 public class SnoozeServiceTest {
+
+  private static final long ALERT_ID = 7;
+
+  @Tested private SnoozeService snoozeService;
+
+  @Injectable private SnoozeStore snoozeStore;
+
+  @Injectable private AuthService authService;
+
+  @Injectable private NamespaceCache namespaceCache;
+
+  @Injectable private ContactStore contactStore;
+
+  @Mocked private Connection connection;
+
+  @Test
+  void aMatchBeforeTheCreateCommitsDoesNotKeepTheOldSnoozes() throws Exception {
+    Namespace namespace = new Namespace();
+    namespace.setId(1);
+    namespace.setName("ns");
+    long endTime = System.currentTimeMillis() + 60_000;
+    List<List<Long>> matchedBeforeCommit = new ArrayList<>();
+
+    new Expectations() {
+      {
+        namespaceCache.getByName("ns");
+        result = namespace;
+
+        snoozeStore.getForNamespace(1, false, (Connection) any);
+        returns(new ArrayList<>(), new ArrayList<>(Arrays.asList(snooze(5, endTime))));
+
+        snoozeStore.commit((Connection) any);
+        result =
+            new Delegate<Void>() {
+              public void delegate(Connection connection) {
+                matchedBeforeCommit.add(match());
+              }
+            };
+      }
+    };
+
+    SnoozeView view = new SnoozeView();
+    view.setNamespace("ns");
+    view.setAlertIds(Collections.singletonList((int) ALERT_ID));
+    view.setEndTime(new Timestamp(endTime));
+    snoozeService.creates(Collections.singletonList(view), "user");
+
+    assertEquals(1, matchedBeforeCommit.size());
+    assertTrue(matchedBeforeCommit.get(0).isEmpty());
+    assertEquals(Collections.singletonList(5L), match());
+  }
+
+  private List<Long> match() {
+    SnoozeMatchQuery query = new SnoozeMatchQuery();
+    query.setAlertId(ALERT_ID);
+    List<SnoozeMatch> matches = snoozeService.match("ns", Collections.singletonList(query));
+    return matches.get(0).getSnoozeIds();
+  }
+
+  private static Snooze snooze(long id, long endTime) {
+    Map<String, Object> definition = new HashMap<>();
+    definition.put(ALERTIDS, Collections.singletonList((int) ALERT_ID));
+    return Snooze.builder()
+        .id(id)
+        .namespaceId(1)
+        .startTime(new Timestamp(endTime - 120_000))
+        .endTime(new Timestamp(endTime))
+        .definition(definition)
+        .build();
+  }
 }
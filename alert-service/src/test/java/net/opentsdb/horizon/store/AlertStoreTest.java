@@ -0,0 +1,182 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.store;
+
+import net.opentsdb.horizon.model.Alert;
+import net.opentsdb.horizon.model.AlertType;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Runs the alert change feed against H2 in MySQL mode. */
+public class AlertStoreTest {
+
+  private static final String CREATE_ALERT_TABLE =
+      "CREATE TABLE alert ("
+          + "id BIGINT NOT NULL AUTO_INCREMENT, "
+          + "name VARCHAR(512) NOT NULL, "
+          + "type TINYINT NOT NULL, "
+          + "labels BLOB NOT NULL, "
+          + "definition BLOB NOT NULL, "
+          + "enabled BOOLEAN NOT NULL DEFAULT TRUE, "
+          + "deleted BOOLEAN NOT NULL DEFAULT FALSE, "
+          + "namespaceid INT NOT NULL, "
+          + "createdby VARCHAR(128) NOT NULL DEFAULT '', "
+          + "createdtime TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6), "
+          + "updatedby VARCHAR(128) NOT NULL DEFAULT '', "
+          + "updatedtime TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6), "
+          + "changeseq BIGINT NOT NULL DEFAULT 0, "
+          + "PRIMARY KEY (id), "
+          + "UNIQUE INDEX uq_alert_namespace_name (namespaceid, name))";
+
+  private static final String CREATE_ALERT_CHANGE_TABLE =
+      "CREATE TABLE alert_change ("
+          + "namespaceid INT NOT NULL, "
+          + "seq BIGINT NOT NULL, "
+          + "PRIMARY KEY (namespaceid))";
+
+  private static final int NAMESPACE_ID = 7;
+
+  private JdbcDataSource dataSource;
+  private AlertStore store;
+  private Connection reader;
+
+  @BeforeEach
+  void setUp() throws SQLException {
+    dataSource = new JdbcDataSource();
+    // named, so that the writers of a test share the database the reader keeps open
+    dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;LOCK_TIMEOUT=10000");
+    store = new AlertStore(dataSource, dataSource, SessionConsistency.DISABLED);
+    reader = dataSource.getConnection();
+    try (Statement statement = reader.createStatement()) {
+      statement.execute(CREATE_ALERT_TABLE);
+      statement.execute(CREATE_ALERT_CHANGE_TABLE);
+    }
+  }
+
+  @AfterEach
+  void tearDown() throws SQLException {
+    reader.close();
+  }
+
+  @Test
+  void pagesThroughTheChangesInCommitOrder() throws Exception {
+    create("a");
+    create("b");
+    create("c");
+
+    List<Alert> first = store.getChanges(NAMESPACE_ID, 0, 0, 2, reader);
+    assertEquals(2, first.size());
+    assertEquals("a", first.get(0).getName());
+    assertEquals("b", first.get(1).getName());
+
+    Alert last = first.get(1);
+    List<Alert> rest = store.getChanges(NAMESPACE_ID, last.getChangeSeq(), last.getId(), 2, reader);
+    assertEquals(1, rest.size());
+    assertEquals("c", rest.get(0).getName());
+    assertEquals(3, rest.get(0).getChangeSeq());
+  }
+
+  @Test
+  void aLateCommitIsNotSkipped() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try (Connection early = dataSource.getConnection()) {
+      early.setAutoCommit(false);
+      store.create(Collections.singletonList(alert("early")), early);
+
+      // waits on the change position of the namespace until the early writer commits
+      Future<?> late = executor.submit(() -> create("late"));
+      assertThrows(TimeoutException.class, () -> late.get(500, TimeUnit.MILLISECONDS));
+      assertTrue(store.getChanges(NAMESPACE_ID, 0, 0, 10, reader).isEmpty());
+
+      early.commit();
+      late.get(10, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    List<Alert> changes = store.getChanges(NAMESPACE_ID, 0, 0, 10, reader);
+    assertEquals(2, changes.size());
+    assertEquals("early", changes.get(0).getName());
+    assertEquals(1, changes.get(0).getChangeSeq());
+    assertEquals("late", changes.get(1).getName());
+    assertEquals(2, changes.get(1).getChangeSeq());
+  }
+
+  @Test
+  void softDeletesMoveTheAlertToTheEndOfTheFeed() throws Exception {
+    long id = create("a").getId();
+    create("b");
+
+    try (Connection connection = dataSource.getConnection()) {
+      store.softDelete(NAMESPACE_ID, new long[] {id}, "u2", connection);
+    }
+
+    List<Alert> changes = store.getChanges(NAMESPACE_ID, 0, 0, 10, reader);
+    assertEquals(2, changes.size());
+    assertEquals("b", changes.get(0).getName());
+    assertEquals(id, changes.get(1).getId());
+    assertTrue(changes.get(1).isDeleted());
+    assertEquals(3, changes.get(1).getChangeSeq());
+  }
+
+  private Alert create(String name) throws SQLException, IOException {
+    Alert alert = alert(name);
+    try (Connection connection = dataSource.getConnection()) {
+      connection.setAutoCommit(false);
+      store.create(Collections.singletonList(alert), connection);
+      connection.commit();
+    }
+    return alert;
+  }
+
+  private static Alert alert(String name) {
+    Timestamp now = new Timestamp(System.currentTimeMillis());
+    Alert alert = new Alert();
+    alert.setName(name);
+    alert.setType(AlertType.simple);
+    alert.setEnabled(true);
+    alert.setNamespaceId(NAMESPACE_ID);
+    alert.setLabels(Collections.emptyList());
+    alert.setDefinition(Collections.emptyMap());
+    alert.setCreatedBy("u1");
+    alert.setCreatedTime(now);
+    alert.setUpdatedBy("u1");
+    alert.setUpdatedTime(now);
+    return alert;
+  }
+}
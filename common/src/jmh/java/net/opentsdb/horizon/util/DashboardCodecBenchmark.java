@@ -0,0 +1,151 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.opentsdb.horizon.codec.ContentCodec;
+import net.opentsdb.horizon.codec.ContentCodecs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads and writes dashboard content, maps and lists of widgets and their queries, with a plain
+ * {@link ObjectMapper}, as the code did before, and with the cached readers and writers of {@link
+ * JsonCodec}. The serialized dashboard is also compressed and decompressed with each of the
+ * content codecs, see {@link Compression}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DashboardCodecBenchmark {
+
+  @Param({"4", "40"})
+  public int widgets;
+
+  private final ObjectMapper plain = new ObjectMapper();
+
+  private Object content;
+  private String json;
+
+  @Setup
+  public void setUp() throws IOException {
+    List<Object> widgetList = new ArrayList<>();
+    for (int i = 0; i < widgets; i++) {
+      Map<String, Object> query = new LinkedHashMap<>();
+      query.put("metric", "system.cpu.busy.pct");
+      query.put("namespace", "tsdb");
+      query.put("filters", Arrays.asList("host=web*", "colo=bf1"));
+      query.put("groupBy", Arrays.asList("host"));
+      query.put("downsample", "1m-avg");
+      Map<String, Object> layout = new LinkedHashMap<>();
+      layout.put("x", i % 3 * 4);
+      layout.put("y", i / 3 * 5);
+      layout.put("w", 4);
+      layout.put("h", 5);
+      Map<String, Object> widget = new LinkedHashMap<>();
+      widget.put("id", "w" + i);
+      widget.put("type", "LinechartWidgetComponent");
+      widget.put("title", "CPU busy " + i);
+      widget.put("gridPos", layout);
+      widget.put("queries", Arrays.asList(query));
+      widget.put("thresholds", Arrays.asList(75.5, 90.0));
+      widgetList.add(widget);
+    }
+    Map<String, Object> settings = new LinkedHashMap<>();
+    settings.put("title", "Service Health");
+    settings.put("time", "1h");
+    settings.put("autoRefresh", true);
+    Map<String, Object> dashboard = new LinkedHashMap<>();
+    dashboard.put("version", 5);
+    dashboard.put("settings", settings);
+    dashboard.put("widgets", widgetList);
+    json = plain.writeValueAsString(dashboard);
+    content = plain.readValue(json, Object.class);
+  }
+
+  @Benchmark
+  public Object readPlain() throws IOException {
+    return plain.readValue(json, Object.class);
+  }
+
+  @Benchmark
+  public Object readJsonCodec() throws IOException {
+    return JsonCodec.reader(Object.class).readValue(json);
+  }
+
+  @Benchmark
+  public String writePlain() throws IOException {
+    return plain.writeValueAsString(content);
+  }
+
+  @Benchmark
+  public String writeJsonCodec() throws IOException {
+    return JsonCodec.writer().writeValueAsString(content);
+  }
+
+  @Benchmark
+  public byte[] encode(final Compression compression) throws IOException {
+    return compression.codec.encode(compression.data);
+  }
+
+  @Benchmark
+  public byte[] decode(final Compression compression) throws IOException {
+    return compression.codec.decode(compression.encoded);
+  }
+
+  /** The dashboard json encoded with one of the content codecs, as <code>name:level</code>. */
+  @State(Scope.Benchmark)
+  public static class Compression {
+
+    @Param({"gzip:6", "deflate:6", "lz4:0", "lz4:9", "zstd:3", "zstd:9"})
+    public String codecLevel;
+
+    private ContentCodec codec;
+    private byte[] data;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp(final DashboardCodecBenchmark dashboard) throws IOException {
+      String[] parts = codecLevel.split(":");
+      codec = ContentCodecs.forName(parts[0], Integer.parseInt(parts[1]));
+      data = dashboard.json.getBytes(StandardCharsets.UTF_8);
+      encoded = codec.encode(data);
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashes a folder path from 8 threads at once, the way concurrent requests do. It compares the
+ * {@link Digester} with the ways a shared {@link MessageDigest} can be made safe: locking it, or
+ * creating a digest per call. Sharing one without a lock, as the code did before, corrupts hashes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(8)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DigesterBenchmark {
+
+  @Param({Digester.MD5, Digester.SHA_256})
+  public String algorithm;
+
+  @Param({"/namespace/tsdb/dashboards/Service Health/Latency by colo"})
+  public String path;
+
+  private MessageDigest shared;
+  private Digester digester;
+
+  @Setup
+  public void setUp() throws NoSuchAlgorithmException {
+    shared = MessageDigest.getInstance(algorithm);
+    digester = new Digester(algorithm);
+  }
+
+  @Benchmark
+  public byte[] sharedDigestWithLock() {
+    synchronized (shared) {
+      return shared.digest(path.getBytes());
+    }
+  }
+
+  @Benchmark
+  public byte[] digestPerCall() throws NoSuchAlgorithmException {
+    return MessageDigest.getInstance(algorithm).digest(path.getBytes());
+  }
+
+  @Benchmark
+  public byte[] digester() {
+    return digester.digest(path);
+  }
+}
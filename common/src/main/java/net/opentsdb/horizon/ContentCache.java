@@ -0,0 +1,192 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import io.ultrabrew.metrics.Counter;
+import io.ultrabrew.metrics.Gauge;
+import io.ultrabrew.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static net.opentsdb.horizon.util.Utils.decompress;
+
+/**
+ * In-process cache of the immutable rows of the <code>content</code> table, keyed by the sha2
+ * content id. A content row never changes once written, so entries are never invalidated and the
+ * cache is only bounded by the total number of bytes it holds.
+ *
+ * <p>It also remembers which content each dashboard or snapshot was last read with, so that a read
+ * can tell up front whether to join the content in or expect it from the cache.
+ *
+ * <p>A read counts a hit when served from the cache and a miss when the content it put was read
+ * from the store, so that each read counts once whichever way it went.
+ */
+public class ContentCache {
+
+  private static Logger logger = LoggerFactory.getLogger(ContentCache.class);
+
+  public static final String SO_CONTENT_CACHE = "HZ_CONTENT_CACHE";
+
+  private static final String HIT_METRIC = "content.cache.hit";
+  private static final String MISS_METRIC = "content.cache.miss";
+  private static final String EVICTION_METRIC = "content.cache.eviction";
+  private static final String WEIGHT_METRIC = "content.cache.bytes";
+
+  private static final long MAX_ENTITIES = 50_000;
+
+  /** What representation of the content is held in memory. */
+  public enum Mode {
+    COMPRESSED,
+    DECOMPRESSED,
+    BOTH
+  }
+
+  private final Mode mode;
+  private final Cache<ByteBuffer, Entry> cache;
+  private final Cache<String, byte[]> contentIds;
+  private final AtomicLong weight = new AtomicLong();
+
+  private final Counter hitCounter;
+  private final Counter missCounter;
+  private final Counter evictionCounter;
+  private final Gauge weightGauge;
+
+  public ContentCache(
+      final long maxBytes, final Mode mode, final MetricRegistry metricRegistry) {
+    this.mode = mode;
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((ByteBuffer key, Entry entry) -> entry.weight())
+            .removalListener(this::onRemoval)
+            .build();
+    this.contentIds = CacheBuilder.newBuilder().maximumSize(MAX_ENTITIES).build();
+    this.hitCounter = metricRegistry.counter(HIT_METRIC);
+    this.missCounter = metricRegistry.counter(MISS_METRIC);
+    this.evictionCounter = metricRegistry.counter(EVICTION_METRIC);
+    this.weightGauge = metricRegistry.gauge(WEIGHT_METRIC);
+  }
+
+  /**
+   * @return the content as stored, compressed by its codec, or null if not cached. Only held in
+   *     {@link Mode#COMPRESSED} and {@link Mode#BOTH} modes, the stored content is read from the
+   *     store rather than compressed again otherwise.
+   */
+  public byte[] getCompressed(final byte[] contentId) {
+    Entry entry = lookup(contentId);
+    if (entry == null || entry.compressed == null) {
+      return null;
+    }
+    hitCounter.inc();
+    return entry.compressed;
+  }
+
+  /** @return the serialized json content or null if not cached. */
+  public byte[] getDecompressed(final byte[] contentId) throws IOException {
+    Entry entry = lookup(contentId);
+    if (entry == null) {
+      return null;
+    }
+    hitCounter.inc();
+    return entry.decompressed != null ? entry.decompressed : decompress(entry.compressed);
+  }
+
+  /**
+   * Caches the compressed content read from the store, counting a miss.
+   *
+   * @return the decompressed content, so that the caller doesn't need to decompress it again.
+   */
+  public byte[] put(final byte[] contentId, final byte[] compressed) throws IOException {
+    missCounter.inc();
+    byte[] decompressed = decompress(compressed);
+    put(contentId, compressed, decompressed);
+    return decompressed;
+  }
+
+  public void put(final byte[] contentId, final byte[] compressed, final byte[] decompressed) {
+    Entry entry =
+        new Entry(
+            mode == Mode.DECOMPRESSED ? null : compressed,
+            mode == Mode.COMPRESSED ? null : decompressed);
+    if (cache.asMap().putIfAbsent(ByteBuffer.wrap(contentId), entry) == null) {
+      weightGauge.set(weight.addAndGet(entry.weight()));
+    }
+  }
+
+  public boolean contains(final byte[] contentId) {
+    return cache.asMap().containsKey(ByteBuffer.wrap(contentId));
+  }
+
+  /**
+   * Probes the cache without counting a hit or a miss.
+   *
+   * @param entity type and id of a dashboard or snapshot
+   * @param compressed true if the content is to be read as stored
+   * @return true if the content the entity was last read with is still cached in the wanted form.
+   *     It may have been updated since, so the id of its content must still be checked.
+   */
+  public boolean hasContentOf(final String entity, final boolean compressed) {
+    if (compressed && mode == Mode.DECOMPRESSED) {
+      return false;
+    }
+    byte[] contentId = contentIds.getIfPresent(entity);
+    return contentId != null && contains(contentId);
+  }
+
+  /** Remembers the content an entity was read with, see {@link #hasContentOf}. */
+  public void setContentOf(final String entity, final byte[] contentId) {
+    contentIds.put(entity, contentId);
+  }
+
+  private Entry lookup(final byte[] contentId) {
+    if (contentId == null) {
+      return null;
+    }
+    return cache.getIfPresent(ByteBuffer.wrap(contentId));
+  }
+
+  private void onRemoval(RemovalNotification<ByteBuffer, Entry> notification) {
+    weightGauge.set(weight.addAndGet(-notification.getValue().weight()));
+    if (notification.wasEvicted()) {
+      evictionCounter.inc();
+      logger.debug("Content evicted from cache, cause: {}", notification.getCause());
+    }
+  }
+
+  private static class Entry {
+    private final byte[] compressed;
+    private final byte[] decompressed;
+
+    private Entry(final byte[] compressed, final byte[] decompressed) {
+      this.compressed = compressed;
+      this.decompressed = decompressed;
+    }
+
+    private int weight() {
+      return (compressed == null ? 0 : compressed.length)
+          + (decompressed == null ? 0 : decompressed.length);
+    }
+  }
+}
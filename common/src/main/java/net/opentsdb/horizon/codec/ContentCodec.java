@@ -0,0 +1,77 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Compression of the serialized json stored in the <code>data</code> column of the
+ * <code>content</code> table. Every encoded blob starts with the one byte {@link #id()} of its
+ * codec, so rows written by different codecs can live side by side, see {@link ContentCodecs}.
+ */
+public interface ContentCodec {
+
+  /** @return the first byte of every blob written by this codec. */
+  byte id();
+
+  /** @return the name used to configure this codec. */
+  String name();
+
+  byte[] encode(byte[] data) throws IOException;
+
+  /**
+   * @return an encoder streaming the content into the same blob as {@link #encode(byte[])}. The
+   *     default one buffers the whole content, codecs that can compress on the fly override it.
+   */
+  default ContentEncoder newEncoder() throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    return new ContentEncoder() {
+      @Override
+      public void write(final byte[] b, final int off, final int len) {
+        buffer.write(b, off, len);
+      }
+
+      @Override
+      public byte[] finish() throws IOException {
+        return encode(buffer.toByteArray());
+      }
+
+      @Override
+      public void close() {}
+    };
+  }
+
+  byte[] decode(byte[] encoded) throws IOException;
+
+  /**
+   * @return the decoded content as a stream, so that it can be parsed without materializing it.
+   *     The default one decodes the whole content up front.
+   */
+  default InputStream newDecoder(final byte[] encoded) throws IOException {
+    return new ByteArrayInputStream(decode(encoded));
+  }
+
+  /**
+   * @return the encoded blob as a single gzip member, used to serve gzip responses without
+   *     decompressing the content on the server side.
+   */
+  byte[] toGzip(byte[] encoded) throws IOException;
+}
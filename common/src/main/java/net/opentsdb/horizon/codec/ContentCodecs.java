@@ -0,0 +1,121 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+
+/**
+ * Registry of the content codecs. New content is written with the configured codec, and stored
+ * content is decoded with the codec named by its first byte. Other codecs plug in through {@link
+ * #register(ContentCodec)}.
+ *
+ * <p>Only switch away from gzip once every instance reading the database knows the new codec.
+ */
+public final class ContentCodecs {
+
+  private static final Map<Byte, ContentCodec> codecs = new ConcurrentHashMap<>();
+  private static volatile ContentCodec writeCodec = GzipCodec.INSTANCE;
+
+  static {
+    register(GzipCodec.INSTANCE);
+    register(new DeflateCodec(Deflater.DEFAULT_COMPRESSION));
+    register(new Lz4Codec(0));
+    register(new ZstdCodec(ZstdCodec.DEFAULT_LEVEL));
+  }
+
+  private ContentCodecs() {}
+
+  /** Registers the codec for decoding, replacing any codec with the same id. */
+  public static void register(final ContentCodec codec) {
+    codecs.put(codec.id(), codec);
+  }
+
+  /** Sets the codec used to encode new content. */
+  public static void setWriteCodec(final ContentCodec codec) {
+    register(codec);
+    writeCodec = codec;
+  }
+
+  public static ContentCodec getWriteCodec() {
+    return writeCodec;
+  }
+
+  /**
+   * @param name name of a codec, <code>gzip</code>, <code>deflate</code>, <code>lz4</code>,
+   *     <code>zstd</code> or a registered one.
+   * @param level compression level, used by the codecs that have one.
+   */
+  public static ContentCodec forName(final String name, final int level) {
+    if (GzipCodec.NAME.equalsIgnoreCase(name)) {
+      return GzipCodec.INSTANCE;
+    }
+    if (DeflateCodec.NAME.equalsIgnoreCase(name)) {
+      return new DeflateCodec(level);
+    }
+    if (Lz4Codec.NAME.equalsIgnoreCase(name)) {
+      return new Lz4Codec(level);
+    }
+    if (ZstdCodec.NAME.equalsIgnoreCase(name)) {
+      return new ZstdCodec(level);
+    }
+    for (ContentCodec codec : codecs.values()) {
+      if (codec.name().equalsIgnoreCase(name)) {
+        return codec;
+      }
+    }
+    throw new IllegalArgumentException("Unknown content codec: " + name);
+  }
+
+  /** @return the codec the stored content was encoded with. */
+  public static ContentCodec codecOf(final byte[] encoded) throws IOException {
+    if (encoded.length == 0) {
+      throw new IOException("Empty content");
+    }
+    ContentCodec codec = codecs.get(encoded[0]);
+    if (codec == null) {
+      throw new IOException("Unknown content codec id: " + encoded[0]);
+    }
+    return codec;
+  }
+
+  public static byte[] encode(final byte[] data) throws IOException {
+    return writeCodec.encode(data);
+  }
+
+  /** @return a streaming encoder of the configured codec. */
+  public static ContentEncoder newEncoder() throws IOException {
+    return writeCodec.newEncoder();
+  }
+
+  public static byte[] decode(final byte[] encoded) throws IOException {
+    return codecOf(encoded).decode(encoded);
+  }
+
+  /** @return the decoded content as a stream, see {@link ContentCodec#newDecoder(byte[])}. */
+  public static InputStream newDecoder(final byte[] encoded) throws IOException {
+    return codecOf(encoded).newDecoder(encoded);
+  }
+
+  public static byte[] toGzip(final byte[] encoded) throws IOException {
+    return codecOf(encoded).toGzip(encoded);
+  }
+}
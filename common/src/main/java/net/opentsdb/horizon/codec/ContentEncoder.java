@@ -0,0 +1,44 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Streaming side of a {@link ContentCodec}. The serialized json is written to the encoder as it is
+ * produced and {@link #finish()} returns the encoded blob, so the uncompressed content is never
+ * held in memory as a whole. An encoder is used by a single thread and must always be closed.
+ */
+public abstract class ContentEncoder extends OutputStream {
+
+  @Override
+  public void write(final int b) throws IOException {
+    write(new byte[] {(byte) b}, 0, 1);
+  }
+
+  @Override
+  public abstract void write(byte[] b, int off, int len) throws IOException;
+
+  /** @return the encoded blob of everything written so far. */
+  public abstract byte[] finish() throws IOException;
+
+  /** Releases the buffers of the encoder, whether it was finished or not. */
+  @Override
+  public abstract void close();
+}
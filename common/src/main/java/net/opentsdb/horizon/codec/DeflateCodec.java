@@ -0,0 +1,164 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Raw deflate at a configurable level. The blob is laid out as
+ *
+ * <pre>
+ * | id (1) | crc32 (4) | uncompressed length (4) | raw deflate stream |
+ * </pre>
+ *
+ * The checksum and length are the ones of the gzip trailer, so {@link #toGzip(byte[])} only
+ * splices bytes, and decoding allocates the output once.
+ */
+public class DeflateCodec implements ContentCodec {
+
+  public static final String NAME = "deflate";
+  public static final byte ID = 0x01;
+
+  static final int HEADER_LENGTH = 9;
+
+  /** Deflate can't expand content more than this, a larger length is a corrupted header. */
+  private static final int MAX_RATIO = 1032;
+
+  private final int level;
+
+  public DeflateCodec(final int level) {
+    this.level = checkLevel(level);
+  }
+
+  static int checkLevel(final int level) {
+    if (level != Deflater.DEFAULT_COMPRESSION
+        && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+      throw new IllegalArgumentException("Invalid deflate level: " + level);
+    }
+    return level;
+  }
+
+  @Override
+  public byte id() {
+    return ID;
+  }
+
+  @Override
+  public String name() {
+    return NAME;
+  }
+
+  public int getLevel() {
+    return level;
+  }
+
+  @Override
+  public byte[] encode(final byte[] data) throws IOException {
+    try (ContentEncoder encoder = newEncoder()) {
+      encoder.write(data);
+      return encoder.finish();
+    }
+  }
+
+  @Override
+  public ContentEncoder newEncoder() {
+    return new DeflateEncoder(new byte[] {ID}, level);
+  }
+
+  @Override
+  public byte[] decode(final byte[] encoded) throws IOException {
+    ByteBuffer header = header(encoded);
+    int crc = header.getInt();
+    int length = header.getInt();
+    return inflate(encoded, HEADER_LENGTH, length, crc);
+  }
+
+  @Override
+  public InputStream newDecoder(final byte[] encoded) throws IOException {
+    ByteBuffer header = header(encoded);
+    int crc = header.getInt();
+    int length = header.getInt();
+    return new InflatingInputStream(
+        encoded, HEADER_LENGTH, encoded.length - HEADER_LENGTH, crc, length);
+  }
+
+  /**
+   * Decompresses the raw deflate stream starting at <code>offset</code> and verifies it against
+   * the checksum of the header.
+   */
+  static byte[] inflate(final byte[] encoded, final int offset, final int length, final int crc)
+      throws IOException {
+    if (length < 0 || length / MAX_RATIO > encoded.length - offset) {
+      throw new IOException("Corrupted deflate content length: " + length);
+    }
+    byte[] data = new byte[length];
+    Inflater inflater = ZlibPool.inflater();
+    try {
+      inflater.setInput(encoded, offset, encoded.length - offset);
+      int position = 0;
+      while (position < data.length) {
+        int count = inflater.inflate(data, position, data.length - position);
+        if (count == 0
+            && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+          throw new IOException("Truncated deflate content");
+        }
+        position += count;
+      }
+    } catch (DataFormatException | IllegalArgumentException e) {
+      throw new IOException("Corrupted deflate content", e);
+    } finally {
+      ZlibPool.release(inflater);
+    }
+
+    CRC32 actual = new CRC32();
+    actual.update(data);
+    if ((int) actual.getValue() != crc) {
+      throw new IOException("Deflate content checksum mismatch");
+    }
+    return data;
+  }
+
+  @Override
+  public byte[] toGzip(final byte[] encoded) throws IOException {
+    ByteBuffer header = header(encoded);
+    int crc = header.getInt();
+    int length = header.getInt();
+    int body = encoded.length - HEADER_LENGTH;
+    return ByteBuffer.allocate(GzipCodec.HEADER.length + body + 8)
+        .put(GzipCodec.HEADER)
+        .put(encoded, HEADER_LENGTH, body)
+        .order(ByteOrder.LITTLE_ENDIAN)
+        .putInt(crc)
+        .putInt(length)
+        .array();
+  }
+
+  private static ByteBuffer header(final byte[] encoded) throws IOException {
+    if (encoded.length < HEADER_LENGTH || encoded[0] != ID) {
+      throw new IOException("Not a deflate encoded content");
+    }
+    return ByteBuffer.wrap(encoded, 1, HEADER_LENGTH - 1);
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.codec;
+
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Raw deflate after a codec specific header, followed by the checksum and length of the content
+ * which are filled in once it is finished. The same encoder writes a gzip member, where they go to
+ * the trailer instead.
+ */
+class DeflateEncoder extends ContentEncoder {
+
+  private final PooledBuffer buffer = PooledBuffer.acquire();
+  private final Deflater deflater;
+  private final CRC32 crc = new CRC32();
+  /** Where the checksum goes, -1 for the gzip trailer. */
+  private final int checksumPosition;
+  private long length;
+  private boolean closed;
+
+  DeflateEncoder(final byte[] header, final int level) {
+    this(header, level, header.length);
+  }
+
+  private DeflateEncoder(final byte[] header, final int level, final int checksumPosition) {
+    this.deflater = ZlibPool.deflater(level);
+    this.checksumPosition = checksumPosition;
+    buffer.write(header, 0, header.length);
+    if (checksumPosition >= 0) {
+      buffer.write(new byte[8], 0, 8);
+    }
+  }
+
+  /** @return an encoder of a single gzip member. */
+  static DeflateEncoder gzip(final int level) {
+    return new DeflateEncoder(GzipCodec.HEADER, level, -1);
+  }
+
+  @Override
+  public void write(final byte[] b, final int off, final int len) {
+    crc.update(b, off, len);
+    length += len;
+    deflater.setInput(b, off, len);
+    while (!deflater.needsInput()) {
+      buffer.deflate(deflater);
+    }
+  }
+
+  @Override
+  public byte[] finish() throws IOException {
+    if (length > Integer.MAX_VALUE) {
+      throw new IOException("Content too large: " + length);
+    }
+    deflater.finish();
+    while (!deflater.finished()) {
+      buffer.deflate(deflater);
+    }
+    if (checksumPosition >= 0) {
+      buffer.putInt(checksumPosition, (int) crc.getValue());
+      buffer.putInt(checksumPosition + 4, (int) length);
+    } else {
+      buffer.writeIntLE((int) crc.getValue());
+      buffer.writeIntLE((int) length);
+    }
+    return buffer.toByteArray();
+  }
+
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    ZlibPool.release(deflater);
+    buffer.release();
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package net.opentsdb.horizon.codec;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Zstandard primed with a dictionary trained on stored content, see {@link DictionaryTrainer}.
+ * Dashboards share most of their structure, so even small ones compress well against a
+ * dictionary. The blob is laid out as
+ *
+ * <pre>
+ * | id (1) | dictionary id (4) | crc32 (4) | uncompressed length (4) | zstd frame |
+ * </pre>
+ *
+ * Dictionaries are versioned, a blob keeps pointing to the dictionary it was compressed with and
+ * the ones not known yet, for instance trained by another instance, are loaded on first use.
+ */
+public class DictionaryCodec implements ContentCodec {
+
+  public static final String NAME = "dictionary";
+  public static final byte ID = 0x02;
+
+  static final int HEADER_LENGTH = 13;
+
+  /** Loads a stored dictionary by its id. */
+  @FunctionalInterface
+  public interface DictionaryLoader {
+
+    /** @return the dictionary or null if there's no such dictionary. */
+    byte[] load(int dictionaryId) throws IOException;
+  }
+
+  private final int level;
+  private final DictionaryLoader loader;
+  private final Map<Integer, ZstdDictDecompress> decompressors = new ConcurrentHashMap<>();
+
+  /** The dictionary new content is compressed with, null if there's none. */
+  private volatile Compressor compressor;
+
+  public DictionaryCodec(final int level, final DictionaryLoader loader) {
+    this.level = ZstdCodec.checkLevel(level);
+    this.loader = loader;
+  }
+
+  @Override
+  public byte id() {
+    return ID;
+  }
+
+  @Override
+  public String name() {
+    return NAME;
+  }
+
+  /** Sets the dictionary new content is compressed with. */
+  public void setDictionary(final int dictionaryId, final byte[] dictionary) {
+    decompressors.putIfAbsent(dictionaryId, new ZstdDictDecompress(dictionary));
+    compressor = new Compressor(dictionaryId, new ZstdDictCompress(dictionary, level));
+  }
+
+  /** @return the id of the dictionary new content is compressed with, -1 if there's none. */
+  public int getDictionaryId() {
+    Compressor current = compressor;
+    return current == null ? -1 : current.dictionaryId;
+  }
+
+  @Override
+  public byte[] encode(final byte[] data) throws IOException {
+    Compressor current = compressor;
+    if (current == null) {
+      throw new IOException("No compression dictionary loaded");
+    }
+    CRC32 crc = new CRC32();
+    crc.update(data);
+    int maxLength = (int) Zstd.compressBound(data.length);
+    byte[] encoded = new byte[HEADER_LENGTH + maxLength];
+    ByteBuffer.wrap(encoded)
+        .put(ID)
+        .putInt(current.dictionaryId)
+        .putInt((int) crc.getValue())
+        .putInt(data.length);
+    long length =
+        Zstd.compressFastDict(encoded, HEADER_LENGTH, data, 0, data.length, current.dictionary);
+    if (Zstd.isError(length)) {
+      throw new IOException("Error compressing content: " + Zstd.getErrorName(length));
+    }
+    return Arrays.copyOf(encoded, HEADER_LENGTH + (int) length);
+  }
+
+  @Override
+  public byte[] decode(final byte[] encoded) throws IOException {
+    ByteBuffer header = header(encoded);
+    ZstdDictDecompress dictionary = decompressor(header.getInt());
+    int crc = header.getInt();
+    int length = header.getInt();
+    if (length < 0) {
+      throw new IOException("Corrupted dictionary content length: " + length);
+    }
+    byte[] data = new byte[length];
+    long actualLength =
+        Zstd.decompressFastDict(
+            data, 0, encoded, HEADER_LENGTH, encoded.length - HEADER_LENGTH, dictionary);
+    if (Zstd.isError(actualLength)) {
+      throw new IOException("Corrupted dictionary content: " + Zstd.getErrorName(actualLength));
+    }
+    if (actualLength != length) {
+      throw new IOException("Truncated dictionary content");
+    }
+    ZstdCodec.checkCrc(data, crc);
+    return data;
+  }
+
+  /** A gzip member can't carry a dictionary, so the content is compressed again. */
+  @Override
+  public byte[] toGzip(final byte[] encoded) throws IOException {
+    return GzipCodec.INSTANCE.encode(decode(encoded));
+  }
+
+  private static ByteBuffer header(final byte[] encoded) throws IOException {
+    if (encoded.length < HEADER_LENGTH || encoded[0] != ID) {
+      throw new IOException("Not a dictionary encoded content");
+    }
+    return ByteBuffer.wrap(encoded, 1, HEADER_LENGTH - 1);
+  }
+
+  private ZstdDictDecompress decompressor(final int id) throws IOException {
+    ZstdDictDecompress decompressor = decompressors.get(id);
+    if (decompressor == null) {
+      byte[] dictionary = loader.load(id);
+      if (dictionary == null) {
+        throw new IOException("Unknown compression dictionary: " + id);
+      }
+      decompressor = decompressors.computeIfAbsent(id, key -> new ZstdDictDecompress(dictionary));
+    }
+    return decompressor;
+  }
+
+  /** A dictionary digested for compression at the level of the codec, along with its id. */
+  private static final class Compressor {
+
+    final int dictionaryId;
+    final ZstdDictCompress dictionary;
+
+    Compressor(final int dictionaryId, final ZstdDictCompress dictionary) {
+      this.dictionaryId = dictionaryId;
+      this.dictionary = dictionary;
+    }
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package net.opentsdb.horizon.codec;
+
+import com.github.luben.zstd.Zstd;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds a dictionary for the {@link DictionaryCodec} out of sample content with the Zstandard
+ * trainer, which picks the segments the samples share the most.
+ */
+public final class DictionaryTrainer {
+
+  /** The <code>data</code> column of <code>content_dictionary</code> holds up to 16MB. */
+  public static final int MAX_DICTIONARY_SIZE = 1024 * 1024;
+
+  private DictionaryTrainer() {}
+
+  /**
+   * @param samples serialized json documents.
+   * @param maxSize maximum size of the dictionary, capped to {@link #MAX_DICTIONARY_SIZE}.
+   * @return the dictionary, empty if there are too few samples, or too little in common, to train
+   *     one. The trainer wants about a hundred times the dictionary size in samples.
+   */
+  public static byte[] train(final List<byte[]> samples, final int maxSize) {
+    byte[] dictionary = new byte[Math.min(maxSize, MAX_DICTIONARY_SIZE)];
+    long size = Zstd.trainFromBuffer(samples.toArray(new byte[0][]), dictionary);
+    if (Zstd.isError(size)) {
+      return new byte[0];
+    }
+    return Arrays.copyOf(dictionary, (int) size);
+  }
+}
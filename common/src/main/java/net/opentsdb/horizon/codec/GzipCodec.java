@@ -0,0 +1,163 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The original format, a plain gzip stream at the default level. It has no header of its own, the
+ * gzip magic number doubles as the codec id.
+ *
+ * <p>Content is always stored as a single gzip member, so the checksum and length of its trailer
+ * apply to the whole content. Decoding allocates the output once from that length and inflates
+ * the member in place, anything else falls back to {@link GZIPInputStream}.
+ */
+public class GzipCodec implements ContentCodec {
+
+  public static final String NAME = "gzip";
+  public static final byte ID = 0x1f;
+
+  public static final GzipCodec INSTANCE = new GzipCodec();
+
+  /** Header of a member without optional fields, as written by the encoder. */
+  static final byte[] HEADER = {ID, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+  private static final int BUFFER_SIZE = 8192;
+  private static final int TRAILER_LENGTH = 8;
+
+  private static final int FHCRC = 2;
+  private static final int FEXTRA = 4;
+  private static final int FNAME = 8;
+  private static final int FCOMMENT = 16;
+  private static final int FRESERVED = 0xe0;
+
+  @Override
+  public byte id() {
+    return ID;
+  }
+
+  @Override
+  public String name() {
+    return NAME;
+  }
+
+  @Override
+  public byte[] encode(final byte[] data) throws IOException {
+    try (ContentEncoder encoder = newEncoder()) {
+      encoder.write(data);
+      return encoder.finish();
+    }
+  }
+
+  @Override
+  public ContentEncoder newEncoder() {
+    return DeflateEncoder.gzip(Deflater.DEFAULT_COMPRESSION);
+  }
+
+  @Override
+  public byte[] decode(final byte[] encoded) throws IOException {
+    int offset = bodyOffset(encoded);
+    if (offset > 0) {
+      ByteBuffer trailer = trailer(encoded);
+      try {
+        return DeflateCodec.inflate(encoded, offset, trailer.getInt(4), trailer.getInt(0));
+      } catch (IOException e) {
+        // not a single member, left to the generic decoder
+      }
+    }
+    try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(encoded), BUFFER_SIZE)) {
+      try (ByteArrayOutputStream out = new ByteArrayOutputStream(encoded.length * 4)) {
+        int length;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        while ((length = gzip.read(buffer)) > 0) {
+          out.write(buffer, 0, length);
+        }
+        return out.toByteArray();
+      }
+    }
+  }
+
+  @Override
+  public InputStream newDecoder(final byte[] encoded) throws IOException {
+    int offset = bodyOffset(encoded);
+    if (offset < 0) {
+      return new GZIPInputStream(new ByteArrayInputStream(encoded), BUFFER_SIZE);
+    }
+    ByteBuffer trailer = trailer(encoded);
+    return new InflatingInputStream(
+        encoded,
+        offset,
+        encoded.length - TRAILER_LENGTH - offset,
+        trailer.getInt(0),
+        trailer.getInt(4));
+  }
+
+  @Override
+  public byte[] toGzip(final byte[] encoded) {
+    return encoded;
+  }
+
+  /** @return where the deflate stream starts, -1 if the header can't be parsed in place. */
+  private static int bodyOffset(final byte[] encoded) {
+    if (encoded.length < HEADER.length + TRAILER_LENGTH
+        || encoded[0] != ID
+        || encoded[1] != HEADER[1]
+        || encoded[2] != HEADER[2]) {
+      return -1;
+    }
+    int flags = encoded[3] & 0xff;
+    if ((flags & FRESERVED) != 0) {
+      return -1;
+    }
+    int offset = HEADER.length;
+    if ((flags & FEXTRA) != 0) {
+      offset += 2 + ((encoded[offset] & 0xff) | (encoded[offset + 1] & 0xff) << 8);
+    }
+    if ((flags & FNAME) != 0) {
+      offset = skipString(encoded, offset);
+    }
+    if ((flags & FCOMMENT) != 0) {
+      offset = skipString(encoded, offset);
+    }
+    if ((flags & FHCRC) != 0) {
+      offset += 2;
+    }
+    return offset <= encoded.length - TRAILER_LENGTH ? offset : -1;
+  }
+
+  private static int skipString(final byte[] encoded, int offset) {
+    while (offset < encoded.length && encoded[offset] != 0) {
+      offset++;
+    }
+    return offset + 1;
+  }
+
+  /** @return the crc32 and length of the content, at offsets 0 and 4. */
+  private static ByteBuffer trailer(final byte[] encoded) {
+    return ByteBuffer.wrap(encoded, encoded.length - TRAILER_LENGTH, TRAILER_LENGTH)
+        .slice()
+        .order(ByteOrder.LITTLE_ENDIAN);
+  }
+}
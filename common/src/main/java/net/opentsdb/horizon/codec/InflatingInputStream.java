@@ -0,0 +1,102 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Streams the raw deflate content of a blob already in memory, without copying it into an input
+ * buffer first. The checksum and length are verified once the stream is read to its end. Closing
+ * it hands the inflater back to {@link ZlibPool}.
+ */
+class InflatingInputStream extends InputStream {
+
+  private final Inflater inflater;
+  private final CRC32 crc = new CRC32();
+  private final int expectedCrc;
+  private final long expectedLength;
+  private final byte[] single = new byte[1];
+  private long length;
+  private boolean eof;
+  private boolean closed;
+
+  InflatingInputStream(
+      final byte[] encoded, final int offset, final int count, final int crc, final int length) {
+    this.expectedCrc = crc;
+    this.expectedLength = length & 0xffffffffL;
+    this.inflater = ZlibPool.inflater();
+    inflater.setInput(encoded, offset, count);
+  }
+
+  @Override
+  public int read() throws IOException {
+    return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+  }
+
+  @Override
+  public int read(final byte[] b, final int off, final int len) throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    if (len == 0) {
+      return 0;
+    }
+    if (eof) {
+      return -1;
+    }
+    try {
+      int count;
+      while ((count = inflater.inflate(b, off, len)) == 0) {
+        if (inflater.finished()) {
+          eof = true;
+          verify();
+          return -1;
+        }
+        if (inflater.needsInput() || inflater.needsDictionary()) {
+          throw new IOException("Truncated deflate content");
+        }
+      }
+      crc.update(b, off, count);
+      length += count;
+      return count;
+    } catch (DataFormatException | IllegalArgumentException e) {
+      throw new IOException("Corrupted deflate content", e);
+    }
+  }
+
+  private void verify() throws IOException {
+    if (length != expectedLength) {
+      throw new IOException("Deflate content length mismatch");
+    }
+    if ((int) crc.getValue() != expectedCrc) {
+      throw new IOException("Deflate content checksum mismatch");
+    }
+  }
+
+  @Override
+  public void close() {
+    if (!closed) {
+      closed = true;
+      ZlibPool.release(inflater);
+    }
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.codec;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * LZ4 block compression, a lower ratio than deflate for a fraction of its cost. Level 0 and below
+ * use the fast compressor, higher levels the high compression one. The blob is laid out as
+ *
+ * <pre>
+ * | id (1) | crc32 (4) | uncompressed length (4) | lz4 block |
+ * </pre>
+ */
+public class Lz4Codec implements ContentCodec {
+
+  public static final String NAME = "lz4";
+  public static final byte ID = 0x03;
+
+  static final int HEADER_LENGTH = 9;
+
+  /** LZ4 can't expand content more than this, a larger length is a corrupted header. */
+  private static final int MAX_RATIO = 255;
+
+  private final int level;
+  private final LZ4Compressor compressor;
+  private final LZ4SafeDecompressor decompressor;
+
+  public Lz4Codec(final int level) {
+    LZ4Factory factory = LZ4Factory.fastestInstance();
+    this.level = level;
+    this.compressor = level <= 0 ? factory.fastCompressor() : factory.highCompressor(level);
+    this.decompressor = factory.safeDecompressor();
+  }
+
+  @Override
+  public byte id() {
+    return ID;
+  }
+
+  @Override
+  public String name() {
+    return NAME;
+  }
+
+  public int getLevel() {
+    return level;
+  }
+
+  @Override
+  public byte[] encode(final byte[] data) {
+    CRC32 crc = new CRC32();
+    crc.update(data);
+    int maxLength = compressor.maxCompressedLength(data.length);
+    byte[] encoded = new byte[HEADER_LENGTH + maxLength];
+    ByteBuffer.wrap(encoded).put(ID).putInt((int) crc.getValue()).putInt(data.length);
+    int length = compressor.compress(data, 0, data.length, encoded, HEADER_LENGTH, maxLength);
+    return Arrays.copyOf(encoded, HEADER_LENGTH + length);
+  }
+
+  @Override
+  public byte[] decode(final byte[] encoded) throws IOException {
+    ByteBuffer header = header(encoded);
+    int crc = header.getInt();
+    int length = header.getInt();
+    int body = encoded.length - HEADER_LENGTH;
+    if (length < 0 || length / MAX_RATIO > body) {
+      throw new IOException("Corrupted lz4 content length: " + length);
+    }
+    byte[] data = new byte[length];
+    try {
+      if (decompressor.decompress(encoded, HEADER_LENGTH, body, data, 0, length) != length) {
+        throw new IOException("Truncated lz4 content");
+      }
+    } catch (LZ4Exception e) {
+      throw new IOException("Corrupted lz4 content", e);
+    }
+
+    CRC32 actual = new CRC32();
+    actual.update(data);
+    if ((int) actual.getValue() != crc) {
+      throw new IOException("LZ4 content checksum mismatch");
+    }
+    return data;
+  }
+
+  /** LZ4 blocks aren't deflate streams, so the content is compressed again. */
+  @Override
+  public byte[] toGzip(final byte[] encoded) throws IOException {
+    return GzipCodec.INSTANCE.encode(decode(encoded));
+  }
+
+  private static ByteBuffer header(final byte[] encoded) throws IOException {
+    if (encoded.length < HEADER_LENGTH || encoded[0] != ID) {
+      throw new IOException("Not a lz4 encoded content");
+    }
+    return ByteBuffer.wrap(encoded, 1, HEADER_LENGTH - 1);
+  }
+}
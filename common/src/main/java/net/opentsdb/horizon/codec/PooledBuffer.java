@@ -0,0 +1,88 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Per-thread output buffer of the encoders, so that encoding doesn't grow a fresh array for every
+ * content. Only the final, compressed, blob is copied out of it.
+ */
+final class PooledBuffer extends ByteArrayOutputStream {
+
+  private static final int INITIAL_SIZE = 8192;
+  /** Buffers grown past this size by a large content are not kept. */
+  private static final int MAX_POOLED_SIZE = 1024 * 1024;
+
+  private static final ThreadLocal<PooledBuffer> pool = ThreadLocal.withInitial(PooledBuffer::new);
+
+  private boolean inUse;
+
+  private PooledBuffer() {
+    super(INITIAL_SIZE);
+  }
+
+  /** @return the buffer of the calling thread, or a new one if it's already in use. */
+  static PooledBuffer acquire() {
+    PooledBuffer buffer = pool.get();
+    if (buffer.inUse) {
+      return new PooledBuffer();
+    }
+    buffer.inUse = true;
+    buffer.reset();
+    return buffer;
+  }
+
+  /** Hands the buffer back to the pool of the calling thread. */
+  void release() {
+    if (pool.get() != this) {
+      return;
+    }
+    if (buf.length > MAX_POOLED_SIZE) {
+      pool.set(new PooledBuffer());
+    } else {
+      inUse = false;
+    }
+  }
+
+  /** Deflates straight into the buffer. */
+  void deflate(final Deflater deflater) {
+    if (buf.length - count < INITIAL_SIZE) {
+      buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + INITIAL_SIZE));
+    }
+    count += deflater.deflate(buf, count, buf.length - count);
+  }
+
+  /** Overwrites four bytes already written, big endian. */
+  void putInt(final int position, final int value) {
+    buf[position] = (byte) (value >>> 24);
+    buf[position + 1] = (byte) (value >>> 16);
+    buf[position + 2] = (byte) (value >>> 8);
+    buf[position + 3] = (byte) value;
+  }
+
+  /** Appends four bytes, little endian, as in the gzip trailer. */
+  void writeIntLE(final int value) {
+    write(value);
+    write(value >>> 8);
+    write(value >>> 16);
+    write(value >>> 24);
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.codec;
+
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Per-thread raw (nowrap) {@link Deflater} and {@link Inflater}. Each one holds a few hundred KB
+ * of native memory that is only freed by <code>end()</code> or the garbage collector, so they are
+ * reset and kept for the next content rather than allocated for every one.
+ */
+final class ZlibPool {
+
+  private static final ThreadLocal<Deflater> deflaters = new ThreadLocal<>();
+  private static final ThreadLocal<Inflater> inflaters = new ThreadLocal<>();
+
+  private ZlibPool() {}
+
+  /** @return the deflater of the calling thread set to <code>level</code>, or a new one. */
+  static Deflater deflater(final int level) {
+    Deflater deflater = deflaters.get();
+    if (deflater == null) {
+      return new Deflater(level, true);
+    }
+    deflaters.set(null);
+    deflater.setLevel(level);
+    return deflater;
+  }
+
+  static void release(final Deflater deflater) {
+    if (deflaters.get() == null) {
+      deflater.reset();
+      deflaters.set(deflater);
+    } else {
+      deflater.end();
+    }
+  }
+
+  /** @return the inflater of the calling thread, or a new one. */
+  static Inflater inflater() {
+    Inflater inflater = inflaters.get();
+    if (inflater == null) {
+      return new Inflater(true);
+    }
+    inflaters.set(null);
+    return inflater;
+  }
+
+  static void release(final Inflater inflater) {
+    if (inflaters.get() == null) {
+      inflater.reset();
+      inflaters.set(inflater);
+    } else {
+      inflater.end();
+    }
+  }
+}
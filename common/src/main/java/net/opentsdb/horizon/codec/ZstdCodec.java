@@ -0,0 +1,129 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.codec;
+
+import com.github.luben.zstd.Zstd;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Zstandard at a configurable level, about the ratio of deflate at a much lower cost, or better
+ * at the higher levels. The blob is laid out as
+ *
+ * <pre>
+ * | id (1) | crc32 (4) | uncompressed length (4) | zstd frame |
+ * </pre>
+ */
+public class ZstdCodec implements ContentCodec {
+
+  public static final String NAME = "zstd";
+  public static final byte ID = 0x04;
+
+  public static final int DEFAULT_LEVEL = 3;
+  static final int MAX_LEVEL = 22;
+
+  static final int HEADER_LENGTH = 9;
+
+  private final int level;
+
+  public ZstdCodec(final int level) {
+    this.level = checkLevel(level);
+  }
+
+  static int checkLevel(final int level) {
+    if (level < 1 || level > MAX_LEVEL) {
+      throw new IllegalArgumentException("Invalid zstd level: " + level);
+    }
+    return level;
+  }
+
+  @Override
+  public byte id() {
+    return ID;
+  }
+
+  @Override
+  public String name() {
+    return NAME;
+  }
+
+  public int getLevel() {
+    return level;
+  }
+
+  @Override
+  public byte[] encode(final byte[] data) throws IOException {
+    CRC32 crc = new CRC32();
+    crc.update(data);
+    int maxLength = (int) Zstd.compressBound(data.length);
+    byte[] encoded = new byte[HEADER_LENGTH + maxLength];
+    ByteBuffer.wrap(encoded).put(ID).putInt((int) crc.getValue()).putInt(data.length);
+    long length =
+        Zstd.compressByteArray(encoded, HEADER_LENGTH, maxLength, data, 0, data.length, level);
+    if (Zstd.isError(length)) {
+      throw new IOException("Error compressing zstd content: " + Zstd.getErrorName(length));
+    }
+    return Arrays.copyOf(encoded, HEADER_LENGTH + (int) length);
+  }
+
+  @Override
+  public byte[] decode(final byte[] encoded) throws IOException {
+    ByteBuffer header = header(encoded);
+    int crc = header.getInt();
+    int length = header.getInt();
+    if (length < 0) {
+      throw new IOException("Corrupted zstd content length: " + length);
+    }
+    byte[] data = new byte[length];
+    long actualLength =
+        Zstd.decompressByteArray(
+            data, 0, length, encoded, HEADER_LENGTH, encoded.length - HEADER_LENGTH);
+    if (Zstd.isError(actualLength)) {
+      throw new IOException("Corrupted zstd content: " + Zstd.getErrorName(actualLength));
+    }
+    if (actualLength != length) {
+      throw new IOException("Truncated zstd content");
+    }
+    checkCrc(data, crc);
+    return data;
+  }
+
+  /** Zstandard frames aren't deflate streams, so the content is compressed again. */
+  @Override
+  public byte[] toGzip(final byte[] encoded) throws IOException {
+    return GzipCodec.INSTANCE.encode(decode(encoded));
+  }
+
+  static void checkCrc(final byte[] data, final int crc) throws IOException {
+    CRC32 actual = new CRC32();
+    actual.update(data);
+    if ((int) actual.getValue() != crc) {
+      throw new IOException("Zstd content checksum mismatch");
+    }
+  }
+
+  private static ByteBuffer header(final byte[] encoded) throws IOException {
+    if (encoded.length < HEADER_LENGTH || encoded[0] != ID) {
+      throw new IOException("Not a zstd encoded content");
+    }
+    return ByteBuffer.wrap(encoded, 1, HEADER_LENGTH - 1);
+  }
+}
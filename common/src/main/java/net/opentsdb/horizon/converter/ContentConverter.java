@@ -18,28 +18,28 @@
 package net.opentsdb.horizon.converter;
 
 import net.opentsdb.horizon.model.Content;
+import net.opentsdb.horizon.util.ContentWriter;
+import net.opentsdb.horizon.util.Digester;
+import net.opentsdb.horizon.view.EncodedContent;
 
 import java.io.IOException;
-import java.security.MessageDigest;
 
-import static net.opentsdb.horizon.util.Utils.compress;
-import static net.opentsdb.horizon.util.Utils.deSerialize;
-import static net.opentsdb.horizon.util.Utils.decompress;
-import static net.opentsdb.horizon.util.Utils.serialize;
+import static net.opentsdb.horizon.util.Utils.decompressAndDeserialize;
 
 public class ContentConverter extends BaseConverter<Object, Content> {
 
-  private final MessageDigest digest;
+  private final Digester digest;
 
-  public ContentConverter(MessageDigest digest) {
+  public ContentConverter(Digester digest) {
     this.digest = digest;
   }
 
   @Override
   public Content viewToModel(Object view) throws IOException {
-    byte[] serialized = serialize(view).getBytes();
-    byte[] sha2 = digest.digest(serialized);
-    return new Content(sha2, compress(serialized));
+    if (view instanceof EncodedContent) {
+      return ((EncodedContent) view).getContent();
+    }
+    return ContentWriter.write(view, digest);
   }
 
   @Override
@@ -48,7 +48,6 @@ public class ContentConverter extends BaseConverter<Object, Content> {
   }
 
   public static final Object modelToView(byte[] data) throws IOException {
-    byte[] decompressed = decompress(data);
-    return deSerialize(decompressed, Object.class);
+    return decompressAndDeserialize(data, Object.class);
   }
 }
@@ -0,0 +1,258 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.service;
+
+import io.ultrabrew.metrics.Counter;
+import io.ultrabrew.metrics.Gauge;
+import io.ultrabrew.metrics.MetricRegistry;
+import io.ultrabrew.metrics.Timer;
+import net.opentsdb.horizon.model.Activity;
+import net.opentsdb.horizon.store.BaseStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Coalesces user activity writes. Repeated visits of the same entity by the same user within a
+ * flush window collapse to a single row carrying the latest timestamp, and every window is written
+ * as one multi-row upsert per table in a single transaction. If that transaction fails, for example
+ * on a row referencing a deleted user or folder, the rows are written one at a time so that only
+ * the failing ones are dropped.
+ */
+public class ActivityAggregator {
+
+  private static Logger logger = LoggerFactory.getLogger(ActivityAggregator.class);
+
+  private static final String FLUSH_METRIC = "activity.flush";
+  private static final String BATCH_SIZE_METRIC = "activity.flush.batch.size";
+  private static final String COALESCED_METRIC = "activity.coalesced";
+  private static final String DROPPED_METRIC = "activity.dropped";
+  private static final String TAG_TABLE = "table";
+
+  /** Writes a batch of activities into one table. */
+  @FunctionalInterface
+  public interface ActivityWriter {
+    void write(Connection connection, List<Activity> activities) throws SQLException;
+  }
+
+  private final BaseStore store;
+  private final ExecutorService executorService;
+  private final ScheduledExecutorService scheduler;
+  private final int maxPending;
+  private final Map<String, ActivityWriter> writers = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Key, Timestamp> pending = new ConcurrentHashMap<>();
+  private final AtomicBoolean flushing = new AtomicBoolean();
+
+  private final Timer flushTimer;
+  private final Gauge batchSizeGauge;
+  private final Counter coalescedCounter;
+  private final Counter droppedCounter;
+
+  public ActivityAggregator(
+      final BaseStore store,
+      final ExecutorService executorService,
+      final ScheduledExecutorService scheduler,
+      final long flushIntervalMillis,
+      final int maxPending,
+      final MetricRegistry metricRegistry) {
+    this.store = store;
+    this.executorService = executorService;
+    this.scheduler = scheduler;
+    this.maxPending = maxPending;
+    this.flushTimer = metricRegistry.timer(FLUSH_METRIC);
+    this.batchSizeGauge = metricRegistry.gauge(BATCH_SIZE_METRIC);
+    this.coalescedCounter = metricRegistry.counter(COALESCED_METRIC);
+    this.droppedCounter = metricRegistry.counter(DROPPED_METRIC);
+
+    scheduler.scheduleWithFixedDelay(
+        this::scheduleFlush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  public void register(final String table, final ActivityWriter writer) {
+    writers.put(table, writer);
+  }
+
+  public void add(
+      final String table, final String userId, final byte entityType, final long entityId) {
+    Key key = new Key(table, userId, entityType, entityId);
+    Timestamp now = BaseService.now();
+    if (pending.size() >= maxPending && !pending.containsKey(key)) {
+      droppedCounter.inc(TAG_TABLE, table);
+      return;
+    }
+    if (pending.put(key, now) != null) {
+      coalescedCounter.inc(TAG_TABLE, table);
+    }
+  }
+
+  private void scheduleFlush() {
+    if (pending.isEmpty()) {
+      return;
+    }
+    try {
+      executorService.submit(this::flush);
+    } catch (RejectedExecutionException e) {
+      // pending activities are kept for the next window
+      logger.warn("Activity flush rejected, pending: {}", pending.size());
+    }
+  }
+
+  /**
+   * Stops the periodic flushes and writes out what is still pending. The executor passed in is
+   * left to its owner.
+   */
+  public void shutdown() {
+    scheduler.shutdown();
+    flush();
+  }
+
+  /** Writes out everything pending. Only one flush runs at a time. */
+  public void flush() {
+    if (!flushing.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      Map<String, List<Activity>> batches = drain();
+      if (batches.isEmpty()) {
+        return;
+      }
+      long start = flushTimer.start();
+      try (Connection connection = store.getReadWriteConnection()) {
+        try {
+          for (Map.Entry<String, List<Activity>> entry : batches.entrySet()) {
+            writers.get(entry.getKey()).write(connection, entry.getValue());
+          }
+          store.commit(connection);
+          for (Map.Entry<String, List<Activity>> entry : batches.entrySet()) {
+            batchSizeGauge.set(entry.getValue().size(), TAG_TABLE, entry.getKey());
+          }
+        } catch (SQLException e) {
+          store.rollback(connection);
+          logger.warn("Error flushing user activities, retrying row by row, cause: {}",
+              e.getMessage());
+          writeOneByOne(connection, batches);
+        }
+      } catch (SQLException e) {
+        for (Map.Entry<String, List<Activity>> entry : batches.entrySet()) {
+          droppedCounter.inc(entry.getValue().size(), TAG_TABLE, entry.getKey());
+        }
+        logger.error("Error flushing user activities, cause: " + e.getMessage());
+      } finally {
+        flushTimer.stop(start);
+      }
+    } finally {
+      flushing.set(false);
+    }
+  }
+
+  /** Writes every activity in its own auto-committed statement, dropping the ones that fail. */
+  private void writeOneByOne(final Connection connection, final Map<String, List<Activity>> batches)
+      throws SQLException {
+    connection.setAutoCommit(true);
+    for (Map.Entry<String, List<Activity>> entry : batches.entrySet()) {
+      String table = entry.getKey();
+      ActivityWriter writer = writers.get(table);
+      int written = 0;
+      for (Activity activity : entry.getValue()) {
+        try {
+          writer.write(connection, Collections.singletonList(activity));
+          written++;
+        } catch (SQLException e) {
+          droppedCounter.inc(TAG_TABLE, table);
+          logger.error(
+              "Error writing user activity into {}, user: {} entity: {}, cause: {}",
+              table,
+              activity.getUserId(),
+              activity.getEntityId(),
+              e.getMessage());
+        }
+      }
+      batchSizeGauge.set(written, TAG_TABLE, table);
+    }
+  }
+
+  private Map<String, List<Activity>> drain() {
+    Map<String, List<Activity>> batches = new HashMap<>();
+    for (Key key : pending.keySet()) {
+      Timestamp timestamp = pending.remove(key);
+      if (timestamp == null) {
+        continue;
+      }
+      if (!writers.containsKey(key.table)) {
+        logger.error("No activity writer registered for table: " + key.table);
+        continue;
+      }
+      Activity activity = new Activity();
+      activity.setUserId(key.userId);
+      activity.setEntityType(key.entityType);
+      activity.setEntityId(key.entityId);
+      activity.setTimestamp(timestamp);
+      batches.computeIfAbsent(key.table, t -> new ArrayList<>()).add(activity);
+    }
+    return batches;
+  }
+
+  private static class Key {
+    private final String table;
+    private final String userId;
+    private final byte entityType;
+    private final long entityId;
+
+    private Key(String table, String userId, byte entityType, long entityId) {
+      this.table = table;
+      this.userId = userId;
+      this.entityType = entityType;
+      this.entityId = entityId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key key = (Key) o;
+      return entityType == key.entityType
+          && entityId == key.entityId
+          && table.equals(key.table)
+          && Objects.equals(userId, key.userId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(table, userId, entityType, entityId);
+    }
+  }
+}
@@ -18,43 +18,20 @@
 package net.opentsdb.horizon.service;
 
 import net.opentsdb.horizon.store.ActivityStore;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.sql.Connection;
-import java.sql.SQLException;
-import java.util.concurrent.ExecutorService;
 
 public class ActivityJobScheduler {
 
-  private static Logger logger = LoggerFactory.getLogger(ActivityJobScheduler.class);
+  private static final String TABLE = "activity";
 
-  private ActivityStore activityStore;
-  private ExecutorService executorService;
+  private ActivityAggregator activityAggregator;
 
   public ActivityJobScheduler(
-      final ActivityStore activityStore, final ExecutorService executorService) {
-    this.activityStore = activityStore;
-    this.executorService = executorService;
+      final ActivityStore activityStore, final ActivityAggregator activityAggregator) {
+    this.activityAggregator = activityAggregator;
+    activityAggregator.register(TABLE, activityStore::addActivities);
   }
 
   public void addActivity(final String userId, final byte entityType, final long entityId) {
-    executorService.submit(
-        () -> {
-          try (Connection connection = activityStore.getReadWriteConnection()) {
-            activityStore.addActivity(connection, userId, entityType, entityId);
-            activityStore.commit(connection);
-          } catch (SQLException e) {
-            logger.error(
-                "Error adding user activity for user: "
-                    + userId
-                    + " entityType : "
-                    + entityType
-                    + " entityId : "
-                    + entityId
-                    + "cause: "
-                    + e.getMessage());
-          }
-        });
+    activityAggregator.add(TABLE, userId, entityType, entityId);
   }
 }
@@ -20,6 +20,7 @@ package net.opentsdb.horizon.service;
 import net.opentsdb.horizon.converter.BaseConverter;
 import net.opentsdb.horizon.store.BaseStore;
 import net.opentsdb.horizon.store.StoreFunction;
+import net.opentsdb.horizon.util.Digester;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,12 +30,15 @@ import javax.ws.rs.ForbiddenException;
 import javax.ws.rs.InternalServerErrorException;
 import javax.ws.rs.NotFoundException;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.Response;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -47,6 +51,9 @@ import java.util.stream.Collectors;
  */
 public abstract class BaseService<View, Model, Converter extends BaseConverter<View, Model>> {
 
+  private static final int TAG_LENGTH = 16;
+  private static final Digester tagDigester = new Digester(Digester.SHA_256);
+
   protected Logger logger = LoggerFactory.getLogger(getClass());
 
   protected Converter converter;
@@ -72,6 +79,8 @@ public abstract class BaseService<View, Model, Converter extends BaseConverter<V
       try {
         doCreate(model, con);
         store.commit(con);
+        postCreate(model);
+        store.recordWrite(con, principal);
       } catch (Exception e) {
         String type = model.getClass().getSimpleName();
         logger.error("Error creating " + type, e);
@@ -114,6 +123,8 @@ public abstract class BaseService<View, Model, Converter extends BaseConverter<V
       try {
         doCreates(models, con, principal);
         store.commit(con);
+        postCreates(models);
+        store.recordWrite(con, principal);
       } catch (Exception e) {
         String type = model.getClass().getSimpleName();
         logger.error("Error creating " + type, e);
@@ -146,6 +157,7 @@ public abstract class BaseService<View, Model, Converter extends BaseConverter<V
       try {
         model = doUpdate(model, connection);
         store.commit(connection);
+        store.recordWrite(connection, principal);
       } catch (Exception e) {
         String type = model.getClass().getSimpleName();
         logger.error("Error updating " + type, e);
@@ -185,6 +197,8 @@ public abstract class BaseService<View, Model, Converter extends BaseConverter<V
       try {
         doUpdates(models, con);
         store.commit(con);
+        postUpdates(models);
+        store.recordWrite(con, principal);
       } catch (Exception e) {
         String type = model.getClass().getSimpleName();
         logger.error("Error updating " + type, e);
@@ -201,7 +215,7 @@ public abstract class BaseService<View, Model, Converter extends BaseConverter<V
     return toViews(models);
   }
 
-  public void delete(View view) {
+  public void delete(View view, String principal) {
     Model model;
     try {
       model = converter.viewToModel(view);
@@ -212,6 +226,7 @@ public abstract class BaseService<View, Model, Converter extends BaseConverter<V
       try {
         doDelete(model, con);
         store.commit(con);
+        store.recordWrite(con, principal);
       } catch (Exception e) {
         String type = model.getClass().getSimpleName();
         logger.error("Error deleting " + type, e);
@@ -255,6 +270,15 @@ public abstract class BaseService<View, Model, Converter extends BaseConverter<V
 
   protected void preUpdate(Model model) {}
 
+  /** Called once the transaction of {@link #doCreate} has committed. */
+  protected void postCreate(Model model) {}
+
+  /** Called once the transaction of {@link #doCreates} has committed. */
+  protected void postCreates(List<Model> models) {}
+
+  /** Called once the transaction of {@link #doUpdates} has committed. */
+  protected void postUpdates(List<Model> models) {}
+
   protected void setCreatorUpdatorIdAndTime(Model model, String principal, Timestamp timestamp) {
     setCreatorIdAndTime(model, principal, timestamp);
     setUpdaterIdAndTime(model, principal, timestamp);
@@ -323,6 +347,27 @@ public abstract class BaseService<View, Model, Converter extends BaseConverter<V
     return new Timestamp(System.currentTimeMillis());
   }
 
+  /**
+   * @return a weak entity tag over the values a GET response is built from, for instance the
+   *     content id and update time of a dashboard. Weak, as the same response is served gzip
+   *     encoded or not.
+   */
+  public static EntityTag entityTag(final Object... values) {
+    StringBuilder builder = new StringBuilder();
+    for (Object value : values) {
+      if (value instanceof byte[]) {
+        builder.append(Base64.getEncoder().encodeToString((byte[]) value));
+      } else {
+        builder.append(value);
+      }
+      builder.append('\n');
+    }
+    byte[] digest = tagDigester.digest(builder.toString());
+    return new EntityTag(
+        Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, TAG_LENGTH)),
+        true);
+  }
+
   public static ForbiddenException forbiddenException(String message) {
     Response response = Response.status(Response.Status.FORBIDDEN).entity(message).build();
     return new ForbiddenException(response);
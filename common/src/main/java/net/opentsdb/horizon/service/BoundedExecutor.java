@@ -0,0 +1,160 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.service;
+
+import io.ultrabrew.metrics.Counter;
+import io.ultrabrew.metrics.Gauge;
+import io.ultrabrew.metrics.MetricRegistry;
+import io.ultrabrew.metrics.Timer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed size thread pool for background jobs with a bounded work queue. When the queue is full the
+ * configured {@link RejectionPolicy} applies, so a slow database can't pile up tasks on the heap.
+ */
+public class BoundedExecutor extends ThreadPoolExecutor {
+
+  private static final String QUEUE_DEPTH_METRIC = "executor.queue.depth";
+  private static final String ACTIVE_THREADS_METRIC = "executor.threads.active";
+  private static final String WAIT_METRIC = "executor.task.wait";
+  private static final String LATENCY_METRIC = "executor.task.latency";
+  private static final String REJECTED_METRIC = "executor.task.rejected";
+  private static final String TAG_POOL = "pool";
+  private static final String TAG_POLICY = "policy";
+
+  /** What to do with a task when the work queue is full. */
+  public enum RejectionPolicy {
+    /** Drop the oldest queued task and enqueue the new one. */
+    DROP_OLDEST,
+    /** Drop the new task. */
+    DROP_NEWEST,
+    /** Run the new task on the submitting thread. */
+    CALLER_RUNS
+  }
+
+  private final String name;
+  private final ThreadLocal<Long> startTime = new ThreadLocal<>();
+
+  private final Gauge queueDepthGauge;
+  private final Gauge activeThreadsGauge;
+  private final Timer waitTimer;
+  private final Timer latencyTimer;
+
+  public BoundedExecutor(
+      final String name,
+      final int threads,
+      final int queueSize,
+      final RejectionPolicy rejectionPolicy,
+      final MetricRegistry metricRegistry) {
+    super(
+        threads,
+        threads,
+        0L,
+        TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueSize),
+        threadFactory(name),
+        rejectionHandler(rejectionPolicy, metricRegistry.counter(REJECTED_METRIC), name));
+    this.name = name;
+    this.queueDepthGauge = metricRegistry.gauge(QUEUE_DEPTH_METRIC);
+    this.activeThreadsGauge = metricRegistry.gauge(ACTIVE_THREADS_METRIC);
+    this.waitTimer = metricRegistry.timer(WAIT_METRIC);
+    this.latencyTimer = metricRegistry.timer(LATENCY_METRIC);
+  }
+
+  @Override
+  public void execute(final Runnable command) {
+    super.execute(new QueuedTask(command, waitTimer.start()));
+    queueDepthGauge.set(getQueue().size(), TAG_POOL, name);
+  }
+
+  @Override
+  protected void beforeExecute(final Thread t, final Runnable r) {
+    super.beforeExecute(t, r);
+    if (r instanceof QueuedTask) {
+      waitTimer.stop(((QueuedTask) r).queuedAt, TAG_POOL, name);
+    }
+    startTime.set(latencyTimer.start());
+    activeThreadsGauge.set(getActiveCount(), TAG_POOL, name);
+  }
+
+  @Override
+  protected void afterExecute(final Runnable r, final Throwable t) {
+    super.afterExecute(r, t);
+    latencyTimer.stop(startTime.get(), TAG_POOL, name);
+    startTime.remove();
+    queueDepthGauge.set(getQueue().size(), TAG_POOL, name);
+    // the finishing task is still counted as active
+    activeThreadsGauge.set(getActiveCount() - 1, TAG_POOL, name);
+  }
+
+  /** @return a factory of daemon threads named <code>name-1</code>, <code>name-2</code>... */
+  public static ThreadFactory threadFactory(final String name) {
+    AtomicInteger count = new AtomicInteger();
+    ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+    return r -> {
+      Thread thread = defaultFactory.newThread(r);
+      thread.setName(name + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  private static RejectedExecutionHandler rejectionHandler(
+      final RejectionPolicy policy, final Counter rejectedCounter, final String name) {
+    RejectedExecutionHandler handler;
+    switch (policy) {
+      case DROP_OLDEST:
+        handler = new DiscardOldestPolicy();
+        break;
+      case DROP_NEWEST:
+        handler = new DiscardPolicy();
+        break;
+      case CALLER_RUNS:
+        handler = new CallerRunsPolicy();
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown rejection policy: " + policy);
+    }
+    return (r, executor) -> {
+      rejectedCounter.inc(TAG_POOL, name, TAG_POLICY, policy.name());
+      handler.rejectedExecution(r, executor);
+    };
+  }
+
+  private static class QueuedTask implements Runnable {
+    private final Runnable task;
+    private final long queuedAt;
+
+    private QueuedTask(final Runnable task, final long queuedAt) {
+      this.task = task;
+      this.queuedAt = queuedAt;
+    }
+
+    @Override
+    public void run() {
+      task.run();
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.service;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+
+/**
+ * A read answering a conditional GET. Either the preconditions of the request matched the entity
+ * tag, and the body was never read, or it holds the body along with its tag.
+ *
+ * @param <T> type of the body
+ */
+public class ConditionalRead<T> {
+
+  private final EntityTag tag;
+  private final T body;
+  private final Response.ResponseBuilder notModified;
+
+  private ConditionalRead(
+      final EntityTag tag, final T body, final Response.ResponseBuilder notModified) {
+    this.tag = tag;
+    this.body = body;
+    this.notModified = notModified;
+  }
+
+  public static <T> ConditionalRead<T> of(final EntityTag tag, final T body) {
+    return new ConditionalRead<>(tag, body, null);
+  }
+
+  /**
+   * Evaluates the preconditions of the request against the tag, before the body is read.
+   *
+   * @param request null for an unconditional read
+   * @return the read to answer with, or null if the body must be read
+   */
+  public static <T> ConditionalRead<T> evaluate(final Request request, final EntityTag tag) {
+    if (request == null) {
+      return null;
+    }
+    Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+    return notModified == null ? null : new ConditionalRead<>(tag, null, notModified);
+  }
+
+  public EntityTag getTag() {
+    return tag;
+  }
+
+  public T getBody() {
+    return body;
+  }
+
+  /** @return the <code>304 Not Modified</code> response, null if the body was read. */
+  public Response.ResponseBuilder getNotModified() {
+    return notModified;
+  }
+}
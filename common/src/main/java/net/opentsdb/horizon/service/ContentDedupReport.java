@@ -0,0 +1,164 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.service;
+
+import io.ultrabrew.metrics.Gauge;
+import io.ultrabrew.metrics.MetricRegistry;
+import net.opentsdb.horizon.model.Content;
+import net.opentsdb.horizon.store.ContentStore;
+import net.opentsdb.horizon.util.CanonicalJson;
+import net.opentsdb.horizon.util.Digester;
+import net.opentsdb.horizon.util.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reports how much of the <code>content</code> table canonical hashing would deduplicate. The
+ * table is read in <code>sha2</code> order, a batch per query, and the rows are grouped by the
+ * hash of their canonical form. Nothing is written, rows already stored keep their hash.
+ */
+public class ContentDedupReport implements Runnable {
+
+  private static Logger logger = LoggerFactory.getLogger(ContentDedupReport.class);
+
+  private static final String ROWS_METRIC = "content.dedup.rows";
+  private static final String DUPLICATES_METRIC = "content.dedup.duplicates";
+  private static final String BYTES_SAVED_METRIC = "content.dedup.bytes.saved";
+  private static final int BATCH_SIZE = 1000;
+
+  private final ContentStore store;
+  private final CanonicalJson canonicalJson;
+  private final Digester digester;
+
+  private final Gauge rowsGauge;
+  private final Gauge duplicatesGauge;
+  private final Gauge bytesSavedGauge;
+
+  public ContentDedupReport(
+      final ContentStore store,
+      final CanonicalJson canonicalJson,
+      final Digester digester,
+      final MetricRegistry metricRegistry) {
+    this.store = store;
+    this.canonicalJson = canonicalJson;
+    this.digester = digester;
+    this.rowsGauge = metricRegistry.gauge(ROWS_METRIC);
+    this.duplicatesGauge = metricRegistry.gauge(DUPLICATES_METRIC);
+    this.bytesSavedGauge = metricRegistry.gauge(BYTES_SAVED_METRIC);
+  }
+
+  @Override
+  public void run() {
+    try {
+      Report report = generate();
+      rowsGauge.set(report.getRows());
+      duplicatesGauge.set(report.getDuplicates());
+      bytesSavedGauge.set(report.getDuplicateBytes());
+      logger.info("Content dedup report: {}", report);
+    } catch (SQLException e) {
+      logger.error("Error generating the content dedup report, cause: " + e.getMessage());
+    }
+  }
+
+  public Report generate() throws SQLException {
+    Report report = new Report();
+    // the first 8 bytes of the hash are plenty to estimate the duplicates
+    Set<Long> hashes = new HashSet<>();
+    byte[] cursor = new byte[0];
+    List<Content> batch;
+    do {
+      try (Connection connection = store.getReadOnlyConnection()) {
+        batch = store.listContent(connection, cursor, BATCH_SIZE);
+      }
+      for (Content content : batch) {
+        byte[] data = content.getData();
+        report.rows++;
+        report.bytes += data.length;
+        try {
+          Object canonical =
+              canonicalJson.canonicalize(Utils.decompressAndDeserialize(data, Object.class));
+          byte[] hash =
+              digester.digest(Utils.serialize(canonical).getBytes(StandardCharsets.UTF_8));
+          if (!hashes.add(ByteBuffer.wrap(hash).getLong())) {
+            report.duplicates++;
+            report.duplicateBytes += data.length;
+          }
+        } catch (IOException e) {
+          report.unreadable++;
+        }
+      }
+      if (!batch.isEmpty()) {
+        cursor = batch.get(batch.size() - 1).getSha2();
+      }
+    } while (batch.size() == BATCH_SIZE);
+    return report;
+  }
+
+  public static class Report {
+    private long rows;
+    private long bytes;
+    private long duplicates;
+    private long duplicateBytes;
+    private long unreadable;
+
+    public long getRows() {
+      return rows;
+    }
+
+    public long getBytes() {
+      return bytes;
+    }
+
+    /** @return the number of rows with the same canonical form as an other row. */
+    public long getDuplicates() {
+      return duplicates;
+    }
+
+    /** @return the stored size of the duplicate rows. */
+    public long getDuplicateBytes() {
+      return duplicateBytes;
+    }
+
+    public long getUnreadable() {
+      return unreadable;
+    }
+
+    @Override
+    public String toString() {
+      return "rows: "
+          + rows
+          + ", bytes: "
+          + bytes
+          + ", duplicate rows: "
+          + duplicates
+          + ", duplicate bytes: "
+          + duplicateBytes
+          + ", unreadable rows: "
+          + unreadable;
+    }
+  }
+}
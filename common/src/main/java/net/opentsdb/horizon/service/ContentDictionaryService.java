@@ -0,0 +1,184 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.service;
+
+import io.ultrabrew.metrics.Gauge;
+import io.ultrabrew.metrics.MetricRegistry;
+import io.ultrabrew.metrics.Timer;
+import net.opentsdb.horizon.codec.ContentCodecs;
+import net.opentsdb.horizon.codec.DictionaryCodec;
+import net.opentsdb.horizon.codec.DictionaryTrainer;
+import net.opentsdb.horizon.model.Content;
+import net.opentsdb.horizon.model.ContentDictionary;
+import net.opentsdb.horizon.store.ContentStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Trains, stores and loads the compression dictionaries of the {@link DictionaryCodec}. A
+ * dictionary is trained on a random sample of the stored content and saved as a new version in
+ * the <code>content_dictionary</code> table, new content is compressed with the latest version.
+ * Older versions stay readable, they are loaded from the table when a blob refers to them.
+ */
+public class ContentDictionaryService {
+
+  private static Logger logger = LoggerFactory.getLogger(ContentDictionaryService.class);
+
+  public static final String TRAINED_BY = "system";
+
+  private static final String TRAIN_METRIC = "content.dictionary.train";
+  private static final String SIZE_METRIC = "content.dictionary.bytes";
+
+  private final ContentStore store;
+  private final DictionaryCodec codec;
+  private final int sampleSize;
+  private final int maxDictionarySize;
+  private final SecureRandom random = new SecureRandom();
+
+  private final Timer trainTimer;
+  private final Gauge sizeGauge;
+
+  public ContentDictionaryService(
+      final ContentStore store,
+      final int level,
+      final int sampleSize,
+      final int maxDictionarySize,
+      final MetricRegistry metricRegistry) {
+    this.store = store;
+    this.codec = new DictionaryCodec(level, this::loadDictionary);
+    this.sampleSize = sampleSize;
+    this.maxDictionarySize = maxDictionarySize;
+    this.trainTimer = metricRegistry.timer(TRAIN_METRIC);
+    this.sizeGauge = metricRegistry.gauge(SIZE_METRIC);
+  }
+
+  public DictionaryCodec getCodec() {
+    return codec;
+  }
+
+  /**
+   * Compresses new content with the latest stored dictionary, training the first one if there's
+   * none yet.
+   *
+   * @return id of the dictionary in use, -1 if there's not enough content to train one.
+   */
+  public int loadOrTrain() throws SQLException {
+    ContentDictionary latest;
+    try (Connection connection = store.getReadWriteConnection()) {
+      latest = store.getLatestDictionary(connection);
+    }
+    if (latest == null) {
+      return train();
+    }
+    use(latest);
+    return latest.getId();
+  }
+
+  /**
+   * Trains a new version of the dictionary on a random sample of the stored content and
+   * compresses new content with it.
+   *
+   * @return id of the dictionary in use, unchanged if the samples have nothing in common.
+   */
+  public int train() throws SQLException {
+    long start = trainTimer.start();
+    try {
+      List<byte[]> samples = sample();
+      byte[] data = DictionaryTrainer.train(samples, maxDictionarySize);
+      if (data.length == 0) {
+        logger.warn("Not enough content to train a dictionary, samples: {}", samples.size());
+        return codec.getDictionaryId();
+      }
+
+      ContentDictionary dictionary = new ContentDictionary();
+      dictionary.setData(data);
+      dictionary.setSamples(samples.size());
+      dictionary.setCreatedBy(TRAINED_BY);
+      dictionary.setCreatedTime(BaseService.now());
+      try (Connection connection = store.getReadWriteConnection()) {
+        try {
+          store.createDictionary(connection, dictionary);
+          store.commit(connection);
+        } catch (SQLException e) {
+          store.rollback(connection);
+          throw e;
+        }
+      }
+      use(dictionary);
+      logger.info(
+          "Trained content dictionary {} of {} bytes on {} samples",
+          dictionary.getId(),
+          data.length,
+          samples.size());
+      return dictionary.getId();
+    } finally {
+      trainTimer.stop(start);
+    }
+  }
+
+  private void use(final ContentDictionary dictionary) {
+    codec.setDictionary(dictionary.getId(), dictionary.getData());
+    sizeGauge.set(dictionary.getData().length);
+  }
+
+  /** Reads <code>sampleSize</code> rows starting at a random sha2, wrapping around the table. */
+  private List<byte[]> sample() throws SQLException {
+    byte[] cursor = new byte[32];
+    random.nextBytes(cursor);
+    List<Content> contents;
+    try (Connection connection = store.getReadOnlyConnection()) {
+      contents = store.listContent(connection, cursor, sampleSize);
+      if (contents.size() < sampleSize) {
+        contents.addAll(store.listContent(connection, new byte[0], sampleSize - contents.size()));
+      }
+    }
+
+    Set<ByteBuffer> seen = new HashSet<>();
+    List<byte[]> samples = new ArrayList<>(contents.size());
+    for (Content content : contents) {
+      if (!seen.add(ByteBuffer.wrap(content.getSha2()))) {
+        continue;
+      }
+      try {
+        samples.add(ContentCodecs.decode(content.getData()));
+      } catch (IOException e) {
+        logger.warn("Skipping unreadable content sample, cause: " + e.getMessage());
+      }
+    }
+    return samples;
+  }
+
+  private byte[] loadDictionary(final int id) throws IOException {
+    try (Connection connection = store.getReadWriteConnection()) {
+      ContentDictionary dictionary = store.getDictionary(connection, id);
+      return dictionary == null ? null : dictionary.getData();
+    } catch (SQLException e) {
+      throw new IOException("Error loading content dictionary: " + id, e);
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.service;
+
+import io.ultrabrew.metrics.Counter;
+import io.ultrabrew.metrics.MetricRegistry;
+import net.opentsdb.horizon.codec.ContentCodec;
+import net.opentsdb.horizon.codec.ContentCodecs;
+import net.opentsdb.horizon.model.Content;
+import net.opentsdb.horizon.store.ContentStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Walks the <code>content</code> table in <code>sha2</code> order and rewrites the rows that are
+ * not encoded with the target codec. Each run handles one small batch in its own transaction and
+ * runs are spaced out, so the job never holds locks for long or competes with user traffic. The
+ * job stops once it has seen every row.
+ */
+public class ContentRecompressionJob implements Runnable {
+
+  private static Logger logger = LoggerFactory.getLogger(ContentRecompressionJob.class);
+
+  private static final String ROWS_METRIC = "content.recompress.rows";
+  private static final String BYTES_SAVED_METRIC = "content.recompress.bytes.saved";
+  private static final String ERROR_METRIC = "content.recompress.error";
+
+  private final ContentStore store;
+  private final ContentCodec target;
+  private final int batchSize;
+
+  private final Counter rowsCounter;
+  private final Counter bytesSavedCounter;
+  private final Counter errorCounter;
+
+  private byte[] cursor = new byte[0];
+  private volatile boolean done;
+  private ScheduledFuture<?> future;
+
+  public ContentRecompressionJob(
+      final ContentStore store,
+      final ContentCodec target,
+      final int batchSize,
+      final MetricRegistry metricRegistry) {
+    this.store = store;
+    this.target = target;
+    this.batchSize = batchSize;
+    this.rowsCounter = metricRegistry.counter(ROWS_METRIC);
+    this.bytesSavedCounter = metricRegistry.counter(BYTES_SAVED_METRIC);
+    this.errorCounter = metricRegistry.counter(ERROR_METRIC);
+  }
+
+  /** Runs a batch every <code>intervalMillis</code> until the table is done. */
+  public synchronized void start(
+      final ScheduledExecutorService scheduler, final long intervalMillis) {
+    future =
+        scheduler.scheduleWithFixedDelay(
+            this, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  public boolean isDone() {
+    return done;
+  }
+
+  @Override
+  public synchronized void run() {
+    if (done) {
+      return;
+    }
+    try (Connection connection = store.getReadWriteConnection()) {
+      try {
+        List<Content> batch = store.listContent(connection, cursor, batchSize);
+        for (Content content : batch) {
+          recompress(content, connection);
+        }
+        store.commit(connection);
+        if (batch.size() < batchSize) {
+          finish();
+        } else {
+          cursor = batch.get(batch.size() - 1).getSha2();
+        }
+      } catch (SQLException e) {
+        store.rollback(connection);
+        throw e;
+      }
+    } catch (SQLException e) {
+      // the batch is retried on the next run
+      errorCounter.inc();
+      logger.error("Error recompressing content, cause: " + e.getMessage());
+    }
+  }
+
+  private void recompress(final Content content, final Connection connection)
+      throws SQLException {
+    byte[] data = content.getData();
+    try {
+      if (ContentCodecs.codecOf(data).id() == target.id()) {
+        return;
+      }
+      byte[] encoded = target.encode(ContentCodecs.decode(data));
+      store.updateContentData(connection, content.getSha2(), encoded);
+      rowsCounter.inc();
+      bytesSavedCounter.inc(data.length - encoded.length);
+    } catch (IOException e) {
+      // leave the row as is, it is still readable with its original codec if at all
+      errorCounter.inc();
+      logger.error("Error recompressing content, cause: " + e.getMessage());
+    }
+  }
+
+  private void finish() {
+    done = true;
+    logger.info("Finished recompressing content with the {} codec", target.name());
+    if (future != null) {
+      future.cancel(false);
+    }
+  }
+}
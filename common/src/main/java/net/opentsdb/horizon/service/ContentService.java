@@ -21,9 +21,9 @@ import net.opentsdb.horizon.converter.ContentConverter;
 import net.opentsdb.horizon.model.Content;
 import net.opentsdb.horizon.model.ContentHistory;
 import net.opentsdb.horizon.store.ContentStore;
+import net.opentsdb.horizon.util.Digester;
 
 import java.io.IOException;
-import java.security.MessageDigest;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.List;
@@ -34,7 +34,7 @@ public class ContentService extends BaseService<Object, Content, ContentConverte
 
   private final ContentStore store;
 
-  public ContentService(final MessageDigest digest, final ContentStore store) {
+  public ContentService(final Digester digest, final ContentStore store) {
     super(new ContentConverter(digest), store);
     this.store = store;
   }
@@ -17,34 +17,42 @@
 
 package net.opentsdb.horizon.store;
 
-import net.opentsdb.horizon.service.BaseService;
+import net.opentsdb.horizon.model.Activity;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.sql.Timestamp;
+import java.util.List;
 
 public class ActivityStore extends BaseStore {
 
+  private static final int MAX_ROWS_PER_INSERT = 500;
+
   public ActivityStore(DataSource rwSrc, DataSource roSrc) {
     super(rwSrc, roSrc);
   }
 
-  public int addActivity(
-      final Connection connection, final String userId, final byte entityType, final long entityId)
+  /** Upserts the activities with multi-row inserts, the latest timestamp wins. */
+  public void addActivities(final Connection connection, final List<Activity> activities)
       throws SQLException {
-    String sql =
-        "INSERT INTO activity (userid, entitytype, entityid, timestamp) values (?, ?, ?, ?) "
-            + "ON DUPLICATE KEY UPDATE timestamp = ?";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
-      Timestamp now = BaseService.now();
-      statement.setString(1, userId);
-      statement.setByte(2, entityType);
-      statement.setLong(3, entityId);
-      statement.setTimestamp(4, now);
-      statement.setTimestamp(5, now);
-      return statement.executeUpdate();
+    for (int from = 0; from < activities.size(); from += MAX_ROWS_PER_INSERT) {
+      List<Activity> rows =
+          activities.subList(from, Math.min(from + MAX_ROWS_PER_INSERT, activities.size()));
+      String sql =
+          "INSERT INTO activity (userid, entitytype, entityid, timestamp) VALUES "
+              + multiRowValues("(?, ?, ?, ?)", rows.size())
+              + " ON DUPLICATE KEY UPDATE timestamp = GREATEST(timestamp, VALUES(timestamp))";
+      try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        int i = 1;
+        for (Activity activity : rows) {
+          statement.setString(i++, activity.getUserId());
+          statement.setByte(i++, activity.getEntityType());
+          statement.setLong(i++, activity.getEntityId());
+          statement.setTimestamp(i++, activity.getTimestamp());
+        }
+        statement.executeUpdate();
+      }
     }
   }
 }
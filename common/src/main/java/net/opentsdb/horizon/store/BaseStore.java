@@ -22,18 +22,32 @@ import org.slf4j.LoggerFactory;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 
 public class BaseStore {
 
   protected final Logger LOGGER = LoggerFactory.getLogger(getClass());
 
+  private static final String PRIMARY_TIME = "SELECT CURRENT_TIMESTAMP(3)";
+
   private DataSource rwSrc;
   private DataSource roSrc;
+  private final SessionConsistency sessionConsistency;
 
+  /** Reads don't follow the writes, see {@link SessionConsistency#DISABLED}. */
   public BaseStore(final DataSource rwSrc, final DataSource roSrc) {
+    this(rwSrc, roSrc, SessionConsistency.DISABLED);
+  }
+
+  public BaseStore(
+      final DataSource rwSrc,
+      final DataSource roSrc,
+      final SessionConsistency sessionConsistency) {
     this.rwSrc = rwSrc;
     this.roSrc = roSrc;
+    this.sessionConsistency = sessionConsistency;
 
     if (this.roSrc == null) {
       this.roSrc = rwSrc;
@@ -50,9 +64,8 @@ public class BaseStore {
 
   protected Connection getConnection(final boolean autoCommit, final boolean readWrite)
       throws SQLException {
-    DataSource src = readWrite ? rwSrc : roSrc;
     try {
-      Connection connection = src.getConnection();
+      Connection connection = readWrite ? rwSrc.getConnection() : getReadConnection();
       connection.setAutoCommit(autoCommit);
       return connection;
     } catch (SQLException e) {
@@ -62,6 +75,27 @@ public class BaseStore {
     }
   }
 
+  /**
+   * Within the {@link SessionConsistency} window of a write of the current principal, reads go to
+   * a replica that has caught up with it or else to the primary.
+   */
+  private Connection getReadConnection() throws SQLException {
+    if (roSrc == rwSrc) {
+      return roSrc.getConnection();
+    }
+    long committedAt = sessionConsistency.lastWrite();
+    if (committedAt == 0) {
+      return roSrc.getConnection();
+    }
+    if (roSrc instanceof ReplicatedDataSource) {
+      Connection connection = ((ReplicatedDataSource) roSrc).getConnection(committedAt);
+      if (connection != null) {
+        return connection;
+      }
+    }
+    return rwSrc.getConnection();
+  }
+
   public void rollback(final Connection connection) throws SQLException {
     try {
       connection.rollback();
@@ -84,6 +118,33 @@ public class BaseStore {
     }
   }
 
+  /**
+   * Records a committed write of the principal for its reads to follow, see {@link
+   * SessionConsistency}. The commit time is read from the primary, so that it compares with the
+   * replication heartbeats. Without it, the reads go to the primary for the whole window.
+   *
+   * @param connection the read write connection the write was committed on
+   */
+  public void recordWrite(final Connection connection, final String principal) {
+    if (!sessionConsistency.isEnabled() || principal == null) {
+      return;
+    }
+    long committedAt = Long.MAX_VALUE;
+    try (PreparedStatement statement = connection.prepareStatement(PRIMARY_TIME);
+        ResultSet rs = statement.executeQuery()) {
+      if (rs.next()) {
+        committedAt = rs.getTimestamp(1).getTime();
+      }
+    } catch (SQLException e) {
+      LOGGER.warn(
+          "Error reading the commit time of a write of "
+              + principal
+              + ", pinning its reads to the primary for the whole read-your-writes window",
+          e);
+    }
+    sessionConsistency.recordWrite(principal, committedAt);
+  }
+
   private void rollbackAutoCommit(Connection connection) throws SQLException {
     try {
       connection.setAutoCommit(true);
@@ -100,6 +161,18 @@ public class BaseStore {
     return message;
   }
 
+  /** @return <code>rows</code> copies of the row placeholder, comma separated. */
+  protected static String multiRowValues(String row, int rows) {
+    StringBuilder sb = new StringBuilder(rows * (row.length() + 2));
+    for (int i = 0; i < rows; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(row);
+    }
+    return sb.toString();
+  }
+
   protected String getIndexName(String message) {
     return message.substring(
         message.indexOf("for key '") + "for key '".length(), message.length() - 1);
@@ -18,6 +18,7 @@
 package net.opentsdb.horizon.store;
 
 import net.opentsdb.horizon.model.Content;
+import net.opentsdb.horizon.model.ContentDictionary;
 import net.opentsdb.horizon.model.ContentHistory;
 
 import javax.sql.DataSource;
@@ -30,8 +31,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class ContentStore extends BaseStore {
-  public ContentStore(DataSource rwSrc, DataSource roSrc) {
-    super(rwSrc, roSrc);
+  public ContentStore(DataSource rwSrc, DataSource roSrc, SessionConsistency sessionConsistency) {
+    super(rwSrc, roSrc, sessionConsistency);
   }
 
   private static final String CREATE_CONTENT_SQL =
@@ -48,6 +49,90 @@ public class ContentStore extends BaseStore {
     }
   }
 
+  private static final String LIST_CONTENT_SQL =
+      "SELECT sha2, data FROM content WHERE sha2 > ? ORDER BY sha2 LIMIT ?";
+
+  /** Lists the content rows in <code>sha2</code> order, starting after the given one. */
+  public List<Content> listContent(Connection connection, byte[] afterSha2, int limit)
+      throws SQLException {
+    List<Content> contents = new ArrayList<>();
+    try (PreparedStatement statement = connection.prepareStatement(LIST_CONTENT_SQL)) {
+      statement.setBytes(1, afterSha2);
+      statement.setInt(2, limit);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          contents.add(new Content(resultSet.getBytes("sha2"), resultSet.getBytes("data")));
+        }
+      }
+    }
+    return contents;
+  }
+
+  private static final String UPDATE_CONTENT_DATA_SQL = "UPDATE content SET data = ? WHERE sha2 = ?";
+
+  /** Replaces the stored encoding of a content, the content itself and its sha2 don't change. */
+  public void updateContentData(Connection connection, byte[] sha2, byte[] data)
+      throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(UPDATE_CONTENT_DATA_SQL)) {
+      statement.setBytes(1, data);
+      statement.setBytes(2, sha2);
+      statement.executeUpdate();
+    }
+  }
+
+  private static final String CREATE_DICTIONARY_SQL =
+      "INSERT INTO content_dictionary (data, samples, createdtime, createdby) VALUES (?, ?, ?, ?)";
+
+  public int createDictionary(Connection connection, ContentDictionary dictionary)
+      throws SQLException {
+    try (PreparedStatement statement =
+        connection.prepareStatement(CREATE_DICTIONARY_SQL, Statement.RETURN_GENERATED_KEYS)) {
+      statement.setBytes(1, dictionary.getData());
+      statement.setInt(2, dictionary.getSamples());
+      statement.setTimestamp(3, dictionary.getCreatedTime());
+      statement.setString(4, dictionary.getCreatedBy());
+      statement.executeUpdate();
+      try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+        if (generatedKeys.next()) {
+          dictionary.setId(generatedKeys.getInt(1));
+        }
+      }
+    }
+    return dictionary.getId();
+  }
+
+  private static final String GET_DICTIONARY_SQL = "SELECT * FROM content_dictionary WHERE id = ?";
+
+  public ContentDictionary getDictionary(Connection connection, int id) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(GET_DICTIONARY_SQL)) {
+      statement.setInt(1, id);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        return resultSet.next() ? resultSetToDictionary(resultSet) : null;
+      }
+    }
+  }
+
+  private static final String GET_LATEST_DICTIONARY_SQL =
+      "SELECT * FROM content_dictionary ORDER BY id DESC LIMIT 1";
+
+  /** @return the most recently trained dictionary, null if none was trained yet. */
+  public ContentDictionary getLatestDictionary(Connection connection) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(GET_LATEST_DICTIONARY_SQL);
+        ResultSet resultSet = statement.executeQuery()) {
+      return resultSet.next() ? resultSetToDictionary(resultSet) : null;
+    }
+  }
+
+  private static ContentDictionary resultSetToDictionary(ResultSet resultSet) throws SQLException {
+    ContentDictionary dictionary = new ContentDictionary();
+    dictionary.setId(resultSet.getInt("id"));
+    dictionary.setData(resultSet.getBytes("data"));
+    dictionary.setSamples(resultSet.getInt("samples"));
+    dictionary.setCreatedBy(resultSet.getString("createdby"));
+    dictionary.setCreatedTime(resultSet.getTimestamp("createdtime"));
+    return dictionary;
+  }
+
   private static final String CREATE_CONTENT_HISTORY_SQL =
       "INSERT INTO content_history (contenttype, entityid, contentid, createdby, createdtime) SELECT ?, ?, ?, ?, ? FROM (SELECT 1) l "
           + "LEFT JOIN content_history r ON r.contenttype = ? AND r.entityid = ? AND r.contentid = ? AND r.createdby = ? AND r.createdtime = ? "
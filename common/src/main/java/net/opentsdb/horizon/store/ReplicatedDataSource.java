@@ -0,0 +1,32 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.store;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/** Read only data source over replicas of the primary that tracks how far each has caught up. */
+public interface ReplicatedDataSource extends DataSource {
+
+  /**
+   * @param committedAtMillis commit time of a write, on the clock of the primary
+   * @return a connection to a replica known to have applied the write, or null if there's none.
+   */
+  Connection getConnection(long committedAtMillis) throws SQLException;
+}
@@ -0,0 +1,94 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package net.opentsdb.horizon.store;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-your-writes for reads that go to replicas. A successful write records its commit time, on
+ * the clock of the primary, for the principal that made it, and for a window after that the reads
+ * made on behalf of the same principal go to the primary, or to a replica known to have caught up
+ * with the write, see {@link ReplicatedDataSource}. The stores sharing the data sources share an
+ * instance, and writes name their principal, see {@link BaseStore#recordWrite}, while the principal
+ * of the reads is bound to the thread serving the request.
+ */
+public class SessionConsistency {
+
+  /** Reads never follow the writes. */
+  public static final SessionConsistency DISABLED = new SessionConsistency(0);
+
+  private static final long MAX_PRINCIPALS = 100_000;
+
+  private static final ThreadLocal<String> currentPrincipal = new ThreadLocal<>();
+
+  private final Cache<String, Long> lastWrites;
+
+  /** @param windowMillis how long the reads of a principal follow its writes, 0 to disable */
+  public SessionConsistency(final long windowMillis) {
+    this.lastWrites =
+        windowMillis > 0
+            ? CacheBuilder.newBuilder()
+                .expireAfterWrite(windowMillis, TimeUnit.MILLISECONDS)
+                .maximumSize(MAX_PRINCIPALS)
+                .build()
+            : null;
+  }
+
+  public boolean isEnabled() {
+    return lastWrites != null;
+  }
+
+  /** Binds the principal of the request to the current thread, null to unbind. */
+  public static void setPrincipal(final String principal) {
+    if (principal == null) {
+      currentPrincipal.remove();
+    } else {
+      currentPrincipal.set(principal);
+    }
+  }
+
+  public static String getPrincipal() {
+    return currentPrincipal.get();
+  }
+
+  /**
+   * Records a write of the principal, to be called once it's committed.
+   *
+   * @param committedAtMillis the commit time on the clock of the primary
+   */
+  public void recordWrite(final String principal, final long committedAtMillis) {
+    if (lastWrites != null && principal != null) {
+      lastWrites.put(principal, committedAtMillis);
+    }
+  }
+
+  /**
+   * @return the commit time of the last write of the principal bound to the current thread, or 0
+   *     if it made none within the window.
+   */
+  public long lastWrite() {
+    String principal = currentPrincipal.get();
+    if (lastWrites == null || principal == null) {
+      return 0;
+    }
+    Long committedAt = lastWrites.getIfPresent(principal);
+    return committedAt == null ? 0 : committedAt;
+  }
+}
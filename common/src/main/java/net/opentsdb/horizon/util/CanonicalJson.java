@@ -0,0 +1,155 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.util;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Canonical form of json content, so that semantically identical content serializes, and hashes,
+ * the same. Object keys are sorted, integral numbers lose their fraction and exponent, decimals
+ * their trailing zeros, and the configured volatile fields are stripped.
+ *
+ * <p>Volatile fields are given as json pointers, for instance <code>/settings/time/refreshed
+ * </code>, where a <code>*</code> segment matches any key or array index. They are left out of the
+ * hash only, see {@link #canonicalizeKeepingVolatile(Object)}.
+ */
+public class CanonicalJson {
+
+  /** Doubles up to this magnitude represent integers exactly. */
+  private static final double MAX_EXACT_DOUBLE = 9007199254740992d;
+
+  private static final BigInteger MIN_LONG = BigInteger.valueOf(Long.MIN_VALUE);
+  private static final BigInteger MAX_LONG = BigInteger.valueOf(Long.MAX_VALUE);
+
+  private final List<String[]> volatileFields = new ArrayList<>();
+
+  /** @throws IllegalArgumentException if a volatile field is not a json pointer. */
+  public CanonicalJson(final Collection<String> volatileFields) {
+    for (String pointer : volatileFields) {
+      if (pointer.length() < 2 || pointer.charAt(0) != '/') {
+        throw new IllegalArgumentException("Invalid volatile field pointer: " + pointer);
+      }
+      String[] segments = pointer.substring(1).split("/", -1);
+      for (int i = 0; i < segments.length; i++) {
+        segments[i] = segments[i].replace("~1", "/").replace("~0", "~");
+      }
+      this.volatileFields.add(segments);
+    }
+  }
+
+  /**
+   * @param value json bound to maps, lists and scalars.
+   * @return the canonical copy of the value.
+   */
+  public Object canonicalize(final Object value) {
+    return canonicalize(value, volatileFields, 0);
+  }
+
+  /** @return the canonical copy of the value, volatile fields included. */
+  public Object canonicalizeKeepingVolatile(final Object value) {
+    return canonicalize(value, Collections.emptyList(), 0);
+  }
+
+  public boolean hasVolatileFields() {
+    return !volatileFields.isEmpty();
+  }
+
+  private static Object canonicalize(
+      final Object value, final List<String[]> pointers, final int depth) {
+    if (value instanceof Map) {
+      Map<String, Object> sorted = new TreeMap<>();
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        String key = String.valueOf(entry.getKey());
+        List<String[]> matching = matching(pointers, depth, key);
+        if (matching != null) {
+          sorted.put(key, canonicalize(entry.getValue(), matching, depth + 1));
+        }
+      }
+      return sorted;
+    }
+    if (value instanceof Collection) {
+      Collection<?> collection = (Collection<?>) value;
+      List<Object> list = new ArrayList<>(collection.size());
+      int index = 0;
+      for (Object element : collection) {
+        List<String[]> matching = matching(pointers, depth, String.valueOf(index++));
+        if (matching != null) {
+          list.add(canonicalize(element, matching, depth + 1));
+        }
+      }
+      return list;
+    }
+    if (value instanceof Number) {
+      return canonicalNumber((Number) value);
+    }
+    return value;
+  }
+
+  /** @return the pointers going deeper through the key, null if one ends on it. */
+  private static List<String[]> matching(
+      final List<String[]> pointers, final int depth, final String key) {
+    if (pointers.isEmpty()) {
+      return pointers;
+    }
+    List<String[]> matching = new ArrayList<>();
+    for (String[] pointer : pointers) {
+      if (pointer[depth].equals(key) || pointer[depth].equals("*")) {
+        if (pointer.length == depth + 1) {
+          return null;
+        }
+        matching.add(pointer);
+      }
+    }
+    return matching;
+  }
+
+  private static Object canonicalNumber(final Number number) {
+    if (number instanceof Integer
+        || number instanceof Long
+        || number instanceof Short
+        || number instanceof Byte) {
+      return number.longValue();
+    }
+    if (number instanceof BigInteger) {
+      return canonicalInteger((BigInteger) number);
+    }
+    if (number instanceof BigDecimal) {
+      BigDecimal decimal = ((BigDecimal) number).stripTrailingZeros();
+      return decimal.scale() <= 0 ? canonicalInteger(decimal.toBigIntegerExact()) : decimal;
+    }
+    double value = number.doubleValue();
+    if (value == Math.rint(value) && Math.abs(value) <= MAX_EXACT_DOUBLE) {
+      return (long) value;
+    }
+    return value;
+  }
+
+  private static Number canonicalInteger(final BigInteger value) {
+    if (value.compareTo(MIN_LONG) >= 0 && value.compareTo(MAX_LONG) <= 0) {
+      return value.longValue();
+    }
+    return value;
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import net.opentsdb.horizon.codec.ContentCodecs;
+import net.opentsdb.horizon.codec.ContentEncoder;
+import net.opentsdb.horizon.model.Content;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Serializes, hashes and encodes content in a single pass. The json is streamed as UTF-8 through
+ * the digest into the encoder of the configured codec, so the uncompressed content is never held
+ * in memory, neither as a String nor as a byte array.
+ */
+public final class ContentWriter {
+
+  private static volatile CanonicalJson canonicalJson;
+
+  private ContentWriter() {}
+
+  /**
+   * Writes content in its canonical form from now on, so that semantically identical content is
+   * stored once. The stored json is rewritten: its keys are sorted and its numbers normalized, e.g.
+   * <code>1.0</code> is stored as <code>1</code>. The volatile fields are stored but not hashed, so
+   * content differing only in them shares the row, and the volatile values, of the first write.
+   * Null, the default, writes content as is.
+   */
+  public static void setCanonicalJson(final CanonicalJson canonicalJson) {
+    ContentWriter.canonicalJson = canonicalJson;
+  }
+
+  /**
+   * @return the same content as <code>compress(serialize(view).getBytes())</code>, in its
+   *     canonical form if enabled.
+   */
+  public static Content write(final Object view, final Digester digester) throws IOException {
+    CanonicalJson canonical = canonicalJson;
+    if (canonical == null) {
+      return write(digester, generator -> JsonCodec.writer().writeValue(generator, view));
+    }
+    Object tree = toTree(view);
+    if (!canonical.hasVolatileFields()) {
+      Object value = canonical.canonicalize(tree);
+      return write(digester, generator -> JsonCodec.writer().writeValue(generator, value));
+    }
+    Object hashed = canonical.canonicalize(tree);
+    Object stored = canonical.canonicalizeKeepingVolatile(tree);
+    return write(
+        digester,
+        generator -> JsonCodec.writer().writeValue(generator, hashed),
+        generator -> JsonCodec.writer().writeValue(generator, stored));
+  }
+
+  /**
+   * Copies the json value the parser points to token by token, without binding it to maps and
+   * lists. The canonical form needs the keys of every object at once, so the value is bound first
+   * when it's enabled.
+   */
+  public static Content write(final JsonParser parser, final Digester digester)
+      throws IOException {
+    if (canonicalJson != null) {
+      return write(JsonCodec.reader(Object.class).readValue(parser), digester);
+    }
+    return write(digester, generator -> generator.copyCurrentStructure(parser));
+  }
+
+  /** Binds beans to maps, so that their properties get canonicalized too. */
+  private static Object toTree(final Object view) {
+    if (view == null
+        || view instanceof Map
+        || view instanceof Collection
+        || view instanceof Number
+        || view instanceof String
+        || view instanceof Boolean) {
+      return view;
+    }
+    return JsonCodec.mapper().convertValue(view, Object.class);
+  }
+
+  @FunctionalInterface
+  private interface JsonWriter {
+    void write(JsonGenerator generator) throws IOException;
+  }
+
+  private static Content write(final Digester digester, final JsonWriter writer)
+      throws IOException {
+    MessageDigest digest = digester.threadDigest();
+    try (ContentEncoder encoder = ContentCodecs.newEncoder()) {
+      try (JsonGenerator generator = createGenerator(new DigestOutputStream(encoder, digest))) {
+        writer.write(generator);
+      }
+      byte[] data = encoder.finish();
+      return new Content(digest.digest(), data);
+    } finally {
+      digest.reset();
+    }
+  }
+
+  /** Hashes the json of one writer and stores the json of the other. */
+  private static Content write(
+      final Digester digester, final JsonWriter hashed, final JsonWriter stored)
+      throws IOException {
+    MessageDigest digest = digester.threadDigest();
+    try {
+      OutputStream hashOnly = new DigestOutputStream(OutputStream.nullOutputStream(), digest);
+      try (JsonGenerator generator = createGenerator(hashOnly)) {
+        hashed.write(generator);
+      }
+      byte[] sha2 = digest.digest();
+      try (ContentEncoder encoder = ContentCodecs.newEncoder()) {
+        try (JsonGenerator generator = createGenerator(encoder)) {
+          stored.write(generator);
+        }
+        return new Content(sha2, encoder.finish());
+      }
+    } finally {
+      digest.reset();
+    }
+  }
+
+  private static JsonGenerator createGenerator(final OutputStream out) throws IOException {
+    return JsonCodec.mapper()
+        .getFactory()
+        .createGenerator(out)
+        .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+  }
+}
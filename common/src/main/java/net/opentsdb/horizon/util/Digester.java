@@ -0,0 +1,122 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.util;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Thread safe message digest. {@link MessageDigest} keeps its state between calls and must not be
+ * shared across threads, so every thread gets its own instance, and no lock is taken on the hot
+ * path. Strings made of ASCII characters only, like the folder paths, are hashed from a per-thread
+ * scratch buffer instead of a copy from {@link String#getBytes()}.
+ */
+public class Digester {
+
+  public static final String MD5 = "MD5";
+  public static final String SHA_256 = "SHA-256";
+
+  /** Longer strings are hashed from a copy rather than growing the scratch buffer. */
+  private static final int MAX_SCRATCH_BYTES = 64 * 1024;
+
+  private final String algorithm;
+  private final ThreadLocal<State> states;
+
+  /** @throws IllegalArgumentException if the algorithm is not supported by the JVM. */
+  public Digester(final String algorithm) {
+    newDigest(algorithm);
+    this.algorithm = algorithm;
+    this.states = ThreadLocal.withInitial(() -> new State(newDigest(algorithm)));
+  }
+
+  public String getAlgorithm() {
+    return algorithm;
+  }
+
+  public byte[] digest(final byte[] bytes) {
+    return digest(bytes, 0, bytes.length);
+  }
+
+  public byte[] digest(final byte[] bytes, final int offset, final int length) {
+    MessageDigest digest = states.get().digest;
+    digest.update(bytes, offset, length);
+    return digest.digest();
+  }
+
+  /** Hashes the remaining bytes of the buffer, leaving its position at the limit. */
+  public byte[] digest(final ByteBuffer buffer) {
+    MessageDigest digest = states.get().digest;
+    digest.update(buffer);
+    return digest.digest();
+  }
+
+  /** @return the same hash as <code>digest(value.getBytes())</code>. */
+  public byte[] digest(final String value) {
+    State state = states.get();
+    int length = value.length();
+    if (length > MAX_SCRATCH_BYTES) {
+      return digest(value.getBytes());
+    }
+    byte[] scratch = state.scratch(length);
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c >= 0x80) {
+        // not ASCII, leave the encoding to the platform charset like String.getBytes() does
+        return digest(value.getBytes());
+      }
+      scratch[i] = (byte) c;
+    }
+    state.digest.update(scratch, 0, length);
+    return state.digest.digest();
+  }
+
+  /**
+   * @return the reset digest of the calling thread, for hashing a stream. The hash must be
+   *     completed before this digester is used again on the same thread.
+   */
+  MessageDigest threadDigest() {
+    MessageDigest digest = states.get().digest;
+    digest.reset();
+    return digest;
+  }
+
+  private static MessageDigest newDigest(final String algorithm) {
+    try {
+      return MessageDigest.getInstance(algorithm);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalArgumentException("Unsupported digest algorithm: " + algorithm, e);
+    }
+  }
+
+  private static class State {
+    private final MessageDigest digest;
+    private byte[] scratch = new byte[512];
+
+    private State(final MessageDigest digest) {
+      this.digest = digest;
+    }
+
+    private byte[] scratch(final int length) {
+      if (scratch.length < length) {
+        scratch = new byte[Math.max(length, Math.min(scratch.length * 2, MAX_SCRATCH_BYTES))];
+      }
+      return scratch;
+    }
+  }
+}
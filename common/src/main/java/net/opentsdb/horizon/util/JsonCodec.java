@@ -0,0 +1,67 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link ObjectMapper} shared by the services, the stores and the REST layer, so that json is
+ * configured in one place and serializers are only built once. The Blackbird module replaces the
+ * reflective property access with generated lambdas.
+ *
+ * <p>Readers and writers bound to a type are cached, each call on them skips the per call setup
+ * done by the <code>ObjectMapper</code> methods.
+ */
+public final class JsonCodec {
+
+  private static final ObjectMapper mapper = newMapper();
+  private static final ObjectWriter writer = mapper.writer();
+  private static final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+  private static final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+  private JsonCodec() {}
+
+  /** @return a new mapper with the shared configuration, for callers adding mixins of their own. */
+  public static ObjectMapper newMapper() {
+    return new ObjectMapper().registerModule(new BlackbirdModule());
+  }
+
+  public static ObjectMapper mapper() {
+    return mapper;
+  }
+
+  public static ObjectReader reader(final Class<?> type) {
+    return readers.computeIfAbsent(type, mapper::readerFor);
+  }
+
+  /** @return a writer serializing values by their runtime type. */
+  public static ObjectWriter writer() {
+    return writer;
+  }
+
+  /** @return a writer of <code>type</code>, values are serialized as that type. */
+  public static ObjectWriter writer(final Class<?> type) {
+    return writers.computeIfAbsent(type, mapper::writerFor);
+  }
+}
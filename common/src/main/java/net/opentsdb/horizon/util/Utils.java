@@ -17,16 +17,16 @@
 
 package net.opentsdb.horizon.util;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.slugify.Slugify;
+import net.opentsdb.horizon.codec.ContentCodecs;
+import net.opentsdb.horizon.codec.GzipCodec;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.Map;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 public class Utils {
 
@@ -34,7 +34,6 @@ public class Utils {
   private static final byte BYTE_0 = 0;
 
   private static final Slugify slug = new Slugify();
-  private static ObjectMapper objectMapper = new ObjectMapper();
 
   public static boolean isNullOrEmpty(String s) {
     return s == null || s.isEmpty();
@@ -59,39 +58,86 @@ public class Utils {
   }
 
   public static String serialize(final Object content) throws IOException {
-    return objectMapper.writeValueAsString(content);
+    return JsonCodec.writer().writeValueAsString(content);
   }
 
   public static <T> T deSerialize(final byte[] bytes, Class<T> type) throws IOException {
-    return deSerialize(new String(bytes), type);
+    return JsonCodec.reader(type).readValue(bytes);
   }
 
   public static <T> T deSerialize(final String data, Class<T> type) throws IOException {
-    return objectMapper.readValue(data, type);
+    return JsonCodec.reader(type).readValue(data);
   }
 
+  /** Encodes the serialized content with the configured {@link ContentCodecs codec}. */
   public static byte[] compress(final byte[] data) throws IOException {
-    try (ByteArrayOutputStream bos = new ByteArrayOutputStream(data.length)) {
-      try (GZIPOutputStream gzip = new GZIPOutputStream(bos)) {
-        gzip.write(data);
-        gzip.flush();
-      }
+    return ContentCodecs.encode(data);
+  }
+
+  /**
+   * Builds a gzip response body for <code>view</code> with the already compressed json spliced in
+   * as the value of <code>field</code>. The result is a multi-member gzip stream, so the content is
+   * never decompressed on the server side.
+   */
+  public static byte[] compressedEnvelope(
+      final Object view, final String field, final byte[] compressedJson) throws IOException {
+    String json = serialize(view);
+    StringBuilder prefix = new StringBuilder(json.length() + field.length() + 4);
+    prefix.append(json, 0, json.length() - 1);
+    if (json.length() > 2) {
+      prefix.append(',');
+    }
+    prefix.append('"').append(field).append("\":");
+
+    byte[] head = GzipCodec.INSTANCE.encode(prefix.toString().getBytes(StandardCharsets.UTF_8));
+    byte[] body = ContentCodecs.toGzip(compressedJson);
+    byte[] tail = GzipCodec.INSTANCE.encode(new byte[] {'}'});
+    try (ByteArrayOutputStream bos =
+        new ByteArrayOutputStream(head.length + body.length + tail.length)) {
+      bos.write(head);
+      bos.write(body);
+      bos.write(tail);
       return bos.toByteArray();
     }
   }
 
-  public static byte[] decompress(final byte[] compressed) throws IOException {
-    try (ByteArrayInputStream in = new ByteArrayInputStream(compressed)) {
-      try (GZIPInputStream gzip = new GZIPInputStream(in)) {
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-          int length;
-          byte[] buffer = new byte[1024];
-          while ((length = gzip.read(buffer)) > 0) {
-            out.write(buffer, 0, length);
+  /** @return true if the <code>Accept-Encoding</code> header value allows a gzip response. */
+  public static boolean acceptsGzip(final String acceptEncoding) {
+    if (isNullOrEmpty(acceptEncoding)) {
+      return false;
+    }
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parts = coding.trim().split(";");
+      if (!parts[0].trim().equalsIgnoreCase("gzip")) {
+        continue;
+      }
+      for (int i = 1; i < parts.length; i++) {
+        String param = parts[i].trim();
+        if (param.startsWith("q=")) {
+          try {
+            return Double.parseDouble(param.substring(2)) > 0;
+          } catch (NumberFormatException e) {
+            return false;
           }
-          return out.toByteArray();
         }
       }
+      return true;
+    }
+    return false;
+  }
+
+  /** Decodes stored content with the codec it was written with. */
+  public static byte[] decompress(final byte[] compressed) throws IOException {
+    return ContentCodecs.decode(compressed);
+  }
+
+  /**
+   * Decodes stored content straight into the parser, without materializing the serialized json.
+   */
+  public static <T> T decompressAndDeserialize(final byte[] compressed, Class<T> type)
+      throws IOException {
+    try (InputStream in = ContentCodecs.newDecoder(compressed)) {
+      return JsonCodec.reader(type).readValue(in);
     }
   }
 }
@@ -0,0 +1,76 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.view;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import net.opentsdb.horizon.model.Content;
+import net.opentsdb.horizon.util.ContentWriter;
+import net.opentsdb.horizon.util.Digester;
+import net.opentsdb.horizon.util.Utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Content already hashed and encoded while the request body was parsed, see {@link Deserializer}.
+ * It stands in for the json value of a content property, and is written back as that json.
+ */
+@JsonSerialize(using = EncodedContent.Serializer.class)
+public class EncodedContent {
+
+  private static final Digester digester = new Digester(Digester.SHA_256);
+
+  private final Content content;
+
+  public EncodedContent(final Content content) {
+    this.content = content;
+  }
+
+  public Content getContent() {
+    return content;
+  }
+
+  /** Streams the json value of the property into an {@link EncodedContent}. */
+  public static class Deserializer extends JsonDeserializer<Object> {
+
+    @Override
+    public Object deserialize(final JsonParser parser, final DeserializationContext context)
+        throws IOException {
+      return new EncodedContent(ContentWriter.write(parser, digester));
+    }
+  }
+
+  public static class Serializer extends JsonSerializer<EncodedContent> {
+
+    @Override
+    public void serialize(
+        final EncodedContent value,
+        final JsonGenerator generator,
+        final SerializerProvider serializers)
+        throws IOException {
+      byte[] json = Utils.decompress(value.getContent().getData());
+      generator.writeRawValue(new String(json, StandardCharsets.UTF_8));
+    }
+  }
+}
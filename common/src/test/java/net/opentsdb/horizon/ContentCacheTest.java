@@ -0,0 +1,142 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon;
+
+import io.ultrabrew.metrics.Counter;
+import io.ultrabrew.metrics.MetricRegistry;
+import mockit.Expectations;
+import mockit.Injectable;
+import mockit.Verifications;
+import net.opentsdb.horizon.ContentCache.Mode;
+import net.opentsdb.horizon.util.Utils;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ContentCacheTest {
+
+  private static final byte[] JSON = "{\"k1\":\"v1\",\"k2\":\"v2\"}".getBytes();
+
+  @Injectable private MetricRegistry metricRegistry;
+  @Injectable private Counter hitCounter;
+  @Injectable private Counter missCounter;
+  @Injectable private Counter evictionCounter;
+
+  @ParameterizedTest
+  @EnumSource(Mode.class)
+  void readsBackBothForms(Mode mode) throws IOException, NoSuchAlgorithmException {
+    ContentCache cache = new ContentCache(1024 * 1024, mode, new MetricRegistry());
+    byte[] contentId = MessageDigest.getInstance("SHA-256").digest(JSON);
+    byte[] compressed = Utils.compress(JSON);
+
+    assertArrayEquals(JSON, cache.put(contentId, compressed));
+    assertTrue(cache.contains(contentId));
+    assertArrayEquals(JSON, cache.getDecompressed(contentId));
+    if (mode == Mode.DECOMPRESSED) {
+      assertNull(cache.getCompressed(contentId));
+    } else {
+      assertArrayEquals(compressed, cache.getCompressed(contentId));
+    }
+  }
+
+  @Test
+  void countsHitsAndMisses() throws IOException, NoSuchAlgorithmException {
+    new Expectations() {
+      {
+        metricRegistry.counter("content.cache.hit");
+        result = hitCounter;
+        metricRegistry.counter("content.cache.miss");
+        result = missCounter;
+      }
+    };
+    ContentCache cache = new ContentCache(1024 * 1024, Mode.BOTH, metricRegistry);
+    byte[] contentId = MessageDigest.getInstance("SHA-256").digest(JSON);
+
+    assertNull(cache.getDecompressed(contentId));
+    assertFalse(cache.hasContentOf("dashboard:1", false));
+    cache.put(contentId, Utils.compress(JSON));
+    cache.getDecompressed(contentId);
+    cache.getDecompressed(contentId.clone());
+
+    new Verifications() {
+      {
+        hitCounter.inc();
+        times = 2;
+        missCounter.inc();
+        times = 1;
+      }
+    };
+  }
+
+  @Test
+  void evictsWhenOverWeight() throws IOException, NoSuchAlgorithmException {
+    new Expectations() {
+      {
+        metricRegistry.counter("content.cache.eviction");
+        result = evictionCounter;
+      }
+    };
+    ContentCache cache = new ContentCache(JSON.length - 1, Mode.DECOMPRESSED, metricRegistry);
+    byte[] contentId = MessageDigest.getInstance("SHA-256").digest(JSON);
+
+    cache.put(contentId, Utils.compress(JSON), JSON);
+
+    assertFalse(cache.contains(contentId));
+    new Verifications() {
+      {
+        evictionCounter.inc();
+        times = 1;
+      }
+    };
+  }
+
+  @Test
+  void remembersTheContentOfAnEntity() throws IOException, NoSuchAlgorithmException {
+    ContentCache cache = new ContentCache(1024 * 1024, Mode.COMPRESSED, new MetricRegistry());
+    byte[] contentId = MessageDigest.getInstance("SHA-256").digest(JSON);
+
+    assertFalse(cache.hasContentOf("dashboard:1", true));
+    cache.setContentOf("dashboard:1", contentId);
+    assertFalse(cache.hasContentOf("dashboard:1", true));
+    cache.put(contentId, Utils.compress(JSON));
+    assertTrue(cache.hasContentOf("dashboard:1", true));
+    assertFalse(cache.hasContentOf("snapshot:1", true));
+  }
+
+  @Test
+  void onlyHasTheDecompressedContentInDecompressedMode()
+      throws IOException, NoSuchAlgorithmException {
+    ContentCache cache = new ContentCache(1024 * 1024, Mode.DECOMPRESSED, new MetricRegistry());
+    byte[] contentId = MessageDigest.getInstance("SHA-256").digest(JSON);
+    cache.setContentOf("dashboard:1", contentId);
+    cache.put(contentId, Utils.compress(JSON));
+
+    assertTrue(cache.hasContentOf("dashboard:1", false));
+    assertFalse(cache.hasContentOf("dashboard:1", true));
+    assertNull(cache.getCompressed(contentId));
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.codec;
+
+import net.opentsdb.horizon.util.Utils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ContentCodecsTest {
+
+  private static final byte[] JSON =
+      "{\"widgets\":[{\"k1\":\"v1\"},{\"k1\":\"v1\"},{\"k1\":\"v1\"},{\"k1\":\"v1\"}]}".getBytes();
+
+  @Test
+  void decodesEveryCodecByItsHeader() throws IOException {
+    byte[] gzip = GzipCodec.INSTANCE.encode(JSON);
+    byte[] deflate = new DeflateCodec(9).encode(JSON);
+
+    assertSame(GzipCodec.INSTANCE, ContentCodecs.codecOf(gzip));
+    assertEquals(DeflateCodec.ID, ContentCodecs.codecOf(deflate).id());
+    assertArrayEquals(JSON, ContentCodecs.decode(gzip));
+    assertArrayEquals(JSON, ContentCodecs.decode(deflate));
+    assertArrayEquals(new byte[0], ContentCodecs.decode(new DeflateCodec(1).encode(new byte[0])));
+  }
+
+  @Test
+  void roundTripsLz4AndZstd() throws IOException {
+    ContentCodec[] codecs = {
+      ContentCodecs.forName("lz4", 0),
+      ContentCodecs.forName("lz4", 9),
+      ContentCodecs.forName("zstd", 1),
+      ContentCodecs.forName("zstd", 19)
+    };
+    for (ContentCodec codec : codecs) {
+      byte[] encoded = codec.encode(JSON);
+
+      assertEquals(codec.id(), ContentCodecs.codecOf(encoded).id());
+      assertArrayEquals(JSON, ContentCodecs.decode(encoded));
+      assertArrayEquals(new byte[0], ContentCodecs.decode(codec.encode(new byte[0])));
+      assertArrayEquals(
+          JSON,
+          new GZIPInputStream(new ByteArrayInputStream(ContentCodecs.toGzip(encoded)))
+              .readAllBytes());
+    }
+    assertThrows(IllegalArgumentException.class, () -> ContentCodecs.forName("zstd", 23));
+  }
+
+  @Test
+  void convertsDeflateToGzipWithoutRecompressing() throws IOException {
+    byte[] deflate = new DeflateCodec(6).encode(JSON);
+    byte[] gzip = ContentCodecs.toGzip(deflate);
+
+    assertEquals(deflate.length - DeflateCodec.HEADER_LENGTH + 18, gzip.length);
+    assertArrayEquals(JSON, new GZIPInputStream(new ByteArrayInputStream(gzip)).readAllBytes());
+  }
+
+  @Test
+  void envelopesDeflateContent() throws IOException {
+    ContentCodec previous = ContentCodecs.getWriteCodec();
+    ContentCodecs.setWriteCodec(ContentCodecs.forName("deflate", 6));
+    try {
+      Map<String, Object> view = new HashMap<>();
+      view.put("id", 1);
+      byte[] content = Utils.compress("[1,2]".getBytes());
+      byte[] envelope = Utils.compressedEnvelope(view, "content", content);
+
+      assertEquals("{\"id\":1,\"content\":[1,2]}", new String(Utils.decompress(envelope)));
+    } finally {
+      ContentCodecs.setWriteCodec(previous);
+    }
+  }
+
+  @Test
+  void streamsEveryCodec() throws IOException {
+    ContentCodec[] codecs = {
+      GzipCodec.INSTANCE, new DeflateCodec(6), new Lz4Codec(0), new ZstdCodec(3)
+    };
+    for (ContentCodec codec : codecs) {
+      try (InputStream in = ContentCodecs.newDecoder(codec.encode(JSON))) {
+        assertArrayEquals(JSON, in.readAllBytes());
+      }
+      // the pooled inflater is reset between contents
+      try (InputStream in = ContentCodecs.newDecoder(codec.encode(new byte[0]))) {
+        assertEquals(-1, in.read());
+      }
+    }
+  }
+
+  @Test
+  void decodesGzipWrittenByOtherEncoders() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(JSON);
+    }
+    byte[] legacy = out.toByteArray();
+    // same member with the optional file name set
+    byte[] named = new byte[legacy.length + 5];
+    System.arraycopy(legacy, 0, named, 0, 10);
+    named[3] = 8;
+    System.arraycopy(new byte[] {'a', '.', 'j', 's', 0}, 0, named, 10, 5);
+    System.arraycopy(legacy, 10, named, 15, legacy.length - 10);
+    byte[] concatenated = Utils.compressedEnvelope(new HashMap<>(), "k", legacy);
+
+    for (byte[] encoded : new byte[][] {legacy, named}) {
+      assertArrayEquals(JSON, ContentCodecs.decode(encoded));
+      try (InputStream in = ContentCodecs.newDecoder(encoded)) {
+        assertArrayEquals(JSON, in.readAllBytes());
+      }
+    }
+    assertEquals(
+        "{\"k\":" + new String(JSON) + "}", new String(ContentCodecs.decode(concatenated)));
+  }
+
+  @Test
+  void rejectsCorruptedStreams() throws IOException {
+    byte[] corrupted = new DeflateCodec(6).encode(JSON);
+    corrupted[1] ^= 1;
+    byte[] truncated = Arrays.copyOf(GzipCodec.INSTANCE.encode(JSON), 20);
+    byte[] oversized = new DeflateCodec(6).encode(JSON);
+    oversized[5] = 0x7f; // claims an uncompressed length of 2GB
+
+    try (InputStream in = ContentCodecs.newDecoder(corrupted)) {
+      assertThrows(IOException.class, in::readAllBytes);
+    }
+    assertThrows(IOException.class, () -> ContentCodecs.newDecoder(truncated).readAllBytes());
+    assertThrows(IOException.class, () -> ContentCodecs.decode(oversized));
+  }
+
+  @Test
+  void rejectsCorruptedAndUnknownContent() throws IOException {
+    ContentCodec[] codecs = {new DeflateCodec(6), new Lz4Codec(0), new ZstdCodec(3)};
+    for (ContentCodec codec : codecs) {
+      byte[] corrupted = codec.encode(JSON);
+      corrupted[1] ^= 1; // flips a bit of the checksum
+      byte[] truncated = Arrays.copyOf(codec.encode(JSON), 12);
+
+      assertThrows(IOException.class, () -> ContentCodecs.decode(corrupted), codec.name());
+      assertThrows(IOException.class, () -> ContentCodecs.decode(truncated), codec.name());
+    }
+    assertThrows(IOException.class, () -> ContentCodecs.decode(new byte[] {0x7f, 1, 2}));
+    assertThrows(IllegalArgumentException.class, () -> ContentCodecs.forName("brotli", 3));
+    assertTrue(ContentCodecs.forName("GZIP", 0) instanceof GzipCodec);
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.codec;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DictionaryCodecTest {
+
+  private static byte[] dashboard(int i) {
+    return ("{\"version\":3,\"settings\":{\"time\":{\"start\":\"1h\",\"zone\":\"local\"}},"
+            + "\"widgets\":[{\"id\":\"w"
+            + i
+            + "\",\"type\":\"LinechartWidgetComponent\",\"queries\":[{\"namespace\":\"ns"
+            + i
+            + "\",\"metrics\":[{\"name\":\"cpu.busy."
+            + i
+            + "\",\"visual\":{\"visible\":true,\"color\":\"auto\"}}]}]}]}")
+        .getBytes();
+  }
+
+  private static List<byte[]> samples(int count) {
+    List<byte[]> samples = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      samples.add(dashboard(i));
+    }
+    return samples;
+  }
+
+  @Test
+  void compressesSmallContentBetterWithADictionary() throws IOException {
+    byte[] dictionary = DictionaryTrainer.train(samples(1000), 4096);
+    DictionaryCodec codec =
+        new DictionaryCodec(
+            6,
+            id -> {
+              throw new AssertionError("unexpected load of dictionary " + id);
+            });
+    codec.setDictionary(7, dictionary);
+
+    byte[] json = dashboard(1000);
+    byte[] encoded = codec.encode(json);
+    ContentCodecs.register(codec);
+
+    assertTrue(dictionary.length > 0 && dictionary.length <= 4096);
+    assertTrue(encoded.length * 2 < new ZstdCodec(6).encode(json).length);
+    assertArrayEquals(json, ContentCodecs.decode(encoded));
+    assertArrayEquals(
+        json,
+        new GZIPInputStream(new ByteArrayInputStream(ContentCodecs.toGzip(encoded)))
+            .readAllBytes());
+  }
+
+  @Test
+  void loadsOlderDictionariesOnFirstUse() throws IOException {
+    byte[] dictionary = DictionaryTrainer.train(samples(1000), 1024);
+    DictionaryCodec writer = new DictionaryCodec(9, id -> null);
+    writer.setDictionary(1, dictionary);
+    byte[] encoded = writer.encode(dashboard(3));
+
+    AtomicInteger loads = new AtomicInteger();
+    DictionaryCodec reader =
+        new DictionaryCodec(
+            9,
+            id -> {
+              loads.incrementAndGet();
+              return id == 1 ? dictionary : null;
+            });
+    reader.setDictionary(2, dictionary);
+
+    assertArrayEquals(dashboard(3), reader.decode(encoded));
+    assertArrayEquals(dashboard(3), reader.decode(encoded));
+    assertEquals(1, loads.get());
+
+    encoded[2] = 9; // points to an unknown dictionary
+    assertThrows(IOException.class, () -> reader.decode(encoded));
+    assertThrows(
+        IOException.class, () -> new DictionaryCodec(6, id -> null).encode(dashboard(1)));
+  }
+
+  @Test
+  void trainsNothingOnTooFewSamples() {
+    assertEquals(0, DictionaryTrainer.train(samples(2), 4096).length);
+  }
+}
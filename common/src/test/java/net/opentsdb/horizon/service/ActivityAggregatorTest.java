@@ -0,0 +1,176 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.service;
+
+import io.ultrabrew.metrics.MetricRegistry;
+import mockit.Injectable;
+import mockit.Verifications;
+import net.opentsdb.horizon.model.Activity;
+import net.opentsdb.horizon.store.ActivityStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ActivityAggregatorTest {
+
+  @Injectable private ActivityStore store;
+  @Injectable private ExecutorService executorService;
+  @Injectable private ScheduledExecutorService scheduler;
+
+  private List<List<Activity>> activityBatches;
+  private List<List<Activity>> folderBatches;
+  private ActivityAggregator aggregator;
+
+  @BeforeEach
+  void setUp() {
+    activityBatches = new ArrayList<>();
+    folderBatches = new ArrayList<>();
+    aggregator =
+        new ActivityAggregator(store, executorService, scheduler, 1000, 3, new MetricRegistry());
+    aggregator.register("activity", (connection, activities) -> activityBatches.add(activities));
+    aggregator.register(
+        "folder_activity", (connection, activities) -> folderBatches.add(activities));
+  }
+
+  @Test
+  void coalescesRepeatedActivities() throws SQLException {
+    aggregator.add("activity", "u1", (byte) 3, 1);
+    aggregator.add("activity", "u1", (byte) 3, 1);
+    aggregator.add("activity", "u2", (byte) 3, 1);
+    aggregator.add("folder_activity", "u1", (byte) 0, 1);
+
+    aggregator.flush();
+
+    assertEquals(1, activityBatches.size());
+    assertEquals(2, activityBatches.get(0).size());
+    assertEquals(1, folderBatches.size());
+    assertEquals(1, folderBatches.get(0).size());
+
+    new Verifications() {
+      {
+        store.getReadWriteConnection();
+        times = 1;
+        store.commit(withInstanceOf(Connection.class));
+        times = 1;
+      }
+    };
+  }
+
+  @Test
+  void flushesNothingWhenEmpty() throws SQLException {
+    aggregator.flush();
+
+    assertTrue(activityBatches.isEmpty());
+    new Verifications() {
+      {
+        store.getReadWriteConnection();
+        times = 0;
+      }
+    };
+  }
+
+  @Test
+  void dropsNewActivitiesBeyondMaxPending() {
+    aggregator.add("activity", "u1", (byte) 3, 1);
+    aggregator.add("activity", "u1", (byte) 3, 2);
+    aggregator.add("activity", "u1", (byte) 3, 3);
+    aggregator.add("activity", "u1", (byte) 3, 4);
+    aggregator.add("activity", "u1", (byte) 3, 1);
+
+    aggregator.flush();
+
+    assertEquals(3, activityBatches.get(0).size());
+  }
+
+  @Test
+  void rollsBackWhenAWriteFails() throws SQLException {
+    aggregator.register(
+        "activity",
+        (connection, activities) -> {
+          throw new SQLException("boom");
+        });
+    aggregator.add("activity", "u1", (byte) 3, 1);
+
+    aggregator.flush();
+
+    new Verifications() {
+      {
+        store.rollback(withInstanceOf(Connection.class));
+        times = 1;
+        store.commit(withInstanceOf(Connection.class));
+        times = 0;
+      }
+    };
+  }
+
+  @Test
+  void retriesRowByRowWhenABatchFails() throws SQLException {
+    aggregator.register(
+        "activity",
+        (connection, activities) -> {
+          if (activities.size() > 1 || activities.get(0).getEntityId() == 2) {
+            throw new SQLException("boom");
+          }
+          activityBatches.add(activities);
+        });
+    aggregator.add("activity", "u1", (byte) 3, 1);
+    aggregator.add("activity", "u1", (byte) 3, 2);
+    aggregator.add("activity", "u1", (byte) 3, 3);
+
+    aggregator.flush();
+
+    assertEquals(2, activityBatches.size());
+    long written = 0;
+    for (List<Activity> batch : activityBatches) {
+      assertEquals(1, batch.size());
+      written += batch.get(0).getEntityId();
+    }
+    assertEquals(4, written);
+
+    new Verifications() {
+      {
+        store.rollback(withInstanceOf(Connection.class));
+        times = 1;
+      }
+    };
+  }
+
+  @Test
+  void shutdownStopsTheSchedulerAndFlushes() {
+    aggregator.add("activity", "u1", (byte) 3, 1);
+
+    aggregator.shutdown();
+
+    assertEquals(1, activityBatches.size());
+    new Verifications() {
+      {
+        scheduler.shutdown();
+        times = 1;
+      }
+    };
+  }
+}
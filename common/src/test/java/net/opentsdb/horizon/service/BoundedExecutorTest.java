@@ -0,0 +1,88 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.service;
+
+import io.ultrabrew.metrics.MetricRegistry;
+import net.opentsdb.horizon.service.BoundedExecutor.RejectionPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BoundedExecutorTest {
+
+  private final CountDownLatch started = new CountDownLatch(1);
+  private final CountDownLatch release = new CountDownLatch(1);
+  private final List<String> ran = new CopyOnWriteArrayList<>();
+
+  @Test
+  void dropOldestReplacesTheQueuedTask() throws InterruptedException {
+    BoundedExecutor executor = fillUp(RejectionPolicy.DROP_OLDEST);
+    executor.execute(() -> ran.add("newest"));
+    drain(executor);
+
+    assertEquals(List.of("blocking", "newest"), ran);
+  }
+
+  @Test
+  void dropNewestKeepsTheQueuedTask() throws InterruptedException {
+    BoundedExecutor executor = fillUp(RejectionPolicy.DROP_NEWEST);
+    executor.execute(() -> ran.add("newest"));
+    drain(executor);
+
+    assertEquals(List.of("blocking", "queued"), ran);
+  }
+
+  @Test
+  void callerRunsOnTheSubmittingThread() throws InterruptedException {
+    BoundedExecutor executor = fillUp(RejectionPolicy.CALLER_RUNS);
+    Thread caller = Thread.currentThread();
+    executor.execute(() -> ran.add(Thread.currentThread() == caller ? "caller" : "pool"));
+    drain(executor);
+
+    assertEquals(List.of("caller", "blocking", "queued"), ran);
+  }
+
+  private BoundedExecutor fillUp(RejectionPolicy policy) throws InterruptedException {
+    BoundedExecutor executor = new BoundedExecutor("test", 1, 1, policy, new MetricRegistry());
+    executor.execute(
+        () -> {
+          started.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          ran.add("blocking");
+        });
+    started.await();
+    executor.execute(() -> ran.add("queued"));
+    return executor;
+  }
+
+  private void drain(BoundedExecutor executor) throws InterruptedException {
+    release.countDown();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+  }
+}
@@ -24,11 +24,11 @@ import mockit.Expectations;
 import mockit.Injectable;
 import mockit.Tested;
 import mockit.Verifications;
+import net.opentsdb.horizon.util.Digester;
 import net.opentsdb.horizon.util.Utils;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
-import java.security.MessageDigest;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Timestamp;
@@ -43,7 +43,7 @@ import static org.junit.jupiter.api.Assertions.assertIterableEquals;
 public class ContentServiceTest {
 
   @Tested private ContentService service;
-  @Injectable private MessageDigest digest;
+  @Injectable private Digester digest;
   @Injectable private ContentStore store;
   @Injectable private Connection connection;
 
@@ -0,0 +1,149 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.store;
+
+import mockit.Expectations;
+import mockit.Injectable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class SessionConsistencyTest {
+
+  @Injectable private DataSource primary;
+  @Injectable private ReplicatedDataSource replicas;
+  @Injectable private Connection primaryConnection;
+  @Injectable private Connection replicaConnection;
+  @Injectable private PreparedStatement statement;
+  @Injectable private ResultSet resultSet;
+
+  private final SessionConsistency sessionConsistency = new SessionConsistency(60_000);
+
+  @AfterEach
+  void tearDown() {
+    SessionConsistency.setPrincipal(null);
+  }
+
+  @Test
+  void followsOnlyTheWritesOfTheSamePrincipal() {
+    sessionConsistency.recordWrite("u1", 1234);
+
+    SessionConsistency.setPrincipal("u1");
+    assertEquals(1234, sessionConsistency.lastWrite());
+    SessionConsistency.setPrincipal("u2");
+    assertEquals(0, sessionConsistency.lastWrite());
+    SessionConsistency.setPrincipal(null);
+    assertEquals(0, sessionConsistency.lastWrite());
+  }
+
+  @Test
+  void recordsNothingWhenDisabled() {
+    SessionConsistency.setPrincipal("u1");
+    SessionConsistency.DISABLED.recordWrite("u1", 1234);
+
+    assertEquals(0, SessionConsistency.DISABLED.lastWrite());
+  }
+
+  @Test
+  void recordsTheCommitTimeOfThePrimary() throws SQLException {
+    new Expectations() {
+      {
+        primaryConnection.prepareStatement("SELECT CURRENT_TIMESTAMP(3)");
+        result = statement;
+        statement.executeQuery();
+        result = resultSet;
+        resultSet.next();
+        result = true;
+        resultSet.getTimestamp(1);
+        result = new Timestamp(1234);
+      }
+    };
+
+    new BaseStore(primary, replicas, sessionConsistency).recordWrite(primaryConnection, "u1");
+
+    SessionConsistency.setPrincipal("u1");
+    assertEquals(1234, sessionConsistency.lastWrite());
+  }
+
+  @Test
+  void followsTheWholeWindowWithoutTheCommitTime() throws SQLException {
+    new Expectations() {
+      {
+        primaryConnection.prepareStatement(anyString);
+        result = new SQLException("gone");
+      }
+    };
+
+    new BaseStore(primary, replicas, sessionConsistency).recordWrite(primaryConnection, "u1");
+
+    SessionConsistency.setPrincipal("u1");
+    assertEquals(Long.MAX_VALUE, sessionConsistency.lastWrite());
+  }
+
+  @Test
+  void readsFromReplicasWithoutARecentWrite() throws SQLException {
+    SessionConsistency.setPrincipal("u1");
+    new Expectations() {
+      {
+        replicas.getConnection();
+        result = replicaConnection;
+      }
+    };
+
+    assertSame(replicaConnection, new BaseStore(primary, replicas, sessionConsistency).getReadOnlyConnection());
+  }
+
+  @Test
+  void readsFromAReplicaThatCaughtUp() throws SQLException {
+    SessionConsistency.setPrincipal("u1");
+    sessionConsistency.recordWrite("u1", 1234);
+    new Expectations() {
+      {
+        replicas.getConnection(1234L);
+        result = replicaConnection;
+      }
+    };
+
+    assertSame(replicaConnection, new BaseStore(primary, replicas, sessionConsistency).getReadOnlyConnection());
+  }
+
+  @Test
+  void readsFromThePrimaryUntilAReplicaCatchesUp() throws SQLException {
+    SessionConsistency.setPrincipal("u1");
+    sessionConsistency.recordWrite("u1", 1234);
+    new Expectations() {
+      {
+        replicas.getConnection(anyLong);
+        result = null;
+        primary.getConnection();
+        result = primaryConnection;
+      }
+    };
+
+    assertSame(primaryConnection, new BaseStore(primary, replicas, sessionConsistency).getReadOnlyConnection());
+  }
+}
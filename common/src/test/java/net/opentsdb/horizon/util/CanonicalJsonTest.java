@@ -0,0 +1,103 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.opentsdb.horizon.model.Content;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CanonicalJsonTest {
+
+  private static final Digester digester = new Digester(Digester.SHA_256);
+
+  private static String canonical(CanonicalJson canonicalJson, String json) throws IOException {
+    return Utils.serialize(canonicalJson.canonicalize(Utils.deSerialize(json, Object.class)));
+  }
+
+  @Test
+  void sortsKeysAndNormalizesNumbers() throws IOException {
+    CanonicalJson canonicalJson = new CanonicalJson(Collections.emptyList());
+
+    assertEquals(
+        "{\"a\":[1,2.5,-3,100,1.0E21],\"b\":{\"x\":null,\"y\":true},\"c\":\"1.0\"}",
+        canonical(canonicalJson, "{\"c\":\"1.0\",\"b\":{\"y\":true,\"x\":null},"
+            + "\"a\":[1.0,2.50,-3e0,1E2,1e21]}"));
+  }
+
+  @Test
+  void stripsVolatileFields() throws IOException {
+    CanonicalJson canonicalJson =
+        new CanonicalJson(Arrays.asList("/settings/refreshed", "/widgets/*/state", "/a~1b"));
+
+    assertEquals(
+        "{\"settings\":{\"title\":\"t\"},\"widgets\":[{\"id\":1},{\"id\":2}]}",
+        canonical(canonicalJson, "{\"a/b\":0,\"settings\":{\"refreshed\":12,\"title\":\"t\"},"
+            + "\"widgets\":[{\"id\":1,\"state\":\"open\"},{\"state\":{},\"id\":2}]}"));
+    assertThrows(IllegalArgumentException.class, () -> new CanonicalJson(Arrays.asList("a")));
+  }
+
+  @Test
+  void hashesEquivalentContentTheSame() throws IOException {
+    String json = "{\"b\":1.0,\"a\":[{\"y\":2,\"x\":1}]}";
+    ContentWriter.setCanonicalJson(new CanonicalJson(Collections.emptyList()));
+    try {
+      byte[] expected = digester.digest("{\"a\":[{\"x\":1,\"y\":2}],\"b\":1}".getBytes());
+      JsonParser parser = new ObjectMapper().getFactory().createParser(json);
+      parser.nextToken();
+
+      assertArrayEquals(expected, ContentWriter.write(parser, digester).getSha2());
+      assertArrayEquals(
+          expected,
+          ContentWriter.write(Utils.deSerialize(json, Object.class), digester).getSha2());
+    } finally {
+      ContentWriter.setCanonicalJson(null);
+    }
+  }
+
+  @Test
+  void hashesWithoutVolatileFieldsButStoresThem() throws IOException {
+    ContentWriter.setCanonicalJson(new CanonicalJson(Arrays.asList("/settings/refreshed")));
+    try {
+      byte[] expected = digester.digest("{\"settings\":{\"title\":\"t\"}}".getBytes());
+      Content first = ContentWriter.write(
+          Utils.deSerialize("{\"settings\":{\"title\":\"t\",\"refreshed\":1.0}}", Object.class),
+          digester);
+      Content second = ContentWriter.write(
+          Utils.deSerialize("{\"settings\":{\"refreshed\":2,\"title\":\"t\"}}", Object.class),
+          digester);
+
+      assertArrayEquals(expected, first.getSha2());
+      assertArrayEquals(expected, second.getSha2());
+      assertEquals(
+          "{\"settings\":{\"refreshed\":1,\"title\":\"t\"}}",
+          new String(Utils.decompress(first.getData()), StandardCharsets.UTF_8));
+    } finally {
+      ContentWriter.setCanonicalJson(null);
+    }
+  }
+}
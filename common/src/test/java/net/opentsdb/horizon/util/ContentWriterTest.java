@@ -0,0 +1,99 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import net.opentsdb.horizon.model.Content;
+import net.opentsdb.horizon.view.EncodedContent;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ContentWriterTest {
+
+  private static final Digester digester = new Digester(Digester.SHA_256);
+
+  private static Map<String, Object> dashboard() {
+    Map<String, Object> settings = new LinkedHashMap<>();
+    settings.put("title", "cpu \u00e9t\u00e9");
+    settings.put("widgets", Arrays.asList(1, 2.5, true, null, "w"));
+    Map<String, Object> content = new LinkedHashMap<>();
+    content.put("version", 3);
+    content.put("settings", settings);
+    return content;
+  }
+
+  @Test
+  void writesTheSerializedContent() throws IOException {
+    byte[] serialized = Utils.serialize(dashboard()).getBytes("UTF-8");
+
+    Content content = ContentWriter.write(dashboard(), digester);
+
+    assertArrayEquals(digester.digest(serialized), content.getSha2());
+    assertArrayEquals(serialized, Utils.decompress(content.getData()));
+  }
+
+  @Test
+  void streamsContentFromTheRequestBody() throws IOException {
+    String json = "{\"name\":\"d1\",\"content\":" + Utils.serialize(dashboard()) + ",\"id\":1}";
+    ObjectMapper mapper = new ObjectMapper().addMixIn(Request.class, StreamedContent.class);
+
+    Request request = mapper.readValue(json, Request.class);
+
+    assertEquals("d1", request.name);
+    assertEquals(1, request.id);
+    assertTrue(request.content instanceof EncodedContent);
+    Content content = ((EncodedContent) request.content).getContent();
+    assertArrayEquals(ContentWriter.write(dashboard(), digester).getSha2(), content.getSha2());
+    assertEquals(json, mapper.writeValueAsString(request));
+  }
+
+  @Test
+  void leavesTheDigesterUsable() throws IOException {
+    JsonParser parser = new ObjectMapper().getFactory().createParser("{\"a\":[1,");
+    parser.nextToken();
+    try {
+      ContentWriter.write(parser, digester);
+    } catch (IOException expected) {
+      // truncated json
+    }
+    assertArrayEquals(
+        digester.digest("{}".getBytes()), ContentWriter.write(new HashMap<>(), digester).getSha2());
+  }
+
+  static class Request {
+    public String name;
+    public Object content;
+    public int id;
+  }
+
+  private abstract static class StreamedContent {
+    @JsonDeserialize(using = EncodedContent.Deserializer.class)
+    Object content;
+  }
+}
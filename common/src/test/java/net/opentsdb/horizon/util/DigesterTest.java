@@ -0,0 +1,86 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class DigesterTest {
+
+  @Test
+  void matchesMessageDigest() throws Exception {
+    Digester digester = new Digester(Digester.MD5);
+    MessageDigest md5 = MessageDigest.getInstance("MD5");
+
+    String ascii = "/namespace/ns1/dashboards";
+    String unicode = "/user/j\u00f6rg/dashboards";
+    assertArrayEquals(md5.digest(ascii.getBytes()), digester.digest(ascii));
+    assertArrayEquals(md5.digest(unicode.getBytes()), digester.digest(unicode));
+    assertArrayEquals(md5.digest(ascii.getBytes()), digester.digest(ascii.getBytes()));
+    assertArrayEquals(
+        md5.digest(ascii.getBytes()), digester.digest(ByteBuffer.wrap(ascii.getBytes())));
+    assertArrayEquals(md5.digest(new byte[0]), digester.digest(""));
+  }
+
+  @Test
+  void isSafeToShareAcrossThreads() throws Exception {
+    Digester digester = new Digester(Digester.SHA_256);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Integer>> futures = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        final int thread = t;
+        futures.add(
+            executor.submit(
+                () -> {
+                  MessageDigest expected = MessageDigest.getInstance("SHA-256");
+                  int matched = 0;
+                  for (int i = 0; i < 2000; i++) {
+                    String value = "/user/u" + thread + "/folder" + i;
+                    if (MessageDigest.isEqual(
+                        expected.digest(value.getBytes()), digester.digest(value))) {
+                      matched++;
+                    }
+                  }
+                  return matched;
+                }));
+      }
+      for (Future<Integer> future : futures) {
+        assertEquals(2000, future.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void rejectsUnknownAlgorithms() {
+    assertThrows(IllegalArgumentException.class, () -> new Digester("nope"));
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class JsonCodecTest {
+
+  @Test
+  void cachesReadersAndWritersPerType() {
+    assertSame(JsonCodec.reader(Map.class), JsonCodec.reader(Map.class));
+    assertSame(JsonCodec.writer(Map.class), JsonCodec.writer(Map.class));
+  }
+
+  @Test
+  void readsTheSameAsAPlainMapper() throws IOException {
+    byte[] json;
+    try (InputStream in =
+        getClass().getClassLoader().getResourceAsStream("dashboards/d_large.json")) {
+      json = in.readAllBytes();
+    }
+
+    assertEquals(new ObjectMapper().readValue(json, Map.class), Utils.deSerialize(json, Map.class));
+  }
+
+  @Test
+  void bindsBeans() throws IOException {
+    Widget widget = new Widget();
+    widget.setName("w1");
+    widget.setSeries(Arrays.asList("s1", "s2"));
+
+    String json = JsonCodec.writer(Widget.class).writeValueAsString(widget);
+    Widget actual = Utils.deSerialize(json, Widget.class);
+
+    assertEquals("{\"name\":\"w1\",\"series\":[\"s1\",\"s2\"]}", json);
+    assertEquals(widget.getName(), actual.getName());
+    assertEquals(widget.getSeries(), actual.getSeries());
+  }
+
+  public static class Widget {
+    private String name;
+    private List<String> series;
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    public List<String> getSeries() {
+      return series;
+    }
+
+    public void setSeries(List<String> series) {
+      this.series = series;
+    }
+  }
+}
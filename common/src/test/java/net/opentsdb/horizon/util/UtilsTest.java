@@ -23,12 +23,14 @@ import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class UtilsTest {
@@ -81,4 +83,48 @@ public class UtilsTest {
     assertThat(deSerialized, is(content));
   }
 
+  @Test
+  void testCompressedEnvelope() throws IOException {
+    Map<String, String> content = new HashMap();
+    content.put("k1", "v1");
+    Map<String, Object> view = new HashMap();
+    view.put("id", 1);
+
+    byte[] compressedContent = Utils.compress(Utils.serialize(content).getBytes());
+    byte[] envelope = Utils.compressedEnvelope(view, "content", compressedContent);
+
+    Map<String, Object> expected = new HashMap();
+    expected.put("id", 1);
+    expected.put("content", content);
+    assertThat(Utils.deSerialize(Utils.decompress(envelope), Map.class), is(expected));
+  }
+
+  @Test
+  void testCompressedEnvelopeOfEmptyView() throws IOException {
+    byte[] compressedContent = Utils.compress("[1,2]".getBytes());
+    byte[] envelope = Utils.compressedEnvelope(new HashMap(), "content", compressedContent);
+    assertEquals("{\"content\":[1,2]}", new String(Utils.decompress(envelope)));
+  }
+
+  @Test
+  void testCompressedEnvelopeKeepsNonAsciiNames() throws IOException {
+    Map<String, Object> view = new HashMap();
+    view.put("name", "Übersicht – 東京");
+
+    byte[] compressedContent = Utils.compress("{}".getBytes(StandardCharsets.UTF_8));
+    byte[] envelope = Utils.compressedEnvelope(view, "content", compressedContent);
+
+    assertEquals(
+        "{\"name\":\"Übersicht – 東京\",\"content\":{}}",
+        new String(Utils.decompress(envelope), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void testAcceptsGzip() {
+    assertTrue(Utils.acceptsGzip("gzip"));
+    assertTrue(Utils.acceptsGzip("deflate, gzip;q=0.8, br"));
+    assertFalse(Utils.acceptsGzip("gzip;q=0"));
+    assertFalse(Utils.acceptsGzip("deflate, br"));
+    assertFalse(Utils.acceptsGzip(null));
+  }
 }
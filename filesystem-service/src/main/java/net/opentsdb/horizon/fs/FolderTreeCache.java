@@ -0,0 +1,180 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.fs;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ListMultimap;
+import io.ultrabrew.metrics.Counter;
+import io.ultrabrew.metrics.MetricRegistry;
+import net.opentsdb.horizon.fs.model.Folder;
+import net.opentsdb.horizon.fs.store.FolderStore;
+import net.opentsdb.horizon.fs.view.FolderType;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process cache of the dashboard folder metadata, one immutable {@link Tree} per root, that is
+ * per <code>/user/&lt;id&gt;</code> and per <code>/namespace/&lt;alias&gt;</code>. Content is not
+ * cached here, see {@link net.opentsdb.horizon.ContentCache}.
+ *
+ * <p>Writers call {@link #invalidate(Path...)} after their commit. Every root carries a version
+ * stamp that is bumped on invalidation, and a tree loaded while a write was in flight is never
+ * kept, so a reader either sees the whole tree before a move or the whole tree after it. The TTL
+ * bounds the staleness caused by writes on other instances.
+ */
+public class FolderTreeCache {
+
+  private static final String HIT_METRIC = "folder.cache.hit";
+  private static final String MISS_METRIC = "folder.cache.miss";
+  private static final String STALE_METRIC = "folder.cache.stale";
+
+  private final FolderStore folderStore;
+  private final Cache<String, Tree> trees;
+  private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+  private final Counter hitCounter;
+  private final Counter missCounter;
+  private final Counter staleCounter;
+
+  public FolderTreeCache(
+      final FolderStore folderStore,
+      final long ttl,
+      final TimeUnit ttlUnit,
+      final long maxFolders,
+      final MetricRegistry metricRegistry) {
+    this(folderStore, ttl, ttlUnit, maxFolders, metricRegistry, Ticker.systemTicker());
+  }
+
+  FolderTreeCache(
+      final FolderStore folderStore,
+      final long ttl,
+      final TimeUnit ttlUnit,
+      final long maxFolders,
+      final MetricRegistry metricRegistry,
+      final Ticker ticker) {
+    this.folderStore = folderStore;
+    this.trees =
+        CacheBuilder.newBuilder()
+            .expireAfterWrite(ttl, ttlUnit)
+            .maximumWeight(maxFolders)
+            .weigher((String root, Tree tree) -> tree.size())
+            .ticker(ticker)
+            .build();
+    this.hitCounter = metricRegistry.counter(HIT_METRIC);
+    this.missCounter = metricRegistry.counter(MISS_METRIC);
+    this.staleCounter = metricRegistry.counter(STALE_METRIC);
+  }
+
+  /** @return the tree of the root of the given path, loaded with one query on a miss. */
+  public Tree get(final Path path, final Connection connection) throws SQLException {
+    String rootPath = path.getRootPath();
+    Tree tree = trees.getIfPresent(rootPath);
+    if (tree != null) {
+      hitCounter.inc();
+      return tree;
+    }
+    missCounter.inc();
+
+    AtomicLong version = versions.computeIfAbsent(rootPath, r -> new AtomicLong());
+    long stamp = version.get();
+    tree = new Tree(stamp, folderStore.listTree(FolderType.DASHBOARD, rootPath, connection));
+
+    // a missing root is about to be created by the user or namespace service, don't pin it
+    if (tree.get(Path.hash(rootPath)) != null) {
+      trees.put(rootPath, tree);
+      if (version.get() != stamp) {
+        // a writer committed while loading, the next reader loads again
+        trees.asMap().remove(rootPath, tree);
+        staleCounter.inc();
+      }
+    }
+    return tree;
+  }
+
+  /** @return the tree of the root of the given path if cached, null otherwise. */
+  public Tree getIfPresent(final Path path) {
+    Tree tree = trees.getIfPresent(path.getRootPath());
+    if (tree != null) {
+      hitCounter.inc();
+    }
+    return tree;
+  }
+
+  /**
+   * Drops the trees of the roots of the given paths. Called after the commit of a write, the
+   * versions of all the roots are bumped before any tree is dropped.
+   */
+  public void invalidate(final Path... paths) {
+    for (Path path : paths) {
+      versions.computeIfAbsent(path.getRootPath(), r -> new AtomicLong()).incrementAndGet();
+    }
+    for (Path path : paths) {
+      trees.invalidate(path.getRootPath());
+    }
+  }
+
+  /** Immutable snapshot of the folders and files of one root. */
+  public static class Tree {
+    private final long version;
+    private final Map<ByteBuffer, Folder> byPathHash;
+    private final ListMultimap<ByteBuffer, Folder> byParentPathHash;
+
+    Tree(final long version, final List<Folder> folders) {
+      ImmutableMap.Builder<ByteBuffer, Folder> byPath = ImmutableMap.builder();
+      ImmutableListMultimap.Builder<ByteBuffer, Folder> byParent = ImmutableListMultimap.builder();
+      for (Folder folder : folders) {
+        byPath.put(ByteBuffer.wrap(folder.getPathHash()), folder);
+        if (folder.getParentPathHash() != null) {
+          byParent.put(ByteBuffer.wrap(folder.getParentPathHash()), folder);
+        }
+      }
+      this.version = version;
+      this.byPathHash = byPath.build();
+      this.byParentPathHash = byParent.build();
+    }
+
+    public long getVersion() {
+      return version;
+    }
+
+    /** @return the folder or file with the given path hash, null if not found. */
+    public Folder get(final byte[] pathHash) {
+      return byPathHash.get(ByteBuffer.wrap(pathHash));
+    }
+
+    /** @return the direct children of the folder with the given path hash. */
+    public List<Folder> children(final byte[] pathHash) {
+      return byParentPathHash.get(ByteBuffer.wrap(pathHash));
+    }
+
+    public int size() {
+      return byPathHash.size();
+    }
+  }
+}
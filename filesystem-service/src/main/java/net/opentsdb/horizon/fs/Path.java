@@ -17,8 +17,7 @@
 
 package net.opentsdb.horizon.fs;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import net.opentsdb.horizon.util.Digester;
 
 public class Path {
 
@@ -29,15 +28,7 @@ public class Path {
   private String rootName;
   private String leaf;
 
-  private static MessageDigest digest;
-
-  static {
-    try {
-      digest = MessageDigest.getInstance("md5");
-    } catch (NoSuchAlgorithmException e) {
-      throw new IllegalArgumentException(e);
-    }
-  }
+  private static final Digester digest = new Digester(Digester.MD5);
 
   public static Path get(String pathString) throws PathException {
     return new Path(pathString);
@@ -107,6 +98,11 @@ public class Path {
     return leaf;
   }
 
+  /** @return the path of the user or namespace home folder this path belongs to. */
+  public String getRootPath() {
+    return "/" + rootType.name() + "/" + rootName;
+  }
+
   public void stLeaf(String leaf) {
     String parentPath = getParentPath();
     String normalized = normalize(leaf);
@@ -115,15 +111,11 @@ public class Path {
   }
 
   public byte[] hash() {
-    return hash(path.getBytes());
+    return hash(path);
   }
 
   public static byte[] hash(String pathString) {
-    return hash(pathString.getBytes());
-  }
-
-  private static byte[] hash(byte[] bytes) {
-    return digest.digest(bytes);
+    return digest.digest(pathString);
   }
 
   public String getChildPath(String child) {
@@ -17,17 +17,23 @@
 
 package net.opentsdb.horizon.fs.store;
 
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import net.opentsdb.horizon.fs.Path;
 import net.opentsdb.horizon.fs.model.Content;
 import net.opentsdb.horizon.fs.model.File;
 import net.opentsdb.horizon.fs.model.FileHistory;
 import net.opentsdb.horizon.fs.model.Folder;
 import net.opentsdb.horizon.fs.view.FolderType;
+import net.opentsdb.horizon.model.Activity;
 import net.opentsdb.horizon.service.BaseService;
 import net.opentsdb.horizon.store.BaseStore;
+import net.opentsdb.horizon.store.SessionConsistency;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.sql.DataSource;
+import java.nio.ByteBuffer;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -35,15 +41,22 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static net.opentsdb.horizon.fs.store.ResultSetMapper.resultSetToFolderMapper;
 
 public class FolderStore extends BaseStore {
   private static final Logger LOGGER = LoggerFactory.getLogger(FolderStore.class);
+  private static final int MAX_ROWS_PER_INSERT = 500;
+  private static final int MAX_ROWS_PER_UPDATE = 500;
+  private static final int MAX_HASHES_PER_QUERY = 1000;
 
-  public FolderStore(final DataSource rwSrc, final DataSource roSrc) {
-    super(rwSrc, roSrc);
+  public FolderStore(
+      final DataSource rwSrc, final DataSource roSrc, final SessionConsistency sessionConsistency) {
+    super(rwSrc, roSrc, sessionConsistency);
   }
 
   String SQL_INSERT_FOLDER =
@@ -141,6 +154,104 @@ public class FolderStore extends BaseStore {
     }
   }
 
+  private static final String SQL_LIST_DESCENDANTS =
+      "SELECT id, path FROM folder WHERE type = ? AND path LIKE ? ESCAPE '!'";
+
+  /**
+   * Re-parents every descendant of <code>oldPath</code> under <code>newPath</code>. The subtree is
+   * read with one prefix scan on <code>path</code> and rewritten with one <code>CASE</code> update
+   * per chunk, so the cost doesn't grow with the depth of the tree.
+   *
+   * @return number of descendants updated
+   */
+  public int updateSubtreePath(
+      final FolderType folderType,
+      final String oldPath,
+      final String newPath,
+      final Timestamp updatedTime,
+      final String updatedBy,
+      final Connection connection)
+      throws SQLException {
+    List<Folder> descendants = new ArrayList<>();
+    try (PreparedStatement statement = connection.prepareStatement(SQL_LIST_DESCENDANTS)) {
+      statement.setByte(1, folderType.value);
+      statement.setString(2, escapeLike(oldPath) + "/%");
+      try (final ResultSet rs = statement.executeQuery()) {
+        while (rs.next()) {
+          String path = newPath + rs.getString("path").substring(oldPath.length());
+          Folder folder = new Folder();
+          folder.setId(rs.getLong("id"));
+          folder.setPath(path);
+          folder.setPathHash(Path.hash(path));
+          folder.setParentPathHash(Path.hash(path.substring(0, path.lastIndexOf('/'))));
+          descendants.add(folder);
+        }
+      }
+    }
+
+    for (int from = 0; from < descendants.size(); from += MAX_ROWS_PER_UPDATE) {
+      List<Folder> rows =
+          descendants.subList(from, Math.min(from + MAX_ROWS_PER_UPDATE, descendants.size()));
+      // typed hashes, H2 would otherwise pick a character type for the CASE and re-encode them
+      String sql =
+          "UPDATE folder SET path = CASE id"
+              + " WHEN ? THEN ?".repeat(rows.size())
+              + " END, pathhash = CASE id"
+              + " WHEN ? THEN CAST(? AS BINARY(16))".repeat(rows.size())
+              + " END, parentpathhash = CASE id"
+              + " WHEN ? THEN CAST(? AS BINARY(16))".repeat(rows.size())
+              + " END, updatedtime = ?, updatedby = ? WHERE id IN ("
+              + multiRowValues("?", rows.size())
+              + ")";
+      try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        int i = 1;
+        for (Folder folder : rows) {
+          statement.setLong(i++, folder.getId());
+          statement.setString(i++, folder.getPath());
+        }
+        for (Folder folder : rows) {
+          statement.setLong(i++, folder.getId());
+          statement.setBytes(i++, folder.getPathHash());
+        }
+        for (Folder folder : rows) {
+          statement.setLong(i++, folder.getId());
+          statement.setBytes(i++, folder.getParentPathHash());
+        }
+        statement.setTimestamp(i++, updatedTime);
+        statement.setString(i++, updatedBy);
+        for (Folder folder : rows) {
+          statement.setLong(i++, folder.getId());
+        }
+        statement.executeUpdate();
+      }
+    }
+    return descendants.size();
+  }
+
+  private static final String SQL_LIST_TREE =
+      "SELECT * FROM folder WHERE type = ? AND (path = ? OR path LIKE ? ESCAPE '!')";
+
+  /** Lists a folder and all its descendants with one prefix scan on <code>path</code>. */
+  public List<Folder> listTree(FolderType folderType, String path, Connection connection)
+      throws SQLException {
+    List<Folder> folders = new ArrayList<>();
+    try (PreparedStatement statement = connection.prepareStatement(SQL_LIST_TREE)) {
+      statement.setByte(1, folderType.value);
+      statement.setString(2, path);
+      statement.setString(3, escapeLike(path) + "/%");
+      try (final ResultSet rs = statement.executeQuery()) {
+        while (rs.next()) {
+          folders.add(resultSetToFolderMapper(rs));
+        }
+      }
+    }
+    return folders;
+  }
+
+  private static String escapeLike(final String value) {
+    return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+  }
+
   public void updateFile(File file, Connection connection) throws SQLException {
     String sql =
         "UPDATE folder set name = ?, path = ?, pathhash = ?, parentpathhash = ?, contentid = ?, updatedtime = ?, updatedby = ? where id = ?";
@@ -236,11 +347,18 @@ public class FolderStore extends BaseStore {
 
   public Folder getFileOrFolderById(FolderType folderType, long id, Connection connection)
       throws SQLException {
-    String sql =
-        "SELECT f.id, f.name, f.type, f.path, f.pathhash, f.parentpathhash, f.contentid, f.createdtime, f.createdby, f.updatedtime, f.updatedby, c.data "
-            + "FROM folder f LEFT OUTER JOIN content c ON f.contentid = c.sha2 "
-            + "WHERE f.type = ? AND f.id = ?";
-    return getFileAndContentById(folderType, id, connection, sql);
+    String sql = "SELECT * FROM folder WHERE type = ? AND id = ?";
+    File file = null;
+    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+      statement.setByte(1, folderType.value);
+      statement.setLong(2, id);
+      try (final ResultSet rs = statement.executeQuery()) {
+        while (rs.next()) {
+          file = resultSetToFile(rs);
+        }
+      }
+    }
+    return file;
   }
 
   public Folder getFolderByPathHash(FolderType folderType, byte[] pathHash, Connection connection)
@@ -276,18 +394,7 @@ public class FolderStore extends BaseStore {
       statement.setLong(2, id);
       try (final ResultSet rs = statement.executeQuery()) {
         while (rs.next()) {
-          file = new File();
-          file.setId(rs.getLong("id"));
-          file.setName(rs.getString("name"));
-          file.setType(FolderType.values()[rs.getInt("type")]);
-          file.setPath(rs.getString("path"));
-          file.setPathHash(rs.getBytes("pathhash"));
-          file.setParentPathHash(rs.getBytes("parentpathhash"));
-          file.setContentid(rs.getBytes("contentid"));
-          file.setCreatedTime(rs.getTimestamp("createdtime"));
-          file.setCreatedBy(rs.getString("createdby"));
-          file.setUpdatedTime(rs.getTimestamp("updatedtime"));
-          file.setUpdatedBy(rs.getString("updatedby"));
+          file = resultSetToFile(rs);
           file.setContent(rs.getBytes("data"));
         }
       }
@@ -304,24 +411,29 @@ public class FolderStore extends BaseStore {
       statement.setLong(2, id);
       try (final ResultSet rs = statement.executeQuery()) {
         while (rs.next()) {
-          file = new File();
-          file.setId(rs.getLong("id"));
-          file.setName(rs.getString("name"));
-          file.setType(FolderType.values()[rs.getInt("type")]);
-          file.setPath(rs.getString("path"));
-          file.setPathHash(rs.getBytes("pathhash"));
-          file.setParentPathHash(rs.getBytes("parentpathhash"));
-          file.setContentid(rs.getBytes("contentid"));
-          file.setCreatedTime(rs.getTimestamp("createdtime"));
-          file.setCreatedBy(rs.getString("createdby"));
-          file.setUpdatedTime(rs.getTimestamp("updatedtime"));
-          file.setUpdatedBy(rs.getString("updatedby"));
+          file = resultSetToFile(rs);
         }
       }
     }
     return file;
   }
 
+  private static File resultSetToFile(ResultSet rs) throws SQLException {
+    File file = new File();
+    file.setId(rs.getLong("id"));
+    file.setName(rs.getString("name"));
+    file.setType(FolderType.values()[rs.getInt("type")]);
+    file.setPath(rs.getString("path"));
+    file.setPathHash(rs.getBytes("pathhash"));
+    file.setParentPathHash(rs.getBytes("parentpathhash"));
+    file.setContentid(rs.getBytes("contentid"));
+    file.setCreatedTime(rs.getTimestamp("createdtime"));
+    file.setCreatedBy(rs.getString("createdby"));
+    file.setUpdatedTime(rs.getTimestamp("updatedtime"));
+    file.setUpdatedBy(rs.getString("updatedby"));
+    return file;
+  }
+
   public List<Folder> listByParentPathHash(
       FolderType folderType, byte[] parentPathHash, Connection connection) throws SQLException {
     String sql = "SELECT * FROM folder WHERE type = ? AND parentpathhash = ?";
@@ -350,6 +462,58 @@ public class FolderStore extends BaseStore {
     return folders;
   }
 
+  private static final String SQL_GET_BY_PATH_HASHES =
+      "SELECT * FROM folder WHERE type = ? AND pathhash IN ";
+  private static final String SQL_LIST_BY_PARENT_PATH_HASHES =
+      "SELECT * FROM folder WHERE type = ? AND parentpathhash IN ";
+
+  /** Loads the folders and files with the given path hashes, keyed by path hash. */
+  public Map<ByteBuffer, Folder> getByPathHashes(
+      FolderType folderType, Collection<byte[]> pathHashes, Connection connection)
+      throws SQLException {
+    Map<ByteBuffer, Folder> folders = new HashMap<>();
+    for (Folder folder : listByHashes(SQL_GET_BY_PATH_HASHES, folderType, pathHashes, connection)) {
+      folders.put(ByteBuffer.wrap(folder.getPathHash()), folder);
+    }
+    return folders;
+  }
+
+  /** Lists the direct children of all the given parents, keyed by the parent path hash. */
+  public ListMultimap<ByteBuffer, Folder> listByParentPathHashes(
+      FolderType folderType, Collection<byte[]> parentPathHashes, Connection connection)
+      throws SQLException {
+    ListMultimap<ByteBuffer, Folder> folders = ArrayListMultimap.create();
+    for (Folder folder :
+        listByHashes(SQL_LIST_BY_PARENT_PATH_HASHES, folderType, parentPathHashes, connection)) {
+      folders.put(ByteBuffer.wrap(folder.getParentPathHash()), folder);
+    }
+    return folders;
+  }
+
+  private List<Folder> listByHashes(
+      String sqlPrefix, FolderType folderType, Collection<byte[]> hashes, Connection connection)
+      throws SQLException {
+    List<Folder> folders = new ArrayList<>();
+    List<byte[]> list = new ArrayList<>(hashes);
+    for (int from = 0; from < list.size(); from += MAX_HASHES_PER_QUERY) {
+      List<byte[]> chunk = list.subList(from, Math.min(from + MAX_HASHES_PER_QUERY, list.size()));
+      String sql = sqlPrefix + "(" + multiRowValues("?", chunk.size()) + ")";
+      try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        int i = 1;
+        statement.setByte(i++, folderType.value);
+        for (byte[] hash : chunk) {
+          statement.setBytes(i++, hash);
+        }
+        try (final ResultSet rs = statement.executeQuery()) {
+          while (rs.next()) {
+            folders.add(resultSetToFolderMapper(rs));
+          }
+        }
+      }
+    }
+    return folders;
+  }
+
   public File getFileAndContentByPathHash(
       FolderType folderType, byte[] pathHash, Connection connection) throws SQLException {
     String sql =
@@ -484,18 +648,26 @@ public class FolderStore extends BaseStore {
     }
   }
 
-  public int addActivity(final long id, final String userId, final Connection connection)
+  /** Upserts the dashboard visits with multi-row inserts, the latest visit wins. */
+  public void addActivities(final Connection connection, final List<Activity> activities)
       throws SQLException {
-    String sql =
-        "INSERT INTO folder_activity (userid, folderid, lastvisitedtime) values (?, ?, ?) "
-            + "ON DUPLICATE KEY UPDATE lastvisitedtime = ?";
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
-      Timestamp now = BaseService.now();
-      statement.setString(1, userId);
-      statement.setLong(2, id);
-      statement.setTimestamp(3, now);
-      statement.setTimestamp(4, now);
-      return statement.executeUpdate();
+    for (int from = 0; from < activities.size(); from += MAX_ROWS_PER_INSERT) {
+      List<Activity> rows =
+          activities.subList(from, Math.min(from + MAX_ROWS_PER_INSERT, activities.size()));
+      String sql =
+          "INSERT INTO folder_activity (userid, folderid, lastvisitedtime) VALUES "
+              + multiRowValues("(?, ?, ?)", rows.size())
+              + " ON DUPLICATE KEY UPDATE lastvisitedtime = "
+              + "GREATEST(lastvisitedtime, VALUES(lastvisitedtime))";
+      try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        int i = 1;
+        for (Activity activity : rows) {
+          statement.setString(i++, activity.getUserId());
+          statement.setLong(i++, activity.getEntityId());
+          statement.setTimestamp(i++, activity.getTimestamp());
+        }
+        statement.executeUpdate();
+      }
     }
   }
 
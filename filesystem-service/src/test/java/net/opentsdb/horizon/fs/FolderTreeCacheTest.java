@@ -0,0 +1,130 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.fs;
+
+import io.ultrabrew.metrics.MetricRegistry;
+import mockit.Delegate;
+import mockit.Expectations;
+import mockit.Injectable;
+import mockit.Verifications;
+import net.opentsdb.horizon.fs.FolderTreeCache.Tree;
+import net.opentsdb.horizon.fs.model.Folder;
+import net.opentsdb.horizon.fs.store.FolderStore;
+import net.opentsdb.horizon.fs.view.FolderType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class FolderTreeCacheTest {
+
+  @Injectable private FolderStore folderStore;
+  @Injectable private Connection connection;
+
+  private FolderTreeCache cache;
+  private Path path;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    cache = new FolderTreeCache(folderStore, 60, TimeUnit.SECONDS, 1000, new MetricRegistry());
+    path = Path.get("/namespace/ns1/dashboards");
+  }
+
+  @Test
+  void servesTheTreeFromMemoryUntilInvalidated() throws Exception {
+    new Expectations() {
+      {
+        folderStore.listTree(FolderType.DASHBOARD, "/namespace/ns1", connection);
+        result = tree();
+      }
+    };
+
+    Tree tree = cache.get(path, connection);
+    assertEquals(2, tree.children(Path.hash("/namespace/ns1")).size());
+    assertNotNull(tree.get(path.hash()));
+    assertNotNull(cache.get(Path.get("/namespace/ns1"), connection));
+
+    cache.invalidate(path);
+    assertNull(cache.getIfPresent(path));
+    cache.get(path, connection);
+
+    new Verifications() {
+      {
+        folderStore.listTree(FolderType.DASHBOARD, "/namespace/ns1", connection);
+        times = 2;
+      }
+    };
+  }
+
+  @Test
+  void dropsATreeLoadedDuringAWrite() throws Exception {
+    new Expectations() {
+      {
+        folderStore.listTree(FolderType.DASHBOARD, "/namespace/ns1", connection);
+        result =
+            new Delegate<List<Folder>>() {
+              List<Folder> delegate() {
+                // a writer commits while the tree is read
+                cache.invalidate(path);
+                return tree();
+              }
+            };
+      }
+    };
+
+    assertNotNull(cache.get(path, connection));
+    assertNull(cache.getIfPresent(path));
+  }
+
+  @Test
+  void doesNotCacheAMissingRoot() throws Exception {
+    new Expectations() {
+      {
+        folderStore.listTree(FolderType.DASHBOARD, "/namespace/ns1", connection);
+        result = Collections.emptyList();
+      }
+    };
+
+    assertNull(cache.get(path, connection).get(path.hash()));
+    assertNull(cache.getIfPresent(path));
+  }
+
+  private static List<Folder> tree() {
+    return Arrays.asList(
+        folder("/namespace/ns1", "/namespace"),
+        folder("/namespace/ns1/dashboards", "/namespace/ns1"),
+        folder("/namespace/ns1/readme", "/namespace/ns1"));
+  }
+
+  private static Folder folder(String path, String parentPath) {
+    Folder folder = new Folder();
+    folder.setType(FolderType.DASHBOARD);
+    folder.setPath(path);
+    folder.setPathHash(Path.hash(path));
+    folder.setParentPathHash(Path.hash(parentPath));
+    return folder;
+  }
+}
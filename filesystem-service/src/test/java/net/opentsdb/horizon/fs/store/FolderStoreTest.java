@@ -0,0 +1,201 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.fs.store;
+
+import net.opentsdb.horizon.fs.Path;
+import net.opentsdb.horizon.fs.view.FolderType;
+import net.opentsdb.horizon.store.SessionConsistency;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/** Runs the path rewrites against H2 in MySQL mode. */
+public class FolderStoreTest {
+
+  private static final String CREATE_FOLDER_TABLE =
+      "CREATE TABLE folder ("
+          + "id BIGINT NOT NULL AUTO_INCREMENT, "
+          + "name VARCHAR(512) NOT NULL, "
+          + "type TINYINT NOT NULL, "
+          + "path VARCHAR(512) NOT NULL, "
+          + "pathhash BINARY(16) NOT NULL, "
+          + "parentpathhash BINARY(16) NULL, "
+          + "updatedtime TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6), "
+          + "updatedby VARCHAR(128) NOT NULL DEFAULT '', "
+          + "PRIMARY KEY (id), "
+          + "UNIQUE INDEX uq_folder_type_pathhash (type, pathhash))";
+
+  private static final Timestamp UPDATED_TIME = Timestamp.valueOf("2021-03-04 05:06:07.123456");
+
+  private FolderStore store;
+  private Connection connection;
+
+  @BeforeEach
+  void setUp() throws SQLException {
+    JdbcDataSource dataSource = new JdbcDataSource();
+    dataSource.setURL("jdbc:h2:mem:;MODE=MySQL");
+    store = new FolderStore(dataSource, dataSource, SessionConsistency.DISABLED);
+    connection = dataSource.getConnection();
+    try (Statement statement = connection.createStatement()) {
+      statement.execute(CREATE_FOLDER_TABLE);
+    }
+  }
+
+  @AfterEach
+  void tearDown() throws SQLException {
+    connection.close();
+  }
+
+  @Test
+  void renamesTheDescendants() throws SQLException {
+    insert(FolderType.DASHBOARD, "/user/u1/a");
+    insert(FolderType.DASHBOARD, "/user/u1/a/b");
+    insert(FolderType.DASHBOARD, "/user/u1/a/b/c");
+    insert(FolderType.DASHBOARD, "/user/u1/ab");
+    insert(FolderType.ALERT, "/user/u1/a/b");
+
+    int updated =
+        store.updateSubtreePath(
+            FolderType.DASHBOARD, "/user/u1/a", "/user/u1/z", UPDATED_TIME, "u2", connection);
+
+    assertEquals(2, updated);
+    Map<String, String> dashboards = readTree(FolderType.DASHBOARD);
+    assertEquals(4, dashboards.size());
+    // the folder itself is the caller's to update
+    assertEquals("", dashboards.get("/user/u1/a"));
+    assertEquals("u2", dashboards.get("/user/u1/z/b"));
+    assertEquals("u2", dashboards.get("/user/u1/z/b/c"));
+    assertEquals("", dashboards.get("/user/u1/ab"));
+    assertEquals("", readTree(FolderType.ALERT).get("/user/u1/a/b"));
+  }
+
+  @Test
+  void movesTheDescendantsUnderAnotherRoot() throws SQLException {
+    insert(FolderType.DASHBOARD, "/user/u1/a/b");
+    insert(FolderType.DASHBOARD, "/user/u1/a/b/c");
+    insert(FolderType.DASHBOARD, "/user/u1/a/b/c/d");
+
+    int updated =
+        store.updateSubtreePath(
+            FolderType.DASHBOARD,
+            "/user/u1/a/b",
+            "/namespace/ns1/b",
+            UPDATED_TIME,
+            "u2",
+            connection);
+
+    assertEquals(2, updated);
+    Map<String, String> dashboards = readTree(FolderType.DASHBOARD);
+    assertEquals("u2", dashboards.get("/namespace/ns1/b/c"));
+    assertEquals("u2", dashboards.get("/namespace/ns1/b/c/d"));
+    assertNull(dashboards.get("/user/u1/a/b/c"));
+  }
+
+  @Test
+  void updatesSubtreesSpanningSeveralStatements() throws SQLException {
+    // more than two chunks of MAX_ROWS_PER_UPDATE
+    int children = 1201;
+    insert(FolderType.DASHBOARD, "/user/u1/a");
+    for (int i = 0; i < children; i++) {
+      insert(FolderType.DASHBOARD, "/user/u1/a/f" + i);
+    }
+
+    int updated =
+        store.updateSubtreePath(
+            FolderType.DASHBOARD, "/user/u1/a", "/user/u1/z", UPDATED_TIME, "u2", connection);
+
+    assertEquals(children, updated);
+    Map<String, String> dashboards = readTree(FolderType.DASHBOARD);
+    for (int i = 0; i < children; i++) {
+      assertEquals("u2", dashboards.get("/user/u1/z/f" + i));
+    }
+  }
+
+  @Test
+  void matchesLikeWildcardsLiterally() throws SQLException {
+    insert(FolderType.DASHBOARD, "/user/u1/a%_!b/c");
+    insert(FolderType.DASHBOARD, "/user/u1/aXY!b/c");
+    insert(FolderType.DASHBOARD, "/user/u1/a%_!bc/d");
+
+    int updated =
+        store.updateSubtreePath(
+            FolderType.DASHBOARD, "/user/u1/a%_!b", "/user/u1/z", UPDATED_TIME, "u2", connection);
+
+    assertEquals(1, updated);
+    Map<String, String> dashboards = readTree(FolderType.DASHBOARD);
+    assertEquals("u2", dashboards.get("/user/u1/z/c"));
+    assertEquals("", dashboards.get("/user/u1/aXY!b/c"));
+    assertEquals("", dashboards.get("/user/u1/a%_!bc/d"));
+  }
+
+  private void insert(FolderType type, String path) throws SQLException {
+    String sql =
+        "INSERT INTO folder (name, type, path, pathhash, parentpathhash) VALUES (?, ?, ?, ?, ?)";
+    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+      statement.setString(1, path.substring(path.lastIndexOf('/') + 1));
+      statement.setByte(2, type.value);
+      statement.setString(3, path);
+      statement.setBytes(4, Path.hash(path));
+      statement.setBytes(5, Path.hash(path.substring(0, path.lastIndexOf('/'))));
+      statement.executeUpdate();
+    }
+  }
+
+  /**
+   * Reads the folders of a type, checking that their hashes match their paths.
+   *
+   * @return who last updated each folder by path
+   */
+  private Map<String, String> readTree(FolderType type) throws SQLException {
+    Map<String, String> updatedBy = new HashMap<>();
+    String sql =
+        "SELECT path, pathhash, parentpathhash, updatedtime, updatedby FROM folder WHERE type = ?";
+    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+      statement.setByte(1, type.value);
+      try (ResultSet rs = statement.executeQuery()) {
+        while (rs.next()) {
+          String path = rs.getString("path");
+          assertArrayEquals(Path.hash(path), rs.getBytes("pathhash"), path);
+          assertArrayEquals(
+              Path.hash(path.substring(0, path.lastIndexOf('/'))),
+              rs.getBytes("parentpathhash"),
+              path);
+          if (!rs.getString("updatedby").isEmpty()) {
+            assertEquals(UPDATED_TIME, rs.getTimestamp("updatedtime"), path);
+          }
+          updatedBy.put(path, rs.getString("updatedby"));
+        }
+      }
+    }
+    return updatedBy;
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.yahoo.athenz.zts.ZTSClient;
+import io.ultrabrew.metrics.Counter;
+import io.ultrabrew.metrics.MetricRegistry;
+import io.ultrabrew.metrics.Timer;
+import net.opentsdb.horizon.service.BoundedExecutor;
+import net.opentsdb.horizon.service.BoundedExecutor.RejectionPolicy;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches Athenz access decisions keyed by <code>(domain, role, principal)</code>. Granted and
+ * denied decisions live for their own TTL. Entries read again after three quarters of the granted
+ * TTL are refreshed in the background, so hot principals don't wait on ZTS when they expire.
+ * Failed ZTS calls are not cached.
+ */
+public class AccessDecisionCache {
+
+  private static final String HIT_METRIC = "athenz.cache.hit";
+  private static final String MISS_METRIC = "athenz.cache.miss";
+  private static final String ZTS_LATENCY_METRIC = "athenz.zts.latency";
+  private static final String ZTS_ERROR_METRIC = "athenz.zts.error";
+  private static final String TAG_GRANTED = "granted";
+
+  private final ZTSClient ztsClient;
+  private final Ticker ticker;
+  private final long positiveTTLNanos;
+  private final long negativeTTLNanos;
+  private final LoadingCache<Key, Decision> decisions;
+
+  private final Counter hitCounter;
+  private final Counter missCounter;
+  private final Counter errorCounter;
+  private final Timer ztsTimer;
+
+  public AccessDecisionCache(
+      final ZTSClient ztsClient,
+      final long positiveTTL,
+      final long negativeTTL,
+      final TimeUnit ttlUnit,
+      final long maxSize,
+      final MetricRegistry metricRegistry) {
+    this(
+        ztsClient,
+        positiveTTL,
+        negativeTTL,
+        ttlUnit,
+        maxSize,
+        new BoundedExecutor("athenz-refresh", 1, 1000, RejectionPolicy.CALLER_RUNS, metricRegistry),
+        Ticker.systemTicker(),
+        metricRegistry);
+  }
+
+  AccessDecisionCache(
+      final ZTSClient ztsClient,
+      final long positiveTTL,
+      final long negativeTTL,
+      final TimeUnit ttlUnit,
+      final long maxSize,
+      final Executor refreshExecutor,
+      final Ticker ticker,
+      final MetricRegistry metricRegistry) {
+    this.ztsClient = ztsClient;
+    this.ticker = ticker;
+    this.positiveTTLNanos = ttlUnit.toNanos(positiveTTL);
+    this.negativeTTLNanos = ttlUnit.toNanos(negativeTTL);
+    CacheBuilder<Object, Object> builder =
+        CacheBuilder.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(Math.max(positiveTTLNanos, negativeTTLNanos), TimeUnit.NANOSECONDS)
+            .ticker(ticker);
+    long refreshAfterNanos = positiveTTLNanos / 4 * 3;
+    if (refreshAfterNanos > 0) {
+      builder.refreshAfterWrite(refreshAfterNanos, TimeUnit.NANOSECONDS);
+    }
+    this.decisions =
+        builder.build(CacheLoader.asyncReloading(CacheLoader.from(this::load), refreshExecutor));
+    this.hitCounter = metricRegistry.counter(HIT_METRIC);
+    this.missCounter = metricRegistry.counter(MISS_METRIC);
+    this.errorCounter = metricRegistry.counter(ZTS_ERROR_METRIC);
+    this.ztsTimer = metricRegistry.timer(ZTS_LATENCY_METRIC);
+  }
+
+  public boolean getAccess(final String domain, final String role, final String principal) {
+    Key key = new Key(domain, role, principal);
+    Decision decision = decisions.getIfPresent(key);
+    if (decision != null && decision.expiresAt - ticker.read() <= 0) {
+      // denied decisions expire before the cache evicts them
+      decisions.invalidate(key);
+      decision = null;
+    }
+    if (decision == null) {
+      missCounter.inc();
+    } else {
+      hitCounter.inc(TAG_GRANTED, String.valueOf(decision.granted));
+    }
+    try {
+      // loads on a miss, and schedules the refresh of a hot entry
+      return decisions.getUnchecked(key).granted;
+    } catch (UncheckedExecutionException e) {
+      Throwable cause = e.getCause();
+      throw cause instanceof RuntimeException ? (RuntimeException) cause : e;
+    }
+  }
+
+  public void invalidateAll() {
+    decisions.invalidateAll();
+  }
+
+  private Decision load(final Key key) {
+    long start = ztsTimer.start();
+    try {
+      boolean granted = ztsClient.getAccess(key.domain, key.role, key.principal).granted;
+      long ttl = granted ? positiveTTLNanos : negativeTTLNanos;
+      return new Decision(granted, ticker.read() + ttl);
+    } catch (RuntimeException e) {
+      errorCounter.inc();
+      throw e;
+    } finally {
+      ztsTimer.stop(start);
+    }
+  }
+
+  private static class Decision {
+    private final boolean granted;
+    private final long expiresAt;
+
+    private Decision(final boolean granted, final long expiresAt) {
+      this.granted = granted;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private static class Key {
+    private final String domain;
+    private final String role;
+    private final String principal;
+
+    private Key(final String domain, final String role, final String principal) {
+      this.domain = domain;
+      this.role = role;
+      this.principal = principal;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key key = (Key) o;
+      return Objects.equals(domain, key.domain)
+          && Objects.equals(role, key.role)
+          && Objects.equals(principal, key.principal);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(domain, role, principal);
+    }
+  }
+}
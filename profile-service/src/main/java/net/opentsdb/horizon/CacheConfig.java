@@ -20,10 +20,20 @@ package net.opentsdb.horizon;
 import java.util.concurrent.TimeUnit;
 
 public class CacheConfig {
-  public int athensTTL;
-  public TimeUnit athensTTLUnit;
+  public int athensTTL = 300;
+  public TimeUnit athensTTLUnit = TimeUnit.SECONDS;
+  public int athensNegativeTTL = 30;
+  public long athensMaxSize = 100_000;
   public int namespaceTTL;
   public TimeUnit namespaceTTLUnit;
   public int userTTL;
   public TimeUnit userTTLUnit;
+  public int memberTTL = 60;
+  public TimeUnit memberTTLUnit = TimeUnit.SECONDS;
+  public long contentMaxBytes = 64 * 1024 * 1024;
+  public ContentCache.Mode contentMode = ContentCache.Mode.BOTH;
+  public boolean folderTreeEnabled = false;
+  public int folderTreeTTL = 60;
+  public TimeUnit folderTreeTTLUnit = TimeUnit.SECONDS;
+  public long folderTreeMaxFolders = 1_000_000;
 }
@@ -17,8 +17,11 @@
 
 package net.opentsdb.horizon.service;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.ultrabrew.metrics.MetricRegistry;
+import net.opentsdb.horizon.AccessDecisionCache;
 import net.opentsdb.horizon.model.Namespace;
-import net.opentsdb.horizon.model.User;
 import net.opentsdb.horizon.store.NamespaceMemberStore;
 import com.yahoo.athenz.zts.ZTSClient;
 import org.slf4j.Logger;
@@ -26,8 +29,8 @@ import org.slf4j.LoggerFactory;
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static net.opentsdb.horizon.profile.Utils.getAthensDomain;
 
@@ -39,24 +42,65 @@ public class AuthService {
   public static final String PROVIDER_SERVICE = "monitoring";
   public static final String ACCESS_ROLE_FORMAT = "%s.tenant.%s.res_group.namespace_%s.access";
 
+  public static final int DEFAULT_MEMBER_TTL_SECONDS = 60;
+  public static final int DEFAULT_ACCESS_TTL_SECONDS = 300;
+  public static final int DEFAULT_ACCESS_NEGATIVE_TTL_SECONDS = 30;
+  public static final long DEFAULT_ACCESS_CACHE_SIZE = 100_000;
+  private static final int MAX_CACHED_PRINCIPALS = 10_000;
+
   private final NamespaceMemberStore memberStore;
-  private final ZTSClient ztsClient;
+  private final AccessDecisionCache accessCache;
   private final String athensDomain;
+  private final int memberTTLSeconds;
+
+  /** Membership answers per namespace id, both positive and negative, keyed by principal. */
+  private final Cache<Integer, Cache<String, Boolean>> memberships;
 
   public AuthService(
       final NamespaceMemberStore memberStore,
       final ZTSClient ztsClient,
-      final String athensDomain) {
+      final String athensDomain,
+      final MetricRegistry metricRegistry) {
+    this(
+        memberStore,
+        ztsClient == null
+            ? null
+            : new AccessDecisionCache(
+                ztsClient,
+                DEFAULT_ACCESS_TTL_SECONDS,
+                DEFAULT_ACCESS_NEGATIVE_TTL_SECONDS,
+                TimeUnit.SECONDS,
+                DEFAULT_ACCESS_CACHE_SIZE,
+                metricRegistry),
+        athensDomain,
+        DEFAULT_MEMBER_TTL_SECONDS);
+  }
+
+  public AuthService(
+      final NamespaceMemberStore memberStore,
+      final AccessDecisionCache accessCache,
+      final String athensDomain,
+      final int memberTTLSeconds) {
     this.memberStore = memberStore;
-    this.ztsClient = ztsClient;
+    this.accessCache = accessCache;
     this.athensDomain = athensDomain;
+    this.memberTTLSeconds = memberTTLSeconds;
+    this.memberships =
+        CacheBuilder.newBuilder()
+            .expireAfterAccess(memberTTLSeconds, TimeUnit.SECONDS)
+            .build();
+  }
+
+  /** Drops the cached memberships of a namespace. Call it after the members have changed. */
+  public void invalidateMembers(int namespaceId) {
+    memberships.invalidate(namespaceId);
   }
 
   public boolean isSuperAdmin(String principal) {
-    if (ztsClient == null) {
+    if (accessCache == null) {
       return false;
     }
-    return ztsClient.getAccess(athensDomain, "superadmin", principal).granted;
+    return accessCache.getAccess(athensDomain, "superadmin", principal);
   }
 
   public boolean authorize(Namespace namespace, String principal) throws SQLException {
@@ -77,19 +121,36 @@ public class AuthService {
   }
 
   private boolean isMember(int namespaceId, String principal) throws SQLException {
-    try (Connection connection = memberStore.getReadOnlyConnection()) {
-      final Set<String> memberSet =
-          memberStore.getNamespaceMembers(namespaceId, connection).stream()
-              .map(User::getUserid)
-              .collect(Collectors.toSet());
-      return memberSet.contains(principal);
+    // hold on to the namespace entry, an answer read while it's invalidated is put into the
+    // dropped entry and never served.
+    Cache<String, Boolean> members;
+    try {
+      members = memberships.get(namespaceId, this::newMemberCache);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e);
+    }
+    Boolean member = members.getIfPresent(principal);
+    if (member == null) {
+      // from the primary, a lagging replica's answer would be cached for the whole TTL
+      try (Connection connection = memberStore.getReadWriteConnection()) {
+        member = memberStore.isMember(namespaceId, principal, connection);
+      }
+      members.put(principal, member);
     }
+    return member;
+  }
+
+  private Cache<String, Boolean> newMemberCache() {
+    return CacheBuilder.newBuilder()
+        .maximumSize(MAX_CACHED_PRINCIPALS)
+        .expireAfterWrite(memberTTLSeconds, TimeUnit.SECONDS)
+        .build();
   }
 
   private boolean checkAccess(
       final String namespaceAlias, final String tenantDomain, final String principal) {
     String roleName =
         String.format(ACCESS_ROLE_FORMAT, PROVIDER_SERVICE, tenantDomain, namespaceAlias);
-    return ztsClient.getAccess(PROVIDER_DOMAIN, roleName, principal).granted;
+    return accessCache.getAccess(PROVIDER_DOMAIN, roleName, principal);
   }
 }
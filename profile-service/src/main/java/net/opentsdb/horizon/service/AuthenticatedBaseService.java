@@ -70,7 +70,7 @@ public abstract class AuthenticatedBaseService<
   public void delete(View view, Namespace namespace, String principal) {
     authorize(namespace, principal);
 
-    delete(view);
+    delete(view, principal);
   }
 
   protected void authorize(Namespace namespace, String principal) {
@@ -184,6 +184,7 @@ public class NamespaceMemberService {
       try {
         addNamespaceMemberWithoutCommit(namespaceId, memberIdList, connection);
         memberStore.commit(connection);
+        authService.invalidateMembers(namespaceId);
       } catch (SQLException e) {
         memberStore.rollback(connection);
         throw e;
@@ -195,6 +196,10 @@ public class NamespaceMemberService {
     }
   }
 
+  /**
+   * Adds the members within the caller's transaction. Once it commits, the caller must drop the
+   * cached memberships with {@link AuthService#invalidateMembers(int)}.
+   */
   void addNamespaceMemberWithoutCommit(
       final int namespaceId, final List<String> memberIdList, Connection connection)
       throws SQLException {
@@ -202,6 +207,7 @@ public class NamespaceMemberService {
     followerStore.removeFollowers(namespaceId, memberIdList, connection);
   }
 
+  /** @see #addNamespaceMemberWithoutCommit(int, List, Connection) */
   void addNamespaceMember(
       final List<Integer> namespaceIds, final List<String> memberIds, final Connection connection)
       throws SQLException {
@@ -234,6 +240,7 @@ public class NamespaceMemberService {
       try {
         memberStore.removeNamespaceMember(namespaceId, memberIdList, connection);
         memberStore.commit(connection);
+        authService.invalidateMembers(namespaceId);
       } catch (SQLException e) {
         memberStore.rollback(connection);
         throw e;
@@ -255,6 +262,7 @@ public class NamespaceMemberService {
       try {
         memberStore.removeAllNamespaceMember(namespaceId, conn);
         memberStore.commit(conn);
+        authService.invalidateMembers(namespaceId);
       } catch (SQLException e) {
         memberStore.rollback(conn);
         throw e;
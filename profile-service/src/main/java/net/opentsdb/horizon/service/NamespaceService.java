@@ -185,6 +185,13 @@ public class NamespaceService extends ProfileService<Namespace, Namespace, Names
     folderStore.createFolder(folders, connection);
   }
 
+  @Override
+  protected void postCreate(Namespace namespace) {
+    if (!Utils.isAthensManaged(namespace)) {
+      authService.invalidateMembers(namespace.getId());
+    }
+  }
+
   @Override
   protected void doCreates(
       final List<Namespace> namespaces, final Connection connection, final String principal)
@@ -208,6 +215,15 @@ public class NamespaceService extends ProfileService<Namespace, Namespace, Names
     folderStore.createFolder(folders, connection);
   }
 
+  @Override
+  protected void postCreates(List<Namespace> namespaces) {
+    for (Namespace namespace : namespaces) {
+      if (!Utils.isAthensManaged(namespace)) {
+        authService.invalidateMembers(namespace.getId());
+      }
+    }
+  }
+
   @Override
   protected void doUpdates(
       List<Namespace> newNamespaces, Connection connection)
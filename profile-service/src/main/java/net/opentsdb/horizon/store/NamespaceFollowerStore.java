@@ -30,8 +30,9 @@ import java.util.List;
 
 public class NamespaceFollowerStore extends BaseStore {
 
-  public NamespaceFollowerStore(final DataSource rwSrc, final DataSource roSrc) {
-    super(rwSrc, roSrc);
+  public NamespaceFollowerStore(
+      final DataSource rwSrc, final DataSource roSrc, final SessionConsistency sessionConsistency) {
+    super(rwSrc, roSrc, sessionConsistency);
   }
 
   private static final String SQL_ADD_FOLLOWERS =
@@ -30,8 +30,9 @@ import java.util.List;
 
 public class NamespaceMemberStore extends BaseStore {
 
-  public NamespaceMemberStore(final DataSource rwSrc, final DataSource roSrc) {
-    super(rwSrc, roSrc);
+  public NamespaceMemberStore(
+      final DataSource rwSrc, final DataSource roSrc, final SessionConsistency sessionConsistency) {
+    super(rwSrc, roSrc, sessionConsistency);
   }
 
   private static final String SQL_ADD_MEMBERS =
@@ -112,6 +113,22 @@ public class NamespaceMemberStore extends BaseStore {
     return membersList;
   }
 
+  private static final String SQL_IS_MEMBER =
+      "SELECT EXISTS (SELECT 1 FROM namespace_member nm "
+          + "INNER JOIN user u ON u.userid = nm.userid "
+          + "WHERE nm.namespaceid = ? AND nm.userid = ?)";
+
+  public boolean isMember(int namespaceid, String userId, Connection connection)
+      throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(SQL_IS_MEMBER)) {
+      statement.setInt(1, namespaceid);
+      statement.setString(2, userId);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        return resultSet.next() && resultSet.getBoolean(1);
+      }
+    }
+  }
+
   public List<String> getMemberIdsByAlias(String alias, Connection connection) throws SQLException {
     String sql =
         "SELECT nm.userid FROM namespace_member nm "
@@ -38,8 +38,9 @@ public class NamespaceStore extends BaseStore {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(NamespaceStore.class);
 
-  public NamespaceStore(final DataSource rwSrc, final DataSource roSrc) {
-    super(rwSrc, roSrc);
+  public NamespaceStore(
+      final DataSource rwSrc, final DataSource roSrc, final SessionConsistency sessionConsistency) {
+    super(rwSrc, roSrc, sessionConsistency);
   }
 
   private static final String SQL_CREATE_NAMESPACE =
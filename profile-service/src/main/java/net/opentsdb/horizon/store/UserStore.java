@@ -31,8 +31,9 @@ import static net.opentsdb.horizon.store.ResultSetMapper.userMapper;
 
 public class UserStore extends BaseStore {
 
-  public UserStore(final DataSource rwSrc, final DataSource roSrc) {
-    super(rwSrc, roSrc);
+  public UserStore(
+      final DataSource rwSrc, final DataSource roSrc, final SessionConsistency sessionConsistency) {
+    super(rwSrc, roSrc, sessionConsistency);
   }
 
   @Override
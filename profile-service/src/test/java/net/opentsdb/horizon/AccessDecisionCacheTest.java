@@ -0,0 +1,123 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon;
+
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.yahoo.athenz.zts.Access;
+import com.yahoo.athenz.zts.ZTSClient;
+import io.ultrabrew.metrics.MetricRegistry;
+import mockit.Expectations;
+import mockit.Injectable;
+import mockit.Verifications;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AccessDecisionCacheTest {
+
+  @Injectable private ZTSClient ztsClient;
+
+  private long nanos;
+  private AccessDecisionCache cache;
+
+  @BeforeEach
+  void setUp() {
+    nanos = 0;
+    Ticker ticker =
+        new Ticker() {
+          @Override
+          public long read() {
+            return nanos;
+          }
+        };
+    cache =
+        new AccessDecisionCache(
+            ztsClient,
+            100,
+            10,
+            TimeUnit.SECONDS,
+            1000,
+            MoreExecutors.directExecutor(),
+            ticker,
+            new MetricRegistry());
+  }
+
+  @Test
+  void cachesGrantsForThePositiveTTL() {
+    new Expectations() {
+      {
+        ztsClient.getAccess("domain", "role", "user");
+        result = new Access().setGranted(true);
+      }
+    };
+
+    assertTrue(cache.getAccess("domain", "role", "user"));
+    nanos = TimeUnit.SECONDS.toNanos(50);
+    assertTrue(cache.getAccess("domain", "role", "user"));
+
+    new Verifications() {
+      {
+        ztsClient.getAccess("domain", "role", "user");
+        times = 1;
+      }
+    };
+  }
+
+  @Test
+  void denialsExpireAfterTheNegativeTTL() {
+    new Expectations() {
+      {
+        ztsClient.getAccess("domain", "role", "user");
+        returns(new Access().setGranted(false), new Access().setGranted(true));
+      }
+    };
+
+    assertFalse(cache.getAccess("domain", "role", "user"));
+    nanos = TimeUnit.SECONDS.toNanos(5);
+    assertFalse(cache.getAccess("domain", "role", "user"));
+    nanos = TimeUnit.SECONDS.toNanos(11);
+    assertTrue(cache.getAccess("domain", "role", "user"));
+  }
+
+  @Test
+  void refreshesHotEntriesAhead() {
+    new Expectations() {
+      {
+        ztsClient.getAccess("domain", "role", "user");
+        returns(new Access().setGranted(true), new Access().setGranted(false));
+      }
+    };
+
+    assertTrue(cache.getAccess("domain", "role", "user"));
+    nanos = TimeUnit.SECONDS.toNanos(80);
+    // the refresh runs on the direct executor, the reloaded decision is served right away
+    assertFalse(cache.getAccess("domain", "role", "user"));
+
+    new Verifications() {
+      {
+        ztsClient.getAccess("domain", "role", "user");
+        times = 2;
+      }
+    };
+  }
+}
@@ -17,25 +17,28 @@
 
 package net.opentsdb.horizon.service;
 
+import io.ultrabrew.metrics.MetricRegistry;
 import net.opentsdb.horizon.model.Namespace;
-import net.opentsdb.horizon.model.User;
 import net.opentsdb.horizon.store.NamespaceMemberStore;
 import com.yahoo.athenz.zts.ZTSClient;
 import mockit.Expectations;
 import mockit.Injectable;
 import mockit.Mocked;
 import mockit.Tested;
+import mockit.Verifications;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.params.provider.Arguments.arguments;
 
 public class AuthServiceTest {
@@ -50,31 +53,58 @@ public class AuthServiceTest {
 
   @Injectable private String athensDomain;
 
+  @Injectable private MetricRegistry metricRegistry;
+
   @ParameterizedTest
   @MethodSource("testAuthorization")
   public void testAuthorization(
       String username1, String username2, boolean result, @Mocked Connection connection)
       throws SQLException {
 
-    User mockedUser = new User();
-    mockedUser.setName(username1);
-    mockedUser.setUserid(username1);
-    mockedUser.setEnabled(true);
-
     Namespace namespace = new Namespace();
     namespace.setMeta(new HashMap<>());
     namespace.setId(6);
 
     new Expectations(namespaceMemberStore) {
       {
-        namespaceMemberStore.getNamespaceMembers(6, withInstanceOf(Connection.class));
-        result = Arrays.asList(mockedUser);
+        namespaceMemberStore.isMember(6, username2, withInstanceOf(Connection.class));
+        result = username1.equals(username2);
       }
     };
 
     assertEquals(result, authService.authorize(namespace, username2));
   }
 
+  @Test
+  public void cachesMembershipUntilInvalidated() throws SQLException {
+    Namespace namespace = new Namespace();
+    namespace.setMeta(new HashMap<>());
+    namespace.setId(6);
+
+    new Expectations(namespaceMemberStore) {
+      {
+        namespaceMemberStore.isMember(6, "username-1", withInstanceOf(Connection.class));
+        returns(true, false);
+      }
+    };
+
+    assertTrue(authService.authorize(namespace, "username-1"));
+    assertTrue(authService.authorize(namespace, "username-1"));
+    authService.invalidateMembers(6);
+    assertFalse(authService.authorize(namespace, "username-1"));
+
+    new Verifications() {
+      {
+        namespaceMemberStore.isMember(6, "username-1", withInstanceOf(Connection.class));
+        times = 2;
+
+        // a replica could still answer from before the members changed
+        namespaceMemberStore.getReadOnlyConnection();
+        times = 0;
+      }
+    };
+  }
+
   private static Stream<Arguments> testAuthorization() {
     return Stream.of(
         arguments("username-1", "username-1", true), arguments("username-1", "username-2", false));
@@ -30,6 +30,7 @@ import mockit.Injectable;
 import mockit.Mocked;
 import mockit.Tested;
 import mockit.Verifications;
+import mockit.VerificationsInOrder;
 import org.junit.jupiter.api.Test;
 
 import javax.ws.rs.ForbiddenException;
@@ -117,6 +118,12 @@ public class NamespaceMemberServiceTest {
         times = 1;
       }
     };
+    new VerificationsInOrder() {
+      {
+        memberStore.commit(connection);
+        authService.invalidateMembers(6);
+      }
+    };
   }
 
   @Test
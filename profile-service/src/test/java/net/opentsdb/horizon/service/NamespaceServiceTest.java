@@ -26,6 +26,7 @@ import mockit.Injectable;
 import mockit.Mocked;
 import mockit.Tested;
 import mockit.Verifications;
+import mockit.VerificationsInOrder;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.aggregator.ArgumentsAccessor;
@@ -252,6 +253,12 @@ public class NamespaceServiceTest {
         assertEquals(Arrays.asList("authorizeduser"), capturedMembers);
       }
     };
+    new VerificationsInOrder() {
+      {
+        namespaceStore.commit(connection);
+        authService.invalidateMembers(7);
+      }
+    };
   }
 
   @Test
@@ -20,6 +20,7 @@ package net.opentsdb.horizon.resource;
 import com.stumbleupon.async.Deferred;
 import net.opentsdb.core.BaseTSDBPlugin;
 import net.opentsdb.core.TSDB;
+import net.opentsdb.horizon.service.ConditionalRead;
 import net.opentsdb.horizon.service.SnapshotService;
 import net.opentsdb.horizon.view.SnapshotView;
 import io.swagger.annotations.Api;
@@ -31,6 +32,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
@@ -38,10 +40,13 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import java.util.List;
 
+import static net.opentsdb.horizon.util.Utils.acceptsGzip;
 import static net.opentsdb.horizon.util.Utils.isNullOrEmpty;
 
 @Api("Snapshots")
@@ -101,9 +106,36 @@ public class SnapshotResource extends BaseTSDBPlugin implements ServletResource
   @GET
   @Produces(MediaType.APPLICATION_JSON)
   @Path("{id}")
-  public Response getById(@PathParam("id") long id, @Context HttpServletRequest request) {
-    SnapshotView view = service.getById(id, request.getUserPrincipal().getName());
-    return Response.status(Response.Status.OK).entity(view).build();
+  public Response getById(
+      @PathParam("id") long id,
+      @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding,
+      @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch,
+      @Context Request httpRequest,
+      @Context HttpServletRequest request) {
+    String userId = request.getUserPrincipal().getName();
+    // an unconditional request reads the snapshot and its content in one go
+    Request conditional = ifNoneMatch == null ? null : httpRequest;
+    if (acceptsGzip(acceptEncoding)) {
+      ConditionalRead<byte[]> read = service.getCompressedById(id, userId, conditional);
+      if (read.getNotModified() != null) {
+        return read.getNotModified().header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING).build();
+      }
+      return Response.status(Response.Status.OK)
+          .entity(read.getBody())
+          .tag(read.getTag())
+          .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+          .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+          .build();
+    }
+    ConditionalRead<SnapshotView> read = service.getById(id, userId, conditional);
+    if (read.getNotModified() != null) {
+      return read.getNotModified().header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING).build();
+    }
+    return Response.status(Response.Status.OK)
+        .entity(read.getBody())
+        .tag(read.getTag())
+        .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+        .build();
   }
 
   @ApiOperation(
@@ -17,6 +17,7 @@
 
 package net.opentsdb.horizon.service;
 
+import net.opentsdb.horizon.ContentCache;
 import net.opentsdb.horizon.fs.model.File;
 import net.opentsdb.horizon.fs.store.FolderStore;
 import net.opentsdb.horizon.fs.view.FolderType;
@@ -24,7 +25,6 @@ import net.opentsdb.horizon.model.Alert;
 import net.opentsdb.horizon.model.ContentHistory;
 import net.opentsdb.horizon.model.Snapshot;
 import net.opentsdb.horizon.store.AlertStore;
-import net.opentsdb.horizon.converter.ContentConverter;
 import net.opentsdb.horizon.converter.SnapshotConverter;
 import net.opentsdb.horizon.model.Content;
 import net.opentsdb.horizon.store.SnapshotStore;
@@ -32,15 +32,18 @@ import net.opentsdb.horizon.view.SnapshotView;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import static net.opentsdb.horizon.converter.BaseConverter.NOT_PASSED;
+import static net.opentsdb.horizon.util.Utils.compressedEnvelope;
+import static net.opentsdb.horizon.util.Utils.deSerialize;
 import static net.opentsdb.horizon.util.Utils.isNullOrEmpty;
 import static net.opentsdb.horizon.view.SourceType.ALERT;
 import static net.opentsdb.horizon.view.SourceType.DASHBOARD;
@@ -54,21 +57,27 @@ public class SnapshotService extends CommonService<SnapshotView, Snapshot, Snaps
 
   private static final byte NO_SOURCE = 0;
 
+  private static final String CONTENT = "content";
+  private static final String SNAPSHOT_ENTITY = "snapshot:";
+
   private SnapshotStore store;
   private ContentService contentService;
   private FolderStore folderStore;
   private AlertStore alertStore;
   private ActivityJobScheduler activityJobScheduler;
+  private ContentCache contentCache;
 
   public SnapshotService(
       SnapshotStore store,
       ContentService contentService,
+      ContentCache contentCache,
       FolderStore folderStore,
       AlertStore alertStore,
       ActivityJobScheduler activityJobScheduler) {
     super(new SnapshotConverter(), store);
     this.store = store;
     this.contentService = contentService;
+    this.contentCache = contentCache;
     this.folderStore = folderStore;
     this.alertStore = alertStore;
     this.activityJobScheduler = activityJobScheduler;
@@ -194,31 +203,170 @@ public class SnapshotService extends CommonService<SnapshotView, Snapshot, Snaps
     return fromDB;
   }
 
-  public SnapshotView getById(final long id, final String userId) {
-    final AtomicReferenceArray<byte[]> content = new AtomicReferenceArray(1);
-    SnapshotView view =
-        get(
-            connection -> {
-              Snapshot model = store.getSnapshotAndContentById(id, connection);
-              if (null != model) {
-                model.setSourceName(
-                    getSourceName(connection, model.getSourceType(), model.getSourceId()));
-                content.set(0, (byte[]) model.getContent());
-                activityJobScheduler.addActivity(userId, SNAPSHOT.id, id);
-              }
-              return model;
-            },
-            "Error reading snapshot by id: %d",
-            id);
-    if (view == null) {
-      throw notFoundException("Snapshot not found with id: " + id);
+  /**
+   * Reads a snapshot for a GET, its body only when the request preconditions don't match its tag.
+   * The row, source name and content are read over one connection.
+   *
+   * @param request the conditional request, null to read the snapshot unconditionally
+   */
+  public ConditionalRead<SnapshotView> getById(
+      final long id, final String userId, final Request request) {
+    return read(
+        id,
+        userId,
+        request,
+        false,
+        (model, connection) -> {
+          byte[] content = getContent(model, connection);
+          if (content == null) {
+            return null;
+          }
+          SnapshotView view = converter.modelToView(model);
+          view.setContent(deSerialize(content, Object.class));
+          return view;
+        });
+  }
+
+  /**
+   * Same as {@link #getById(long, String, Request)} but the body is gzip encoded, with the stored
+   * content spliced in without decompressing it.
+   */
+  public ConditionalRead<byte[]> getCompressedById(
+      final long id, final String userId, final Request request) {
+    return read(
+        id,
+        userId,
+        request,
+        true,
+        (model, connection) -> {
+          byte[] content = getCompressedContent(model, connection);
+          if (content == null) {
+            return null;
+          }
+          return compressedEnvelope(converter.modelToView(model), CONTENT, content);
+        });
+  }
+
+  private <T> ConditionalRead<T> read(
+      final long id,
+      final String userId,
+      final Request request,
+      final boolean compressed,
+      final SnapshotReader<T> reader) {
+    try (Connection connection = store.getReadOnlyConnection()) {
+      // a conditional request reads the content only once the tag didn't match
+      Snapshot model = getSnapshot(id, request == null, compressed, connection);
+      if (model == null) {
+        throw notFoundException("Snapshot not found with id: " + id);
+      }
+      model.setSourceName(getSourceName(connection, model.getSourceType(), model.getSourceId()));
+      EntityTag tag =
+          entityTag(
+              model.getId(),
+              model.getName(),
+              model.getContentId(),
+              model.getSourceType(),
+              model.getSourceId(),
+              model.getSourceName(),
+              model.getUpdatedTime());
+      ConditionalRead<T> notModified = ConditionalRead.evaluate(request, tag);
+      if (notModified != null) {
+        activityJobScheduler.addActivity(userId, SNAPSHOT.id, id);
+        return notModified;
+      }
+      T body = reader.read(model, connection);
+      if (body == null) {
+        throw notFoundException("Snapshot not found with id: " + id);
+      }
+      activityJobScheduler.addActivity(userId, SNAPSHOT.id, id);
+      return ConditionalRead.of(tag, body);
+    } catch (SQLException | IOException e) {
+      String message = "Error reading snapshot by id: " + id;
+      LOGGER.error(message, e);
+      throw internalServerError(message);
+    }
+  }
+
+  private interface SnapshotReader<T> {
+    /** @return the body of the snapshot, null if its content is not found */
+    T read(Snapshot model, Connection connection) throws SQLException, IOException;
+  }
+
+  /**
+   * Reads the row of a snapshot. With <code>withContent</code>, its content is joined in unless the
+   * content the snapshot was last read with is still cached, so that a cache miss costs a single
+   * query.
+   *
+   * @param compressed true if the content is to be read as stored
+   */
+  private Snapshot getSnapshot(
+      final long id,
+      final boolean withContent,
+      final boolean compressed,
+      final Connection connection)
+      throws SQLException, IOException {
+    String entity = SNAPSHOT_ENTITY + id;
+    Snapshot model;
+    if (!withContent || contentCache.hasContentOf(entity, compressed)) {
+      model = store.getById(connection, id);
+    } else {
+      model = store.getSnapshotAndContentById(id, connection);
     }
-    try {
-      view.setContent(ContentConverter.modelToView(content.get(0)));
-    } catch (IOException exception) {
-      throw internalServerError("Error deserializing the content of snapshot by id : " + id);
+    if (model != null) {
+      contentCache.setContentOf(entity, model.getContentId());
+    }
+    return model;
+  }
+
+  /** @return the decompressed content of a snapshot read by {@link #getSnapshot}, null if none */
+  private byte[] getContent(final Snapshot model, final Connection connection)
+      throws SQLException, IOException {
+    if (model.getContent() == null) {
+      return getContent(model.getContentId(), connection);
+    }
+    return contentCache.put(model.getContentId(), (byte[]) model.getContent());
+  }
+
+  /** @return the stored content of a snapshot read by {@link #getSnapshot}, null if none */
+  private byte[] getCompressedContent(final Snapshot model, final Connection connection)
+      throws SQLException, IOException {
+    if (model.getContent() == null) {
+      return getCompressedContent(model.getContentId(), connection);
+    }
+    contentCache.put(model.getContentId(), (byte[]) model.getContent());
+    return (byte[]) model.getContent();
+  }
+
+  /**
+   * Reads the decompressed content from the cache, falling back to the content table on a miss.
+   *
+   * @return null if the content is not found
+   */
+  private byte[] getContent(final byte[] contentId, final Connection connection)
+      throws SQLException, IOException {
+    byte[] decompressed = contentCache.getDecompressed(contentId);
+    if (decompressed == null) {
+      net.opentsdb.horizon.fs.model.Content content =
+          folderStore.getContentById(contentId, connection);
+      if (content != null) {
+        decompressed = contentCache.put(contentId, content.getData());
+      }
+    }
+    return decompressed;
+  }
+
+  private byte[] getCompressedContent(final byte[] contentId, final Connection connection)
+      throws SQLException, IOException {
+    byte[] compressed = contentCache.getCompressed(contentId);
+    if (compressed == null) {
+      net.opentsdb.horizon.fs.model.Content content =
+          folderStore.getContentById(contentId, connection);
+      if (content != null) {
+        compressed = content.getData();
+        contentCache.put(contentId, compressed);
+      }
     }
-    return view;
+    return compressed;
   }
 
   private boolean isSourceFound(Connection connection, byte sourceType, long sourceId)
@@ -31,8 +31,8 @@ import java.util.List;
 import static net.opentsdb.horizon.view.SourceType.SNAPSHOT;
 
 public class SnapshotStore extends BaseStore {
-  public SnapshotStore(DataSource rwSrc, DataSource roSrc) {
-    super(rwSrc, roSrc);
+  public SnapshotStore(DataSource rwSrc, DataSource roSrc, SessionConsistency sessionConsistency) {
+    super(rwSrc, roSrc, sessionConsistency);
   }
 
   private static final String CREATE_SNAPSHOT =
@@ -17,6 +17,7 @@
 
 package net.opentsdb.horizon.service;
 
+import net.opentsdb.horizon.ContentCache;
 import net.opentsdb.horizon.fs.store.FolderStore;
 import net.opentsdb.horizon.converter.ContentConverter;
 import net.opentsdb.horizon.model.Content;
@@ -30,6 +31,7 @@ import mockit.Expectations;
 import mockit.Injectable;
 import mockit.Tested;
 import mockit.Verifications;
+import net.opentsdb.horizon.util.Digester;
 import net.opentsdb.horizon.util.Utils;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
@@ -37,9 +39,10 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import javax.ws.rs.NotFoundException;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
 import java.io.IOException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Timestamp;
@@ -51,16 +54,19 @@ import java.util.Map;
 import static net.opentsdb.horizon.util.Utils.deSerialize;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.fail;
 
 public class SnapshotServiceTest {
 
-  private static MessageDigest digest;
+  private static Digester digest;
   private static ContentConverter contentConverter;
 
   @Tested private SnapshotService service;
   @Injectable private SnapshotStore store;
   @Injectable private ContentService contentService;
+  @Injectable private ContentCache contentCache;
   @Injectable private FolderStore folderStore;
   @Injectable private AlertStore alertStore;
   @Injectable private ActivityJobScheduler activityJobScheduler;
@@ -69,8 +75,8 @@ public class SnapshotServiceTest {
   @Injectable private Connection roConnection;
 
   @BeforeAll
-  private static void beforeAll() throws NoSuchAlgorithmException {
-    digest = MessageDigest.getInstance("SHA-256");
+  private static void beforeAll() {
+    digest = new Digester(Digester.SHA_256);
     contentConverter = new ContentConverter(digest);
   }
 
@@ -172,16 +178,28 @@ public class SnapshotServiceTest {
 
     new Expectations(store) {
       {
+        contentCache.hasContentOf("snapshot:" + id, false);
+        result = false;
+
         store.getSnapshotAndContentById(id, roConnection);
         result = expected;
+
+        contentCache.put(contentId, contentModel);
+        result = serialized;
       }
     };
 
-    SnapshotView actual = service.getById(id, userId);
+    SnapshotView actual = service.getById(id, userId, null).getBody();
     assertSnapshotEquals(expected, actual);
+    assertEquals(content, actual.getContent());
 
     new Verifications() {
       {
+        store.getById((Connection) any, anyLong);
+        times = 0;
+        folderStore.getContentById((byte[]) any, (Connection) any);
+        times = 0;
+
         activityJobScheduler.addActivity(userId, SourceType.SNAPSHOT.id, id);
         times = 1;
 
@@ -191,6 +209,123 @@ public class SnapshotServiceTest {
     };
   }
 
+  @Test
+  void getSnapshotByIdSkipsContentReadOnCacheHit() throws SQLException, IOException {
+    Object content = createContent();
+    byte[] serialized = Utils.serialize(content).getBytes();
+    byte[] contentId = digest.digest(serialized);
+    long id = 123;
+    String userId = "user1";
+    Timestamp timestamp = new Timestamp(System.currentTimeMillis());
+    Snapshot expected = buildSnapshot("s1", SourceType.DASHBOARD, 456, contentId, userId, timestamp);
+
+    new Expectations(store) {
+      {
+        contentCache.hasContentOf("snapshot:" + id, false);
+        result = true;
+
+        store.getById(roConnection, id);
+        result = expected;
+
+        contentCache.getDecompressed(contentId);
+        result = serialized;
+      }
+    };
+
+    SnapshotView actual = service.getById(id, userId, null).getBody();
+    assertSnapshotEquals(expected, actual);
+    assertEquals(content, actual.getContent());
+
+    new Verifications() {
+      {
+        store.getSnapshotAndContentById(anyLong, (Connection) any);
+        times = 0;
+        folderStore.getContentById((byte[]) any, (Connection) any);
+        times = 0;
+      }
+    };
+  }
+
+  @Test
+  void getCompressedSnapshotById() throws SQLException, IOException {
+    Object content = createContent();
+    byte[] serialized = Utils.serialize(content).getBytes();
+    byte[] contentId = digest.digest(serialized);
+    byte[] contentModel = Utils.compress(serialized);
+    long id = 123;
+    String userId = "user1";
+    Timestamp timestamp = new Timestamp(System.currentTimeMillis());
+    Snapshot expected = buildSnapshot("s1", SourceType.DASHBOARD, 456, contentId, userId, timestamp);
+
+    new Expectations(store) {
+      {
+        contentCache.hasContentOf("snapshot:" + id, true);
+        result = true;
+
+        store.getById(roConnection, id);
+        result = expected;
+
+        contentCache.getCompressed(contentId);
+        result = contentModel;
+      }
+    };
+
+    byte[] body = service.getCompressedById(id, userId, null).getBody();
+    SnapshotView actual = deSerialize(Utils.decompress(body), SnapshotView.class);
+    assertEquals(expected.getId(), actual.getId());
+    assertEquals(expected.getName(), actual.getName());
+    assertEquals(content, actual.getContent());
+
+    new Verifications() {
+      {
+        activityJobScheduler.addActivity(userId, SourceType.SNAPSHOT.id, id);
+        times = 1;
+      }
+    };
+  }
+
+  @Test
+  void answersAMatchingConditionalRequestWithoutReadingTheContent(
+      @Injectable Request request, @Injectable Response.ResponseBuilder notModified)
+      throws SQLException, IOException {
+    byte[] contentId = digest.digest("{}".getBytes());
+    long id = 123;
+    String userId = "user1";
+    Timestamp timestamp = new Timestamp(System.currentTimeMillis());
+    Snapshot expected = buildSnapshot("s1", SourceType.DASHBOARD, 456, contentId, userId, timestamp);
+
+    new Expectations() {
+      {
+        store.getById(roConnection, id);
+        result = expected;
+
+        request.evaluatePreconditions((EntityTag) any);
+        result = notModified;
+      }
+    };
+
+    ConditionalRead<SnapshotView> read = service.getById(id, userId, request);
+    assertSame(notModified, read.getNotModified());
+    assertNull(read.getBody());
+
+    new Verifications() {
+      {
+        store.getSnapshotAndContentById(anyLong, (Connection) any);
+        times = 0;
+        contentCache.getDecompressed((byte[]) any);
+        times = 0;
+        folderStore.getContentById((byte[]) any, (Connection) any);
+        times = 0;
+
+        activityJobScheduler.addActivity(userId, SourceType.SNAPSHOT.id, id);
+        times = 1;
+
+        store.getReadOnlyConnection();
+        times = 1;
+      }
+    };
+  }
+
   @Test
   void doesNotRecordActivityForInvalidSnapshotId() throws SQLException {
     long invalidId = 213;
@@ -204,7 +339,7 @@ public class SnapshotServiceTest {
     };
 
     try {
-      service.getById(invalidId, userId);
+      service.getById(invalidId, userId, null);
       fail("Should not respond for a invalid id");
     } catch (NotFoundException expected) {
       assertEquals(
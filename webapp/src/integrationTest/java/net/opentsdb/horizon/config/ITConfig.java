@@ -22,4 +22,6 @@ public class ITConfig {
   public String key;
   public String cert;
   public String cacert;
+  /** The <code>activityFlushIntervalMillis</code> of the server under test. */
+  public long activityFlushIntervalMillis = 5000;
 }
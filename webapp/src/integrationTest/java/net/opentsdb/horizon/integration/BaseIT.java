@@ -60,6 +60,8 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import static net.opentsdb.horizon.ApplicationFactory.formatJdbcProperties;
 import static net.opentsdb.horizon.service.NamespaceService.DH_TRACKS;
@@ -81,6 +83,8 @@ public abstract class BaseIT {
   private static KeyReader keyReader;
   protected static RestAssuredConfig ignoreSslCertificateValidation;
   protected static ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+  private static final long ACTIVITY_POLL_MILLIS = 200;
+  private static long activityFlushIntervalMillis;
 
   protected String endPoint;
   protected MessageDigest md5;
@@ -90,6 +94,7 @@ public abstract class BaseIT {
   static {
     try {
       ITConfig itConfig = ConfigLoader.loadResourceConfig("config-it.yaml", ITConfig.class);
+      activityFlushIntervalMillis = itConfig.activityFlushIntervalMillis;
       Env env = Env.valueOf(System.getProperties().getProperty("env", Env.dev.name()));
       Config config = ConfigLoader.loadResourceConfig("config-" + env.name() + ".yaml", Config.class);
 
@@ -175,6 +180,23 @@ public abstract class BaseIT {
 
   protected abstract String getUri();
 
+  /**
+   * User activity is written by a periodic flush on the server. Polls <code>read</code> until it
+   * returns a value accepted by <code>flushed</code>, for at most two flush intervals.
+   *
+   * @return the last value read, null if nothing was written
+   */
+  protected static <T> T awaitActivity(Supplier<T> read, Predicate<T> flushed)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 2 * activityFlushIntervalMillis;
+    T value = read.get();
+    while ((value == null || !flushed.test(value)) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(ACTIVITY_POLL_MILLIS);
+      value = read.get();
+    }
+    return value;
+  }
+
   protected void cleanUpDBAndCreateUser() {
     cleanUpDB();
     storeHeadlessUser();
@@ -56,6 +56,7 @@ import static net.opentsdb.horizon.util.Utils.slugify;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assumptions.assumeTrue;
@@ -379,15 +380,18 @@ public class DashboardIT extends BaseIT {
             .get(endPoint + "/file/" + dashboardId);
     assumeTrue(200 == response.getStatusCode());
 
-    Thread.sleep(3000); // wait for the dashboard activity updated in async.
-
-    FolderActivity folderActivity = dbUtil.getFolderActivity(regularMember, dashboardId);
+    FolderActivity folderActivity =
+        awaitActivity(
+            () -> dbUtil.getFolderActivity(regularMember, dashboardId),
+            activity -> ts1.getTime() <= activity.getLastVisitedTime().getTime());
+    assertNotNull(folderActivity);
     assertEquals(regularMember, folderActivity.getUserId());
     assertEquals(dashboardId, folderActivity.getFolderId());
     Timestamp lastVisitedTime = folderActivity.getLastVisitedTime();
     assertTrue(ts1.getTime() <= lastVisitedTime.getTime());
 
     // verify that reading again, updates the last visited time of the same record.
+    Timestamp ts2 = new Timestamp(System.currentTimeMillis());
     response =
         given()
             .config(ignoreSslCertificateValidation)
@@ -396,7 +400,11 @@ public class DashboardIT extends BaseIT {
             .get(endPoint + "/file/" + dashboardId);
     assumeTrue(200 == response.getStatusCode());
 
-    folderActivity = dbUtil.getFolderActivity(regularMember, dashboardId);
+    folderActivity =
+        awaitActivity(
+            () -> dbUtil.getFolderActivity(regularMember, dashboardId),
+            activity -> ts2.getTime() <= activity.getLastVisitedTime().getTime());
+    assertNotNull(folderActivity);
     assertEquals(regularMember, folderActivity.getUserId());
     assertEquals(dashboardId, folderActivity.getFolderId());
     assertTrue(lastVisitedTime.getTime() <= folderActivity.getLastVisitedTime().getTime());
@@ -437,8 +445,6 @@ public class DashboardIT extends BaseIT {
             dashboard.getId(),
             lastVisitedTime)); // activity for a different user
 
-    Thread.sleep(3000); // wait for the dashboard activity updated in async.
-
     Response response =
         given()
             .config(ignoreSslCertificateValidation)
@@ -822,15 +822,18 @@ public class SnapshotIT extends BaseIT {
             .andReturn();
     assertEquals(200, response.getStatusCode(), response.getBody().asString());
 
-    Thread.sleep(2000); // wait for the snapshot activity updated in async.
-
-    Activity activity1 = dbUtil.getActivity(regularMember, SNAPSHOT.id, model.getId());
+    Activity activity1 =
+        awaitActivity(
+            () -> dbUtil.getActivity(regularMember, SNAPSHOT.id, model.getId()),
+            activity -> ts1.getTime() <= activity.getTimestamp().getTime());
+    assertNotNull(activity1);
     assertEquals(regularMember, activity1.getUserId());
     assertEquals(SNAPSHOT.id, activity1.getEntityType());
     assertEquals(model.getId(), activity1.getEntityId());
     assertTrue(ts1.getTime() <= activity1.getTimestamp().getTime());
 
     // verify that reading again, updates the last visited time of the same record.
+    Timestamp ts2 = new Timestamp(System.currentTimeMillis());
     response =
         given()
             .config(ignoreSslCertificateValidation)
@@ -840,9 +843,11 @@ public class SnapshotIT extends BaseIT {
             .andReturn();
     assertEquals(200, response.getStatusCode(), response.getBody().asString());
 
-    Thread.sleep(1000); // wait for the snapshot activity updated in async.
-
-    Activity activity2 = dbUtil.getActivity(regularMember, SNAPSHOT.id, model.getId());
+    Activity activity2 =
+        awaitActivity(
+            () -> dbUtil.getActivity(regularMember, SNAPSHOT.id, model.getId()),
+            activity -> ts2.getTime() <= activity.getTimestamp().getTime());
+    assertNotNull(activity2);
     assertEquals(regularMember, activity2.getUserId());
     assertEquals(SNAPSHOT.id, activity2.getEntityType());
     assertEquals(model.getId(), activity2.getEntityId());
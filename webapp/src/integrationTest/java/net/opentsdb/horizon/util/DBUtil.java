@@ -295,7 +295,7 @@ public class DBUtil {
                           return f;
                         })
                     .findOne());
-    return favorite.get();
+    return favorite.orElse(null);
   }
 
   public void insert(FolderActivity folderActivity) {
@@ -447,7 +447,7 @@ public class DBUtil {
                           return f;
                         })
                     .findOne());
-    return favorite.get();
+    return favorite.orElse(null);
   }
 
   public void insert(Activity activity) {
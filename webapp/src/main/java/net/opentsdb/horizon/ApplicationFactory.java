@@ -17,34 +17,50 @@
 
 package net.opentsdb.horizon;
 
-import com.mchange.v2.c3p0.ComboPooledDataSource;
 import com.oath.auth.KeyRefresher;
 import com.oath.auth.KeyRefresherException;
 import com.yahoo.athenz.zms.ZMSClient;
 import com.yahoo.athenz.zts.ZTSClient;
 import io.swagger.jaxrs.config.BeanConfig;
+import io.ultrabrew.metrics.MetricRegistry;
+import net.opentsdb.horizon.codec.ContentCodecs;
+import net.opentsdb.horizon.codec.DictionaryCodec;
 import net.opentsdb.horizon.config.ApplicationConfig;
 import net.opentsdb.horizon.config.Config;
 import net.opentsdb.horizon.config.DBConfig;
+import net.opentsdb.horizon.config.PoolConfig;
 import net.opentsdb.horizon.config.ServerConfig;
+import net.opentsdb.horizon.ext.MetricRegistryFactory;
 import net.opentsdb.horizon.ext.ResourceExtender;
+import net.opentsdb.horizon.fs.FolderTreeCache;
 import net.opentsdb.horizon.fs.store.FolderStore;
+import net.opentsdb.horizon.handler.AdmissionControlHandler;
+import net.opentsdb.horizon.pool.ConnectionPools;
+import net.opentsdb.horizon.pool.PoolSettings;
+import net.opentsdb.horizon.pool.ReplicaRoutingDataSource;
 import net.opentsdb.horizon.resource.AlertResource;
 import net.opentsdb.horizon.resource.ContactsResource;
 import net.opentsdb.horizon.resource.DashboardResource;
 import net.opentsdb.horizon.resource.NamespaceAlertResource;
 import net.opentsdb.horizon.resource.NamespaceResource;
 import net.opentsdb.horizon.resource.NamespaceSnoozeResource;
+import net.opentsdb.horizon.resource.ObjectMapperResolver;
 import net.opentsdb.horizon.resource.OktaResource;
+import net.opentsdb.horizon.resource.SessionConsistencyFilter;
 import net.opentsdb.horizon.resource.SnapshotResource;
 import net.opentsdb.horizon.resource.SnoozeResource;
 import net.opentsdb.horizon.resource.UserResource;
 import net.opentsdb.horizon.secrets.KeyReader;
 import net.opentsdb.horizon.secrets.KeyReaderFactory;
+import net.opentsdb.horizon.service.ActivityAggregator;
 import net.opentsdb.horizon.service.ActivityJobScheduler;
+import net.opentsdb.horizon.service.BoundedExecutor;
 import net.opentsdb.horizon.service.AlertService;
 import net.opentsdb.horizon.service.AuthService;
 import net.opentsdb.horizon.service.ContactService;
+import net.opentsdb.horizon.service.ContentDedupReport;
+import net.opentsdb.horizon.service.ContentDictionaryService;
+import net.opentsdb.horizon.service.ContentRecompressionJob;
 import net.opentsdb.horizon.service.ContentService;
 import net.opentsdb.horizon.service.DashboardActivityJobScheduler;
 import net.opentsdb.horizon.service.DashboardService;
@@ -61,18 +77,24 @@ import net.opentsdb.horizon.store.ContentStore;
 import net.opentsdb.horizon.store.NamespaceFollowerStore;
 import net.opentsdb.horizon.store.NamespaceMemberStore;
 import net.opentsdb.horizon.store.NamespaceStore;
+import net.opentsdb.horizon.store.SessionConsistency;
 import net.opentsdb.horizon.store.SnapshotStore;
 import net.opentsdb.horizon.store.SnoozeStore;
 import net.opentsdb.horizon.store.UserStore;
+import net.opentsdb.horizon.util.CanonicalJson;
+import net.opentsdb.horizon.util.ContentWriter;
+import net.opentsdb.horizon.util.Digester;
 
 import javax.net.ssl.SSLContext;
+import javax.sql.DataSource;
 import javax.ws.rs.core.Application;
 import java.io.IOException;
-import java.security.MessageDigest;
 import java.sql.SQLException;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
@@ -93,6 +115,9 @@ import static net.opentsdb.horizon.config.ApplicationConfig.ATHENZ_PUBLIC_KEY;
 import static net.opentsdb.horizon.config.ApplicationConfig.ATHENZ_SSLCONTEXT;
 import static net.opentsdb.horizon.config.ApplicationConfig.ATHENZ_TRUSTORE;
 import static net.opentsdb.horizon.config.ApplicationConfig.ATHENZ_TRUSTORE_PASSWORD;
+import static net.opentsdb.horizon.pool.ConnectionPools.BACKGROUND_RW;
+import static net.opentsdb.horizon.pool.ConnectionPools.INTERACTIVE_RO;
+import static net.opentsdb.horizon.pool.ConnectionPools.INTERACTIVE_RW;
 
 public class ApplicationFactory {
 
@@ -100,8 +125,11 @@ public class ApplicationFactory {
 
   SSLContext athenzSSlContext;
 
+  private MetricRegistry metricRegistry;
+
   public ApplicationFactory(Config config) throws Exception {
     this.config = config;
+    this.metricRegistry = createMetricRegistry(config.serverConfig);
     ApplicationConfig applicationConfig = config.applicationConfig;
     Map<String, Object> appParams = applicationConfig.initParams;
     if (appParams != null) {
@@ -124,6 +152,22 @@ public class ApplicationFactory {
     }
   }
 
+  private MetricRegistry createMetricRegistry(ServerConfig serverConfig) throws Exception {
+    if (!serverConfig.instrumentationEnabled) {
+      return new MetricRegistry();
+    }
+    String metricRegistryFactoryClassName = serverConfig.metricRegistryFactoryClassName;
+    MetricRegistryFactory factory =
+        ((Class<? extends MetricRegistryFactory>) loadClass(metricRegistryFactoryClassName))
+            .getDeclaredConstructor()
+            .newInstance();
+    return factory.createRegistry(serverConfig.initParams);
+  }
+
+  public MetricRegistry getMetricRegistry() {
+    return metricRegistry;
+  }
+
   private SSLContext buildSSLContext(
       String athensPrivateKey,
       String athensPublicKey,
@@ -171,25 +215,80 @@ public class ApplicationFactory {
     String mysqlROUrl = "jdbc:mysql://" + dbROUrl + "/" + dbName + jdbcProperties;
     String mysqlRWUrl = "jdbc:mysql://" + dbRWUrl + "/" + dbName + jdbcProperties;
 
-    ComboPooledDataSource rwDataSource =
-        createPooledDataSource(dbUsername, dbPassword, mysqlRWUrl, dbConfig);
-    ComboPooledDataSource roDataSource =
-        createPooledDataSource(dbUsername, dbPassword, mysqlROUrl, dbConfig);
-
-    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+    int workerThreads = config.serverConfig.workerThreads;
+    DataSource rwDataSource =
+        createPooledDataSource(
+            dbUsername, dbPassword, mysqlRWUrl, INTERACTIVE_RW, workerThreads, dbConfig);
+    DataSource roDataSource;
+    List<String> replicaUrls = dbConfig.dbReplicaUrls;
+    if (replicaUrls == null || replicaUrls.isEmpty()) {
+      roDataSource =
+          createPooledDataSource(
+              dbUsername, dbPassword, mysqlROUrl, INTERACTIVE_RO, workerThreads, dbConfig);
+    } else {
+      Map<String, DataSource> replicas = new LinkedHashMap<>();
+      for (String replicaUrl : replicaUrls) {
+        replicas.put(
+            replicaUrl,
+            createPooledDataSource(
+                dbUsername,
+                dbPassword,
+                "jdbc:mysql://" + replicaUrl + "/" + dbName + jdbcProperties,
+                INTERACTIVE_RO + "-" + replicaUrl,
+                INTERACTIVE_RO,
+                workerThreads / replicaUrls.size(),
+                dbConfig));
+      }
+      roDataSource =
+          new ReplicaRoutingDataSource(
+              replicas,
+              rwDataSource,
+              dbConfig.replicaProbeIntervalMillis,
+              dbConfig.replicaMaxLagMillis,
+              metricRegistry);
+    }
+    SessionConsistency sessionConsistency =
+        new SessionConsistency(dbConfig.readYourWritesWindowMillis);
+    // the activity flushes plus the content jobs
+    DataSource backgroundDataSource =
+        createPooledDataSource(
+            dbUsername,
+            dbPassword,
+            mysqlRWUrl,
+            BACKGROUND_RW,
+            applicationConfig.activityThreads + 2,
+            dbConfig);
+
+    Digester digest = new Digester(Digester.SHA_256);
 
     NamespaceMemberStore namespaceMemberStore =
-        new NamespaceMemberStore(rwDataSource, roDataSource);
+        new NamespaceMemberStore(rwDataSource, roDataSource, sessionConsistency);
     NamespaceFollowerStore namespaceFollowerStore =
-        new NamespaceFollowerStore(rwDataSource, roDataSource);
-    NamespaceStore namespaceStore = new NamespaceStore(rwDataSource, roDataSource);
+        new NamespaceFollowerStore(rwDataSource, roDataSource, sessionConsistency);
+    NamespaceStore namespaceStore =
+        new NamespaceStore(rwDataSource, roDataSource, sessionConsistency);
 
-    FolderStore folderStore = new FolderStore(rwDataSource, roDataSource);
-    UserStore userStore = new UserStore(rwDataSource, roDataSource);
+    FolderStore folderStore = new FolderStore(rwDataSource, roDataSource, sessionConsistency);
+    UserStore userStore = new UserStore(rwDataSource, roDataSource, sessionConsistency);
 
     NamespaceCache namespaceCache =
         new NamespaceCache(applicationConfig.cacheConfig, namespaceStore);
     UserCache userCache = new UserCache(applicationConfig.cacheConfig, userStore);
+    ContentCache contentCache =
+        new ContentCache(
+            applicationConfig.cacheConfig.contentMaxBytes,
+            applicationConfig.cacheConfig.contentMode,
+            metricRegistry);
+    FolderTreeCache folderTreeCache = null;
+    if (applicationConfig.cacheConfig.folderTreeEnabled) {
+      folderTreeCache =
+          new FolderTreeCache(
+              folderStore,
+              applicationConfig.cacheConfig.folderTreeTTL,
+              applicationConfig.cacheConfig.folderTreeTTLUnit,
+              applicationConfig.cacheConfig.folderTreeMaxFolders,
+              metricRegistry);
+    }
 
     String ztsUrl = (String) appParams.get("ztsUrl");
     String zmsUrl = (String) appParams.get("zmsUrl");
@@ -202,7 +301,24 @@ public class ApplicationFactory {
       zmsClient = new ZMSClient(zmsUrl, athenzSSlContext);
     }
 
-    AuthService authService = new AuthService(namespaceMemberStore, ztsClient, athensDomain);
+    CacheConfig cacheConfig = applicationConfig.cacheConfig;
+    AccessDecisionCache accessDecisionCache = null;
+    if (ztsClient != null) {
+      accessDecisionCache =
+          new AccessDecisionCache(
+              ztsClient,
+              cacheConfig.athensTTL,
+              cacheConfig.athensNegativeTTL,
+              cacheConfig.athensTTLUnit,
+              cacheConfig.athensMaxSize,
+              metricRegistry);
+    }
+    AuthService authService =
+        new AuthService(
+            namespaceMemberStore,
+            accessDecisionCache,
+            athensDomain,
+            (int) cacheConfig.memberTTLUnit.toSeconds(cacheConfig.memberTTL));
     NamespaceFollowerService namespaceFollowerService =
         new NamespaceFollowerService(namespaceFollowerStore, authService, namespaceCache);
     NamespaceMemberService namespaceMemberService =
@@ -225,9 +341,28 @@ public class ApplicationFactory {
     NamespaceResource namespaceResource =
         new NamespaceResource(namespaceService, namespaceMemberService, namespaceFollowerService);
 
-    ExecutorService executorService = Executors.newFixedThreadPool(5);
+    ExecutorService executorService =
+        new BoundedExecutor(
+            "activity",
+            applicationConfig.activityThreads,
+            applicationConfig.activityQueueSize,
+            applicationConfig.activityRejectionPolicy,
+            metricRegistry);
+    ActivityStore activityStore = new ActivityStore(backgroundDataSource, null);
+    ActivityAggregator activityAggregator =
+        new ActivityAggregator(
+            activityStore,
+            executorService,
+            Executors.newSingleThreadScheduledExecutor(
+                BoundedExecutor.threadFactory("activity-flush")),
+            applicationConfig.activityFlushIntervalMillis,
+            applicationConfig.activityMaxPending,
+            metricRegistry);
+    // the flush threads are daemons, write out the pending activity when the JVM exits
+    Runtime.getRuntime()
+        .addShutdownHook(new Thread(activityAggregator::shutdown, "activity-shutdown"));
     DashboardActivityJobScheduler jobScheduler =
-        new DashboardActivityJobScheduler(folderStore, executorService);
+        new DashboardActivityJobScheduler(folderStore, activityAggregator);
 
     DashboardService dashboardService =
         new DashboardService(
@@ -238,44 +373,98 @@ public class ApplicationFactory {
             authService,
             userStore,
             digest,
+            contentCache,
+            folderTreeCache,
             jobScheduler);
     DashboardResource dashboardResource = new DashboardResource(dashboardService);
 
     UserService userService = new UserService(userStore, folderStore);
     UserResource userResource = new UserResource(userService);
 
-    ContactStore contactStore = new ContactStore(rwDataSource, roDataSource);
+    ContactStore contactStore = new ContactStore(rwDataSource, roDataSource, sessionConsistency);
     String adminEmailDomain = applicationConfig.adminEmailDomain;
     ContactService contactService =
         new ContactService(
             contactStore, authService, namespaceCache, namespaceMemberService, adminEmailDomain);
     ContactsResource contactsResource = new ContactsResource(contactService, namespaceCache);
 
-    AlertStore alertStore = new AlertStore(rwDataSource, roDataSource);
+    AlertStore alertStore = new AlertStore(rwDataSource, roDataSource, sessionConsistency);
     AlertService alertService =
         new AlertService(alertStore, authService, namespaceCache, contactStore);
     NamespaceAlertResource namespaceAlertResource =
         new NamespaceAlertResource(alertService, namespaceCache);
     AlertResource alertResource = new AlertResource(alertService);
 
-    SnoozeStore snoozeStore = new SnoozeStore(rwDataSource, roDataSource);
+    SnoozeStore snoozeStore = new SnoozeStore(rwDataSource, roDataSource, sessionConsistency);
     SnoozeService snoozeService =
         new SnoozeService(snoozeStore, authService, namespaceCache, contactStore);
     NamespaceSnoozeResource namespaceSnoozeResource =
         new NamespaceSnoozeResource(snoozeService, namespaceCache);
     SnoozeResource snoozeResource = new SnoozeResource(snoozeService);
 
-    ContentStore contentStore = new ContentStore(rwDataSource, roDataSource);
+    ContentStore contentStore = new ContentStore(rwDataSource, roDataSource, sessionConsistency);
+    ContentDictionaryService contentDictionaryService =
+        new ContentDictionaryService(
+            contentStore,
+            applicationConfig.contentCodecLevel,
+            applicationConfig.contentDictionarySamples,
+            applicationConfig.contentDictionarySize,
+            metricRegistry);
+    ContentCodecs.register(contentDictionaryService.getCodec());
+    if (DictionaryCodec.NAME.equalsIgnoreCase(applicationConfig.contentCodec)) {
+      int dictionaryId =
+          applicationConfig.contentDictionaryRetrain
+              ? contentDictionaryService.train()
+              : contentDictionaryService.loadOrTrain();
+      // nothing to train on yet, keep writing gzip until a dictionary exists
+      if (dictionaryId >= 0) {
+        ContentCodecs.setWriteCodec(contentDictionaryService.getCodec());
+      }
+    } else {
+      ContentCodecs.setWriteCodec(
+          ContentCodecs.forName(
+              applicationConfig.contentCodec, applicationConfig.contentCodecLevel));
+    }
+    ContentStore backgroundContentStore =
+        new ContentStore(backgroundDataSource, null, SessionConsistency.DISABLED);
+    if (applicationConfig.contentRecompressIntervalMillis > 0) {
+      new ContentRecompressionJob(
+              backgroundContentStore,
+              ContentCodecs.getWriteCodec(),
+              applicationConfig.contentRecompressBatchSize,
+              metricRegistry)
+          .start(
+              Executors.newSingleThreadScheduledExecutor(
+                  BoundedExecutor.threadFactory("content-recompression")),
+              applicationConfig.contentRecompressIntervalMillis);
+    }
+    if (applicationConfig.contentCanonical) {
+      ContentWriter.setCanonicalJson(new CanonicalJson(applicationConfig.contentVolatileFields));
+    }
+    if (applicationConfig.contentDedupReport) {
+      ExecutorService reportExecutor = Executors.newSingleThreadExecutor();
+      reportExecutor.submit(
+          new ContentDedupReport(
+              backgroundContentStore,
+              new CanonicalJson(applicationConfig.contentVolatileFields),
+              digest,
+              metricRegistry));
+      reportExecutor.shutdown();
+    }
     ContentService contentService = new ContentService(digest, contentStore);
 
-    ActivityStore activityStore = new ActivityStore(rwDataSource, roDataSource);
     ActivityJobScheduler activityJobScheduler =
-        new ActivityJobScheduler(activityStore, executorService);
+        new ActivityJobScheduler(activityStore, activityAggregator);
 
-    SnapshotStore snapshotStore = new SnapshotStore(rwDataSource, roDataSource);
+    SnapshotStore snapshotStore = new SnapshotStore(rwDataSource, roDataSource, sessionConsistency);
     SnapshotService snapshotService =
         new SnapshotService(
-            snapshotStore, contentService, folderStore, alertStore, activityJobScheduler);
+            snapshotStore,
+            contentService,
+            contentCache,
+            folderStore,
+            alertStore,
+            activityJobScheduler);
     SnapshotResource snapshotResource = new SnapshotResource(snapshotService);
 
     // add all resource classes
@@ -289,6 +478,8 @@ public class ApplicationFactory {
     singletons.add(namespaceSnoozeResource);
     singletons.add(snoozeResource);
     singletons.add(snapshotResource);
+    singletons.add(new ObjectMapperResolver());
+    singletons.add(new SessionConsistencyFilter(sessionConsistency));
 
     String resourceExtenderClassName = applicationConfig.resourceExtenderClassName;
     if (resourceExtenderClassName != null && !resourceExtenderClassName.isEmpty()) {
@@ -330,25 +521,58 @@ public class ApplicationFactory {
     return builder.toString();
   }
 
-  private ComboPooledDataSource createPooledDataSource(
-      String dbUsername, String dbKey, String dbUrl, DBConfig dbConfig) throws SQLException {
-    ComboPooledDataSource dataSource = new ComboPooledDataSource();
-    dataSource.setJdbcUrl(dbUrl);
-    dataSource.setUser(dbUsername);
-    dataSource.setPassword(dbKey);
-
-    dataSource.setMinPoolSize(dbConfig.c3p0MinPoolSize);
-    dataSource.setMaxPoolSize(dbConfig.c3p0MaxPoolSize);
-    dataSource.setLoginTimeout(dbConfig.c3p0LoginTimeout);
-    dataSource.setMaxStatements(dbConfig.c3p0MaxStatements);
-    dataSource.setMaxStatementsPerConnection(dbConfig.c3p0MaxStatementsPerConnection);
-    dataSource.setMaxConnectionAge(dbConfig.c3p0MaxConnectionAge);
-    dataSource.setMaxIdleTime(dbConfig.c3p0MaxIdleTime);
-    dataSource.setMaxIdleTimeExcessConnections(dbConfig.c3p0MaxIdleTimeExcessConnections);
-    dataSource.setIdleConnectionTestPeriod(dbConfig.c3p0IdleConnectionTestPeriod);
-    dataSource.setTestConnectionOnCheckin(dbConfig.c3p0TestConnectionOnCheckin);
-    dataSource.setTestConnectionOnCheckout(dbConfig.c3p0TestConnectionOnCheckout);
-    return dataSource;
+  private DataSource createPooledDataSource(
+      String dbUsername,
+      String dbKey,
+      String dbUrl,
+      String name,
+      int workerThreads,
+      DBConfig dbConfig)
+      throws SQLException {
+    return createPooledDataSource(
+        dbUsername, dbKey, dbUrl, name, name, workerThreads, dbConfig);
+  }
+
+  /** @param configName the pool whose overrides in {@link DBConfig#pools} apply */
+  private DataSource createPooledDataSource(
+      String dbUsername,
+      String dbKey,
+      String dbUrl,
+      String name,
+      String configName,
+      int workerThreads,
+      DBConfig dbConfig)
+      throws SQLException {
+    PoolSettings settings = new PoolSettings();
+    settings.url = dbUrl;
+    settings.user = dbUsername;
+    settings.password = dbKey;
+
+    settings.minSize = dbConfig.c3p0MinPoolSize;
+    settings.maxSize = dbConfig.c3p0MaxPoolSize;
+    settings.workerThreads = workerThreads;
+    settings.acquireTimeoutMillis = dbConfig.poolAcquireTimeoutMillis;
+    settings.loginTimeoutSeconds = dbConfig.c3p0LoginTimeout;
+    settings.maxStatements = dbConfig.c3p0MaxStatements;
+    settings.maxStatementsPerConnection = dbConfig.c3p0MaxStatementsPerConnection;
+    settings.maxConnectionAgeSeconds = dbConfig.c3p0MaxConnectionAge;
+    settings.maxIdleTimeSeconds = dbConfig.c3p0MaxIdleTime;
+    settings.maxIdleTimeExcessConnectionsSeconds = dbConfig.c3p0MaxIdleTimeExcessConnections;
+    settings.idleConnectionTestPeriodSeconds = dbConfig.c3p0IdleConnectionTestPeriod;
+    settings.testConnectionOnCheckin = dbConfig.c3p0TestConnectionOnCheckin;
+    settings.testConnectionOnCheckout = dbConfig.c3p0TestConnectionOnCheckout;
+
+    PoolConfig poolConfig = dbConfig.pools == null ? null : dbConfig.pools.get(configName);
+    if (poolConfig != null) {
+      poolConfig.applyTo(settings);
+    }
+    // a request timing out on the pool backs off the admission of requests
+    Runnable onTimeout =
+        config.serverConfig.admissionControlEnabled
+            ? AdmissionControlHandler::markOverloaded
+            : () -> {};
+    return ConnectionPools.create(dbConfig.poolType, name, settings, metricRegistry, onTimeout)
+        .getDataSource();
   }
 
   private class SingletonApplication extends Application {
@@ -84,7 +84,9 @@ public class Main {
     }
 
     ApplicationFactory applicationFactory = new ApplicationFactory(config);
-    Undertow undertow = UndertowServer.getInstance(config, applicationFactory.buildApplication());
+    Undertow undertow =
+        UndertowServer.getInstance(
+            config, applicationFactory.buildApplication(), applicationFactory.getMetricRegistry());
     undertow.start();
     LOGGER.info("Server listening on port: " + config.serverConfig.port);
   }
@@ -17,9 +17,10 @@
 
 package net.opentsdb.horizon;
 
+import com.google.common.base.Strings;
 import com.google.common.collect.Maps;
-import com.mchange.v2.c3p0.ComboPooledDataSource;
 import com.stumbleupon.async.Deferred;
+import io.ultrabrew.metrics.MetricRegistry;
 import liquibase.Contexts;
 import liquibase.Liquibase;
 import liquibase.database.Database;
@@ -32,15 +33,28 @@ import net.opentsdb.configuration.Configuration;
 import net.opentsdb.configuration.ConfigurationEntrySchema;
 import net.opentsdb.core.BaseTSDBPlugin;
 import net.opentsdb.core.TSDB;
+import net.opentsdb.horizon.pool.ConnectionPool;
+import net.opentsdb.horizon.pool.ConnectionPools;
+import net.opentsdb.horizon.pool.PoolSettings;
+import net.opentsdb.horizon.pool.ReplicaRoutingDataSource;
+import net.opentsdb.horizon.store.SessionConsistency;
 import net.opentsdb.utils.JSON;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
+
+import static net.opentsdb.horizon.pool.ConnectionPools.BACKGROUND_RW;
+import static net.opentsdb.horizon.pool.ConnectionPools.INTERACTIVE_RO;
+import static net.opentsdb.horizon.pool.ConnectionPools.INTERACTIVE_RW;
 
 public class SharedJDBCPool extends BaseTSDBPlugin {
   private static final Logger LOG = LoggerFactory.getLogger(SharedJDBCPool.class);
@@ -52,6 +66,10 @@ public class SharedJDBCPool extends BaseTSDBPlugin {
   public static final String RO_USER_KEY = "read.user";
   public static final String RO_PASS_KEY_KEY = "read.secret.key";
   public static final String RO_URL_KEY = "read.url";
+  public static final String RO_REPLICA_URLS_KEY = "read.replica.urls";
+  public static final String RO_REPLICA_PROBE_KEY = "read.replica.probe.interval";
+  public static final String RO_REPLICA_LAG_KEY = "read.replica.lag.max";
+  public static final String RO_SESSION_WINDOW_KEY = "read.session.window";
 
   public static final String RW_USER_KEY = "write.user";
   public static final String RW_PASS_KEY_KEY = "write.secret.key";
@@ -60,6 +78,9 @@ public class SharedJDBCPool extends BaseTSDBPlugin {
   public static final String DB_KEY = "database.name";
   public static final String JDBC_PROPS_KEY = "jdbc.properties";
 
+  public static final String POOL_TYPE_KEY = "pool.type";
+  public static final String WORKERS_KEY = "pool.workers";
+  public static final String ACQUIRE_TIMEOUT_KEY = "pool.acquire.timeout";
   public static final String MIN_KEY = "pool.min";
   public static final String MAX_KEY = "pool.max";
   public static final String AGE_KEY = "pool.connection.age.max";
@@ -72,8 +93,13 @@ public class SharedJDBCPool extends BaseTSDBPlugin {
   public static final String CHEKIN_KEY = "pool.test.checkin";
   public static final String CHEKOUT_KEY = "pool.test.checkout";
 
-  protected ComboPooledDataSource rwDataSource;
-  protected ComboPooledDataSource roDataSource;
+  /** The pools every shared pool plugin creates, each sized and timed out on its own. */
+  public static final String[] POOLS = {INTERACTIVE_RW, INTERACTIVE_RO, BACKGROUND_RW};
+
+  protected final Map<String, ConnectionPool> pools = new HashMap<>();
+  protected ReplicaRoutingDataSource replicaRouter;
+  protected SessionConsistency sessionConsistency = SessionConsistency.DISABLED;
+  protected MetricRegistry metricRegistry;
 
   @Override
   public Deferred<Object> initialize(final TSDB tsdb, final String id) {
@@ -82,27 +108,50 @@ public class SharedJDBCPool extends BaseTSDBPlugin {
 
     registerConfigs(tsdb);
     final Configuration config = tsdb.getConfig();
+    metricRegistry = new MetricRegistry();
 
     try {
-      if (config.getString(getConfigKey(RO_URL_KEY)) == null ||
+      for (final String name : new String[] {INTERACTIVE_RW, BACKGROUND_RW}) {
+        pools.put(name, createPool(name,
+                config.getString(getConfigKey(RW_USER_KEY)),
+                config.getSecretString(config.getString(getConfigKey(RW_PASS_KEY_KEY))),
+                config.getString(getConfigKey(RW_URL_KEY))));
+      }
+
+      final String replicaUrls = config.getString(getConfigKey(RO_REPLICA_URLS_KEY));
+      if (!Strings.isNullOrEmpty(replicaUrls)) {
+        final String[] urls = replicaUrls.trim().split("\\s*,\\s*");
+        final Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < urls.length; i++) {
+          final ConnectionPool pool = createPool(INTERACTIVE_RO + "-" + i, INTERACTIVE_RO,
+                  urls.length,
+                  config.getString(getConfigKey(RO_USER_KEY)),
+                  config.getSecretString(config.getString(getConfigKey(RO_PASS_KEY_KEY))),
+                  urls[i]);
+          pools.put(INTERACTIVE_RO + "-" + i, pool);
+          replicas.put(Integer.toString(i), pool.getDataSource());
+        }
+        replicaRouter = new ReplicaRoutingDataSource(replicas, getRwDataSource(),
+                config.getLong(getConfigKey(RO_REPLICA_PROBE_KEY)),
+                config.getLong(getConfigKey(RO_REPLICA_LAG_KEY)),
+                metricRegistry);
+      } else if (config.getString(getConfigKey(RO_URL_KEY)) == null ||
           config.getString(getConfigKey(RO_URL_KEY)).isEmpty()) {
-        roDataSource = createPooledDataSource(
+        pools.put(INTERACTIVE_RO, createPool(INTERACTIVE_RO,
             config.getString(getConfigKey(RW_USER_KEY)),
             config.getSecretString(config.getString(getConfigKey(RW_PASS_KEY_KEY))),
-            config.getString(getConfigKey(RW_URL_KEY)));
+            config.getString(getConfigKey(RW_URL_KEY))));
       } else{
-        roDataSource = createPooledDataSource(
+        pools.put(INTERACTIVE_RO, createPool(INTERACTIVE_RO,
             config.getString(getConfigKey(RO_USER_KEY)),
             config.getSecretString(config.getString(getConfigKey(RO_PASS_KEY_KEY))),
-            config.getString(getConfigKey(RO_URL_KEY)));
+            config.getString(getConfigKey(RO_URL_KEY))));
       }
-
-      rwDataSource = createPooledDataSource(
-              config.getString(getConfigKey(RW_USER_KEY)),
-              config.getSecretString(config.getString(getConfigKey(RW_PASS_KEY_KEY))),
-              config.getString(getConfigKey(RW_URL_KEY)));
-    } catch (SQLException e) {
+      sessionConsistency =
+          new SessionConsistency(config.getLong(getConfigKey(RO_SESSION_WINDOW_KEY)));
+    } catch (SQLException | RuntimeException e) {
       LOG.error("Failed to initialize the shared JDBC pool", e);
+      shutdown();
       return Deferred.fromError(e);
     }
 
@@ -125,7 +174,7 @@ public class SharedJDBCPool extends BaseTSDBPlugin {
         LOG.info("Synchronized schema for H2.");
 
         // create a default user and namespace if the DB is empty and has just been initialized.
-        try (final Connection c = rwDataSource.getConnection()) {
+        try (final Connection c = getRwDataSource().getConnection()) {
           try (final ResultSet rs = c.prepareStatement("SELECT COUNT(*) AS cnt FROM user")
               .executeQuery()) {
             if (!rs.next() || rs.getInt("cnt") < 1) {
@@ -170,12 +219,55 @@ public class SharedJDBCPool extends BaseTSDBPlugin {
     return Deferred.fromResult(null);
   }
 
-  public ComboPooledDataSource getRwDataSource() {
-    return rwDataSource;
+  @Override
+  public Deferred<Object> shutdown() {
+    if (replicaRouter != null) {
+      replicaRouter.close();
+      replicaRouter = null;
+    }
+    for (final ConnectionPool pool : pools.values()) {
+      pool.close();
+    }
+    pools.clear();
+    return Deferred.fromResult(null);
+  }
+
+  /** @return the data source of the interactive read/write pool. */
+  public DataSource getRwDataSource() {
+    return getDataSource(INTERACTIVE_RW);
+  }
+
+  /** @return the data source of the interactive read only pool. */
+  public DataSource getRoDataSource() {
+    return getDataSource(INTERACTIVE_RO);
+  }
+
+  /**
+   * @param name one of {@link #POOLS}
+   * @return the data source of the named pool.
+   */
+  public DataSource getDataSource(final String name) {
+    if (INTERACTIVE_RO.equals(name) && replicaRouter != null) {
+      return replicaRouter;
+    }
+    final ConnectionPool pool = pools.get(name);
+    if (pool == null) {
+      throw new IllegalArgumentException("No connection pool named: " + name);
+    }
+    return pool.getDataSource();
   }
 
-  public ComboPooledDataSource getRoDataSource() {
-    return roDataSource;
+  /**
+   * @return the read-your-writes of the stores on the interactive pools, for them and a {@code
+   *     SessionConsistencyFilter} to share.
+   */
+  public SessionConsistency getSessionConsistency() {
+    return sessionConsistency;
+  }
+
+  /** @return the registry the pool telemetry is reported to. */
+  public MetricRegistry getMetricRegistry() {
+    return metricRegistry;
   }
 
   @Override
@@ -183,28 +275,63 @@ public class SharedJDBCPool extends BaseTSDBPlugin {
     return TYPE;
   }
 
-  private ComboPooledDataSource createPooledDataSource(final String dbUsername,
-                                                       final String dbKey,
-                                                       final String dbUrl) throws SQLException {
-    ComboPooledDataSource dataSource = new ComboPooledDataSource();
-    dataSource.setJdbcUrl(dbUrl);
-    dataSource.setUser(dbUsername);
-    dataSource.setPassword(dbKey);
+  private ConnectionPool createPool(final String name,
+                                    final String dbUsername,
+                                    final String dbKey,
+                                    final String dbUrl) throws SQLException {
+    return createPool(name, name, 1, dbUsername, dbKey, dbUrl);
+  }
 
+  /**
+   * @param configName the pool whose settings apply
+   * @param shares how many pools split the request threads of that pool
+   */
+  private ConnectionPool createPool(final String name,
+                                    final String configName,
+                                    final int shares,
+                                    final String dbUsername,
+                                    final String dbKey,
+                                    final String dbUrl) throws SQLException {
     final Configuration config = tsdb.getConfig();
+    final PoolSettings settings = new PoolSettings();
+    settings.url = dbUrl;
+    settings.user = dbUsername;
+    settings.password = dbKey;
+
+    settings.minSize = getPoolInt(configName, MIN_KEY);
+    settings.maxSize = getPoolInt(configName, MAX_KEY);
+    settings.workerThreads = getPoolInt(configName, WORKERS_KEY) / shares;
+    settings.acquireTimeoutMillis = getPoolInt(configName, ACQUIRE_TIMEOUT_KEY);
+    settings.loginTimeoutSeconds = config.getInt(getConfigKey(LOGIN_TIMEOUT_KEY));
+    settings.maxStatements = config.getInt(getConfigKey(MAX_STATEMENTS_KEY));
+    settings.maxStatementsPerConnection = config.getInt(getConfigKey(CONN_STATEMENTS_KEY));
+    settings.maxConnectionAgeSeconds = config.getInt(getConfigKey(AGE_KEY));
+    settings.maxIdleTimeSeconds = config.getInt(getConfigKey(IDLE_KEY));
+    settings.maxIdleTimeExcessConnectionsSeconds = config.getInt(getConfigKey(IDLE_EXCESS_KEY));
+    settings.idleConnectionTestPeriodSeconds = config.getInt(getConfigKey(IDLE_PERIOD_KEY));
+    settings.testConnectionOnCheckin = config.getBoolean(getConfigKey(CHEKIN_KEY));
+    settings.testConnectionOnCheckout = config.getBoolean(getConfigKey(CHEKOUT_KEY));
+    return ConnectionPools.create(
+        config.getString(getConfigKey(POOL_TYPE_KEY)), name, settings, metricRegistry);
+  }
+
+  /** @return the setting of the named pool, falling back to the one shared by all pools. */
+  private int getPoolInt(final String name, final String key) {
+    return getPoolInt(tsdb.getConfig(), getConfigKey(poolKey(name, key)), getConfigKey(key));
+  }
 
-    dataSource.setMinPoolSize(config.getInt(getConfigKey(MIN_KEY)));
-    dataSource.setMaxPoolSize(config.getInt(getConfigKey(MAX_KEY)));
-    dataSource.setLoginTimeout(config.getInt(getConfigKey(LOGIN_TIMEOUT_KEY)));
-    dataSource.setMaxStatements(config.getInt(getConfigKey(MAX_STATEMENTS_KEY)));
-    dataSource.setMaxStatementsPerConnection(config.getInt(getConfigKey(CONN_STATEMENTS_KEY)));
-    dataSource.setMaxConnectionAge(config.getInt(getConfigKey(AGE_KEY)));
-    dataSource.setMaxIdleTime(config.getInt(getConfigKey(IDLE_KEY)));
-    dataSource.setMaxIdleTimeExcessConnections(config.getInt(getConfigKey(IDLE_EXCESS_KEY)));
-    dataSource.setIdleConnectionTestPeriod(config.getInt(getConfigKey(IDLE_PERIOD_KEY)));
-    dataSource.setTestConnectionOnCheckin(config.getBoolean(getConfigKey(CHEKIN_KEY)));
-    dataSource.setTestConnectionOnCheckout(config.getBoolean(getConfigKey(CHEKOUT_KEY)));
-    return dataSource;
+  /** @return the int at <code>poolKey</code>, or at <code>sharedKey</code> if unset or blank. */
+  static int getPoolInt(final Configuration config, final String poolKey, final String sharedKey) {
+    final String value = config.getString(poolKey);
+    if (value == null || value.trim().isEmpty()) {
+      return config.getInt(sharedKey);
+    }
+    return Integer.parseInt(value.trim());
+  }
+
+  /** E.g. pool.max to pool.background-rw.max */
+  static String poolKey(final String name, final String key) {
+    return "pool." + name + key.substring("pool".length());
   }
 
   private void registerConfigs(final TSDB tsdb) {
@@ -221,6 +348,29 @@ public class SharedJDBCPool extends BaseTSDBPlugin {
       config.register(getConfigKey(RO_URL_KEY), null, false,
               "The fully qualified URL to connect over JDBC to the read only database.");
     }
+    if (!config.hasProperty(getConfigKey(RO_REPLICA_URLS_KEY))) {
+      config.register(getConfigKey(RO_REPLICA_URLS_KEY), null, false,
+              "A comma separated list of fully qualified JDBC URLs of read replicas to spread "
+                  + "the reads over instead of the read only URL. They use the read only user.");
+    }
+    if (!config.hasProperty(getConfigKey(RO_REPLICA_PROBE_KEY))) {
+      config.register(getConfigKey(RO_REPLICA_PROBE_KEY), 5000L, false,
+              "How often, in milliseconds, the replicas are probed to eject or admit them back.");
+    }
+    if (!config.hasProperty(getConfigKey(RO_REPLICA_LAG_KEY))) {
+      config.register(getConfigKey(RO_REPLICA_LAG_KEY), 0L, false,
+              "How far, in milliseconds, a replica may fall behind the primary before it's "
+                  + "ejected, measured with the replication_heartbeat table. 0 to not check, "
+                  + "else at least the probe interval.");
+    }
+    if (!config.hasProperty(getConfigKey(RO_SESSION_WINDOW_KEY))) {
+      config.register(getConfigKey(RO_SESSION_WINDOW_KEY), 0L, false,
+              "How long, in milliseconds, after a write the reads of the same user go to the "
+                  + "primary, or to a replica known to have applied the write. Needs a "
+                  + "SessionConsistencyFilter of getSessionConsistency() registered with the "
+                  + "REST resources, and a maximum "
+                  + "replica lag for the latter. 0 to not follow the writes.");
+    }
 
     if (!config.hasProperty(getConfigKey(RW_USER_KEY))) {
       config.register(getConfigKey(RW_USER_KEY), null, false,
@@ -249,13 +399,29 @@ public class SharedJDBCPool extends BaseTSDBPlugin {
               .build());
     }
 
+    if (!config.hasProperty(getConfigKey(POOL_TYPE_KEY))) {
+      config.register(getConfigKey(POOL_TYPE_KEY), ConnectionPools.C3P0, false,
+              "The connection pool implementation, either 'c3p0' or 'hikari'. The pool "
+                  + "settings below apply to both.");
+    }
+    if (!config.hasProperty(getConfigKey(WORKERS_KEY))) {
+      config.register(getConfigKey(WORKERS_KEY), "100", false,
+              "The number of request threads sharing each pool. Used to size the pool when "
+                  + "the max is 0 and to warn when the max is too small for it.");
+    }
+    if (!config.hasProperty(getConfigKey(ACQUIRE_TIMEOUT_KEY))) {
+      config.register(getConfigKey(ACQUIRE_TIMEOUT_KEY), "0", false,
+              "How long, in milliseconds, a request waits for a connection before failing. "
+                  + "0 waits indefinitely with c3p0 and 30 seconds with hikari.");
+    }
     if (!config.hasProperty(getConfigKey(MIN_KEY))) {
       config.register(getConfigKey(MIN_KEY), "1", false,
-              "The minimum number of connections in each C3P0 pool.");
+              "The minimum number of connections in each pool.");
     }
     if (!config.hasProperty(getConfigKey(MAX_KEY))) {
-      config.register(getConfigKey(MAX_KEY), "1", false,
-              "The maximum number of connections in each C3P0 pool. 0 means no max?");
+      config.register(getConfigKey(MAX_KEY), "0", false,
+              "The maximum number of connections in each pool. 0 sizes the pool to a quarter "
+                  + "of the request threads, between 2 and 32 connections.");
     }
     if (!config.hasProperty(getConfigKey(AGE_KEY))) {
       config.register(getConfigKey(AGE_KEY), "3600", false,
@@ -267,11 +433,13 @@ public class SharedJDBCPool extends BaseTSDBPlugin {
     }
     if (!config.hasProperty(getConfigKey(MAX_STATEMENTS_KEY))) {
       config.register(getConfigKey(MAX_STATEMENTS_KEY), "1024", false,
-              "TODO.");
+              "The number of prepared statements c3p0 caches across all connections of a "
+                  + "pool. 0 disables the cache.");
     }
     if (!config.hasProperty(getConfigKey(CONN_STATEMENTS_KEY))) {
       config.register(getConfigKey(CONN_STATEMENTS_KEY), "1024", false,
-              "TODO.");
+              "The number of prepared statements cached per connection. With hikari this is "
+                  + "the MySQL driver statement cache size.");
     }
     if (!config.hasProperty(getConfigKey(IDLE_KEY))) {
       config.register(getConfigKey(IDLE_KEY), "7200", false,
@@ -279,19 +447,32 @@ public class SharedJDBCPool extends BaseTSDBPlugin {
     }
     if (!config.hasProperty(getConfigKey(IDLE_PERIOD_KEY))) {
       config.register(getConfigKey(IDLE_PERIOD_KEY), "60", false,
-              "TODO");
+              "How often, in seconds, idle connections are tested so that the database or a "
+                  + "firewall doesn't drop them. 0 disables the test.");
     }
     if (!config.hasProperty(getConfigKey(IDLE_EXCESS_KEY))) {
       config.register(getConfigKey(IDLE_EXCESS_KEY), "0", false,
-              "TODO");
+              "How long, in seconds, connections above the pool minimum may sit idle before "
+                  + "they are closed. 0 falls back to the idle time.");
     }
     if (!config.hasProperty(getConfigKey(CHEKIN_KEY))) {
       config.register(getConfigKey(CHEKIN_KEY), false, false,
-              "TODO.");
+              "Whether c3p0 tests a connection asynchronously when it's returned to the pool.");
     }
     if (!config.hasProperty(getConfigKey(CHEKOUT_KEY))) {
       config.register(getConfigKey(CHEKOUT_KEY), false, false,
-              "TODO.");
+              "Whether c3p0 tests a connection before handing it out. Hikari always "
+                  + "validates connections that have been idle.");
+    }
+    for (final String name : POOLS) {
+      for (final String key : new String[] {MIN_KEY, MAX_KEY, WORKERS_KEY, ACQUIRE_TIMEOUT_KEY}) {
+        if (!config.hasProperty(getConfigKey(poolKey(name, key)))) {
+          // the background pool only serves the activity flushes and the content jobs
+          config.register(getConfigKey(poolKey(name, key)),
+                  BACKGROUND_RW.equals(name) && WORKERS_KEY.equals(key) ? "8" : null, false,
+                  "Overrides " + getConfigKey(key) + " for the " + name + " pool.");
+        }
+      }
     }
   }
 
@@ -18,7 +18,10 @@
 package net.opentsdb.horizon.config;
 
 import net.opentsdb.horizon.CacheConfig;
+import net.opentsdb.horizon.service.BoundedExecutor.RejectionPolicy;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 public class ApplicationConfig {
@@ -33,5 +36,20 @@ public class ApplicationConfig {
   public String adminEmailDomain = "@";
   public CacheConfig cacheConfig;
   public String resourceExtenderClassName;
+  public int activityThreads = 5;
+  public int activityQueueSize = 1000;
+  public RejectionPolicy activityRejectionPolicy = RejectionPolicy.DROP_OLDEST;
+  public long activityFlushIntervalMillis = 5000;
+  public int activityMaxPending = 100_000;
+  public String contentCodec = "gzip";
+  public int contentCodecLevel = 6;
+  public long contentRecompressIntervalMillis = 0;
+  public int contentRecompressBatchSize = 100;
+  public int contentDictionarySamples = 1000;
+  public int contentDictionarySize = 110 * 1024;
+  public boolean contentDictionaryRetrain = false;
+  public boolean contentCanonical = false;
+  public List<String> contentVolatileFields = new ArrayList<>();
+  public boolean contentDedupReport = false;
   public Map<String, Object> initParams;
 }
@@ -17,6 +17,10 @@
 
 package net.opentsdb.horizon.config;
 
+import net.opentsdb.horizon.pool.ConnectionPools;
+
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class DBConfig {
@@ -24,9 +28,31 @@ public class DBConfig {
     public String dbKey;
     public String dbRWUrl;
     public String dbROUrl;
+    /** Read replicas to spread the reads over instead of {@link #dbROUrl}. */
+    public List<String> dbReplicaUrls;
+    public long replicaProbeIntervalMillis = 5000;
+    /**
+     * How far behind the primary a replica may fall before it's ejected, 0 to not check, else at
+     * least {@link #replicaProbeIntervalMillis}.
+     */
+    public long replicaMaxLagMillis;
+    /**
+     * How long after a write the reads of the same user go to the primary, or to a replica known
+     * to have applied the write, 0 to not follow the writes.
+     */
+    public long readYourWritesWindowMillis;
     public String dbName;
     public Map<String, String> jdbcProperties;
 
+    /** The pool backend, c3p0 or hikari. The c3p0 settings below apply to both. */
+    public String poolType = ConnectionPools.C3P0;
+    public int poolAcquireTimeoutMillis;
+    /**
+     * Per pool overrides, keyed by {@link ConnectionPools#INTERACTIVE_RW},
+     * {@link ConnectionPools#INTERACTIVE_RO} or {@link ConnectionPools#BACKGROUND_RW}.
+     */
+    public Map<String, PoolConfig> pools = new HashMap<>();
+
     public int c3p0MinPoolSize;
     public int c3p0MaxPoolSize;
     public int c3p0LoginTimeout;
@@ -0,0 +1,40 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.config;
+
+import net.opentsdb.horizon.pool.PoolSettings;
+
+/** Overrides of the {@link DBConfig} pool settings for one named pool. Unset fields inherit. */
+public class PoolConfig {
+  public Integer minSize;
+  public Integer maxSize;
+  public Integer acquireTimeoutMillis;
+
+  /** Overrides the settings with the fields set here, the others keep the shared values. */
+  public void applyTo(final PoolSettings settings) {
+    if (minSize != null) {
+      settings.minSize = minSize;
+    }
+    if (maxSize != null) {
+      settings.maxSize = maxSize;
+    }
+    if (acquireTimeoutMillis != null) {
+      settings.acquireTimeoutMillis = acquireTimeoutMillis;
+    }
+  }
+}
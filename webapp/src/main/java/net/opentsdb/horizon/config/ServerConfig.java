@@ -32,6 +32,14 @@ public class ServerConfig {
   public String[] ciphers;
   public String authFilterClassName = DebugAuthFilter.class.getName();
   public String builderCustomizerClassName;
+  public int workerThreads = 100;
+
+  public boolean admissionControlEnabled;
+  public int admissionInitialLimit = 20;
+  public int admissionMinLimit = 4;
+  /** 0 for the number of worker threads. */
+  public int admissionMaxLimit;
+  public int admissionRetryAfterSeconds = 1;
 
   public boolean corsEnabled;
   public String allowedOrigin;
@@ -0,0 +1,153 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.handler;
+
+import io.ultrabrew.metrics.Counter;
+import io.ultrabrew.metrics.Gauge;
+import io.ultrabrew.metrics.MetricRegistry;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.servlet.handlers.ServletRequestContext;
+import io.undertow.util.AttachmentKey;
+import io.undertow.util.Headers;
+import io.undertow.util.Methods;
+import io.undertow.util.StatusCodes;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sheds load in front of the API before it ties up worker threads waiting on the database. The
+ * number of requests in flight is bounded by an adaptive {@link ConcurrencyLimiter}, reads may
+ * fill the whole limit while writes, and bulk writes even more so, leave room for the reads.
+ * Requests over the limit are answered with a <code>503</code> and a <code>Retry-After</code>
+ * header straight from the IO thread. The limit backs off when a request times out waiting for a
+ * database connection, see {@link #markOverloaded()}. Other failures only feed their latency. The
+ * limit, requests in flight and rejections are reported per route class.
+ */
+public class AdmissionControlHandler implements HttpHandler {
+
+  private static final String LIMIT_METRIC = "http.admission.limit";
+  private static final String INFLIGHT_METRIC = "http.admission.inflight";
+  private static final String REJECTED_METRIC = "http.admission.rejected";
+  private static final String TAG_ROUTE = "route";
+
+  private static final AttachmentKey<Boolean> OVERLOADED = AttachmentKey.create(Boolean.class);
+
+  /** Writes taking a list or touching many entities at once. */
+  private static final Set<String> BULK_SEGMENTS =
+      Set.of("list", "delete", "restore", "alert", "snooze", "contact");
+
+  enum RouteClass {
+    READ(1.0),
+    WRITE(0.75),
+    BULK_WRITE(0.5);
+
+    private final double share;
+
+    RouteClass(final double share) {
+      this.share = share;
+    }
+  }
+
+  private final HttpHandler next;
+  private final ConcurrencyLimiter limiter;
+  private final String retryAfter;
+  private final Map<RouteClass, AtomicInteger> inflight = new EnumMap<>(RouteClass.class);
+
+  private final Gauge limitGauge;
+  private final Gauge inflightGauge;
+  private final Counter rejectedCounter;
+
+  public AdmissionControlHandler(
+      final HttpHandler next,
+      final ConcurrencyLimiter limiter,
+      final int retryAfterSeconds,
+      final MetricRegistry metricRegistry) {
+    this.next = next;
+    this.limiter = limiter;
+    this.retryAfter = Integer.toString(retryAfterSeconds);
+    this.limitGauge = metricRegistry.gauge(LIMIT_METRIC);
+    this.inflightGauge = metricRegistry.gauge(INFLIGHT_METRIC);
+    this.rejectedCounter = metricRegistry.counter(REJECTED_METRIC);
+    for (RouteClass route : RouteClass.values()) {
+      inflight.put(route, new AtomicInteger());
+    }
+    setLimitGauges();
+  }
+
+  @Override
+  public void handleRequest(final HttpServerExchange exchange) throws Exception {
+    RouteClass route = classify(exchange);
+    if (!limiter.tryAcquire(route.share)) {
+      rejectedCounter.inc(TAG_ROUTE, route.name());
+      exchange.setStatusCode(StatusCodes.SERVICE_UNAVAILABLE);
+      exchange.getResponseHeaders().put(Headers.RETRY_AFTER, retryAfter);
+      exchange.endExchange();
+      return;
+    }
+    AtomicInteger routeInflight = inflight.get(route);
+    inflightGauge.set(routeInflight.incrementAndGet(), TAG_ROUTE, route.name());
+
+    long start = System.nanoTime();
+    exchange.addExchangeCompleteListener(
+        (ex, nxt) -> {
+          limiter.release(System.nanoTime() - start, ex.getAttachment(OVERLOADED) != null);
+          inflightGauge.set(routeInflight.decrementAndGet(), TAG_ROUTE, route.name());
+          setLimitGauges();
+          nxt.proceed();
+        });
+    next.handleRequest(exchange);
+  }
+
+  /** Reports the share of the limit each route class is let in up to. */
+  private void setLimitGauges() {
+    for (RouteClass route : RouteClass.values()) {
+      limitGauge.set(limiter.getLimit(route.share), TAG_ROUTE, route.name());
+    }
+  }
+
+  /**
+   * Marks the request served by the current thread as failed from overload, so that the limit
+   * backs off instead of learning from its latency. Does nothing outside of a servlet request, e.g.
+   * on a background job thread.
+   */
+  public static void markOverloaded() {
+    ServletRequestContext context = ServletRequestContext.current();
+    if (context != null) {
+      context.getExchange().putAttachment(OVERLOADED, Boolean.TRUE);
+    }
+  }
+
+  static RouteClass classify(final HttpServerExchange exchange) {
+    if (Methods.GET.equals(exchange.getRequestMethod())
+        || Methods.HEAD.equals(exchange.getRequestMethod())
+        || Methods.OPTIONS.equals(exchange.getRequestMethod())) {
+      return RouteClass.READ;
+    }
+    String path = exchange.getRelativePath();
+    if (path.endsWith("/")) {
+      path = path.substring(0, path.length() - 1);
+    }
+    String segment = path.substring(path.lastIndexOf('/') + 1).toLowerCase(Locale.ROOT);
+    return BULK_SEGMENTS.contains(segment) ? RouteClass.BULK_WRITE : RouteClass.WRITE;
+  }
+}
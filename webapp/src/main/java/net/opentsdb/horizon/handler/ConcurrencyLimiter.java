@@ -0,0 +1,120 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.handler;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adaptive limit on the number of requests in flight, in the style of the gradient limit
+ * algorithm. The limit follows the ratio of the long term to the short term latency, so it keeps
+ * growing while latency holds steady and shrinks as soon as requests start queueing downstream,
+ * e.g. on the database connection pool.
+ */
+public class ConcurrencyLimiter {
+
+  /** How much the short term latency may exceed the long term one before the limit shrinks. */
+  private static final double TOLERANCE = 1.5;
+  private static final double SMOOTHING = 0.2;
+  private static final double SHORT_ALPHA = 2.0 / (10 + 1);
+  private static final double LONG_ALPHA = 2.0 / (600 + 1);
+  private static final double BACKOFF = 0.9;
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final AtomicInteger inflight = new AtomicInteger();
+
+  private volatile double limit;
+  private double shortRtt;
+  private double longRtt;
+
+  public ConcurrencyLimiter(final int initialLimit, final int minLimit, final int maxLimit) {
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.limit = clamp(initialLimit);
+  }
+
+  /**
+   * @param share the fraction of the limit the caller may fill, so that lower priority requests
+   *     leave room for the others
+   * @return true if the request is admitted, it must then be {@link #release released}.
+   */
+  public boolean tryAcquire(final double share) {
+    int allowed = getLimit(share);
+    while (true) {
+      int current = inflight.get();
+      if (current >= allowed) {
+        return false;
+      }
+      if (inflight.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * @param rttNanos how long the admitted request took
+   * @param dropped true if the request failed from overload, its latency is then ignored and the
+   *     limit backs off
+   */
+  public void release(final long rttNanos, final boolean dropped) {
+    update(rttNanos, inflight.getAndDecrement(), dropped);
+  }
+
+  public int getLimit() {
+    return (int) limit;
+  }
+
+  /** @return how many requests in flight a caller with the given share of the limit is let in. */
+  public int getLimit(final double share) {
+    return Math.max(1, (int) (limit * share));
+  }
+
+  public int getInflight() {
+    return inflight.get();
+  }
+
+  synchronized void update(final long rttNanos, final int inflight, final boolean dropped) {
+    if (dropped) {
+      limit = clamp(limit * BACKOFF);
+      return;
+    }
+    double rtt = Math.max(1, rttNanos);
+    if (longRtt == 0) {
+      shortRtt = rtt;
+      longRtt = rtt;
+    } else {
+      shortRtt += SHORT_ALPHA * (rtt - shortRtt);
+      longRtt += LONG_ALPHA * (rtt - longRtt);
+    }
+    // the long term latency is slow to come back down after a spike, help it along
+    if (longRtt / shortRtt > 2) {
+      longRtt *= 0.95;
+    }
+    // a lightly loaded server tells nothing about how far the limit could go
+    if (inflight < limit / 2) {
+      return;
+    }
+    double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / shortRtt));
+    double newLimit = limit * gradient + Math.sqrt(limit);
+    limit = clamp(limit * (1 - SMOOTHING) + newLimit * SMOOTHING);
+  }
+
+  private double clamp(final double value) {
+    return Math.max(minLimit, Math.min(maxLimit, value));
+  }
+}
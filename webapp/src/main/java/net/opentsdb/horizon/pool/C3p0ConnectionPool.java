@@ -0,0 +1,159 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.pool;
+
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+import com.mchange.v2.resourcepool.TimeoutException;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.logging.Logger;
+
+/**
+ * c3p0 backed pool. c3p0 has no hook around the creation of physical connections, so only the
+ * acquire time, timeouts and occupancy are reported.
+ */
+public class C3p0ConnectionPool implements ConnectionPool {
+
+  private final ComboPooledDataSource pooled;
+  private final PoolMetrics metrics;
+  private final DataSource dataSource;
+
+  public C3p0ConnectionPool(final PoolSettings settings, final PoolMetrics metrics)
+      throws SQLException {
+    this.pooled = new ComboPooledDataSource();
+    this.metrics = metrics;
+    pooled.setJdbcUrl(settings.url);
+    pooled.setUser(settings.user);
+    pooled.setPassword(settings.password);
+
+    pooled.setMinPoolSize(settings.minSize);
+    pooled.setInitialPoolSize(settings.minSize);
+    pooled.setMaxPoolSize(settings.maxSize);
+    pooled.setCheckoutTimeout(settings.acquireTimeoutMillis);
+    pooled.setLoginTimeout(settings.loginTimeoutSeconds);
+    pooled.setMaxStatements(settings.maxStatements);
+    pooled.setMaxStatementsPerConnection(settings.maxStatementsPerConnection);
+    pooled.setMaxConnectionAge(settings.maxConnectionAgeSeconds);
+    pooled.setMaxIdleTime(settings.maxIdleTimeSeconds);
+    pooled.setMaxIdleTimeExcessConnections(settings.maxIdleTimeExcessConnectionsSeconds);
+    pooled.setIdleConnectionTestPeriod(settings.idleConnectionTestPeriodSeconds);
+    pooled.setTestConnectionOnCheckin(settings.testConnectionOnCheckin);
+    pooled.setTestConnectionOnCheckout(settings.testConnectionOnCheckout);
+
+    this.dataSource = new InstrumentedDataSource();
+    metrics.start(this);
+  }
+
+  @Override
+  public DataSource getDataSource() {
+    return dataSource;
+  }
+
+  @Override
+  public int getActiveConnections() throws SQLException {
+    return pooled.getNumBusyConnectionsDefaultUser();
+  }
+
+  @Override
+  public int getIdleConnections() throws SQLException {
+    return pooled.getNumIdleConnectionsDefaultUser();
+  }
+
+  @Override
+  public int getPendingThreads() throws SQLException {
+    return pooled.getNumThreadsAwaitingCheckoutDefaultUser();
+  }
+
+  @Override
+  public void close() {
+    metrics.stop();
+    pooled.close();
+  }
+
+  private Connection acquire(final String user, final String password) throws SQLException {
+    long start = System.nanoTime();
+    try {
+      Connection connection =
+          user == null ? pooled.getConnection() : pooled.getConnection(user, password);
+      metrics.acquired(System.nanoTime() - start);
+      return connection;
+    } catch (SQLException e) {
+      if (e.getCause() instanceof TimeoutException) {
+        metrics.timedOut();
+      }
+      throw e;
+    }
+  }
+
+  /** Times the checkouts, everything else goes straight to c3p0. */
+  private class InstrumentedDataSource implements DataSource {
+
+    @Override
+    public Connection getConnection() throws SQLException {
+      return acquire(null, null);
+    }
+
+    @Override
+    public Connection getConnection(final String username, final String password)
+        throws SQLException {
+      return acquire(username, password);
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+      return pooled.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(final PrintWriter out) throws SQLException {
+      pooled.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(final int seconds) throws SQLException {
+      pooled.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+      return pooled.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+      return pooled.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(final Class<T> iface) throws SQLException {
+      if (iface.isInstance(pooled)) {
+        return iface.cast(pooled);
+      }
+      return pooled.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(final Class<?> iface) throws SQLException {
+      return iface.isInstance(pooled) || pooled.isWrapperFor(iface);
+    }
+  }
+}
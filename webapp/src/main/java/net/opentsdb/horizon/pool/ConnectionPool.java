@@ -0,0 +1,40 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.pool;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.SQLException;
+
+/** A pooled {@link DataSource} whose occupancy can be sampled for telemetry. */
+public interface ConnectionPool extends Closeable {
+
+  DataSource getDataSource();
+
+  /** @return the number of connections checked out by callers. */
+  int getActiveConnections() throws SQLException;
+
+  /** @return the number of open connections waiting in the pool. */
+  int getIdleConnections() throws SQLException;
+
+  /** @return the number of threads blocked waiting for a connection. */
+  int getPendingThreads() throws SQLException;
+
+  @Override
+  void close();
+}
@@ -0,0 +1,106 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.pool;
+
+import io.ultrabrew.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.Locale;
+
+/** Creates the {@link ConnectionPool} backend selected by name. */
+public class ConnectionPools {
+
+  private static Logger logger = LoggerFactory.getLogger(ConnectionPools.class);
+
+  public static final String C3P0 = "c3p0";
+  public static final String HIKARI = "hikari";
+
+  /** Serves the REST calls that write. */
+  public static final String INTERACTIVE_RW = "interactive-rw";
+  /** Serves the REST calls that only read. */
+  public static final String INTERACTIVE_RO = "interactive-ro";
+  /** Serves the activity flushes and content jobs, so they can't starve the REST calls. */
+  public static final String BACKGROUND_RW = "background-rw";
+
+  private static final int MIN_SUGGESTED_SIZE = 2;
+  private static final int MAX_SUGGESTED_SIZE = 32;
+
+  private ConnectionPools() {}
+
+  /**
+   * @param type the backend, {@value #C3P0} or {@value #HIKARI}
+   * @param name identifies the pool in logs and metrics
+   */
+  public static ConnectionPool create(
+      final String type,
+      final String name,
+      final PoolSettings settings,
+      final MetricRegistry metricRegistry)
+      throws SQLException {
+    return create(type, name, settings, metricRegistry, () -> {});
+  }
+
+  /**
+   * @param type the backend, {@value #C3P0} or {@value #HIKARI}
+   * @param name identifies the pool in logs and metrics
+   * @param onTimeout run on the thread that timed out waiting for a connection
+   */
+  public static ConnectionPool create(
+      final String type,
+      final String name,
+      final PoolSettings settings,
+      final MetricRegistry metricRegistry,
+      final Runnable onTimeout)
+      throws SQLException {
+    int suggested = suggestedMaxSize(settings.workerThreads);
+    if (settings.maxSize <= 0) {
+      settings.maxSize = suggested;
+      logger.info(
+          "Sized the {} pool to {} connections for {} worker threads",
+          name, suggested, settings.workerThreads);
+    } else if (settings.maxSize < suggested) {
+      logger.warn(
+          "The {} pool holds at most {} connections for {} worker threads, requests will queue"
+              + " on it. Consider a max of {} and watch the pending threads.",
+          name, settings.maxSize, settings.workerThreads, suggested);
+    }
+    settings.minSize = Math.min(settings.minSize, settings.maxSize);
+
+    PoolMetrics metrics = new PoolMetrics(name, metricRegistry, onTimeout);
+    switch (type == null ? C3P0 : type.toLowerCase(Locale.ROOT)) {
+      case C3P0:
+        return new C3p0ConnectionPool(settings, metrics);
+      case HIKARI:
+        return new HikariConnectionPool(name, settings, metrics);
+      default:
+        throw new IllegalArgumentException("Unknown connection pool: " + type);
+    }
+  }
+
+  /**
+   * Suggests the maximum size of a pool shared by the given number of request threads. A request
+   * spends most of its time outside of JDBC, in auth, serialization and IO, so a quarter of the
+   * workers keeps queueing on the pool rare without opening a connection per worker. The cap
+   * keeps a large worker pool from flooding the database.
+   */
+  public static int suggestedMaxSize(final int workerThreads) {
+    return Math.max(MIN_SUGGESTED_SIZE, Math.min(MAX_SUGGESTED_SIZE, workerThreads / 4));
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.pool;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+
+import javax.sql.DataSource;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HikariCP backed pool. Hikari doesn't test connections on checkin or checkout, it validates a
+ * connection when it's handed out after being idle for a while, and leaves statement caching to
+ * the driver, so the statement cache sizes are passed on to MySQL.
+ */
+public class HikariConnectionPool implements ConnectionPool {
+
+  private final HikariDataSource dataSource;
+  private final PoolMetrics metrics;
+
+  public HikariConnectionPool(
+      final String name, final PoolSettings settings, final PoolMetrics metrics) {
+    this.metrics = metrics;
+
+    HikariConfig config = new HikariConfig();
+    config.setPoolName(name);
+    config.setJdbcUrl(settings.url);
+    config.setUsername(settings.user);
+    config.setPassword(settings.password);
+
+    config.setMinimumIdle(settings.minSize);
+    config.setMaximumPoolSize(settings.maxSize);
+    if (settings.acquireTimeoutMillis > 0) {
+      config.setConnectionTimeout(settings.acquireTimeoutMillis);
+    }
+    config.setMaxLifetime(TimeUnit.SECONDS.toMillis(settings.maxConnectionAgeSeconds));
+    // hikari only ever retires connections above the minimum, like c3p0's excess idle time
+    int idleSeconds =
+        settings.maxIdleTimeExcessConnectionsSeconds > 0
+            ? settings.maxIdleTimeExcessConnectionsSeconds
+            : settings.maxIdleTimeSeconds;
+    config.setIdleTimeout(TimeUnit.SECONDS.toMillis(idleSeconds));
+    config.setKeepaliveTime(TimeUnit.SECONDS.toMillis(settings.idleConnectionTestPeriodSeconds));
+    if (settings.url != null && settings.url.startsWith("jdbc:mysql:")) {
+      config.addDataSourceProperty("cachePrepStmts", "true");
+      config.addDataSourceProperty("prepStmtCacheSize", settings.maxStatementsPerConnection);
+    }
+    config.setMetricsTrackerFactory((poolName, poolStats) -> new Tracker());
+
+    this.dataSource = new HikariDataSource(config);
+    metrics.start(this);
+  }
+
+  @Override
+  public DataSource getDataSource() {
+    return dataSource;
+  }
+
+  @Override
+  public int getActiveConnections() {
+    return dataSource.getHikariPoolMXBean().getActiveConnections();
+  }
+
+  @Override
+  public int getIdleConnections() {
+    return dataSource.getHikariPoolMXBean().getIdleConnections();
+  }
+
+  @Override
+  public int getPendingThreads() {
+    return dataSource.getHikariPoolMXBean().getThreadsAwaitingConnection();
+  }
+
+  @Override
+  public void close() {
+    metrics.stop();
+    dataSource.close();
+  }
+
+  private class Tracker implements IMetricsTracker {
+
+    @Override
+    public void recordConnectionCreatedMillis(final long connectionCreatedMillis) {
+      metrics.created(connectionCreatedMillis);
+    }
+
+    @Override
+    public void recordConnectionAcquiredNanos(final long elapsedAcquiredNanos) {
+      metrics.acquired(elapsedAcquiredNanos);
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+      metrics.timedOut();
+    }
+  }
+}
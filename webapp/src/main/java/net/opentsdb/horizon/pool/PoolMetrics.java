@@ -0,0 +1,123 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.pool;
+
+import io.ultrabrew.metrics.Counter;
+import io.ultrabrew.metrics.Gauge;
+import io.ultrabrew.metrics.MetricRegistry;
+import io.ultrabrew.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Telemetry of one connection pool. Acquire, creation and timeout events are recorded by the
+ * backend as they happen, the occupancy gauges are sampled in the background.
+ */
+public class PoolMetrics {
+
+  private static Logger logger = LoggerFactory.getLogger(PoolMetrics.class);
+
+  private static final String ACTIVE_METRIC = "jdbc.pool.connections.active";
+  private static final String IDLE_METRIC = "jdbc.pool.connections.idle";
+  private static final String PENDING_METRIC = "jdbc.pool.threads.pending";
+  private static final String ACQUIRE_METRIC = "jdbc.pool.acquire";
+  private static final String CREATE_METRIC = "jdbc.pool.create";
+  private static final String TIMEOUT_METRIC = "jdbc.pool.timeout";
+  private static final String TAG_POOL = "pool";
+
+  private static final long SAMPLE_INTERVAL_MILLIS = 10_000;
+
+  private static final ScheduledExecutorService sampler =
+      Executors.newSingleThreadScheduledExecutor(
+          r -> {
+            Thread thread = new Thread(r, "jdbc-pool-metrics");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private final String name;
+  private final Gauge activeGauge;
+  private final Gauge idleGauge;
+  private final Gauge pendingGauge;
+  private final Timer acquireTimer;
+  private final Timer createTimer;
+  private final Counter timeoutCounter;
+  private final Runnable onTimeout;
+  private ScheduledFuture<?> sampling;
+
+  /**
+   * @param onTimeout run on the thread that timed out waiting for a connection, e.g. to back off
+   *     the admission of requests
+   */
+  public PoolMetrics(
+      final String name, final MetricRegistry metricRegistry, final Runnable onTimeout) {
+    this.name = name;
+    this.onTimeout = onTimeout;
+    this.activeGauge = metricRegistry.gauge(ACTIVE_METRIC);
+    this.idleGauge = metricRegistry.gauge(IDLE_METRIC);
+    this.pendingGauge = metricRegistry.gauge(PENDING_METRIC);
+    this.acquireTimer = metricRegistry.timer(ACQUIRE_METRIC);
+    this.createTimer = metricRegistry.timer(CREATE_METRIC);
+    this.timeoutCounter = metricRegistry.counter(TIMEOUT_METRIC);
+  }
+
+  public void acquired(final long nanos) {
+    acquireTimer.update(nanos, TAG_POOL, name);
+  }
+
+  public void created(final long millis) {
+    createTimer.update(TimeUnit.MILLISECONDS.toNanos(millis), TAG_POOL, name);
+  }
+
+  /** Called on the thread that timed out waiting for a connection, i.e. the pool is exhausted. */
+  public void timedOut() {
+    timeoutCounter.inc(TAG_POOL, name);
+    onTimeout.run();
+  }
+
+  /** Starts sampling the occupancy of the pool until {@link #stop()}. */
+  public synchronized void start(final ConnectionPool pool) {
+    stop();
+    sampling =
+        sampler.scheduleWithFixedDelay(
+            () -> sample(pool), 0, SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  public synchronized void stop() {
+    if (sampling != null) {
+      sampling.cancel(false);
+      sampling = null;
+    }
+  }
+
+  void sample(final ConnectionPool pool) {
+    try {
+      activeGauge.set(pool.getActiveConnections(), TAG_POOL, name);
+      idleGauge.set(pool.getIdleConnections(), TAG_POOL, name);
+      pendingGauge.set(pool.getPendingThreads(), TAG_POOL, name);
+    } catch (SQLException | RuntimeException e) {
+      logger.warn("Error sampling the connection pool: " + name, e);
+    }
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.pool;
+
+/**
+ * Settings shared by every {@link ConnectionPool} backend. Durations keep the units of the
+ * original c3p0 settings; backends convert them as needed.
+ */
+public class PoolSettings {
+  public String url;
+  public String user;
+  public String password;
+
+  public int minSize = 1;
+  /** Maximum number of connections, or 0 to size the pool from {@link #workerThreads}. */
+  public int maxSize;
+  /** Number of request threads that share the pool. */
+  public int workerThreads = 100;
+
+  /** How long a caller waits for a connection before failing, 0 for the backend default. */
+  public int acquireTimeoutMillis;
+  public int loginTimeoutSeconds = 30;
+  public int maxStatements = 1024;
+  public int maxStatementsPerConnection = 1024;
+  public int maxConnectionAgeSeconds = 3600;
+  public int maxIdleTimeSeconds = 7200;
+  public int maxIdleTimeExcessConnectionsSeconds;
+  public int idleConnectionTestPeriodSeconds = 60;
+  public boolean testConnectionOnCheckin;
+  public boolean testConnectionOnCheckout;
+}
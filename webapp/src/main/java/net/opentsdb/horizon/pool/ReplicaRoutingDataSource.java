@@ -0,0 +1,365 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.pool;
+
+import io.ultrabrew.metrics.Gauge;
+import io.ultrabrew.metrics.MetricRegistry;
+import net.opentsdb.horizon.service.BoundedExecutor;
+import net.opentsdb.horizon.store.ReplicatedDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads the read only connections over a set of replicas, handing out a connection of the
+ * healthy replica with the fewest connections checked out, round robin among equals. A background
+ * probe ejects a replica that fails validation or, when a maximum lag is set, whose latest
+ * heartbeat is too far behind the one of the primary, and admits it back once it recovers. With
+ * every replica ejected, reads go to the primary. Every instance keeps its own heartbeat row up to
+ * date with the clock of the primary, and the latest of the rows tells up to when a replica has
+ * applied the writes of the primary, so that a read following a write can be sent to a replica
+ * that has caught up with it.
+ */
+public class ReplicaRoutingDataSource implements ReplicatedDataSource, Closeable {
+
+  private static Logger logger = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+  private static final String HEALTHY_METRIC = "jdbc.replica.healthy";
+  private static final String LAG_METRIC = "jdbc.replica.lag";
+  private static final String TAG_REPLICA = "replica";
+
+  private static final String HEARTBEAT_UPSERT =
+      "INSERT INTO replication_heartbeat (instance, updatedtime) VALUES (?, CURRENT_TIMESTAMP(3)) "
+          + "ON DUPLICATE KEY UPDATE updatedtime = CURRENT_TIMESTAMP(3)";
+  private static final String HEARTBEAT_SELECT =
+      "SELECT MAX(updatedtime) FROM replication_heartbeat";
+  // rows of the instances long gone
+  private static final String HEARTBEAT_PURGE =
+      "DELETE FROM replication_heartbeat "
+          + "WHERE updatedtime < CURRENT_TIMESTAMP(3) - INTERVAL '1' DAY";
+  static final long PURGE_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+  private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+  private static final int MAX_INSTANCE_LENGTH = 128;
+
+  final List<Replica> replicas = new ArrayList<>();
+  private final DataSource primary;
+  private final long maxLagMillis;
+  private final String instance;
+  private final AtomicInteger next = new AtomicInteger();
+  private final ScheduledExecutorService prober;
+  // only touched by the beat, which never runs concurrently with itself
+  long purgedAtMillis;
+
+  private final Gauge healthyGauge;
+  private final Gauge lagGauge;
+
+  /**
+   * @param replicas the read only data sources by name
+   * @param primary where reads go with every replica ejected, it also keeps the heartbeat
+   * @param maxLagMillis how far behind the primary a replica may be, 0 to not check the lag. The
+   *     heartbeat is only as fresh as the probe interval, so it may not be any lower.
+   */
+  public ReplicaRoutingDataSource(
+      final Map<String, DataSource> replicas,
+      final DataSource primary,
+      final long probeIntervalMillis,
+      final long maxLagMillis,
+      final MetricRegistry metricRegistry) {
+    // a thread per replica, so a replica whose pool is exhausted can't hold up the others
+    this(
+        replicas,
+        primary,
+        probeIntervalMillis,
+        maxLagMillis,
+        metricRegistry,
+        instanceName(),
+        Executors.newScheduledThreadPool(
+            replicas.size() + 1, BoundedExecutor.threadFactory("jdbc-replica-probe")));
+  }
+
+  ReplicaRoutingDataSource(
+      final Map<String, DataSource> replicas,
+      final DataSource primary,
+      final long probeIntervalMillis,
+      final long maxLagMillis,
+      final MetricRegistry metricRegistry,
+      final String instance,
+      final ScheduledExecutorService prober) {
+    if (replicas.isEmpty()) {
+      throw new IllegalArgumentException("At least one replica is required");
+    }
+    if (maxLagMillis > 0 && maxLagMillis < probeIntervalMillis) {
+      throw new IllegalArgumentException(
+          "The maximum replica lag: "
+              + maxLagMillis
+              + "ms can't be lower than the probe interval: "
+              + probeIntervalMillis
+              + "ms");
+    }
+    for (Map.Entry<String, DataSource> entry : replicas.entrySet()) {
+      this.replicas.add(new Replica(entry.getKey(), entry.getValue()));
+    }
+    this.primary = primary;
+    this.maxLagMillis = maxLagMillis;
+    this.instance = instance;
+    this.healthyGauge = metricRegistry.gauge(HEALTHY_METRIC);
+    this.lagGauge = metricRegistry.gauge(LAG_METRIC);
+    this.prober = prober;
+
+    if (maxLagMillis > 0) {
+      prober.scheduleWithFixedDelay(
+          this::beat, 0, probeIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+    for (Replica replica : this.replicas) {
+      prober.scheduleWithFixedDelay(
+          () -> probe(replica), probeIntervalMillis, probeIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    Replica replica = select(0);
+    if (replica == null) {
+      return primary.getConnection();
+    }
+    return getConnection(replica);
+  }
+
+  /**
+   * Only knows of the writes the heartbeat was updated after, so without a maximum lag set there's
+   * never a replica that has caught up.
+   */
+  @Override
+  public Connection getConnection(final long committedAtMillis) throws SQLException {
+    Replica replica = select(committedAtMillis);
+    return replica == null ? null : getConnection(replica);
+  }
+
+  private Connection getConnection(final Replica replica) throws SQLException {
+    replica.outstanding.incrementAndGet();
+    try {
+      return track(replica, replica.dataSource.getConnection());
+    } catch (SQLException | RuntimeException e) {
+      replica.outstanding.decrementAndGet();
+      throw e;
+    }
+  }
+
+  @Override
+  public Connection getConnection(final String username, final String password)
+      throws SQLException {
+    throw new SQLFeatureNotSupportedException("Replicas are only reachable as the pool user");
+  }
+
+  @Override
+  public void close() {
+    prober.shutdownNow();
+  }
+
+  /**
+   * @param caughtUpTo the time the replica must have applied the writes of the primary up to
+   * @return the healthy replica with the fewest connections out or null if there's none.
+   */
+  Replica select(final long caughtUpTo) {
+    int size = replicas.size();
+    int start = Math.floorMod(next.getAndIncrement(), size);
+    Replica best = null;
+    for (int i = 0; i < size; i++) {
+      Replica replica = replicas.get((start + i) % size);
+      if (replica.healthy
+          && replica.caughtUpTo >= caughtUpTo
+          && (best == null || replica.outstanding.get() < best.outstanding.get())) {
+        best = replica;
+      }
+    }
+    return best;
+  }
+
+  void probe(final Replica replica) {
+    boolean healthy;
+    long lag = 0;
+    try (Connection connection = replica.dataSource.getConnection()) {
+      healthy = connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+      if (healthy && maxLagMillis > 0) {
+        // the primary first, so a beat in between can't make the replica look further behind
+        long primaryHeartbeat = primaryHeartbeat();
+        long heartbeat = heartbeat(connection);
+        replica.caughtUpTo = heartbeat;
+        if (primaryHeartbeat < 0) {
+          // there's no telling the lag without the primary, the replica stays as it is
+          healthy = replica.healthy;
+          lag = replica.lag;
+        } else {
+          // no heartbeat yet, there's no telling how far behind the replica is
+          lag = heartbeat == 0 ? Long.MAX_VALUE : Math.max(0, primaryHeartbeat - heartbeat);
+          healthy = lag <= maxLagMillis;
+        }
+      }
+    } catch (SQLException | RuntimeException e) {
+      logger.debug("Replica probe failed: " + replica.name, e);
+      healthy = false;
+    }
+
+    if (healthy != replica.healthy) {
+      if (healthy) {
+        logger.info("Replica {} admitted back", replica.name);
+      } else {
+        logger.warn("Replica {} ejected, lag: {}ms", replica.name, lag);
+      }
+    }
+    replica.healthy = healthy;
+    replica.lag = lag;
+    healthyGauge.set(healthy ? 1 : 0, TAG_REPLICA, replica.name);
+    lagGauge.set(lag, TAG_REPLICA, replica.name);
+  }
+
+  /** @return the time of the latest heartbeat of the primary or -1 if it can't be read. */
+  private long primaryHeartbeat() {
+    try (Connection connection = primary.getConnection()) {
+      return heartbeat(connection);
+    } catch (SQLException | RuntimeException e) {
+      logger.debug("Error reading the primary heartbeat", e);
+      return -1;
+    }
+  }
+
+  /** @return the time, on the primary clock, of the latest heartbeat of any instance or 0. */
+  private static long heartbeat(final Connection connection) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(HEARTBEAT_SELECT);
+        ResultSet rs = statement.executeQuery()) {
+      Timestamp updatedTime = rs.next() ? rs.getTimestamp(1) : null;
+      return updatedTime == null ? 0 : updatedTime.getTime();
+    }
+  }
+
+  void beat() {
+    try (Connection connection = primary.getConnection()) {
+      connection.setAutoCommit(true);
+      try (PreparedStatement statement = connection.prepareStatement(HEARTBEAT_UPSERT)) {
+        statement.setString(1, instance);
+        statement.executeUpdate();
+      }
+      long now = System.currentTimeMillis();
+      if (now - purgedAtMillis >= PURGE_INTERVAL_MILLIS) {
+        try (PreparedStatement statement = connection.prepareStatement(HEARTBEAT_PURGE)) {
+          statement.executeUpdate();
+        }
+        purgedAtMillis = now;
+      }
+    } catch (SQLException | RuntimeException e) {
+      logger.error("Error writing the replication heartbeat", e);
+    }
+  }
+
+  /** @return the JVM name, <code>pid@host</code>, telling the instance's heartbeat row apart. */
+  private static String instanceName() {
+    String name = ManagementFactory.getRuntimeMXBean().getName();
+    return name.length() > MAX_INSTANCE_LENGTH ? name.substring(0, MAX_INSTANCE_LENGTH) : name;
+  }
+
+  /** Counts the connection out until it's closed. */
+  private static Connection track(final Replica replica, final Connection connection) {
+    AtomicBoolean closed = new AtomicBoolean();
+    return (Connection)
+        Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[] {Connection.class},
+            (proxy, method, args) -> {
+              if ("close".equals(method.getName()) && closed.compareAndSet(false, true)) {
+                replica.outstanding.decrementAndGet();
+              }
+              try {
+                return method.invoke(connection, args);
+              } catch (InvocationTargetException e) {
+                throw e.getCause();
+              }
+            });
+  }
+
+  @Override
+  public PrintWriter getLogWriter() throws SQLException {
+    return primary.getLogWriter();
+  }
+
+  @Override
+  public void setLogWriter(final PrintWriter out) throws SQLException {
+    primary.setLogWriter(out);
+  }
+
+  @Override
+  public void setLoginTimeout(final int seconds) throws SQLException {
+    primary.setLoginTimeout(seconds);
+  }
+
+  @Override
+  public int getLoginTimeout() throws SQLException {
+    return primary.getLoginTimeout();
+  }
+
+  @Override
+  public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    return primary.getParentLogger();
+  }
+
+  @Override
+  public <T> T unwrap(final Class<T> iface) throws SQLException {
+    if (iface.isInstance(this)) {
+      return iface.cast(this);
+    }
+    throw new SQLException("Not a wrapper for " + iface.getName());
+  }
+
+  @Override
+  public boolean isWrapperFor(final Class<?> iface) {
+    return iface.isInstance(this);
+  }
+
+  static class Replica {
+    final String name;
+    final DataSource dataSource;
+    final AtomicInteger outstanding = new AtomicInteger();
+    volatile boolean healthy = true;
+    volatile long caughtUpTo;
+    volatile long lag;
+
+    Replica(final String name, final DataSource dataSource) {
+      this.name = name;
+      this.dataSource = dataSource;
+    }
+  }
+}
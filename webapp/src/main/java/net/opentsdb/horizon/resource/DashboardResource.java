@@ -23,6 +23,7 @@ import net.opentsdb.core.BaseTSDBPlugin;
 import net.opentsdb.core.TSDB;
 import net.opentsdb.horizon.fs.view.FileDto;
 import net.opentsdb.horizon.fs.view.FolderDto;
+import net.opentsdb.horizon.service.ConditionalRead;
 import net.opentsdb.horizon.service.DashboardService;
 import net.opentsdb.horizon.view.MoveRequest;
 import net.opentsdb.horizon.view.UserFolderDto;
@@ -40,6 +41,7 @@ import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
@@ -47,9 +49,12 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
+import static net.opentsdb.horizon.util.Utils.acceptsGzip;
 import static net.opentsdb.horizon.util.Utils.isNullOrEmpty;
 
 @Api("Dashboards")
@@ -140,10 +145,37 @@ public class DashboardResource extends BaseTSDBPlugin implements ServletResource
     @Path("file/{id}")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getFileById(@PathParam("id") long id, @Context HttpServletRequest request) {
-        FileDto file = dashboardService.getFileById(id, request.getUserPrincipal().getName());
-        final Response.ResponseBuilder responseBuilder = file == null ? Response.status(Response.Status.NOT_FOUND) : Response.status(Response.Status.OK);
-        return responseBuilder.entity(file).build();
+    public Response getFileById(
+        @PathParam("id") long id,
+        @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding,
+        @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch,
+        @Context Request httpRequest,
+        @Context HttpServletRequest request) {
+        String userId = request.getUserPrincipal().getName();
+        // an unconditional request reads the file and its content in one go
+        Request conditional = ifNoneMatch == null ? null : httpRequest;
+        if (acceptsGzip(acceptEncoding)) {
+            ConditionalRead<byte[]> read =
+                dashboardService.getCompressedFileById(id, userId, conditional);
+            if (read.getNotModified() != null) {
+                return read.getNotModified().header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING).build();
+            }
+            return Response.status(Response.Status.OK)
+                .entity(read.getBody())
+                .tag(read.getTag())
+                .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .build();
+        }
+        ConditionalRead<FileDto> read = dashboardService.getFileById(id, userId, conditional);
+        if (read.getNotModified() != null) {
+            return read.getNotModified().header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING).build();
+        }
+        return Response.status(Response.Status.OK)
+            .entity(read.getBody())
+            .tag(read.getTag())
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+            .build();
     }
 
     @ApiOperation("Get by path")
@@ -151,10 +183,16 @@ public class DashboardResource extends BaseTSDBPlugin implements ServletResource
     @Path("{path:.*}")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getByPath(@PathParam("path") String path, @Context HttpServletRequest request) {
-        FolderDto folder = dashboardService.getByPath(path, request.getUserPrincipal().getName());
-        final Response.ResponseBuilder responseBuilder = folder == null ? Response.status(Response.Status.NOT_FOUND) : Response.status(Response.Status.OK);
-        return responseBuilder.entity(folder).build();
+    public Response getByPath(
+        @PathParam("path") String path,
+        @Context Request httpRequest,
+        @Context HttpServletRequest request) {
+        ConditionalRead<FolderDto> read =
+            dashboardService.getByPath(path, request.getUserPrincipal().getName(), httpRequest);
+        if (read.getNotModified() != null) {
+            return read.getNotModified().build();
+        }
+        return Response.status(Response.Status.OK).entity(read.getBody()).tag(read.getTag()).build();
     }
 
     @ApiOperation(value = "Top Folders", notes = "List top level folders for a user or namespace. By default lists the top level folders for logged in User. Set the appropriate query param to list for different user or namespace.")
@@ -0,0 +1,58 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package net.opentsdb.horizon.resource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import net.opentsdb.horizon.fs.view.FileDto;
+import net.opentsdb.horizon.util.JsonCodec;
+import net.opentsdb.horizon.view.EncodedContent;
+import net.opentsdb.horizon.view.SnapshotView;
+
+import javax.ws.rs.ext.ContextResolver;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Object mapper of the REST resources. The dashboard and snapshot content of a request body is
+ * hashed and compressed while the body is read, instead of being bound to maps and lists only to be
+ * serialized again, see {@link EncodedContent}. That binding is registered here only, so clients,
+ * tests and plugins reading the same views through {@link JsonCodec} still get maps.
+ */
+@Provider
+public class ObjectMapperResolver implements ContextResolver<ObjectMapper> {
+
+  private static final ObjectMapper MAPPER = JsonCodec.newMapper().registerModule(contentModule());
+
+  @Override
+  public ObjectMapper getContext(final Class<?> type) {
+    return MAPPER;
+  }
+
+  static SimpleModule contentModule() {
+    SimpleModule module = new SimpleModule("EncodedContent");
+    module.setMixInAnnotation(FileDto.class, StreamedContent.class);
+    module.setMixInAnnotation(SnapshotView.class, StreamedContent.class);
+    return module;
+  }
+
+  private abstract static class StreamedContent {
+
+    @JsonDeserialize(using = EncodedContent.Deserializer.class)
+    abstract void setContent(Object content);
+  }
+}
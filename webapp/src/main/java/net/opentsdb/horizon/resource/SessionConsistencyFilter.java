@@ -0,0 +1,58 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.resource;
+
+import net.opentsdb.horizon.store.SessionConsistency;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.ext.Provider;
+import java.security.Principal;
+
+/**
+ * Binds the principal of a request to the thread serving it for the time of the request, so that
+ * its reads follow its own writes, see {@link SessionConsistency}.
+ */
+@Provider
+public class SessionConsistencyFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+  private final SessionConsistency sessionConsistency;
+
+  /** @param sessionConsistency the one of the stores serving the requests */
+  public SessionConsistencyFilter(final SessionConsistency sessionConsistency) {
+    this.sessionConsistency = sessionConsistency;
+  }
+
+  @Override
+  public void filter(final ContainerRequestContext requestContext) {
+    if (!sessionConsistency.isEnabled()) {
+      return;
+    }
+    Principal principal = requestContext.getSecurityContext().getUserPrincipal();
+    SessionConsistency.setPrincipal(principal == null ? null : principal.getName());
+  }
+
+  @Override
+  public void filter(
+      final ContainerRequestContext requestContext,
+      final ContainerResponseContext responseContext) {
+    SessionConsistency.setPrincipal(null);
+  }
+}
@@ -35,8 +35,9 @@ import io.undertow.servlet.api.FilterInfo;
 import io.undertow.servlet.api.ServletInfo;
 import net.opentsdb.horizon.config.Config;
 import net.opentsdb.horizon.config.ServerConfig;
-import net.opentsdb.horizon.ext.MetricRegistryFactory;
 import net.opentsdb.horizon.filter.CorsFilter;
+import net.opentsdb.horizon.handler.AdmissionControlHandler;
+import net.opentsdb.horizon.handler.ConcurrencyLimiter;
 import net.opentsdb.horizon.handler.HealthCheckServletFactory;
 import net.opentsdb.horizon.handler.Slf4jAccessLogReceiver;
 import net.opentsdb.horizon.handler.UndertowMetricsHandler;
@@ -83,7 +84,8 @@ public class UndertowServer {
         "TLS_RSA_WITH_AES_128_CBC_SHA"
       };
 
-  public static Undertow getInstance(final Config config, Application application)
+  public static Undertow getInstance(
+      final Config config, Application application, MetricRegistry metricRegistry)
       throws Exception {
 
     ServerConfig serverConfig = config.serverConfig;
@@ -118,7 +120,7 @@ public class UndertowServer {
         .setServerOption(UndertowOptions.ALWAYS_SET_DATE, true)
         .setWorkerOption(Options.CONNECTION_HIGH_WATER, 7000)
         .setWorkerOption(Options.CONNECTION_LOW_WATER, 5000)
-        .setWorkerThreads(100);
+        .setWorkerThreads(serverConfig.workerThreads);
 
     String builderCustomizerClassName = serverConfig.builderCustomizerClassName;
     if (null != builderCustomizerClassName && !builderCustomizerClassName.isEmpty()) {
@@ -128,11 +130,12 @@ public class UndertowServer {
       ubc.customize(builder);
     }
 
-    HttpHandler root = createServer(config, application);
+    HttpHandler root = createServer(config, application, metricRegistry);
     return builder.setHandler(root).build();
   }
 
-  private static HttpHandler createServer(Config config, Application application) throws Exception {
+  private static HttpHandler createServer(
+      Config config, Application application, MetricRegistry metricRegistry) throws Exception {
     ResteasyDeployment deployment = new ResteasyDeploymentImpl();
     deployment.setApplication(application);
 
@@ -162,6 +165,20 @@ public class UndertowServer {
     deploymentManager.deploy();
     HttpHandler apiHandler = deploymentManager.start();
 
+    if (serverConfig.admissionControlEnabled) {
+      // only the api, so the health checks keep answering while the database is overloaded
+      ConcurrencyLimiter limiter =
+          new ConcurrencyLimiter(
+              serverConfig.admissionInitialLimit,
+              serverConfig.admissionMinLimit,
+              serverConfig.admissionMaxLimit > 0
+                  ? serverConfig.admissionMaxLimit
+                  : serverConfig.workerThreads);
+      apiHandler =
+          new AdmissionControlHandler(
+              apiHandler, limiter, serverConfig.admissionRetryAfterSeconds, metricRegistry);
+    }
+
     final PathHandler pathHandler = new PathHandler();
     pathHandler.addPrefixPath(deploymentInfo.getContextPath(), apiHandler);
 
@@ -198,12 +215,6 @@ public class UndertowServer {
     HttpHandler rootHandler = pathHandler;
 
     if (serverConfig.instrumentationEnabled) {
-      String metricRegistryFactoryClassName = serverConfig.metricRegistryFactoryClassName;
-      MetricRegistryFactory factory =
-          ((Class<? extends MetricRegistryFactory>) loadClass(metricRegistryFactoryClassName))
-              .getDeclaredConstructor()
-              .newInstance();
-      MetricRegistry metricRegistry = factory.createRegistry(serverConfig.initParams);
       rootHandler = new UndertowMetricsHandler(metricRegistry, rootHandler);
     }
 
@@ -18,41 +18,21 @@
 package net.opentsdb.horizon.service;
 
 import net.opentsdb.horizon.fs.store.FolderStore;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.sql.Connection;
-import java.sql.SQLException;
-import java.util.concurrent.ExecutorService;
 
 public class DashboardActivityJobScheduler {
 
-  private static Logger logger = LoggerFactory.getLogger(DashboardActivityJobScheduler.class);
+  private static final String TABLE = "folder_activity";
+  private static final byte DASHBOARD = 0;
 
-  private FolderStore folderStore;
-  private ExecutorService executorService;
+  private ActivityAggregator activityAggregator;
 
   public DashboardActivityJobScheduler(
-      final FolderStore folderStore, final ExecutorService executorService) {
-    this.folderStore = folderStore;
-    this.executorService = executorService;
+      final FolderStore folderStore, final ActivityAggregator activityAggregator) {
+    this.activityAggregator = activityAggregator;
+    activityAggregator.register(TABLE, folderStore::addActivities);
   }
 
   public void addActivity(final long id, final String userId) {
-    executorService.submit(
-        () -> {
-          try (Connection connection = folderStore.getReadWriteConnection()) {
-            folderStore.addActivity(id, userId, connection);
-            folderStore.commit(connection);
-          } catch (SQLException e) {
-            logger.error(
-                "Error adding user activity for user: "
-                    + userId
-                    + " dashboard id: "
-                    + id
-                    + "cause: "
-                    + e.getMessage());
-          }
-        });
+    activityAggregator.add(TABLE, userId, DASHBOARD, id);
   }
 }
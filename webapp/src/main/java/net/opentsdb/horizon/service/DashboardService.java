@@ -17,7 +17,11 @@
 
 package net.opentsdb.horizon.service;
 
+import com.google.common.collect.ListMultimap;
+import net.opentsdb.horizon.ContentCache;
 import net.opentsdb.horizon.NamespaceCache;
+import net.opentsdb.horizon.fs.FolderTreeCache;
+import net.opentsdb.horizon.fs.FolderTreeCache.Tree;
 import net.opentsdb.horizon.fs.Path;
 import net.opentsdb.horizon.fs.Path.PathException;
 import net.opentsdb.horizon.fs.Path.RootType;
@@ -33,6 +37,9 @@ import net.opentsdb.horizon.model.Namespace;
 import net.opentsdb.horizon.model.User;
 import net.opentsdb.horizon.store.NamespaceFollowerStore;
 import net.opentsdb.horizon.store.UserStore;
+import net.opentsdb.horizon.util.ContentWriter;
+import net.opentsdb.horizon.util.Digester;
+import net.opentsdb.horizon.view.EncodedContent;
 import net.opentsdb.horizon.view.MoveRequest;
 import net.opentsdb.horizon.view.NamespaceFolderDto;
 import net.opentsdb.horizon.view.UserFolderDto;
@@ -40,27 +47,34 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 import java.io.IOException;
-import java.security.MessageDigest;
+import java.nio.ByteBuffer;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import static net.opentsdb.horizon.service.BaseService.badRequestException;
+import static net.opentsdb.horizon.service.BaseService.entityTag;
 import static net.opentsdb.horizon.service.BaseService.forbiddenException;
 import static net.opentsdb.horizon.service.BaseService.internalServerError;
 import static net.opentsdb.horizon.service.BaseService.notFoundException;
-import static net.opentsdb.horizon.util.Utils.compress;
+import static net.opentsdb.horizon.util.Utils.compressedEnvelope;
 import static net.opentsdb.horizon.util.Utils.deSerialize;
-import static net.opentsdb.horizon.util.Utils.decompress;
+import static net.opentsdb.horizon.util.Utils.decompressAndDeserialize;
 import static net.opentsdb.horizon.util.Utils.isNullOrEmpty;
-import static net.opentsdb.horizon.util.Utils.serialize;
 import static net.opentsdb.horizon.util.Utils.slugify;
 
 public class DashboardService {
@@ -69,13 +83,18 @@ public class DashboardService {
 
   public static String SO_SERVICE = "HZ_DASHBOARD_SERVICE";
 
+  private static final String CONTENT = "content";
+  private static final String DASHBOARD_ENTITY = "dashboard:";
+
   private final FolderStore folderStore;
   private final NamespaceMemberService namespaceMemberService;
   private final NamespaceFollowerStore namespaceFollowerStore;
   private final NamespaceCache namespaceCache;
   private final AuthService authService;
   private UserStore userStore;
-  private final MessageDigest digest;
+  private final Digester digest;
+  private final ContentCache contentCache;
+  private final FolderTreeCache folderTreeCache;
   private DashboardActivityJobScheduler activityJobScheduler;
 
   public DashboardService(
@@ -85,7 +104,9 @@ public class DashboardService {
       NamespaceCache namespaceCache,
       final AuthService authService,
       final UserStore userStore,
-      final MessageDigest digest,
+      final Digester digest,
+      final ContentCache contentCache,
+      final FolderTreeCache folderTreeCache,
       final DashboardActivityJobScheduler activityJobScheduler) {
 
     this.folderStore = folderStore;
@@ -95,6 +116,8 @@ public class DashboardService {
     this.authService = authService;
     this.userStore = userStore;
     this.digest = digest;
+    this.contentCache = contentCache;
+    this.folderTreeCache = folderTreeCache;
     this.activityJobScheduler = activityJobScheduler;
   }
 
@@ -112,6 +135,8 @@ public class DashboardService {
         model.setId(id);
 
         folderStore.commit(connection);
+        folderStore.recordWrite(connection, request.getUserPrincipal().getName());
+        invalidateFolderTree(Path.get(model.getPath()));
         modelToView(model, view);
         return view;
       } catch (Exception e) {
@@ -149,6 +174,8 @@ public class DashboardService {
         folderStore.createFileHistory(fileHistory, connection);
 
         folderStore.commit(connection);
+        folderStore.recordWrite(connection, request.getUserPrincipal().getName());
+        invalidateFolderTree(Path.get(model.getPath()));
       } catch (Exception e) {
         folderStore.rollback(connection);
         throw e;
@@ -225,7 +252,7 @@ public class DashboardService {
           throw badRequestException(message);
         }
 
-        byte[] oldSourceFolderPathHash = sourceFolder.getPathHash();
+        String oldSourceFolderPath = sourceFolder.getPath();
         sourceFolder.setPath(Path.getChildPath(destinationPath.getPath(), sourcePath.getLeaf()));
 
         List<Folder> existingSubFolders =
@@ -243,10 +270,18 @@ public class DashboardService {
         sourceFolder.setUpdatedBy(userId);
         sourceFolder.setUpdatedTime(new Timestamp(System.currentTimeMillis()));
 
-        updatePathRecursively(sourceFolder, oldSourceFolderPathHash, con);
+        folderStore.updateSubtreePath(
+            FolderType.DASHBOARD,
+            oldSourceFolderPath,
+            newPath,
+            sourceFolder.getUpdatedTime(),
+            userId,
+            con);
 
         folderStore.updateFolder(sourceFolder, con);
         folderStore.commit(con);
+        folderStore.recordWrite(con, userId);
+        invalidateFolderTree(sourcePath, destinationPath);
       } catch (Exception e) {
         folderStore.rollback(con);
         throw e;
@@ -285,18 +320,20 @@ public class DashboardService {
         Timestamp timestamp = new Timestamp(System.currentTimeMillis());
         String newName = folder.getName();
         if (!isNullOrEmpty(newName) && !newName.equals(oldFolder.getName())) {
-          byte[] oldPathHash = oldFolder.getPathHash();
           oldFolder.setName(newName);
           path.stLeaf(slugify(newName));
           oldFolder.setPath(path.getPath());
           oldFolder.setPathHash(path.hash());
           oldFolder.setUpdatedBy(userId);
           oldFolder.setUpdatedTime(timestamp);
-          updatePathRecursively(oldFolder, oldPathHash, con);
+          folderStore.updateSubtreePath(
+              FolderType.DASHBOARD, oldPath, oldFolder.getPath(), timestamp, userId, con);
           folderStore.updateFolder(oldFolder, con);
         }
 
         folderStore.commit(con);
+        folderStore.recordWrite(con, userId);
+        invalidateFolderTree(path);
       } catch (Exception e) {
         folderStore.rollback(con);
         throw e;
@@ -312,28 +349,6 @@ public class DashboardService {
     }
   }
 
-  private void updatePathRecursively(
-      Folder parentFolder, byte[] oldParentPathHash, Connection connection) throws SQLException {
-
-    List<Folder> subFolders =
-        folderStore.listByParentPathHash(FolderType.DASHBOARD, oldParentPathHash, connection);
-    for (Folder subFolder : subFolders) {
-      byte[] oldPathHash = subFolder.getPathHash();
-      String childSlug = slugify(subFolder.getName());
-      String newChildPath = Path.getChildPath(parentFolder.getPath(), childSlug);
-      subFolder.setPath(newChildPath);
-      subFolder.setPathHash(Path.hash(newChildPath));
-      subFolder.setParentPathHash(parentFolder.getPathHash());
-      subFolder.setUpdatedBy(parentFolder.getUpdatedBy());
-      subFolder.setUpdatedTime(parentFolder.getUpdatedTime());
-
-      if (!subFolder.isFile()) {
-        updatePathRecursively(subFolder, oldPathHash, connection);
-      }
-      folderStore.updateFolder(subFolder, connection);
-    }
-  }
-
   private FileDto updateFile(FileDto file, HttpServletRequest request) {
 
     String userId = request.getUserPrincipal().getName();
@@ -388,6 +403,8 @@ public class DashboardService {
         }
 
         folderStore.commit(con);
+        folderStore.recordWrite(con, userId);
+        invalidateFolderTree(path);
         return modelToView(oldFile);
       } catch (Exception e) {
         folderStore.rollback(con);
@@ -419,17 +436,85 @@ public class DashboardService {
     }
   }
 
-  public FileDto getFileById(final long id, final String userId) {
+  /**
+   * Reads a dashboard file for a GET, its body only when the request preconditions don't match
+   * its tag. The row, favorite flag and content are read over one connection.
+   *
+   * @param request the conditional request, null to read the file unconditionally
+   */
+  public ConditionalRead<FileDto> getFileById(
+      final long id, final String userId, final Request request) {
+    return readFile(
+        id,
+        userId,
+        request,
+        false,
+        (model, favorite, connection) -> {
+          byte[] content = getContent(model, connection);
+          if (null == content) {
+            return null;
+          }
+          FileDto view = modelToView(model, content);
+          view.setFavorite(favorite);
+          return view;
+        });
+  }
+
+  /**
+   * Same as {@link #getFileById(long, String, Request)} but the body is gzip encoded, with the
+   * stored content spliced in without decompressing it.
+   */
+  public ConditionalRead<byte[]> getCompressedFileById(
+      final long id, final String userId, final Request request) {
+    return readFile(
+        id,
+        userId,
+        request,
+        true,
+        (model, favorite, connection) -> {
+          byte[] content = getCompressedContent(model, connection);
+          if (null == content) {
+            return null;
+          }
+          FileDto view = new FileDto();
+          modelToView(model, view);
+          view.setFavorite(favorite);
+          return compressedEnvelope(view, CONTENT, content);
+        });
+  }
+
+  private <T> ConditionalRead<T> readFile(
+      final long id,
+      final String userId,
+      final Request request,
+      final boolean compressed,
+      final FileReader<T> reader) {
     try (Connection connection = folderStore.getReadOnlyConnection()) {
-      File model = folderStore.getFileAndContentById(FolderType.DASHBOARD, id, connection);
+      // a conditional request reads the content only once the tag didn't match
+      File model = getFile(id, request == null, compressed, connection);
       if (null == model) {
         throw notFoundException("Dashboard not found with id: " + id);
       }
       boolean favorite = folderStore.isFavorite(userId, id, connection);
+      EntityTag tag =
+          entityTag(
+              model.getId(),
+              model.getName(),
+              model.getPath(),
+              model.getContentid(),
+              model.getUpdatedTime(),
+              favorite);
+      ConditionalRead<T> notModified = ConditionalRead.evaluate(request, tag);
+      if (notModified != null) {
+        activityJobScheduler.addActivity(id, userId);
+        return notModified;
+      }
+      T body = reader.read(model, favorite, connection);
+      if (null == body) {
+        throw notFoundException("Dashboard not found with id: " + id);
+      }
       activityJobScheduler.addActivity(id, userId);
-      FileDto view = modelToView(model);
-      view.setFavorite(favorite);
-      return view;
+      return ConditionalRead.of(tag, body);
     } catch (SQLException | IOException e) {
       String message = "Error reading dashboard with id: " + id;
       LOGGER.error(message, e);
@@ -437,7 +522,35 @@ public class DashboardService {
     }
   }
 
-  public FolderDto getByPath(final String pathString, final String userId) {
+  private interface FileReader<T> {
+    /** @return the body of the file, null if its content is not found */
+    T read(File model, boolean favorite, Connection connection) throws SQLException, IOException;
+  }
+
+  /** @return the entity tag of a folder or file row, with its listed children if any. */
+  private static EntityTag tagOf(final Folder model, final boolean favorite, final List<Folder> children) {
+    List<Object> values = new ArrayList<>();
+    values.add(favorite);
+    addTagValues(model, values);
+    for (Folder child : children) {
+      addTagValues(child, values);
+    }
+    return entityTag(values.toArray());
+  }
+
+  private static void addTagValues(final Folder model, final List<Object> values) {
+    values.add(model.getId());
+    values.add(model.getName());
+    values.add(model.getPath());
+    values.add(model.getUpdatedTime());
+  }
+
+  /**
+   * Lists a folder, or reads the row of a file, for a GET. The tag is computed from the rows, the
+   * view is only built when the request preconditions don't match it.
+   */
+  public ConditionalRead<FolderDto> getByPath(
+      final String pathString, final String userId, final Request request) {
 
     String idString = pathString.split("/")[pathString.startsWith("/") ? 1 : 0];
     if (isNullOrEmpty(idString)) {
@@ -458,32 +571,30 @@ public class DashboardService {
       }
 
       boolean favorite = folderStore.isFavorite(userId, id, connection);
+      List<Folder> subFolders;
       if (rootFolder.isFile()) {
         activityJobScheduler.addActivity(id, userId);
-        FolderDto view = modelToView(rootFolder);
-        view.setFavorite(favorite);
-        return view;
-      } else {
-        List<Folder> subFolders =
+        subFolders = Collections.emptyList();
+      } else if (folderTreeCache == null) {
+        subFolders =
             folderStore.listByParentPathHash(
                 FolderType.DASHBOARD, rootFolder.getPathHash(), connection);
-        FolderDto rootFolderDto = modelToView(rootFolder);
-        rootFolderDto.setFavorite(favorite);
-
-        List<FolderDto> subFolderDTOs = new ArrayList<>();
-        List<FolderDto> fileDTOs = new ArrayList<>();
-        for (Folder subFolder : subFolders) {
-          FolderDto subFolderDTO = modelToView(subFolder);
-          if (subFolder.isFile()) {
-            fileDTOs.add(subFolderDTO);
-          } else {
-            subFolderDTOs.add(subFolderDTO);
-          }
-        }
-        rootFolderDto.setSubfolders(subFolderDTOs);
-        rootFolderDto.setFiles(fileDTOs);
-        return rootFolderDto;
+      } else {
+        subFolders =
+            folderTreeCache
+                .get(Path.get(rootFolder.getPath()), connection)
+                .children(rootFolder.getPathHash());
+      }
+
+      EntityTag tag = tagOf(rootFolder, favorite, subFolders);
+      ConditionalRead<FolderDto> notModified = ConditionalRead.evaluate(request, tag);
+      if (notModified != null) {
+        return notModified;
       }
+      FolderDto view =
+          rootFolder.isFile() ? modelToView(rootFolder) : modelToView(rootFolder, subFolders);
+      view.setFavorite(favorite);
+      return ConditionalRead.of(tag, view);
     } catch (SQLException e) {
       String message = "Error listing for path: " + pathString;
       LOGGER.error(message, e);
@@ -494,33 +605,84 @@ public class DashboardService {
   private FolderDto getByPath(Path path, Connection connection) throws SQLException, IOException {
 
     byte[] pathHash = path.hash();
-    File file = folderStore.getFileAndContentByPathHash(FolderType.DASHBOARD, pathHash, connection);
-    if (file == null) {
+    Tree tree = folderTreeCache == null ? null : folderTreeCache.get(path, connection);
+    Folder rootFolder =
+        tree == null
+            ? folderStore.getFolderByPathHash(FolderType.DASHBOARD, pathHash, connection)
+            : tree.get(pathHash);
+    if (rootFolder == null) {
       return null; // path not found
     }
 
-    if (file.isFile()) {
-      return modelToView(file);
+    if (rootFolder.isFile()) {
+      byte[] content = getContent(rootFolder.getContentid(), connection);
+      return modelToView(rootFolder, content);
     }
 
-    Folder rootFolder = file; // it's a folder
     List<Folder> subFolders =
-        folderStore.listByParentPathHash(FolderType.DASHBOARD, pathHash, connection);
-    FolderDto rootFolderDto = modelToView(rootFolder);
+        tree == null
+            ? folderStore.listByParentPathHash(FolderType.DASHBOARD, pathHash, connection)
+            : tree.children(pathHash);
+    return modelToView(rootFolder, subFolders);
+  }
 
-    List<FolderDto> subFolderDtos = new ArrayList<>();
-    List<FolderDto> fileDtos = new ArrayList<>();
-    for (Folder subFolder : subFolders) {
-      FolderDto folderDto = modelToView(subFolder);
-      if (subFolder.isFile()) {
-        fileDtos.add(folderDto);
+  /**
+   * Resolves many paths at once, with one query for the roots and one for their children instead
+   * of two queries per path. Paths with a cached tree are served from memory.
+   *
+   * @return the folder of every path found, keyed by path
+   */
+  private Map<Path, FolderDto> getByPaths(Collection<Path> paths, Connection connection)
+      throws SQLException, IOException {
+
+    Map<Path, FolderDto> folders = new HashMap<>();
+    Map<ByteBuffer, Path> pathsByHash = new LinkedHashMap<>();
+    for (Path path : paths) {
+      Tree tree = folderTreeCache == null ? null : folderTreeCache.getIfPresent(path);
+      if (tree == null) {
+        pathsByHash.put(ByteBuffer.wrap(path.hash()), path);
+        continue;
+      }
+      byte[] pathHash = path.hash();
+      Folder rootFolder = tree.get(pathHash);
+      if (rootFolder != null && !rootFolder.isFile()) {
+        folders.put(path, modelToView(rootFolder, tree.children(pathHash)));
+      } else if (rootFolder != null) {
+        pathsByHash.put(ByteBuffer.wrap(pathHash), path);
+      }
+    }
+    if (pathsByHash.isEmpty()) {
+      return folders;
+    }
+
+    Map<ByteBuffer, Folder> rootFolders =
+        folderStore.getByPathHashes(
+            FolderType.DASHBOARD,
+            pathsByHash.keySet().stream().map(ByteBuffer::array).collect(Collectors.toList()),
+            connection);
+    List<byte[]> parentPathHashes =
+        rootFolders.values().stream()
+            .filter(folder -> !folder.isFile())
+            .map(Folder::getPathHash)
+            .collect(Collectors.toList());
+    ListMultimap<ByteBuffer, Folder> subFolders =
+        folderStore.listByParentPathHashes(FolderType.DASHBOARD, parentPathHashes, connection);
+
+    for (Map.Entry<ByteBuffer, Path> entry : pathsByHash.entrySet()) {
+      Folder rootFolder = rootFolders.get(entry.getKey());
+      if (rootFolder == null) {
+        continue; // path not found
+      }
+      FolderDto folderDto;
+      if (rootFolder.isFile()) {
+        byte[] content = getContent(rootFolder.getContentid(), connection);
+        folderDto = modelToView(rootFolder, content);
       } else {
-        subFolderDtos.add(folderDto);
+        folderDto = modelToView(rootFolder, subFolders.get(entry.getKey()));
       }
+      folders.put(entry.getValue(), folderDto);
     }
-    rootFolderDto.setSubfolders(subFolderDtos);
-    rootFolderDto.setFiles(fileDtos);
-    return rootFolderDto;
+    return folders;
   }
 
   public FolderDto getNamespaceFolder(String namespace) {
@@ -548,31 +710,34 @@ public class DashboardService {
 
       userFolder.setUser(user);
 
-      // obtain user level folder
+      // obtain the user level folder and the member and follower namespace folders together
       Path path = Path.getByUserId(userId);
-      userFolder.setPersonalFolder(getByPath(path, connection));
-
-      // obtain user's namespace membership folder
       final List<Namespace> memberNamespaces =
           namespaceMemberService.getNamespaces(userId, connection);
+      final List<Namespace> followingNamespaces =
+          namespaceFollowerStore.getFollowingNamespaces(userId, connection);
+
+      final List<Path> paths = new ArrayList<>();
+      paths.add(path);
+      for (Namespace ns : memberNamespaces) {
+        paths.add(Path.getPathByNamespace(ns.getAlias()));
+      }
+      for (Namespace ns : followingNamespaces) {
+        paths.add(Path.getPathByNamespace(ns.getAlias()));
+      }
+      final Map<Path, FolderDto> folders = getByPaths(paths, connection);
+
+      userFolder.setPersonalFolder(folders.get(path));
       for (Namespace ns : memberNamespaces) {
-        final Path namespacePath = Path.getPathByNamespace(ns.getAlias());
-        final FolderDto folderDto = getByPath(namespacePath, connection);
         NamespaceFolderDto namespaceFolderDto = new NamespaceFolderDto();
         namespaceFolderDto.setNamespace(ns);
-        namespaceFolderDto.setFolder(folderDto);
+        namespaceFolderDto.setFolder(folders.get(Path.getPathByNamespace(ns.getAlias())));
         userFolder.addToMemberNamespaces(namespaceFolderDto);
       }
-
-      // obtain user's namespace followership folder
-      final List<Namespace> followingNamespaces =
-          namespaceFollowerStore.getFollowingNamespaces(userId, connection);
       for (Namespace ns : followingNamespaces) {
-        final Path namespacePath = Path.getPathByNamespace(ns.getAlias());
-        final FolderDto folderDto = getByPath(namespacePath, connection);
         NamespaceFolderDto namespaceFolderDto = new NamespaceFolderDto();
         namespaceFolderDto.setNamespace(ns);
-        namespaceFolderDto.setFolder(folderDto);
+        namespaceFolderDto.setFolder(folders.get(Path.getPathByNamespace(ns.getAlias())));
         userFolder.addToFollowerNamespaces(namespaceFolderDto);
       }
 
@@ -641,6 +806,7 @@ public class DashboardService {
       }
       folderStore.addToFavorites(id, userId, connection);
       folderStore.commit(connection);
+      folderStore.recordWrite(connection, userId);
     } catch (SQLException e) {
       String message = "Error adding to favorites of " + userId + " folder id: " + id;
       LOGGER.error(message, e);
@@ -660,6 +826,7 @@ public class DashboardService {
       }
       folderStore.deleteFromFavorites(userId, id, connection);
       folderStore.commit(connection);
+      folderStore.recordWrite(connection, userId);
     } catch (SQLException e) {
       String message = "Error deleting from favorites of " + userId + " folder id: " + id;
       LOGGER.error(message, e);
@@ -709,6 +876,12 @@ public class DashboardService {
     model.setPathHash(parentPath.hash(pathString));
   }
 
+  private void invalidateFolderTree(Path... paths) {
+    if (folderTreeCache != null) {
+      folderTreeCache.invalidate(paths);
+    }
+  }
+
   private void checkAccess(Path path, String principal) throws SQLException {
 
     RootType rootType = path.getRootType();
@@ -746,14 +919,108 @@ public class DashboardService {
     return dto;
   }
 
+  private FolderDto modelToView(Folder model, List<Folder> subFolders) {
+    FolderDto folderDto = modelToView(model);
+    List<FolderDto> subFolderDtos = new ArrayList<>();
+    List<FolderDto> fileDtos = new ArrayList<>();
+    for (Folder subFolder : subFolders) {
+      FolderDto subFolderDto = modelToView(subFolder);
+      if (subFolder.isFile()) {
+        fileDtos.add(subFolderDto);
+      } else {
+        subFolderDtos.add(subFolderDto);
+      }
+    }
+    folderDto.setSubfolders(subFolderDtos);
+    folderDto.setFiles(fileDtos);
+    return folderDto;
+  }
+
+  private FileDto modelToView(Folder model, byte[] content) throws IOException {
+    FileDto dto = new FileDto();
+    modelToView(model, dto);
+    if (null != content) {
+      dto.setContent(deSerialize(content, Object.class));
+    }
+    return dto;
+  }
+
+  /**
+   * Reads the row of a dashboard. With <code>withContent</code>, its content is joined in unless
+   * the content the dashboard was last read with is still cached, so that a cache miss costs a
+   * single query.
+   *
+   * @param compressed true if the content is to be read as stored
+   */
+  private File getFile(long id, boolean withContent, boolean compressed, Connection connection)
+      throws SQLException, IOException {
+    String entity = DASHBOARD_ENTITY + id;
+    File model;
+    if (!withContent || contentCache.hasContentOf(entity, compressed)) {
+      model = folderStore.getFileById(FolderType.DASHBOARD, id, connection);
+    } else {
+      model = folderStore.getFileAndContentById(FolderType.DASHBOARD, id, connection);
+    }
+    if (model != null) {
+      contentCache.setContentOf(entity, model.getContentid());
+    }
+    return model;
+  }
+
+  /** @return the decompressed content of a file read by {@link #getFile}, null if not found */
+  private byte[] getContent(File model, Connection connection) throws SQLException, IOException {
+    if (model.getContent() == null) {
+      return getContent(model.getContentid(), connection);
+    }
+    return contentCache.put(model.getContentid(), model.getContent());
+  }
+
+  /** @return the stored content of a file read by {@link #getFile}, null if not found */
+  private byte[] getCompressedContent(File model, Connection connection)
+      throws SQLException, IOException {
+    if (model.getContent() == null) {
+      return getCompressedContent(model.getContentid(), connection);
+    }
+    contentCache.put(model.getContentid(), model.getContent());
+    return model.getContent();
+  }
+
+  /**
+   * Reads the decompressed content from the cache, falling back to the content table on a miss.
+   *
+   * @return null if the content is not found
+   */
+  private byte[] getContent(byte[] contentId, Connection connection)
+      throws SQLException, IOException {
+    byte[] content = contentCache.getDecompressed(contentId);
+    if (content == null) {
+      Content model = folderStore.getContentById(contentId, connection);
+      if (model != null) {
+        content = contentCache.put(contentId, model.getData());
+      }
+    }
+    return content;
+  }
+
+  private byte[] getCompressedContent(byte[] contentId, Connection connection)
+      throws SQLException, IOException {
+    byte[] content = contentCache.getCompressed(contentId);
+    if (content == null) {
+      Content model = folderStore.getContentById(contentId, connection);
+      if (model != null) {
+        content = model.getData();
+        contentCache.put(contentId, content);
+      }
+    }
+    return content;
+  }
+
   private FileDto modelToView(File model) throws IOException {
     FileDto dto = new FileDto();
     modelToView(model, dto);
     byte[] compressed = model.getContent();
     if (null != compressed) {
-      byte[] decompressed = decompress(compressed);
-      Object deSerialized = deSerialize(decompressed, Object.class);
-      dto.setContent(deSerialized);
+      dto.setContent(decompressAndDeserialize(compressed, Object.class));
     }
     return dto;
   }
@@ -800,8 +1067,10 @@ public class DashboardService {
   }
 
   private Content createContent(Object content) throws IOException {
-    byte[] serialized = serialize(content).getBytes();
-    byte[] sha2 = digest.digest(serialized);
-    return new Content(sha2, compress(serialized));
+    net.opentsdb.horizon.model.Content encoded =
+        content instanceof EncodedContent
+            ? ((EncodedContent) content).getContent()
+            : ContentWriter.write(content, digest);
+    return new Content(encoded.getSha2(), encoded.getData());
   }
 }
@@ -22,14 +22,20 @@ import com.oath.auth.KeyRefresherException;
 import com.stumbleupon.async.Deferred;
 import com.yahoo.athenz.zms.ZMSClient;
 import com.yahoo.athenz.zts.ZTSClient;
+import io.ultrabrew.metrics.MetricRegistry;
 import io.ultrabrew.metrics.util.Strings;
 import net.opentsdb.configuration.Configuration;
 import net.opentsdb.core.BaseTSDBPlugin;
 import net.opentsdb.core.Registry;
 import net.opentsdb.core.TSDB;
+import net.opentsdb.horizon.AccessDecisionCache;
+import net.opentsdb.horizon.ContentCache;
 import net.opentsdb.horizon.NamespaceCache;
 import net.opentsdb.horizon.SharedJDBCPool;
 import net.opentsdb.horizon.UserCache;
+import net.opentsdb.horizon.codec.ContentCodecs;
+import net.opentsdb.horizon.codec.DictionaryCodec;
+import net.opentsdb.horizon.fs.FolderTreeCache;
 import net.opentsdb.horizon.fs.store.FolderStore;
 import net.opentsdb.horizon.model.User;
 import net.opentsdb.horizon.store.ActivityStore;
@@ -39,18 +45,28 @@ import net.opentsdb.horizon.store.ContentStore;
 import net.opentsdb.horizon.store.NamespaceFollowerStore;
 import net.opentsdb.horizon.store.NamespaceMemberStore;
 import net.opentsdb.horizon.store.NamespaceStore;
+import net.opentsdb.horizon.store.SessionConsistency;
 import net.opentsdb.horizon.store.SnapshotStore;
 import net.opentsdb.horizon.store.SnoozeStore;
 import net.opentsdb.horizon.store.UserStore;
+import net.opentsdb.horizon.util.CanonicalJson;
+import net.opentsdb.horizon.util.ContentWriter;
+import net.opentsdb.horizon.util.Digester;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.net.ssl.SSLContext;
+import javax.sql.DataSource;
 import java.io.IOException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static net.opentsdb.horizon.pool.ConnectionPools.BACKGROUND_RW;
 
 public class HorizonConfigServices extends BaseTSDBPlugin {
   private static final Logger LOG = LoggerFactory.getLogger(HorizonConfigServices.class);
@@ -62,6 +78,15 @@ public class HorizonConfigServices extends BaseTSDBPlugin {
   public static final String DB_KEY = "database.client.id";
   public static final String NAMESPACE_TTL = "cache.namespace.ttl";
   public static final String USER_TTL = "cache.user.ttl";
+  public static final String MEMBER_TTL = "cache.member.ttl";
+  public static final String ATHENZ_TTL = "cache.athenz.ttl";
+  public static final String ATHENZ_NEGATIVE_TTL = "cache.athenz.negative.ttl";
+  public static final String ATHENZ_CACHE_SIZE = "cache.athenz.size";
+  public static final String CONTENT_CACHE_BYTES = "cache.content.bytes";
+  public static final String CONTENT_CACHE_MODE = "cache.content.mode";
+  public static final String FOLDER_TREE_CACHE_ENABLED = "cache.folder.tree.enabled";
+  public static final String FOLDER_TREE_CACHE_TTL = "cache.folder.tree.ttl";
+  public static final String FOLDER_TREE_CACHE_SIZE = "cache.folder.tree.size";
 
   public static final String ZTS_URL_KEY = "athenz.zts.url";
   public static final String ZMS_URL_KEY = "athenz.zms.url";
@@ -72,9 +97,29 @@ public class HorizonConfigServices extends BaseTSDBPlugin {
   public static final String ATHENZ_TRUST_STORE_PASS_KEY = "athenz.trustore.password.key";
 
   public static final String ACTIVITY_THREADS_KEY = "activity.job.threads";
+  public static final String ACTIVITY_QUEUE_SIZE_KEY = "activity.job.queue.size";
+  public static final String ACTIVITY_REJECTION_POLICY_KEY = "activity.job.rejection.policy";
+  public static final String ACTIVITY_FLUSH_INTERVAL_KEY = "activity.flush.interval";
+  public static final String ACTIVITY_MAX_PENDING_KEY = "activity.max.pending";
+  public static final String CONTENT_CODEC_KEY = "content.codec";
+  public static final String CONTENT_CODEC_LEVEL_KEY = "content.codec.level";
+  public static final String CONTENT_RECOMPRESS_INTERVAL_KEY = "content.recompress.interval";
+  public static final String CONTENT_RECOMPRESS_BATCH_KEY = "content.recompress.batch";
+  public static final String CONTENT_DICTIONARY_SAMPLES_KEY = "content.dictionary.samples";
+  public static final String CONTENT_DICTIONARY_SIZE_KEY = "content.dictionary.size";
+  public static final String CONTENT_DICTIONARY_RETRAIN_KEY = "content.dictionary.retrain";
+  public static final String CONTENT_CANONICAL_KEY = "content.canonical";
+  public static final String CONTENT_VOLATILE_FIELDS_KEY = "content.canonical.volatile";
+  public static final String CONTENT_DEDUP_REPORT_KEY = "content.dedup.report";
   public static final String ADMIN_EMAIL_KEY = "admin.email.domain";
 
+  public static final String SO_METRIC_REGISTRY = "HZ_METRIC_REGISTRY";
+
+  protected MetricRegistry metricRegistry;
+
   protected ExecutorService executorService;
+  protected ScheduledExecutorService activityFlushScheduler;
+  protected ScheduledExecutorService contentRecompressionScheduler;
 
   protected NamespaceMemberStore namespaceMemberStore;
   protected NamespaceFollowerStore namespaceFollowerStore;
@@ -85,11 +130,14 @@ public class HorizonConfigServices extends BaseTSDBPlugin {
   protected AlertStore alertStore;
   protected SnoozeStore snoozeStore;
   protected ContentStore contentStore;
+  protected ContentStore backgroundContentStore;
   protected ActivityStore activityStore;
   protected SnapshotStore snapshotStore;
 
   protected NamespaceCache namespaceCache;
   protected UserCache userCache;
+  protected ContentCache contentCache;
+  protected FolderTreeCache folderTreeCache;
 
   protected AuthService authService;
   protected NamespaceFollowerService namespaceFollowerService;
@@ -103,6 +151,7 @@ public class HorizonConfigServices extends BaseTSDBPlugin {
   protected ContentService contentService;
   protected SnapshotService snapshotService;
 
+  protected ActivityAggregator activityAggregator;
   protected DashboardActivityJobScheduler jobScheduler;
   protected ActivityJobScheduler activityJobScheduler;
 
@@ -113,10 +162,10 @@ public class HorizonConfigServices extends BaseTSDBPlugin {
 
     registerConfigs(tsdb);
 
-    final MessageDigest digest;
+    final Digester digest;
     try {
-      digest = MessageDigest.getInstance("SHA-256");
-    } catch (NoSuchAlgorithmException e) {
+      digest = new Digester(Digester.SHA_256);
+    } catch (IllegalArgumentException e) {
       LOG.error("Couldn't load the SHA-256 digest?", e);
       return Deferred.fromError(e);
     }
@@ -131,25 +180,111 @@ public class HorizonConfigServices extends BaseTSDBPlugin {
               (dbId == null ? "default" : dbId));
     }
 
-    executorService = Executors.newFixedThreadPool(config.getInt(getConfigKey(ACTIVITY_THREADS_KEY)));
+    // shared with the pool so its telemetry is reported along with the services'
+    metricRegistry = dbPool.getMetricRegistry();
+
+    executorService = new BoundedExecutor("activity",
+            config.getInt(getConfigKey(ACTIVITY_THREADS_KEY)),
+            config.getInt(getConfigKey(ACTIVITY_QUEUE_SIZE_KEY)),
+            BoundedExecutor.RejectionPolicy.valueOf(
+                    config.getString(getConfigKey(ACTIVITY_REJECTION_POLICY_KEY)).toUpperCase()),
+            metricRegistry);
+    activityFlushScheduler = Executors.newSingleThreadScheduledExecutor(
+            BoundedExecutor.threadFactory("activity-flush"));
 
     // stores
-    namespaceMemberStore = new NamespaceMemberStore(dbPool.getRwDataSource(),
-            dbPool.getRoDataSource());
-    namespaceFollowerStore = new NamespaceFollowerStore(dbPool.getRwDataSource(),
-            dbPool.getRoDataSource());
-    namespaceStore = new NamespaceStore(dbPool.getRwDataSource(), dbPool.getRoDataSource());
-    folderStore = new FolderStore(dbPool.getRwDataSource(), dbPool.getRoDataSource());
-    userStore = new UserStore(dbPool.getRwDataSource(), dbPool.getRoDataSource());
-    contactStore = new ContactStore(dbPool.getRwDataSource(), dbPool.getRoDataSource());
-    alertStore = new AlertStore(dbPool.getRwDataSource(), dbPool.getRoDataSource());
-    snoozeStore = new SnoozeStore(dbPool.getRwDataSource(), dbPool.getRoDataSource());
-    contentStore = new ContentStore(dbPool.getRwDataSource(), dbPool.getRoDataSource());
-    activityStore = new ActivityStore(dbPool.getRwDataSource(), dbPool.getRoDataSource());
-    snapshotStore = new SnapshotStore(dbPool.getRwDataSource(), dbPool.getRoDataSource());
+    final DataSource rwSrc = dbPool.getRwDataSource();
+    final DataSource roSrc = dbPool.getRoDataSource();
+    final SessionConsistency sessionConsistency = dbPool.getSessionConsistency();
+    namespaceMemberStore = new NamespaceMemberStore(rwSrc, roSrc, sessionConsistency);
+    namespaceFollowerStore = new NamespaceFollowerStore(rwSrc, roSrc, sessionConsistency);
+    namespaceStore = new NamespaceStore(rwSrc, roSrc, sessionConsistency);
+    folderStore = new FolderStore(rwSrc, roSrc, sessionConsistency);
+    userStore = new UserStore(rwSrc, roSrc, sessionConsistency);
+    contactStore = new ContactStore(rwSrc, roSrc, sessionConsistency);
+    alertStore = new AlertStore(rwSrc, roSrc, sessionConsistency);
+    snoozeStore = new SnoozeStore(rwSrc, roSrc, sessionConsistency);
+    contentStore = new ContentStore(rwSrc, roSrc, sessionConsistency);
+    activityStore = new ActivityStore(dbPool.getDataSource(BACKGROUND_RW), null);
+    backgroundContentStore = new ContentStore(dbPool.getDataSource(BACKGROUND_RW), null,
+            SessionConsistency.DISABLED);
+    snapshotStore = new SnapshotStore(rwSrc, roSrc, sessionConsistency);
+
+    activityAggregator =
+            new ActivityAggregator(
+                    activityStore,
+                    executorService,
+                    activityFlushScheduler,
+                    config.getLong(getConfigKey(ACTIVITY_FLUSH_INTERVAL_KEY)),
+                    config.getInt(getConfigKey(ACTIVITY_MAX_PENDING_KEY)),
+                    metricRegistry);
 
     namespaceCache = new NamespaceCache(config.getInt(getConfigKey(NAMESPACE_TTL)), namespaceStore);
     userCache = new UserCache(config.getInt(getConfigKey(USER_TTL)), userStore);
+    contentCache = new ContentCache(config.getLong(getConfigKey(CONTENT_CACHE_BYTES)),
+            ContentCache.Mode.valueOf(config.getString(getConfigKey(CONTENT_CACHE_MODE)).toUpperCase()),
+            metricRegistry);
+    if (config.getBoolean(getConfigKey(FOLDER_TREE_CACHE_ENABLED))) {
+      folderTreeCache = new FolderTreeCache(folderStore,
+              config.getInt(getConfigKey(FOLDER_TREE_CACHE_TTL)),
+              TimeUnit.SECONDS,
+              config.getLong(getConfigKey(FOLDER_TREE_CACHE_SIZE)),
+              metricRegistry);
+    }
+
+    String contentCodec = config.getString(getConfigKey(CONTENT_CODEC_KEY));
+    int contentCodecLevel = config.getInt(getConfigKey(CONTENT_CODEC_LEVEL_KEY));
+    try {
+      ContentDictionaryService contentDictionaryService = new ContentDictionaryService(
+              contentStore,
+              contentCodecLevel,
+              config.getInt(getConfigKey(CONTENT_DICTIONARY_SAMPLES_KEY)),
+              config.getInt(getConfigKey(CONTENT_DICTIONARY_SIZE_KEY)),
+              metricRegistry);
+      ContentCodecs.register(contentDictionaryService.getCodec());
+      if (DictionaryCodec.NAME.equalsIgnoreCase(contentCodec)) {
+        int dictionaryId = config.getBoolean(getConfigKey(CONTENT_DICTIONARY_RETRAIN_KEY))
+                ? contentDictionaryService.train()
+                : contentDictionaryService.loadOrTrain();
+        // nothing to train on yet, keep writing gzip until a dictionary exists
+        if (dictionaryId >= 0) {
+          ContentCodecs.setWriteCodec(contentDictionaryService.getCodec());
+        }
+      } else {
+        ContentCodecs.setWriteCodec(ContentCodecs.forName(contentCodec, contentCodecLevel));
+      }
+    } catch (IllegalArgumentException | SQLException e) {
+      LOG.error("Invalid content codec configuration", e);
+      return Deferred.fromError(e);
+    }
+    final CanonicalJson canonicalJson;
+    try {
+      String volatileFields = config.getString(getConfigKey(CONTENT_VOLATILE_FIELDS_KEY));
+      canonicalJson = new CanonicalJson(Strings.isNullOrEmpty(volatileFields)
+              ? Collections.emptyList()
+              : Arrays.asList(volatileFields.trim().split("\\s*,\\s*")));
+    } catch (IllegalArgumentException e) {
+      LOG.error("Invalid volatile content fields", e);
+      return Deferred.fromError(e);
+    }
+    if (config.getBoolean(getConfigKey(CONTENT_CANONICAL_KEY))) {
+      ContentWriter.setCanonicalJson(canonicalJson);
+    }
+    if (config.getBoolean(getConfigKey(CONTENT_DEDUP_REPORT_KEY))) {
+      ExecutorService reportExecutor = Executors.newSingleThreadExecutor();
+      reportExecutor.submit(
+              new ContentDedupReport(backgroundContentStore, canonicalJson, digest,
+                      metricRegistry));
+      reportExecutor.shutdown();
+    }
+    if (config.getLong(getConfigKey(CONTENT_RECOMPRESS_INTERVAL_KEY)) > 0) {
+      contentRecompressionScheduler = Executors.newSingleThreadScheduledExecutor(
+              BoundedExecutor.threadFactory("content-recompression"));
+      new ContentRecompressionJob(backgroundContentStore, ContentCodecs.getWriteCodec(),
+              config.getInt(getConfigKey(CONTENT_RECOMPRESS_BATCH_KEY)), metricRegistry)
+              .start(contentRecompressionScheduler,
+                      config.getLong(getConfigKey(CONTENT_RECOMPRESS_INTERVAL_KEY)));
+    }
 
     // TODO - Temporary as we need to support no-auth, etc.
     ZTSClient ztsClient = null;
@@ -176,10 +311,18 @@ public class HorizonConfigServices extends BaseTSDBPlugin {
       ztsClient = new ZTSClient(config.getString(getConfigKey(ZTS_URL_KEY)), sslContext);
       zmsClient = new ZMSClient(config.getString(getConfigKey(ZMS_URL_KEY)), sslContext);
 
-      new AuthService(namespaceMemberStore, ztsClient,
-              config.getString(getConfigKey(ATHENZ_DOMAIN_KEY)));
+      AccessDecisionCache accessDecisionCache = new AccessDecisionCache(ztsClient,
+              config.getInt(getConfigKey(ATHENZ_TTL)),
+              config.getInt(getConfigKey(ATHENZ_NEGATIVE_TTL)),
+              TimeUnit.SECONDS,
+              config.getLong(getConfigKey(ATHENZ_CACHE_SIZE)),
+              metricRegistry);
+      authService = new AuthService(namespaceMemberStore, accessDecisionCache,
+              config.getString(getConfigKey(ATHENZ_DOMAIN_KEY)),
+              config.getInt(getConfigKey(MEMBER_TTL)));
     } else {
-      new AuthService(namespaceMemberStore, null, null);
+      authService = new AuthService(namespaceMemberStore, null, null,
+              config.getInt(getConfigKey(MEMBER_TTL)));
     }
 
     namespaceFollowerService =
@@ -202,7 +345,7 @@ public class HorizonConfigServices extends BaseTSDBPlugin {
                     authService);
 
     jobScheduler =
-            new DashboardActivityJobScheduler(folderStore, executorService);
+            new DashboardActivityJobScheduler(folderStore, activityAggregator);
     dashboardService =
             new DashboardService(
                     folderStore,
@@ -212,6 +355,8 @@ public class HorizonConfigServices extends BaseTSDBPlugin {
                     authService,
                     userStore,
                     digest,
+                    contentCache,
+                    folderTreeCache,
                     jobScheduler);
 
     userService = new UserService(userStore, folderStore);
@@ -228,13 +373,19 @@ public class HorizonConfigServices extends BaseTSDBPlugin {
             new SnoozeService(snoozeStore, authService, namespaceCache, contactStore);
     contentService = new ContentService(digest, contentStore);
     activityJobScheduler =
-            new ActivityJobScheduler(activityStore, executorService);
+            new ActivityJobScheduler(activityStore, activityAggregator);
     snapshotService =
             new SnapshotService(
-                    snapshotStore, contentService, folderStore, alertStore, activityJobScheduler);
+                    snapshotStore,
+                    contentService,
+                    contentCache,
+                    folderStore,
+                    alertStore,
+                    activityJobScheduler);
 
     // register as shared objects for the resources to pick up.
     final Registry registry = tsdb.getRegistry();
+    registry.registerSharedObject(SO_METRIC_REGISTRY, metricRegistry);
     registry.registerSharedObject(NamespaceService.SO_SERVICE, namespaceService);
     registry.registerSharedObject(NamespaceMemberService.SO_SERVICE, namespaceMemberService);
     registry.registerSharedObject(NamespaceFollowerService.SO_SERVICE, namespaceFollowerService);
@@ -273,6 +424,21 @@ public class HorizonConfigServices extends BaseTSDBPlugin {
     return Deferred.fromResult(null);
   }
 
+  @Override
+  public Deferred<Object> shutdown() {
+    if (contentRecompressionScheduler != null) {
+      contentRecompressionScheduler.shutdownNow();
+    }
+    if (activityAggregator != null) {
+      // writes out the pending activity before the pools go away
+      activityAggregator.shutdown();
+    }
+    if (executorService != null) {
+      executorService.shutdown();
+    }
+    return Deferred.fromResult(null);
+  }
+
   @Override
   public String type() {
     return TYPE;
@@ -293,6 +459,43 @@ public class HorizonConfigServices extends BaseTSDBPlugin {
       config.register(getConfigKey(USER_TTL), 300, false,
               "The time to live for an entry in the user cache in seconds.");
     }
+    if (!config.hasProperty(getConfigKey(MEMBER_TTL))) {
+      config.register(getConfigKey(MEMBER_TTL), 60, false,
+              "The time to live for a cached namespace membership check in seconds.");
+    }
+    if (!config.hasProperty(getConfigKey(ATHENZ_TTL))) {
+      config.register(getConfigKey(ATHENZ_TTL), 300, false,
+              "The time to live for a cached Athenz access grant in seconds.");
+    }
+    if (!config.hasProperty(getConfigKey(ATHENZ_NEGATIVE_TTL))) {
+      config.register(getConfigKey(ATHENZ_NEGATIVE_TTL), 30, false,
+              "The time to live for a cached Athenz access denial in seconds.");
+    }
+    if (!config.hasProperty(getConfigKey(ATHENZ_CACHE_SIZE))) {
+      config.register(getConfigKey(ATHENZ_CACHE_SIZE), 100000L, false,
+              "The maximum number of Athenz access decisions to cache.");
+    }
+    if (!config.hasProperty(getConfigKey(CONTENT_CACHE_BYTES))) {
+      config.register(getConfigKey(CONTENT_CACHE_BYTES), 64L * 1024 * 1024, false,
+              "The maximum number of bytes of dashboard and snapshot content to keep in memory. "
+                      + "Zero disables the content cache.");
+    }
+    if (!config.hasProperty(getConfigKey(CONTENT_CACHE_MODE))) {
+      config.register(getConfigKey(CONTENT_CACHE_MODE), "both", false,
+              "Which form of the content to cache: 'compressed', 'decompressed' or 'both'.");
+    }
+    if (!config.hasProperty(getConfigKey(FOLDER_TREE_CACHE_ENABLED))) {
+      config.register(getConfigKey(FOLDER_TREE_CACHE_ENABLED), false, false,
+              "Whether to serve dashboard folder listings from an in-memory tree per root.");
+    }
+    if (!config.hasProperty(getConfigKey(FOLDER_TREE_CACHE_TTL))) {
+      config.register(getConfigKey(FOLDER_TREE_CACHE_TTL), 60, false,
+              "The time to live for a cached dashboard folder tree in seconds.");
+    }
+    if (!config.hasProperty(getConfigKey(FOLDER_TREE_CACHE_SIZE))) {
+      config.register(getConfigKey(FOLDER_TREE_CACHE_SIZE), 1000000L, false,
+              "The maximum number of folders and files held by the folder tree cache.");
+    }
 
     if (!config.hasProperty(getConfigKey(ZTS_URL_KEY))) {
       config.register(getConfigKey(ZTS_URL_KEY), null, false,
@@ -327,6 +530,75 @@ public class HorizonConfigServices extends BaseTSDBPlugin {
       config.register(getConfigKey(ACTIVITY_THREADS_KEY), 1, false,
               "How many threads to run for processing user activity.");
     }
+    if (!config.hasProperty(getConfigKey(ACTIVITY_QUEUE_SIZE_KEY))) {
+      config.register(getConfigKey(ACTIVITY_QUEUE_SIZE_KEY), 1000, false,
+              "Maximum number of user activity jobs waiting for a thread.");
+    }
+    if (!config.hasProperty(getConfigKey(ACTIVITY_REJECTION_POLICY_KEY))) {
+      config.register(getConfigKey(ACTIVITY_REJECTION_POLICY_KEY), "drop_oldest", false,
+              "What to do with a user activity job when the queue is full. One of "
+                      + "drop_oldest, drop_newest or caller_runs.");
+    }
+    if (!config.hasProperty(getConfigKey(ACTIVITY_FLUSH_INTERVAL_KEY))) {
+      config.register(getConfigKey(ACTIVITY_FLUSH_INTERVAL_KEY), 5000L, false,
+              "How often, in milliseconds, to write the coalesced user activity.");
+    }
+    if (!config.hasProperty(getConfigKey(ACTIVITY_MAX_PENDING_KEY))) {
+      config.register(getConfigKey(ACTIVITY_MAX_PENDING_KEY), 100000, false,
+              "Maximum number of distinct user activities held between flushes. "
+                      + "New activities are dropped beyond it.");
+    }
+    if (!config.hasProperty(getConfigKey(CONTENT_CODEC_KEY))) {
+      config.register(getConfigKey(CONTENT_CODEC_KEY), "gzip", false,
+              "The codec new dashboard and snapshot content is stored with, 'gzip', "
+                      + "'deflate', 'lz4', 'zstd' or 'dictionary'. Only switch once every "
+                      + "instance can read the new codec.");
+    }
+    if (!config.hasProperty(getConfigKey(CONTENT_CODEC_LEVEL_KEY))) {
+      config.register(getConfigKey(CONTENT_CODEC_LEVEL_KEY), 6, false,
+              "The compression level for the codecs that have one, 0 to 9 for deflate, "
+                      + "1 to 22 for zstd and dictionary, 0 for fast lz4, 1 to 17 for high "
+                      + "compression lz4.");
+    }
+    if (!config.hasProperty(getConfigKey(CONTENT_RECOMPRESS_INTERVAL_KEY))) {
+      config.register(getConfigKey(CONTENT_RECOMPRESS_INTERVAL_KEY), 0L, false,
+              "How often, in milliseconds, to recompress a batch of stored content with the "
+                      + "configured codec. Zero disables the recompression job.");
+    }
+    if (!config.hasProperty(getConfigKey(CONTENT_RECOMPRESS_BATCH_KEY))) {
+      config.register(getConfigKey(CONTENT_RECOMPRESS_BATCH_KEY), 100, false,
+              "The number of content rows recompressed per run of the recompression job.");
+    }
+    if (!config.hasProperty(getConfigKey(CONTENT_CANONICAL_KEY))) {
+      config.register(getConfigKey(CONTENT_CANONICAL_KEY), false, false,
+              "Whether to store content in its canonical form, sorted keys and normalized "
+                      + "numbers, so that semantically identical content is stored once. Note "
+                      + "the stored json is rewritten, e.g. 1.0 is stored as 1.");
+    }
+    if (!config.hasProperty(getConfigKey(CONTENT_VOLATILE_FIELDS_KEY))) {
+      config.register(getConfigKey(CONTENT_VOLATILE_FIELDS_KEY), "", false,
+              "Comma separated json pointers of the content fields left out of the canonical "
+                      + "hash, e.g. '/settings/time/refreshed'. A '*' segment matches anything. "
+                      + "They are still stored, but content differing only in them shares the "
+                      + "values of the first write.");
+    }
+    if (!config.hasProperty(getConfigKey(CONTENT_DEDUP_REPORT_KEY))) {
+      config.register(getConfigKey(CONTENT_DEDUP_REPORT_KEY), false, false,
+              "Whether to report, on startup, how many content rows share a canonical form.");
+    }
+    if (!config.hasProperty(getConfigKey(CONTENT_DICTIONARY_SAMPLES_KEY))) {
+      config.register(getConfigKey(CONTENT_DICTIONARY_SAMPLES_KEY), 1000, false,
+              "The number of content rows sampled to train a compression dictionary.");
+    }
+    if (!config.hasProperty(getConfigKey(CONTENT_DICTIONARY_SIZE_KEY))) {
+      config.register(getConfigKey(CONTENT_DICTIONARY_SIZE_KEY), 110 * 1024, false,
+              "The maximum size, in bytes, of a trained compression dictionary. At most 1MB.");
+    }
+    if (!config.hasProperty(getConfigKey(CONTENT_DICTIONARY_RETRAIN_KEY))) {
+      config.register(getConfigKey(CONTENT_DICTIONARY_RETRAIN_KEY), false, false,
+              "Whether to train a new version of the compression dictionary on startup when "
+                      + "the 'dictionary' codec is used, instead of loading the latest one.");
+    }
     if (!config.hasProperty(getConfigKey(ADMIN_EMAIL_KEY))) {
       config.register(getConfigKey(ADMIN_EMAIL_KEY), "@opentsdb.net", false,
               "The domain to use for sending notifications.");
@@ -0,0 +1,82 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon;
+
+import mockit.Expectations;
+import mockit.Injectable;
+import mockit.Verifications;
+import net.opentsdb.configuration.Configuration;
+import org.junit.jupiter.api.Test;
+
+import static net.opentsdb.horizon.SharedJDBCPool.MAX_KEY;
+import static net.opentsdb.horizon.SharedJDBCPool.WORKERS_KEY;
+import static net.opentsdb.horizon.pool.ConnectionPools.BACKGROUND_RW;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SharedJDBCPoolTest {
+
+  @Injectable private Configuration config;
+
+  @Test
+  void namesThePoolKeys() {
+    assertEquals("pool.background-rw.max", SharedJDBCPool.poolKey(BACKGROUND_RW, MAX_KEY));
+    assertEquals(
+        "pool.background-rw.workers", SharedJDBCPool.poolKey(BACKGROUND_RW, WORKERS_KEY));
+  }
+
+  @Test
+  void usesTheSettingOfThePool() {
+    new Expectations() {
+      {
+        config.getString("jdbcpool.pool.background-rw.max");
+        result = " 4 ";
+      }
+    };
+
+    assertEquals(
+        4,
+        SharedJDBCPool.getPoolInt(config, "jdbcpool.pool.background-rw.max", "jdbcpool.pool.max"));
+
+    new Verifications() {
+      {
+        config.getInt(anyString);
+        times = 0;
+      }
+    };
+  }
+
+  @Test
+  void inheritsTheSharedSettingWhenThePoolOneIsUnset() {
+    new Expectations() {
+      {
+        config.getString("jdbcpool.pool.background-rw.max");
+        returns(null, "");
+
+        config.getInt("jdbcpool.pool.max");
+        result = 10;
+      }
+    };
+
+    assertEquals(
+        10,
+        SharedJDBCPool.getPoolInt(config, "jdbcpool.pool.background-rw.max", "jdbcpool.pool.max"));
+    assertEquals(
+        10,
+        SharedJDBCPool.getPoolInt(config, "jdbcpool.pool.background-rw.max", "jdbcpool.pool.max"));
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.config;
+
+import net.opentsdb.horizon.pool.PoolSettings;
+import org.junit.jupiter.api.Test;
+import org.yaml.snakeyaml.Yaml;
+
+import static net.opentsdb.horizon.pool.ConnectionPools.BACKGROUND_RW;
+import static net.opentsdb.horizon.pool.ConnectionPools.INTERACTIVE_RW;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class PoolConfigTest {
+
+  private static PoolSettings shared() {
+    PoolSettings settings = new PoolSettings();
+    settings.minSize = 1;
+    settings.maxSize = 0;
+    settings.acquireTimeoutMillis = 3000;
+    return settings;
+  }
+
+  @Test
+  void overridesOnlyTheFieldsSet() {
+    PoolConfig background = new PoolConfig();
+    background.maxSize = 4;
+    PoolSettings settings = shared();
+
+    background.applyTo(settings);
+
+    assertEquals(1, settings.minSize);
+    assertEquals(4, settings.maxSize);
+    assertEquals(3000, settings.acquireTimeoutMillis);
+  }
+
+  @Test
+  void overridesEveryFieldSet() {
+    PoolConfig background = new PoolConfig();
+    background.minSize = 2;
+    background.maxSize = 8;
+    background.acquireTimeoutMillis = 500;
+    PoolSettings settings = shared();
+
+    background.applyTo(settings);
+
+    assertEquals(2, settings.minSize);
+    assertEquals(8, settings.maxSize);
+    assertEquals(500, settings.acquireTimeoutMillis);
+  }
+
+  @Test
+  void inheritsEveryFieldUnset() {
+    PoolSettings settings = shared();
+
+    new PoolConfig().applyTo(settings);
+
+    assertEquals(1, settings.minSize);
+    assertEquals(0, settings.maxSize);
+    assertEquals(3000, settings.acquireTimeoutMillis);
+  }
+
+  @Test
+  void readsTheOverridesOfThePoolNamedInTheConfig() {
+    DBConfig dbConfig =
+        new Yaml()
+            .loadAs(
+                "c3p0MaxPoolSize: 10\n"
+                    + "pools:\n"
+                    + "  background-rw:\n"
+                    + "    maxSize: 4\n"
+                    + "    acquireTimeoutMillis: 250\n",
+                DBConfig.class);
+
+    PoolConfig background = dbConfig.pools.get(BACKGROUND_RW);
+    assertNull(background.minSize);
+    assertEquals(Integer.valueOf(4), background.maxSize);
+    assertEquals(Integer.valueOf(250), background.acquireTimeoutMillis);
+    assertFalse(dbConfig.pools.containsKey(INTERACTIVE_RW));
+    assertEquals(10, dbConfig.c3p0MaxPoolSize);
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.handler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConcurrencyLimiterTest {
+
+  private static final long RTT = TimeUnit.MILLISECONDS.toNanos(20);
+
+  @Test
+  void growsWhileLatencyHolds() {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(20, 4, 100);
+    for (int i = 0; i < 50; i++) {
+      limiter.update(RTT, limiter.getLimit(), false);
+    }
+
+    assertTrue(limiter.getLimit() > 20);
+  }
+
+  @Test
+  void shrinksWhenLatencyRises() {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(50, 4, 100);
+    for (int i = 0; i < 100; i++) {
+      limiter.update(RTT, 50, false);
+    }
+    int steady = limiter.getLimit();
+    for (int i = 0; i < 50; i++) {
+      limiter.update(RTT * 4, limiter.getLimit(), false);
+    }
+
+    assertTrue(limiter.getLimit() < steady);
+  }
+
+  @Test
+  void holdsWhenLightlyLoaded() {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(20, 4, 100);
+    for (int i = 0; i < 50; i++) {
+      limiter.update(RTT, 1, false);
+    }
+
+    assertEquals(20, limiter.getLimit());
+  }
+
+  @Test
+  void backsOffOnDropsDownToTheMinimum() {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(20, 4, 100);
+    limiter.update(RTT, 20, true);
+    assertEquals(18, limiter.getLimit());
+
+    for (int i = 0; i < 100; i++) {
+      limiter.update(RTT, 20, true);
+    }
+    assertEquals(4, limiter.getLimit());
+  }
+
+  @Test
+  void admitsUpToTheShareOfTheLimit() {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 4, 4);
+    assertEquals(2, limiter.getLimit(0.5));
+    assertEquals(4, limiter.getLimit(1.0));
+
+    assertTrue(limiter.tryAcquire(0.5));
+    assertTrue(limiter.tryAcquire(0.5));
+    assertFalse(limiter.tryAcquire(0.5));
+    assertTrue(limiter.tryAcquire(1.0));
+    assertTrue(limiter.tryAcquire(1.0));
+    assertFalse(limiter.tryAcquire(1.0));
+
+    limiter.release(RTT, false);
+    assertEquals(3, limiter.getInflight());
+    assertTrue(limiter.tryAcquire(1.0));
+  }
+}
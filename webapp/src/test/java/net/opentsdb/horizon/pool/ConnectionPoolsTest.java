@@ -0,0 +1,108 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.pool;
+
+import io.ultrabrew.metrics.MetricRegistry;
+import mockit.Mocked;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConnectionPoolsTest {
+
+  @Mocked private C3p0ConnectionPool c3p0Pool;
+  @Mocked private HikariConnectionPool hikariPool;
+  @Mocked private PoolMetrics metrics;
+
+  private final MetricRegistry metricRegistry = new MetricRegistry();
+
+  private static PoolSettings settings(final int minSize, final int maxSize, final int workers) {
+    PoolSettings settings = new PoolSettings();
+    settings.minSize = minSize;
+    settings.maxSize = maxSize;
+    settings.workerThreads = workers;
+    return settings;
+  }
+
+  @Test
+  void suggestsAQuarterOfTheWorkers() {
+    assertEquals(10, ConnectionPools.suggestedMaxSize(40));
+    assertEquals(25, ConnectionPools.suggestedMaxSize(100));
+    assertEquals(32, ConnectionPools.suggestedMaxSize(128));
+  }
+
+  @Test
+  void clampsTheSuggestedSizeBetween2And32() {
+    assertEquals(2, ConnectionPools.suggestedMaxSize(0));
+    assertEquals(2, ConnectionPools.suggestedMaxSize(7));
+    assertEquals(2, ConnectionPools.suggestedMaxSize(8));
+    assertEquals(32, ConnectionPools.suggestedMaxSize(129));
+    assertEquals(32, ConnectionPools.suggestedMaxSize(1000));
+  }
+
+  @Test
+  void sizesThePoolFromTheWorkersWhenTheMaxIsZero() throws SQLException {
+    PoolSettings settings = settings(20, 0, 40);
+
+    ConnectionPools.create(ConnectionPools.C3P0, "interactive-rw", settings, metricRegistry);
+
+    assertEquals(10, settings.maxSize);
+    assertEquals(10, settings.minSize);
+  }
+
+  @Test
+  void keepsAnExplicitMax() throws SQLException {
+    PoolSettings settings = settings(1, 4, 100);
+
+    ConnectionPools.create(ConnectionPools.C3P0, "interactive-rw", settings, metricRegistry);
+
+    assertEquals(4, settings.maxSize);
+    assertEquals(1, settings.minSize);
+  }
+
+  @Test
+  void createsTheConfiguredPoolType() throws SQLException {
+    assertTrue(
+        ConnectionPools.create("hikari", "p", settings(1, 0, 100), metricRegistry)
+            instanceof HikariConnectionPool);
+    assertTrue(
+        ConnectionPools.create("HIKARI", "p", settings(1, 0, 100), metricRegistry)
+            instanceof HikariConnectionPool);
+    assertTrue(
+        ConnectionPools.create("c3p0", "p", settings(1, 0, 100), metricRegistry)
+            instanceof C3p0ConnectionPool);
+  }
+
+  @Test
+  void defaultsToC3p0() throws SQLException {
+    assertTrue(
+        ConnectionPools.create(null, "p", settings(1, 0, 100), metricRegistry)
+            instanceof C3p0ConnectionPool);
+  }
+
+  @Test
+  void rejectsAnUnknownPoolType() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> ConnectionPools.create("dbcp", "p", settings(1, 0, 100), metricRegistry));
+  }
+}
@@ -0,0 +1,271 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.pool;
+
+import io.ultrabrew.metrics.MetricRegistry;
+import mockit.Expectations;
+import mockit.Injectable;
+import mockit.Verifications;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReplicaRoutingDataSourceTest {
+
+  private static final long PROBE_INTERVAL = 1000;
+  private static final long MAX_LAG = 5000;
+
+  @Injectable private DataSource primary;
+  @Injectable private DataSource replicaA;
+  @Injectable private DataSource replicaB;
+  @Injectable private Connection primaryConnection;
+  @Injectable private Connection connectionA;
+  @Injectable private Connection connectionB;
+  @Injectable private PreparedStatement primaryStatement;
+  @Injectable private PreparedStatement statementB;
+  @Injectable private ResultSet primaryResultSet;
+  @Injectable private ResultSet resultSetB;
+  @Injectable private ScheduledExecutorService prober;
+
+  private final MetricRegistry metricRegistry = new MetricRegistry();
+
+  private ReplicaRoutingDataSource router(final long maxLagMillis) {
+    Map<String, DataSource> replicas = new LinkedHashMap<>();
+    replicas.put("a", replicaA);
+    replicas.put("b", replicaB);
+    return new ReplicaRoutingDataSource(
+        replicas, primary, PROBE_INTERVAL, maxLagMillis, metricRegistry, "instance-1", prober);
+  }
+
+  private static Timestamp at(final long millis) {
+    return new Timestamp(millis);
+  }
+
+  private void primaryHeartbeat(final long millis) throws SQLException {
+    new Expectations() {
+      {
+        primary.getConnection();
+        result = primaryConnection;
+        primaryConnection.prepareStatement(anyString);
+        result = primaryStatement;
+        primaryStatement.executeQuery();
+        result = primaryResultSet;
+        primaryResultSet.next();
+        result = true;
+        primaryResultSet.getTimestamp(1);
+        result = at(millis);
+      }
+    };
+  }
+
+  /** Records the heartbeats replica b returns, one per probe. */
+  private void replicaHeartbeats(final Timestamp... heartbeats) throws SQLException {
+    new Expectations() {
+      {
+        replicaB.getConnection();
+        result = connectionB;
+        connectionB.isValid(anyInt);
+        result = true;
+        connectionB.prepareStatement(anyString);
+        result = statementB;
+        statementB.executeQuery();
+        result = resultSetB;
+        resultSetB.next();
+        result = true;
+        resultSetB.getTimestamp(1);
+        for (Timestamp heartbeat : heartbeats) {
+          result = heartbeat;
+        }
+      }
+    };
+  }
+
+  @Test
+  void routesToTheReplicaWithTheFewestConnectionsOut() throws SQLException {
+    new Expectations() {
+      {
+        replicaA.getConnection();
+        result = connectionA;
+        replicaB.getConnection();
+        result = connectionB;
+      }
+    };
+    ReplicaRoutingDataSource router = router(0);
+
+    Connection first = router.getConnection();
+    Connection second = router.getConnection();
+    assertEquals(1, router.replicas.get(0).outstanding.get());
+    assertEquals(1, router.replicas.get(1).outstanding.get());
+
+    first.close();
+    first.close();
+    assertEquals(0, router.replicas.get(0).outstanding.get());
+    assertEquals("a", router.select(0).name);
+    assertEquals("a", router.select(0).name);
+    second.close();
+
+    new Verifications() {
+      {
+        connectionA.close();
+        times = 2;
+        connectionB.close();
+        times = 1;
+      }
+    };
+  }
+
+  @Test
+  void routesToThePrimaryWithEveryReplicaEjected() throws SQLException {
+    new Expectations() {
+      {
+        replicaA.getConnection();
+        result = new SQLException("down");
+        replicaB.getConnection();
+        result = connectionB;
+        connectionB.isValid(anyInt);
+        result = false;
+        primary.getConnection();
+        result = primaryConnection;
+      }
+    };
+    ReplicaRoutingDataSource router = router(0);
+
+    for (ReplicaRoutingDataSource.Replica replica : router.replicas) {
+      router.probe(replica);
+    }
+
+    assertNull(router.select(0));
+    assertSame(primaryConnection, router.getConnection());
+  }
+
+  @Test
+  void ejectsALaggingReplicaAndAdmitsItBack() throws SQLException {
+    primaryHeartbeat(20_000);
+    replicaHeartbeats(at(14_000), at(16_000));
+    ReplicaRoutingDataSource router = router(MAX_LAG);
+    ReplicaRoutingDataSource.Replica replica = router.replicas.get(1);
+
+    router.probe(replica);
+    assertFalse(replica.healthy);
+    assertEquals(6000, replica.lag);
+    assertEquals("a", router.select(0).name);
+
+    router.probe(replica);
+    assertTrue(replica.healthy);
+    assertEquals(4000, replica.lag);
+  }
+
+  @Test
+  void ejectsAReplicaWithoutAHeartbeat() throws SQLException {
+    primaryHeartbeat(20_000);
+    replicaHeartbeats((Timestamp) null);
+    ReplicaRoutingDataSource router = router(MAX_LAG);
+    ReplicaRoutingDataSource.Replica replica = router.replicas.get(1);
+
+    router.probe(replica);
+
+    assertFalse(replica.healthy);
+    assertEquals(Long.MAX_VALUE, replica.lag);
+  }
+
+  @Test
+  void keepsTheReplicaAsItIsWhenThePrimaryIsUnreachable() throws SQLException {
+    replicaHeartbeats(at(18_000), at(12_000));
+    new Expectations() {
+      {
+        primary.getConnection();
+        result = primaryConnection;
+        result = new SQLException("down");
+        primaryConnection.prepareStatement(anyString);
+        result = primaryStatement;
+        primaryStatement.executeQuery();
+        result = primaryResultSet;
+        primaryResultSet.next();
+        result = true;
+        primaryResultSet.getTimestamp(1);
+        result = at(20_000);
+      }
+    };
+    ReplicaRoutingDataSource router = router(MAX_LAG);
+    ReplicaRoutingDataSource.Replica replica = router.replicas.get(1);
+
+    router.probe(replica);
+    router.probe(replica);
+
+    assertTrue(replica.healthy);
+    assertEquals(2000, replica.lag);
+    assertEquals(12_000, replica.caughtUpTo);
+  }
+
+  @Test
+  void routesAReadAfterAWriteToACaughtUpReplicaOnly() throws SQLException {
+    primaryHeartbeat(20_000);
+    replicaHeartbeats(at(18_000));
+    ReplicaRoutingDataSource router = router(MAX_LAG);
+    router.probe(router.replicas.get(1));
+
+    assertEquals("b", router.select(18_000).name);
+    assertNull(router.select(18_001));
+  }
+
+  @Test
+  void beatsOnItsOwnRowWithThePrimaryClock() throws SQLException {
+    new Expectations() {
+      {
+        primary.getConnection();
+        result = primaryConnection;
+        primaryConnection.prepareStatement(anyString);
+        result = primaryStatement;
+      }
+    };
+    ReplicaRoutingDataSource router = router(MAX_LAG);
+
+    router.beat();
+
+    new Verifications() {
+      {
+        List<String> statements = new ArrayList<>();
+        primaryConnection.prepareStatement(withCapture(statements));
+        assertTrue(statements.get(0).contains("VALUES (?, CURRENT_TIMESTAMP(3))"));
+        primaryStatement.setString(1, "instance-1");
+      }
+    };
+  }
+
+  @Test
+  void rejectsAMaxLagBelowTheProbeInterval() {
+    assertThrows(IllegalArgumentException.class, () -> router(PROBE_INTERVAL - 1));
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.pool;
+
+import io.ultrabrew.metrics.MetricRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Runs the heartbeat of {@link ReplicaRoutingDataSource} against H2 in MySQL mode. */
+public class ReplicationHeartbeatTest {
+
+  private static final String CREATE_HEARTBEAT_TABLE =
+      "CREATE TABLE replication_heartbeat ("
+          + "instance VARCHAR(128) NOT NULL, "
+          + "updatedtime TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3), "
+          + "PRIMARY KEY (instance))";
+
+  private static final long PROBE_INTERVAL = 3_600_000;
+
+  private JdbcDataSource dataSource;
+  private Connection reader;
+  private ReplicaRoutingDataSource router;
+
+  @BeforeEach
+  void setUp() throws SQLException {
+    dataSource = new JdbcDataSource();
+    // named, so that the connections of a test share the database the reader keeps open
+    dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL");
+    reader = dataSource.getConnection();
+    try (Statement statement = reader.createStatement()) {
+      statement.execute(CREATE_HEARTBEAT_TABLE);
+    }
+    // no maximum lag, so nothing gets scheduled within the test, the beats are run by hand
+    router =
+        new ReplicaRoutingDataSource(
+            Map.of("a", dataSource),
+            dataSource,
+            PROBE_INTERVAL,
+            0,
+            new MetricRegistry(),
+            "instance-1",
+            Executors.newSingleThreadScheduledExecutor());
+  }
+
+  @AfterEach
+  void tearDown() throws SQLException {
+    router.close();
+    reader.close();
+  }
+
+  @Test
+  void keepsARowPerInstanceUpToDate() throws Exception {
+    router.beat();
+    assertEquals(List.of("instance-1"), instances());
+    Timestamp first = updatedTime("instance-1");
+
+    Thread.sleep(10);
+    router.beat();
+    assertEquals(List.of("instance-1"), instances());
+    assertTrue(updatedTime("instance-1").after(first));
+  }
+
+  @Test
+  void purgesTheRowsOfInstancesLongGoneAtMostOnceAnHour() throws Exception {
+    insertStale("gone-1");
+    router.beat();
+    assertEquals(List.of("instance-1"), instances());
+
+    insertStale("gone-2");
+    router.beat();
+    assertEquals(List.of("gone-2", "instance-1"), instances());
+
+    router.purgedAtMillis -= ReplicaRoutingDataSource.PURGE_INTERVAL_MILLIS;
+    router.beat();
+    assertEquals(List.of("instance-1"), instances());
+  }
+
+  private void insertStale(final String instance) throws SQLException {
+    try (Statement statement = reader.createStatement()) {
+      statement.executeUpdate(
+          "INSERT INTO replication_heartbeat (instance, updatedtime) VALUES ('"
+              + instance
+              + "', CURRENT_TIMESTAMP(3) - INTERVAL '2' DAY)");
+    }
+  }
+
+  private List<String> instances() throws SQLException {
+    List<String> instances = new ArrayList<>();
+    try (Statement statement = reader.createStatement();
+        ResultSet rs =
+            statement.executeQuery(
+                "SELECT instance FROM replication_heartbeat ORDER BY instance")) {
+      while (rs.next()) {
+        instances.add(rs.getString(1));
+      }
+    }
+    return instances;
+  }
+
+  private Timestamp updatedTime(final String instance) throws SQLException {
+    try (Statement statement = reader.createStatement();
+        ResultSet rs =
+            statement.executeQuery(
+                "SELECT updatedtime FROM replication_heartbeat WHERE instance = '"
+                    + instance
+                    + "'")) {
+      assertTrue(rs.next());
+      return rs.getTimestamp(1);
+    }
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * This file is part of OpenTSDB.
+ *  Copyright (C) 2021 Yahoo.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express  implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.opentsdb.horizon.resource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.opentsdb.horizon.fs.view.FileDto;
+import net.opentsdb.horizon.util.JsonCodec;
+import net.opentsdb.horizon.view.EncodedContent;
+import net.opentsdb.horizon.view.SnapshotView;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ObjectMapperResolverTest {
+
+  private static final String FILE = "{\"name\":\"d1\",\"content\":{\"widgets\":[1,2]}}";
+
+  @Test
+  void streamsTheContentOnTheRestMapperOnly() throws Exception {
+    ObjectMapper rest = new ObjectMapperResolver().getContext(FileDto.class);
+
+    FileDto file = rest.readValue(FILE, FileDto.class);
+    SnapshotView snapshot = rest.readValue(FILE, SnapshotView.class);
+    assertEquals("d1", file.getName());
+    assertTrue(file.getContent() instanceof EncodedContent);
+    assertTrue(snapshot.getContent() instanceof EncodedContent);
+
+    FileDto plain = JsonCodec.reader(FileDto.class).readValue(FILE);
+    assertTrue(plain.getContent() instanceof Map);
+    assertEquals(Map.of("widgets", List.of(1, 2)), plain.getContent());
+  }
+}